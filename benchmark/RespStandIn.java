@@ -0,0 +1,307 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: RespStandIn.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The in-process Redis stand-in which is used by the JMH benchmarks of the benchmark source set.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of RespStandIn was written.
+ *    2.2026-10-17 Move to the benchmark source set.
+ */
+//package name.
+package generaldbplatform;
+
+//class import for java utilities.
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * @ClassName: RespStandIn.
+ * @Description: this class is a tiny server which speaks the Redis protocol(RESP) on a loopback port, so a real Jedis client
+ *               could be measured without a Redis server: it answers PING, GET, SET, DEL, SELECT & QUIT from a map in memory.
+ *               the replies of one read are flushed together, like Redis does, so a pipeline costs one round trip.
+ *               it is not a Redis server, the numbers only compare the client paths(like single-key vs pipelined).
+ */
+public class RespStandIn implements Closeable
+{
+    /**
+     * @FieldName: UTF8.
+     * @Description: the charset of the keys & the values.
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * @FieldName: server & store.
+     * @Description: the listening socket & the values by the key.
+     */
+    private final ServerSocket server;
+    private final ConcurrentMap<String, byte[]> store = new ConcurrentHashMap<String, byte[]>();
+
+    /**
+     * @Title: RespStandIn.
+     * @Description: the construct function of the RespStandIn class, it listens on a free loopback port at once.
+     * @return none.
+     */
+    public RespStandIn() throws IOException
+    {
+	this.server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+	Thread acceptor = new Thread(new Runnable()
+	{
+	    @Override
+	    public void run()
+	    {
+		acceptLoop();
+	    }
+	}, "respStandInAcceptThread");
+	acceptor.setDaemon(true);
+	acceptor.start();
+    }
+
+    /**
+     * @Title: getPort.
+     * @Description: the function is used to get the port of the stand-in.
+     * @return int: the loopback port.
+     */
+    public int getPort()
+    {
+	return this.server.getLocalPort();
+    }
+
+    /**
+     * @Title: acceptLoop.
+     * @Description: the function which accepts the connections until the stand-in is closed, one thread per connection.
+     * @return none.
+     */
+    private void acceptLoop()
+    {
+	while(!this.server.isClosed())
+	{
+	    final Socket socket;
+	    try
+	    {
+		socket = this.server.accept();
+		socket.setTcpNoDelay(true);
+	    }
+	    catch(IOException e)
+	    {
+		return;
+	    }
+	    Thread worker = new Thread(new Runnable()
+	    {
+		@Override
+		public void run()
+		{
+		    serve(socket);
+		}
+	    }, "respStandInThread");
+	    worker.setDaemon(true);
+	    worker.start();
+	}
+    }
+
+    /**
+     * @Title: serve.
+     * @Description: the function which answers the commands of one connection until it is closed.
+     * @param socket: the connection.
+     * @return none.
+     */
+    private void serve(Socket socket)
+    {
+	try
+	{
+	    InputStream in = new BufferedInputStream(socket.getInputStream());
+	    OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+	    while(true)
+	    {
+		byte[][] command = readCommand(in);
+		if(command == null)
+		{
+		    break;
+		}
+		boolean quit = this.reply(command, out);
+		if(quit || (in.available() == 0))
+		{
+		    out.flush();
+		}
+		if(quit)
+		{
+		    break;
+		}
+	    }
+	}
+	catch(IOException e)
+	{
+	    //the client is gone.
+	}
+	finally
+	{
+	    try
+	    {
+		socket.close();
+	    }
+	    catch(IOException e)
+	    {
+	    }
+	}
+    }
+
+    /**
+     * @Title: reply.
+     * @Description: the function which runs one command and writes its reply.
+     * @param command: the command name & the arguments.
+     * @param out: the connection output.
+     * @return boolean: true when the client quits.
+     */
+    private boolean reply(byte[][] command, OutputStream out) throws IOException
+    {
+	String name = new String(command[0], UTF8).toUpperCase();
+	if("GET".equals(name) && (command.length == 2))
+	{
+	    byte[] value = this.store.get(new String(command[1], UTF8));
+	    if(value == null)
+	    {
+		out.write("$-1\r\n".getBytes(UTF8));
+	    }
+	    else
+	    {
+		out.write(("$" + value.length + "\r\n").getBytes(UTF8));
+		out.write(value);
+		out.write('\r');
+		out.write('\n');
+	    }
+	}
+	else if("SET".equals(name) && (command.length >= 3))
+	{
+	    this.store.put(new String(command[1], UTF8), command[2]);
+	    out.write("+OK\r\n".getBytes(UTF8));
+	}
+	else if("DEL".equals(name))
+	{
+	    int removed = 0;
+	    for(int i = 1; i < command.length; i++)
+	    {
+		if(this.store.remove(new String(command[i], UTF8)) != null)
+		{
+		    removed += 1;
+		}
+	    }
+	    out.write((":" + removed + "\r\n").getBytes(UTF8));
+	}
+	else if("PING".equals(name))
+	{
+	    out.write("+PONG\r\n".getBytes(UTF8));
+	}
+	else if("SELECT".equals(name) || "QUIT".equals(name))
+	{
+	    out.write("+OK\r\n".getBytes(UTF8));
+	    return "QUIT".equals(name);
+	}
+	else
+	{
+	    out.write(("-ERR unknown command '" + name + "'\r\n").getBytes(UTF8));
+	}
+	return false;
+    }
+
+    /**
+     * @Title: readCommand.
+     * @Description: the function which reads one command(a RESP array of bulk strings).
+     * @param in: the connection input.
+     * @return byte[][]: the command name & the arguments, null at the end of the stream.
+     */
+    private static byte[][] readCommand(InputStream in) throws IOException
+    {
+	int first = in.read();
+	if(first == -1)
+	{
+	    return null;
+	}
+	if(first != '*')
+	{
+	    throw new IOException("unexpected RESP type: " + (char)first);
+	}
+	int count = (int)readNumber(in);
+	byte[][] command = new byte[count][];
+	for(int i = 0; i < count; i++)
+	{
+	    if(in.read() != '$')
+	    {
+		throw new IOException("bulk string expected");
+	    }
+	    int length = (int)readNumber(in);
+	    byte[] arg = new byte[length];
+	    int read = 0;
+	    while(read < length)
+	    {
+		int n = in.read(arg, read, length - read);
+		if(n == -1)
+		{
+		    throw new EOFException();
+		}
+		read += n;
+	    }
+	    in.read();   //'\r'
+	    in.read();   //'\n'
+	    command[i] = arg;
+	}
+	return command;
+    }
+
+    /**
+     * @Title: readNumber.
+     * @Description: the function which reads a decimal number up to the "\r\n".
+     * @param in: the connection input.
+     * @return long: the number.
+     */
+    private static long readNumber(InputStream in) throws IOException
+    {
+	long value = 0;
+	boolean negative = false;
+	while(true)
+	{
+	    int c = in.read();
+	    if(c == -1)
+	    {
+		throw new EOFException();
+	    }
+	    if(c == '\r')
+	    {
+		in.read();   //'\n'
+		return negative ? -value : value;
+	    }
+	    if(c == '-')
+	    {
+		negative = true;
+	    }
+	    else
+	    {
+		value = value * 10 + (c - '0');
+	    }
+	}
+    }
+
+    /**
+     * @Title: close.
+     * @Description: the function which stops accepting the connections.
+     * @return none.
+     */
+    @Override
+    public void close() throws IOException
+    {
+	this.server.close();
+    }
+}
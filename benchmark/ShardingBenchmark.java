@@ -0,0 +1,470 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: ShardingBenchmark.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The micro benchmarks of the routing, the topology parsing & the single-key vs pipelined cache access.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of ShardingBenchmark was written.
+ *    2.2026-10-17 Add the routing benchmark of the WeightedRendezvousRoutingStrategy.
+ *    3.2026-10-17 Add the GETs over the MultiplexedShardClient.
+ *    4.2026-10-17 Add the encoding & decoding of a document by JSON vs ValueCodecs.
+ *    5.2026-10-17 Choose the binary codec for its benchmark, the ValueCodecs write legacy JSON by default.
+ *    6.2026-10-17 Run the benchmarks by JMH from the benchmark source set(see pom.xml) instead of the own timing loop.
+ *    7.2026-10-17 Drop the size print of the codec setup, the JMH output only carries the measurements.
+ */
+//package name.
+package generaldbplatform;
+
+//class import for java utilities.
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+//class import for jedis client.
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisSentinelPool;
+import redis.clients.jedis.Pipeline;
+
+//class import for mongodb client.
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import com.mongodb.MongoClient;
+import com.mongodb.util.JSON;
+
+//class import for jmh.
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * @ClassName: ShardingBenchmark.
+ * @Description: this class measures the hot paths which choose the shards, so a change of them could be compared run to run:
+ *               - the get*ShardedCacheClient & get*ShardedPersistClient lookups of the int, long & String keys, and the lookup
+ *                 of the legacy HashMap with the modulo of the last char, which the ShardTopology snapshot replaced,
+ *               - the parsing of a large topology message of both layers,
+ *               - 100 GETs one by one vs in one pipeline, with a real Jedis client against the in-process RespStandIn,
+ *                 and over the MultiplexedShardClient(all sent before the first reply is awaited),
+ *               - the encoding & decoding of a cached document as JSON vs the binary & compressed ValueCodecs.
+ *               the benchmarks are run by JMH(2 warm-up & 5 measured iterations of 1s in one fork), the scores are ns per
+ *               operation(a routing call measures KEY_NUM lookups, a cache access call BATCH_SIZE GETs), and the results
+ *               are written as JSON by the -rf json option of the benchmarks jar or by main.
+ *               (the routing benchmarks use a detached layer client over a topology of empty shard slots,
+ *               so no Redis or MongoDB is needed).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShardingBenchmark
+{
+    /**
+     * @FieldName: KEY_NUM & SHARD_NUM & OLD_SHARD_NUM & MESSAGE_SHARD_NUM & BATCH_SIZE.
+     * @Description: the keys of one routing call, the shard numbers of the expanding topology, the shards of the parsed
+     *               topology message, and the GETs of one cache access call.
+     */
+    static final int KEY_NUM = 1024;
+    static final int SHARD_NUM = 16;
+    static final int OLD_SHARD_NUM = 12;
+    static final int MESSAGE_SHARD_NUM = 64;
+    static final int BATCH_SIZE = 100;
+
+    /**
+     * @ClassName: RoutingState.
+     * @Description: the detached layer clients over an expanding topology, and the random keys of a routing call.
+     */
+    @State(Scope.Benchmark)
+    public static class RoutingState
+    {
+	CacheLayerClient cache;
+	PersistentLayerClient persist;
+	CacheLayerClient weighted;
+	final HashMap<Integer, JedisSentinelPool> legacyMap = new HashMap<Integer, JedisSentinelPool>();
+	final int[] intKeys = new int[KEY_NUM];
+	final long[] longKeys = new long[KEY_NUM];
+	final String[] stringKeys = new String[KEY_NUM];
+
+	@Setup
+	public void setup()
+	{
+	    this.cache = new CacheLayerClient(new JumpHashRoutingStrategy(), ShardingBenchmark.<JedisSentinelPool>emptyTopology());
+	    this.persist = new PersistentLayerClient(new JumpHashRoutingStrategy(), ShardingBenchmark.<MongoClient>emptyTopology());
+	    this.weighted = new CacheLayerClient(new WeightedRendezvousRoutingStrategy(), ShardingBenchmark.<JedisSentinelPool>emptyTopology());
+	    for(int i = 0; i < SHARD_NUM; i++)
+	    {
+		this.legacyMap.put(i, null);
+	    }
+	    Random random = new Random(42);
+	    for(int i = 0; i < KEY_NUM; i++)
+	    {
+		this.intKeys[i] = random.nextInt();
+		this.longKeys[i] = random.nextLong();
+		this.stringKeys[i] = "user:" + random.nextInt(10000000) + ":profile";
+	    }
+	}
+    }
+
+    /**
+     * @ClassName: ParsingState.
+     * @Description: the topology messages of MESSAGE_SHARD_NUM shards.
+     */
+    @State(Scope.Benchmark)
+    public static class ParsingState
+    {
+	String cacheMessage;
+	String persistMessage;
+	String versionedMessage;
+
+	@Setup
+	public void setup()
+	{
+	    this.cacheMessage = topologyMessage(MESSAGE_SHARD_NUM, 26379);
+	    this.persistMessage = topologyMessage(MESSAGE_SHARD_NUM, 27017);
+	    this.versionedMessage = "128" + TopologyService.VERSION_SEPARATOR + this.cacheMessage;
+	}
+    }
+
+    /**
+     * @ClassName: CacheAccessState.
+     * @Description: the RespStandIn with BATCH_SIZE values, a Jedis client and a MultiplexedShardClient of it.
+     *               (a Jedis client is not thread-safe, the benchmarks run in one thread).
+     */
+    @State(Scope.Benchmark)
+    public static class CacheAccessState
+    {
+	RespStandIn standIn;
+	Jedis jedis;
+	MultiplexedShardClient multiplexed;
+	final String[] keys = new String[BATCH_SIZE];
+
+	@Setup
+	public void setup() throws IOException
+	{
+	    this.standIn = new RespStandIn();
+	    this.jedis = new Jedis("127.0.0.1", this.standIn.getPort());
+	    this.multiplexed = new MultiplexedShardClient(new HostAndPort("127.0.0.1", this.standIn.getPort()),
+							  MultiplexedShardClient.DEFAULT_CONNECTIONS, 10000);
+	    for(int i = 0; i < BATCH_SIZE; i++)
+	    {
+		this.keys[i] = "bench:key:" + i;
+		this.jedis.set(this.keys[i], "value-" + i);
+	    }
+	}
+
+	@TearDown
+	public void tearDown() throws IOException
+	{
+	    this.multiplexed.close();
+	    this.jedis.close();
+	    this.standIn.close();
+	}
+    }
+
+    /**
+     * @ClassName: CodecState.
+     * @Description: a document with 20 orders, its JSON and its binary value.
+     */
+    @State(Scope.Benchmark)
+    public static class CodecState
+    {
+	DBObject doc;
+	ValueCodecs codecs;
+	String json;
+	byte[] binary;
+
+	@Setup
+	public void setup() throws IOException
+	{
+	    this.doc = new BasicDBObject("_id", "user:42").append("name", "Alice Chen").append("email", "alice@example.com")
+			 .append("age", 35).append("balance", 1024.5).append("active", true);
+	    BasicDBList orders = new BasicDBList();
+	    for(int i = 0; i < 20; i++)
+	    {
+		orders.add(new BasicDBObject("orderId", 100000L + i).append("sku", "SKU-" + (i % 7)).append("quantity", i % 3 + 1)
+				   .append("status", (i % 2 == 0) ? "SHIPPED" : "PENDING"));
+	    }
+	    this.doc.put("orders", orders);
+	    this.codecs = new ValueCodecs();
+	    this.codecs.setWriteVersion(BinaryDocumentCodec.VERSION);
+	    this.json = JSON.serialize(this.doc);
+	    this.binary = this.codecs.encode(this.doc);
+	}
+    }
+
+    /**
+     * @Title: emptyTopology.
+     * @Description: the function which builds a topology of empty shard slots which is expanding from OLD_SHARD_NUM to SHARD_NUM.
+     * @return ShardTopology<T>: the topology.
+     */
+    static <T> ShardTopology<T> emptyTopology()
+    {
+	ShardTopology<T> topology = ShardTopology.empty();
+	topology = topology.extend(Collections.<T>nCopies(OLD_SHARD_NUM, null));
+	return topology.extend(Collections.<T>nCopies(SHARD_NUM - OLD_SHARD_NUM, null));
+    }
+
+    /**
+     * @Title: topologyMessage.
+     * @Description: the function which builds a topology message of shardNum shards.
+     * @param shardNum: the shard number.
+     * @param port: the port of the servers.
+     * @return String: the message like "10.0.0.1:26379_10.0.1.1:26379_10.0.2.1:26379;...".
+     */
+    static String topologyMessage(int shardNum, int port)
+    {
+	StringBuilder message = new StringBuilder();
+	for(int i = 0; i < shardNum; i++)
+	{
+	    if(i > 0)
+	    {
+		message.append(';');
+	    }
+	    for(int member = 0; member < 3; member++)
+	    {
+		if(member > 0)
+		{
+		    message.append('_');
+		}
+		message.append("10.").append(member).append('.').append(i / 250).append('.').append(i % 250 + 1).append(':').append(port);
+	    }
+	}
+	return message.toString();
+    }
+
+    //the routing benchmarks, the returned checksums keep the lookups from being removed by the JIT.
+
+    @Benchmark
+    @OperationsPerInvocation(KEY_NUM)
+    public long routingCacheNewInt(RoutingState state)
+    {
+	long checksum = 0;
+	for(int i = 0; i < KEY_NUM; i++)
+	{
+	    checksum += (state.cache.getNewShardedCacheClient(state.intKeys[i]) == null) ? 1 : 2;
+	}
+	return checksum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEY_NUM)
+    public long routingCacheNewLong(RoutingState state)
+    {
+	long checksum = 0;
+	for(int i = 0; i < KEY_NUM; i++)
+	{
+	    checksum += (state.cache.getNewShardedCacheClient(state.longKeys[i]) == null) ? 1 : 2;
+	}
+	return checksum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEY_NUM)
+    public long routingCacheNewString(RoutingState state)
+    {
+	long checksum = 0;
+	for(int i = 0; i < KEY_NUM; i++)
+	{
+	    checksum += (state.cache.getNewShardedCacheClient(state.stringKeys[i]) == null) ? 1 : 2;
+	}
+	return checksum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEY_NUM)
+    public long routingCacheOldString(RoutingState state)
+    {
+	long checksum = 0;
+	for(int i = 0; i < KEY_NUM; i++)
+	{
+	    checksum += (state.cache.getOldShardedCacheClient(state.stringKeys[i]) == null) ? 1 : 2;
+	}
+	return checksum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEY_NUM)
+    public long routingCacheWeightedString(RoutingState state)
+    {
+	long checksum = 0;
+	for(int i = 0; i < KEY_NUM; i++)
+	{
+	    checksum += (state.weighted.getNewShardedCacheClient(state.stringKeys[i]) == null) ? 1 : 2;
+	}
+	return checksum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEY_NUM)
+    public long routingCacheLegacyMapString(RoutingState state)
+    {
+	long checksum = 0;
+	for(int i = 0; i < KEY_NUM; i++)
+	{
+	    String key = state.stringKeys[i];
+	    checksum += (state.legacyMap.get((int)(key.toCharArray()[key.length() - 1]) % SHARD_NUM) == null) ? 1 : 2;
+	}
+	return checksum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEY_NUM)
+    public long routingPersistNewInt(RoutingState state)
+    {
+	long checksum = 0;
+	for(int i = 0; i < KEY_NUM; i++)
+	{
+	    checksum += (state.persist.getNewShardedPersistClient(state.intKeys[i]) == null) ? 1 : 2;
+	}
+	return checksum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEY_NUM)
+    public long routingPersistNewLong(RoutingState state)
+    {
+	long checksum = 0;
+	for(int i = 0; i < KEY_NUM; i++)
+	{
+	    checksum += (state.persist.getNewShardedPersistClient(state.longKeys[i]) == null) ? 1 : 2;
+	}
+	return checksum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEY_NUM)
+    public long routingPersistNewString(RoutingState state)
+    {
+	long checksum = 0;
+	for(int i = 0; i < KEY_NUM; i++)
+	{
+	    checksum += (state.persist.getNewShardedPersistClient(state.stringKeys[i]) == null) ? 1 : 2;
+	}
+	return checksum;
+    }
+
+    //the parsing benchmarks of a topology message of MESSAGE_SHARD_NUM shards.
+
+    @Benchmark
+    public long parseCacheMessage(ParsingState state)
+    {
+	return CacheLayerClient.parseCacheShards(state.cacheMessage).size();
+    }
+
+    @Benchmark
+    public long parsePersistMessage(ParsingState state)
+    {
+	return PersistentLayerClient.parsePersistShards(state.persistMessage).size();
+    }
+
+    @Benchmark
+    public long parseVersionedMessage(ParsingState state)
+    {
+	return TopologyService.parseVersion(state.versionedMessage) + TopologyService.parseDelta(state.versionedMessage).length();
+    }
+
+    //the cache access benchmarks, BATCH_SIZE GETs one by one, in one pipeline, and over the multiplexed transport.
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public long cacheGetSingle(CacheAccessState state)
+    {
+	long checksum = 0;
+	for(int i = 0; i < BATCH_SIZE; i++)
+	{
+	    checksum += state.jedis.get(state.keys[i]).length();
+	}
+	return checksum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public long cacheGetPipelined(CacheAccessState state)
+    {
+	Pipeline pipe = state.jedis.pipelined();
+	for(int i = 0; i < BATCH_SIZE; i++)
+	{
+	    pipe.get(state.keys[i]);
+	}
+	return pipe.syncAndReturnAll().size();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public long cacheGetMultiplexed(CacheAccessState state)
+    {
+	List<CompletableFuture<Object>> replies = new ArrayList<CompletableFuture<Object>>(BATCH_SIZE);
+	for(int i = 0; i < BATCH_SIZE; i++)
+	{
+	    replies.add(state.multiplexed.send("GET", state.keys[i]));
+	}
+	long checksum = 0;
+	for(CompletableFuture<Object> reply : replies)
+	{
+	    checksum += ((String)MultiplexedShardClient.await(reply, 10000)).length();
+	}
+	return checksum;
+    }
+
+    //the codec benchmarks of one document.
+
+    @Benchmark
+    public long codecJsonEncode(CodecState state) throws IOException
+    {
+	return JSON.serialize(state.doc).getBytes("UTF-8").length;
+    }
+
+    @Benchmark
+    public long codecBinaryEncode(CodecState state)
+    {
+	return state.codecs.encode(state.doc).length;
+    }
+
+    @Benchmark
+    public long codecJsonDecode(CodecState state)
+    {
+	return ((DBObject)JSON.parse(state.json)).keySet().size();
+    }
+
+    @Benchmark
+    public long codecBinaryDecode(CodecState state)
+    {
+	return state.codecs.decode(state.binary).keySet().size();
+    }
+
+    /**
+     * @Title: main.
+     * @Description: runs all the benchmarks of this class by JMH, and writes the JSON results to a file.
+     * @param args: args[0] is the optional output file(default sharding-benchmark.json), args[1] is the optional regexp
+     *              of the benchmarks to run(default all of them, like "routing" or "cacheGet").
+     * @return none.
+     */
+    public static void main(String[] args) throws Exception
+    {
+	String output = (args.length > 0) ? args[0] : "sharding-benchmark.json";
+	String include = ShardingBenchmark.class.getName() + "." + ((args.length > 1) ? ".*" + args[1] + ".*" : ".*");
+	new Runner(new OptionsBuilder().include(include).resultFormat(ResultFormatType.JSON).result(output).build()).run();
+    }
+}
@@ -0,0 +1,364 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: AdaptivePoolController.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The controller which resizes the connection pool of each cache shard by its load.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of AdaptivePoolController was written.
+ */
+//package name.
+package generaldbplatform;
+
+//class import for java utilities.
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+//class import for jedis client.
+import redis.clients.jedis.JedisSentinelPool;
+
+/**
+ * @ClassName: AdaptivePoolController.
+ * @Description: this class checks the pool of every cache shard each IntervalMillis and resizes it within
+ *               [MinTotal, MaxTotal]:
+ *               - GROW: when a borrower is waiting, the mean borrow wait of the interval reaches WaitThresholdMicros,
+ *                 or the utilization(active / maxTotal) reaches HighUtilization, maxTotal grows by GrowFactor,
+ *               - SHRINK: when the utilization stays at or below LowUtilization for QuietIntervals intervals in a row,
+ *                 maxTotal & maxIdle are halved(never below twice the active connections).
+ *               the idle connections themselves are closed by the eviction of the pool(see CacheLayerClient),
+ *               so a cold shard keeps only a few sockets open. every decision is sent to the PoolResizeListeners
+ *               and kept in the recent events.
+ */
+public class AdaptivePoolController
+{
+    /**
+     * @FieldName: the DEFAULT_* constants.
+     * @Description: the default settings of the controller.
+     */
+    public static final long DEFAULT_INTERVAL_MILLIS = 5000;
+    public static final int DEFAULT_MIN_TOTAL = 8;
+    public static final int DEFAULT_MAX_TOTAL = 1000;
+    public static final int DEFAULT_MIN_IDLE = 2;
+    public static final double DEFAULT_GROW_FACTOR = 1.5;
+    public static final double DEFAULT_HIGH_UTILIZATION = 0.8;
+    public static final double DEFAULT_LOW_UTILIZATION = 0.25;
+    public static final long DEFAULT_WAIT_THRESHOLD_MICROS = 1000;
+    public static final int DEFAULT_QUIET_INTERVALS = 12;
+
+    /**
+     * @FieldName: RECENT_EVENT_NUM.
+     * @Description: the number of the recent events which are kept.
+     */
+    private static final int RECENT_EVENT_NUM = 64;
+
+    /**
+     * @FieldName: cacheClient.
+     * @Description: the cache layer whose shard pools are resized.
+     */
+    private final CacheLayerClient cacheClient;
+
+    /**
+     * @FieldName: the settings.
+     * @Description: see the class description.
+     */
+    private volatile long IntervalMillis = DEFAULT_INTERVAL_MILLIS;
+    private volatile int MinTotal = DEFAULT_MIN_TOTAL;
+    private volatile int MaxTotal = DEFAULT_MAX_TOTAL;
+    private volatile int MinIdle = DEFAULT_MIN_IDLE;
+    private volatile double GrowFactor = DEFAULT_GROW_FACTOR;
+    private volatile double HighUtilization = DEFAULT_HIGH_UTILIZATION;
+    private volatile double LowUtilization = DEFAULT_LOW_UTILIZATION;
+    private volatile long WaitThresholdMicros = DEFAULT_WAIT_THRESHOLD_MICROS;
+    private volatile int QuietIntervals = DEFAULT_QUIET_INTERVALS;
+
+    /**
+     * @FieldName: states.
+     * @Description: the borrow count & total wait at the last check, and the quiet interval number of each shard index.
+     *               (guarded by this)
+     */
+    private final Map<Integer, long[]> states = new HashMap<Integer, long[]>();
+
+    /**
+     * @FieldName: listeners & recentEvents.
+     * @Description: the listeners of the decisions, and the last RECENT_EVENT_NUM decisions.(recentEvents is guarded by itself)
+     */
+    private final List<PoolResizeListener> listeners = new CopyOnWriteArrayList<PoolResizeListener>();
+    private final Deque<PoolResizeEvent> recentEvents = new ArrayDeque<PoolResizeEvent>();
+
+    /**
+     * @FieldName: scheduler.
+     * @Description: the controller thread, null before start.
+     */
+    private ScheduledExecutorService scheduler = null;
+
+    /**
+     * @Title: AdaptivePoolController.
+     * @Description: the construct function of the AdaptivePoolController class.
+     * @param cacheClient: the cache layer whose shard pools are resized.
+     * @return none.
+     */
+    public AdaptivePoolController(CacheLayerClient cacheClient)
+    {
+	this.cacheClient = cacheClient;
+    }
+
+    /**
+     * @Title: start.
+     * @Description: the function which starts the controller thread, it checks the pools every IntervalMillis.
+     *               (a new interval takes effect after a restart).
+     * @return none.
+     */
+    public synchronized void start()
+    {
+	if(this.scheduler != null)
+	{
+	    return;
+	}
+	this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+	{
+	    @Override
+	    public Thread newThread(Runnable r)
+	    {
+		Thread thread = new Thread(r, "poolControllerThread");
+		thread.setDaemon(true);
+		return thread;
+	    }
+	});
+	this.scheduler.scheduleWithFixedDelay(new Runnable()
+	{
+	    @Override
+	    public void run()
+	    {
+		try
+		{
+		    check();
+		}
+		catch(RuntimeException e)
+		{
+		    //a pool which is being rebuilt by a failover is checked again in the next interval.
+		}
+	    }
+	}, this.IntervalMillis, this.IntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @Title: stop.
+     * @Description: the function which stops the controller thread, the pools keep their current size.
+     * @return none.
+     */
+    public synchronized void stop()
+    {
+	if(this.scheduler != null)
+	{
+	    this.scheduler.shutdownNow();
+	    this.scheduler = null;
+	}
+    }
+
+    /**
+     * @Title: check.
+     * @Description: the function which checks the pools of all the shards of the current topology once.
+     * @return none.
+     */
+    public synchronized void check()
+    {
+	ShardTopology<JedisSentinelPool> topology = this.cacheClient.getCacheTopology();
+	for(int i = 0; i < topology.getNewShardNum(); i++)
+	{
+	    JedisSentinelPool pool = topology.getShard(i);
+	    if(pool instanceof CacheShardPool)
+	    {
+		this.checkPool((CacheShardPool)pool);
+	    }
+	}
+    }
+
+    /**
+     * @Title: checkPool.
+     * @Description: the function which decides the size of one pool from the load of the last interval.
+     * @param pool: the pool of the shard.
+     * @return none.
+     */
+    private void checkPool(CacheShardPool pool)
+    {
+	long[] state = this.states.get(pool.getShardIndex());
+	if(state == null)
+	{
+	    state = new long[3];
+	    this.states.put(pool.getShardIndex(), state);
+	}
+
+	LatencyHistogram borrow = pool.getMetrics().histogram("borrow");
+	long count = borrow.getCount();
+	long sum = borrow.getSum();
+	double mean_wait = (count > state[0]) ? (double)(sum - state[1]) / (count - state[0]) : 0.0;
+	state[0] = count;
+	state[1] = sum;
+
+	int active = pool.getNumActive();
+	int waiters = pool.getNumWaiters();
+	int max_total = pool.getMaxTotal();
+	int max_idle = pool.getMaxIdle();
+	double utilization = (max_total > 0) ? (double)active / max_total : 1.0;
+
+	if((waiters > 0) || (mean_wait >= this.WaitThresholdMicros) || (utilization >= this.HighUtilization))
+	{
+	    state[2] = 0;
+	    int new_total = Math.min(this.MaxTotal, Math.max(max_total + 1, (int)Math.ceil(max_total * this.GrowFactor)));
+	    int new_idle = Math.min(new_total, Math.max(max_idle, active + waiters));
+	    this.apply(pool, PoolResizeEvent.Reason.GROW, max_total, new_total, max_idle, new_idle, utilization, mean_wait, waiters);
+	}
+	else if(utilization <= this.LowUtilization)
+	{
+	    state[2] += 1;
+	    if(state[2] >= this.QuietIntervals)
+	    {
+		state[2] = 0;
+		int new_total = Math.max(this.MinTotal, Math.max(active * 2, max_total / 2));
+		int new_idle = Math.min(new_total, Math.max(this.MinIdle, Math.max(active, max_idle / 2)));
+		this.apply(pool, PoolResizeEvent.Reason.SHRINK, max_total, new_total, max_idle, new_idle, utilization, mean_wait, waiters);
+	    }
+	}
+	else
+	{
+	    state[2] = 0;
+	}
+    }
+
+    /**
+     * @Title: apply.
+     * @Description: the function which resizes a pool and publishes the decision, when the size changes.
+     * @return none.
+     */
+    private void apply(CacheShardPool pool, PoolResizeEvent.Reason reason, int oldTotal, int newTotal, int oldIdle, int newIdle,
+		       double utilization, double meanWait, int waiters)
+    {
+	if((newTotal == oldTotal) && (newIdle == oldIdle))
+	{
+	    return;
+	}
+	pool.resize(newTotal, newIdle);
+	PoolResizeEvent event = new PoolResizeEvent("cache", pool.getShardIndex(), reason, oldTotal, newTotal, oldIdle, newIdle,
+						    utilization, meanWait, waiters);
+	synchronized(this.recentEvents)
+	{
+	    if(this.recentEvents.size() >= RECENT_EVENT_NUM)
+	    {
+		this.recentEvents.removeFirst();
+	    }
+	    this.recentEvents.addLast(event);
+	}
+	for(PoolResizeListener listener : this.listeners)
+	{
+	    try
+	    {
+		listener.onPoolResize(event);
+	    }
+	    catch(RuntimeException e)
+	    {
+		//a failing listener does not stop the controller.
+	    }
+	}
+    }
+
+    /**
+     * @Title: addResizeListener.
+     * @Description: the function which is used to receive the resize decisions.
+     * @param listener: the listener.
+     * @return none.
+     */
+    public void addResizeListener(PoolResizeListener listener)
+    {
+	this.listeners.add(listener);
+    }
+
+    /**
+     * @Title: removeResizeListener.
+     * @Description: the function which is used to stop receiving the resize decisions.
+     * @param listener: the listener.
+     * @return none.
+     */
+    public void removeResizeListener(PoolResizeListener listener)
+    {
+	this.listeners.remove(listener);
+    }
+
+    /**
+     * @Title: getRecentEvents.
+     * @Description: the function which is used to get the last resize decisions, the oldest first.
+     * @return List<PoolResizeEvent>: the decisions.
+     */
+    public List<PoolResizeEvent> getRecentEvents()
+    {
+	synchronized(this.recentEvents)
+	{
+	    return new ArrayList<PoolResizeEvent>(this.recentEvents);
+	}
+    }
+
+    /**
+     * @Title: setBounds.
+     * @Description: the function which is used to change the bounds of the pool size.
+     * @param minTotal: the min of maxTotal.
+     * @param maxTotal: the max of maxTotal.
+     * @param minIdle: the min of maxIdle.
+     * @return none.
+     */
+    public void setBounds(int minTotal, int maxTotal, int minIdle)
+    {
+	this.MinTotal = minTotal;
+	this.MaxTotal = maxTotal;
+	this.MinIdle = minIdle;
+    }
+
+    /**
+     * @Title: setThresholds.
+     * @Description: the function which is used to change the thresholds of the decisions.
+     * @param highUtilization: the utilization which grows a pool.
+     * @param lowUtilization: the utilization which counts as quiet.
+     * @param waitThresholdMicros: the mean borrow wait which grows a pool.
+     * @param quietIntervals: the quiet intervals in a row which shrink a pool.
+     * @return none.
+     */
+    public void setThresholds(double highUtilization, double lowUtilization, long waitThresholdMicros, int quietIntervals)
+    {
+	this.HighUtilization = highUtilization;
+	this.LowUtilization = lowUtilization;
+	this.WaitThresholdMicros = waitThresholdMicros;
+	this.QuietIntervals = quietIntervals;
+    }
+
+    /**
+     * @Title: setGrowFactor.
+     * @Description: the function which is used to change the factor of a GROW decision.
+     * @param growFactor: the factor, like 1.5.
+     * @return none.
+     */
+    public void setGrowFactor(double growFactor)
+    {
+	this.GrowFactor = growFactor;
+    }
+
+    /**
+     * @Title: setIntervalMillis.
+     * @Description: the function which is used to change the check interval, it takes effect after a restart.
+     * @param intervalMillis: the interval in milliseconds.
+     * @return none.
+     */
+    public void setIntervalMillis(long intervalMillis)
+    {
+	this.IntervalMillis = intervalMillis;
+    }
+}
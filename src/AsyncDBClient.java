@@ -0,0 +1,663 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: AsyncDBClient.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The asynchronous facade of the GeneralDBClient.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of AsyncDBClient was written.
+ *    2.2026-10-17 Queue the requests of a saturated shard instead of blocking the caller, bound the requests of a shard below
+ *                 the executor threads, follow the pool resizes, and drop the gates of the retired shards.
+ */
+//package name.
+package generaldbplatform;
+
+//class import for java utilities.
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+//class import for mongodb client.
+import com.mongodb.DBObject;
+import com.mongodb.MongoClient;
+
+//class import for jedis client.
+import redis.clients.jedis.JedisSentinelPool;
+
+/**
+ * @ClassName: AsyncDBClient.
+ * @Description: this class runs the operations of the GeneralDBClient on an executor and returns CompletableFutures,
+ *               so the caller thread is not blocked by the network round trips.
+ *               every shard has a ShardGate which lets as many requests run on the executor as its pool capacity(the current
+ *               maxTotal of the JedisSentinelPool, which follows the AdaptivePoolController, or the connectionsPerHost of
+ *               the MongoClient), and never more than ShardThreadLimit(half of the executor threads). the requests beyond that
+ *               wait in the bounded queue of the gate and are started by the completed requests of the same shard, a request
+ *               beyond the queue fails at once with a RejectedExecutionException. so the caller thread never blocks, the pools
+ *               are never waited on from the executor threads, and a saturated shard leaves the other half of the threads
+ *               to the other shards. the gates of the shards which left the topologies are dropped.
+ */
+public class AsyncDBClient
+{
+    /**
+     * @FieldName: DEFAULT_ASYNC_THREAD_NUM.
+     * @Description: the thread number of the default executor.
+     */
+    public static final int DEFAULT_ASYNC_THREAD_NUM = 256;
+
+    /**
+     * @FieldName: DEFAULT_MAX_QUEUED_PER_SHARD.
+     * @Description: the default max number of the requests which wait for a saturated shard.
+     */
+    public static final int DEFAULT_MAX_QUEUED_PER_SHARD = 1000;
+
+    /**
+     * @ClassName: ShardGate.
+     * @Description: the running & waiting requests of one shard, they are changed under the lock of the gate.
+     */
+    private static final class ShardGate
+    {
+	int limit;
+	int running = 0;
+	final ArrayDeque<GatedTask<?>> waiting = new ArrayDeque<GatedTask<?>>();
+
+	ShardGate(int limit)
+	{
+	    this.limit = limit;
+	}
+    }
+
+    /**
+     * @ClassName: GatedTask.
+     * @Description: one request of a shard, it gives its place in the gate to the next waiting request when it completes.
+     */
+    private final class GatedTask<T> implements Runnable
+    {
+	final ShardGate gate;
+	final Callable<T> task;
+	final CompletableFuture<T> future = new CompletableFuture<T>();
+
+	GatedTask(ShardGate gate, Callable<T> task)
+	{
+	    this.gate = gate;
+	    this.task = task;
+	}
+
+	@Override
+	public void run()
+	{
+	    try
+	    {
+		this.future.complete(this.task.call());
+	    }
+	    catch(Throwable e)
+	    {
+		this.future.completeExceptionally(e);
+	    }
+	    finally
+	    {
+		release(this.gate);
+	    }
+	}
+    }
+
+    /**
+     * @FieldName: client.
+     * @Description: the blocking client which runs the operations.
+     */
+    private final GeneralDBClient client;
+
+    /**
+     * @FieldName: executor & ownExecutor.
+     * @Description: the executor which runs the operations, and it was created by this facade(so it is shut down by it) or not.
+     */
+    private final ExecutorService executor;
+    private final boolean ownExecutor;
+
+    /**
+     * @FieldName: gates.
+     * @Description: the ShardGate of each shard, by the JedisSentinelPool or the MongoClient of the shard.
+     */
+    private final ConcurrentMap<Object, ShardGate> gates = new ConcurrentHashMap<Object, ShardGate>();
+
+    /**
+     * @FieldName: ShardThreadLimit.
+     * @Description: the max running requests of one shard, half of the threads of a ThreadPoolExecutor(no limit for
+     *               another executor, whose size is unknown).
+     */
+    private final int ShardThreadLimit;
+
+    /**
+     * @FieldName: MaxQueuedPerShard.
+     * @Description: the max number of the requests which wait for a saturated shard, 0 fails at once.
+     */
+    private volatile int MaxQueuedPerShard = DEFAULT_MAX_QUEUED_PER_SHARD;
+
+    /**
+     * @FieldName: GatedCacheTopology & GatedPersistTopology.
+     * @Description: the topologies which the gates were pruned for, a new topology drops the gates of the retired shards.
+     */
+    private volatile ShardTopology<JedisSentinelPool> GatedCacheTopology;
+    private volatile ShardTopology<MongoClient> GatedPersistTopology;
+
+    /**
+     * @FieldName: ResizeListener.
+     * @Description: the listener which changes the limit of a cache shard when the AdaptivePoolController resizes its pool.
+     */
+    private final PoolResizeListener ResizeListener;
+
+    /**
+     * @FieldName: Rejections & QueuedRequests.
+     * @Description: the number of the requests which have been rejected by the backpressure, and of those which waited in a queue.
+     */
+    private final AtomicLong Rejections = new AtomicLong();
+    private final AtomicLong QueuedRequests = new AtomicLong();
+
+    /**
+     * @Title: AsyncDBClient.
+     * @Description: the construct function of the AsyncDBClient class with the default executor.
+     * @param client: the blocking client.
+     * @return none.
+     */
+    public AsyncDBClient(GeneralDBClient client)
+    {
+	this(client, newDefaultExecutor(), true);
+    }
+
+    /**
+     * @Title: AsyncDBClient.
+     * @Description: the construct function of the AsyncDBClient class with a specific executor.
+     *               (the executor is not shut down by this facade).
+     * @param client: the blocking client.
+     * @param executor: the executor which runs the operations.
+     * @return none.
+     */
+    public AsyncDBClient(GeneralDBClient client, ExecutorService executor)
+    {
+	this(client, executor, false);
+    }
+
+    private AsyncDBClient(GeneralDBClient client, ExecutorService executor, boolean ownExecutor)
+    {
+	this.client = client;
+	this.executor = executor;
+	this.ownExecutor = ownExecutor;
+	this.ShardThreadLimit = (executor instanceof ThreadPoolExecutor)
+			      ? Math.max(1, ((ThreadPoolExecutor)executor).getMaximumPoolSize() / 2) : Integer.MAX_VALUE;
+	this.ResizeListener = new PoolResizeListener()
+	{
+	    @Override
+	    public void onPoolResize(PoolResizeEvent event)
+	    {
+		ShardTopology<JedisSentinelPool> topology = AsyncDBClient.this.client.getCacheClient().getCacheTopology();
+		if(event.getShardIndex() < topology.getNewShardNum())
+		{
+		    ShardGate gate = gates.get(topology.getShard(event.getShardIndex()));
+		    if(gate != null)
+		    {
+			admit(gate, event.getNewMaxTotal(), null);
+		    }
+		}
+	    }
+	};
+	AdaptivePoolController controller = client.getCacheClient().getPoolController();
+	if(controller != null)
+	{
+	    controller.addResizeListener(this.ResizeListener);
+	}
+    }
+
+    /**
+     * @Title: newDefaultExecutor.
+     * @Description: the function which is used to create the default executor of daemon threads.
+     *               its queue is not bounded, the gates of the shards bound the queued requests.
+     * @return ExecutorService: the executor.
+     */
+    private static ExecutorService newDefaultExecutor()
+    {
+	return new ThreadPoolExecutor(DEFAULT_ASYNC_THREAD_NUM, DEFAULT_ASYNC_THREAD_NUM, 60L, TimeUnit.SECONDS,
+				      new LinkedBlockingQueue<Runnable>(),
+				      new ThreadFactory()
+				      {
+					  @Override
+					  public Thread newThread(Runnable r)
+					  {
+					      Thread thread = new Thread(r, "asyncDBThread");
+					      thread.setDaemon(true);
+					      return thread;
+					  }
+				      });
+    }
+
+    /**
+     * @Title: submit.
+     * @Description: the function which starts the task on the executor when the shard has a free place, or queues it in the gate
+     *               of the shard, or rejects it when the queue is full. the caller thread never waits.
+     * @param shard: the JedisSentinelPool or the MongoClient of the shard, null before the first topology message.
+     * @param capacity: the current pool capacity of the shard.
+     * @param task: the blocking operation.
+     * @return CompletableFuture<T>: the result of the task.
+     */
+    private <T> CompletableFuture<T> submit(Object shard, int capacity, Callable<T> task)
+    {
+	if(shard == null)
+	{
+	    CompletableFuture<T> future = new CompletableFuture<T>();
+	    future.completeExceptionally(new IllegalStateException("the topology has not been received yet"));
+	    return future;
+	}
+	this.pruneGates();
+
+	ShardGate gate = this.gates.get(shard);
+	if(gate == null)
+	{
+	    ShardGate created = new ShardGate(this.limitOf(capacity));
+	    gate = this.gates.putIfAbsent(shard, created);
+	    if(gate == null)
+	    {
+		gate = created;
+	    }
+	}
+	GatedTask<T> gated = new GatedTask<T>(gate, task);
+	this.admit(gate, capacity, gated);
+	return gated.future;
+    }
+
+    /**
+     * @Title: limitOf.
+     * @Description: the function which bounds the pool capacity of a shard by ShardThreadLimit.
+     * @param capacity: the pool capacity.
+     * @return int: the max running requests of the shard.
+     */
+    private int limitOf(int capacity)
+    {
+	return Math.max(1, Math.min(capacity, this.ShardThreadLimit));
+    }
+
+    /**
+     * @Title: admit.
+     * @Description: the function which applies the current capacity of a shard, starts the waiting requests which fit into it,
+     *               and then starts, queues or rejects the new request.
+     * @param gate: the gate of the shard.
+     * @param capacity: the current pool capacity of the shard.
+     * @param gated: the new request, null to only apply the capacity.
+     * @return none.
+     */
+    private void admit(ShardGate gate, int capacity, GatedTask<?> gated)
+    {
+	List<GatedTask<?>> started = new ArrayList<GatedTask<?>>(1);
+	int running;
+	synchronized(gate)
+	{
+	    gate.limit = this.limitOf(capacity);
+	    while((gate.running < gate.limit) && !gate.waiting.isEmpty())
+	    {
+		gate.running++;
+		started.add(gate.waiting.pollFirst());
+	    }
+	    running = gate.running;
+	    if(gated != null)
+	    {
+		if(gate.running < gate.limit)
+		{
+		    gate.running++;
+		    started.add(gated);
+		    gated = null;
+		}
+		else if(gate.waiting.size() < this.MaxQueuedPerShard)
+		{
+		    gate.waiting.addLast(gated);
+		    this.QueuedRequests.incrementAndGet();
+		    gated = null;
+		}
+	    }
+	}
+	for(GatedTask<?> task : started)
+	{
+	    this.dispatch(task);
+	}
+	if(gated != null)
+	{
+	    this.Rejections.incrementAndGet();
+	    gated.future.completeExceptionally(new RejectedExecutionException("the shard is saturated, " + running
+									     + " requests are running and " + this.MaxQueuedPerShard + " are queued"));
+	}
+    }
+
+    /**
+     * @Title: release.
+     * @Description: the function which gives the place of a completed request to the next waiting request of the shard,
+     *               or frees it(a place beyond a shrunk limit is freed).
+     * @param gate: the gate of the shard.
+     * @return none.
+     */
+    private void release(ShardGate gate)
+    {
+	GatedTask<?> next = null;
+	synchronized(gate)
+	{
+	    if(gate.running <= gate.limit)
+	    {
+		next = gate.waiting.pollFirst();
+	    }
+	    if(next == null)
+	    {
+		gate.running--;
+	    }
+	}
+	if(next != null)
+	{
+	    this.dispatch(next);
+	}
+    }
+
+    /**
+     * @Title: dispatch.
+     * @Description: the function which queues a request which holds a place of its shard on the executor.
+     * @param task: the request.
+     * @return none.
+     */
+    private void dispatch(GatedTask<?> task)
+    {
+	try
+	{
+	    this.executor.execute(task);
+	}
+	catch(RejectedExecutionException e)
+	{
+	    task.future.completeExceptionally(e);
+	    this.release(task.gate);
+	}
+    }
+
+    /**
+     * @Title: pruneGates.
+     * @Description: the function which drops the gates of the shards which are in neither the cache nor the persistent topology,
+     *               once for each new topology. a running or waiting request of a dropped gate still completes through it.
+     * @return none.
+     */
+    private void pruneGates()
+    {
+	ShardTopology<JedisSentinelPool> cache_topology = this.client.getCacheClient().getCacheTopology();
+	ShardTopology<MongoClient> persist_topology = this.client.getPersistClient().getPersistTopology();
+	if((cache_topology == this.GatedCacheTopology) && (persist_topology == this.GatedPersistTopology))
+	{
+	    return;
+	}
+	synchronized(this.gates)
+	{
+	    if((cache_topology == this.GatedCacheTopology) && (persist_topology == this.GatedPersistTopology))
+	    {
+		return;
+	    }
+	    Set<Object> live = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+	    for(int i = 0; i < cache_topology.getNewShardNum(); i++)
+	    {
+		live.add(cache_topology.getShard(i));
+	    }
+	    for(int i = 0; i < persist_topology.getNewShardNum(); i++)
+	    {
+		live.add(persist_topology.getShard(i));
+	    }
+	    for(Object shard : this.gates.keySet())
+	    {
+		if(!live.contains(shard))
+		{
+		    this.gates.remove(shard);
+		}
+	    }
+	    this.GatedCacheTopology = cache_topology;
+	    this.GatedPersistTopology = persist_topology;
+	}
+    }
+
+    /**
+     * @Title: cacheCapacity.
+     * @Description: the function which gets the current pool capacity of a cache shard(the AdaptivePoolController resizes it).
+     * @param pool: the pool of the shard.
+     * @return int: the maxTotal of the pool.
+     */
+    private int cacheCapacity(JedisSentinelPool pool)
+    {
+	if(pool instanceof CacheShardPool)
+	{
+	    return ((CacheShardPool)pool).getMaxTotal();
+	}
+	return this.client.getCacheClient().getPoolMaxTotal();
+    }
+
+    /**
+     * @Title: cacheSubmit.
+     * @Description: the function which queues a task with a permit of the cache shard which owns the key.
+     * @param key: the cache key.
+     * @param task: the blocking operation.
+     * @return CompletableFuture<T>: the result of the task.
+     */
+    private <T> CompletableFuture<T> cacheSubmit(String key, Callable<T> task)
+    {
+	JedisSentinelPool pool = this.client.getCacheClient().getNewShardedCacheClient(key);
+	return this.submit(pool, this.cacheCapacity(pool), task);
+    }
+
+    /**
+     * @Title: persistSubmit.
+     * @Description: the function which queues a task with a permit of the persistent shard which owns the key.
+     * @param key: the sharding key.
+     * @param task: the blocking operation.
+     * @return CompletableFuture<T>: the result of the task.
+     */
+    private <T> CompletableFuture<T> persistSubmit(String key, Callable<T> task)
+    {
+	PersistentLayerClient persist = this.client.getPersistClient();
+	return this.submit(persist.getNewShardedPersistClient(key), persist.getConnectionsPerHost(), task);
+    }
+
+    /**
+     * @Title: executeCache.
+     * @Description: the function which runs one operation on a connection of the cache shard which owns the key.
+     * @param key: the cache key.
+     * @param callback: the operation.
+     * @return CompletableFuture<T>: the result of the operation.
+     */
+    public <T> CompletableFuture<T> executeCache(String key, final CacheCallback<T> callback)
+    {
+	final CacheLayerClient cache = this.client.getCacheClient();
+	final JedisSentinelPool pool = cache.getNewShardedCacheClient(key);
+	return this.submit(pool, this.cacheCapacity(pool), new Callable<T>()
+	{
+	    @Override
+	    public T call()
+	    {
+		return cache.execute(pool, callback);
+	    }
+	});
+    }
+
+    /**
+     * @Title: executePersist.
+     * @Description: the function which runs one operation on the MongoClient of the persistent shard which owns the key.
+     * @param key: the sharding key.
+     * @param callback: the operation.
+     * @return CompletableFuture<T>: the result of the operation.
+     */
+    public <T> CompletableFuture<T> executePersist(String key, final PersistCallback<T> callback)
+    {
+	PersistentLayerClient persist = this.client.getPersistClient();
+	final MongoClient mongo = persist.getNewShardedPersistClient(key);
+	return this.submit(mongo, persist.getConnectionsPerHost(), new Callable<T>()
+	{
+	    @Override
+	    public T call()
+	    {
+		return callback.doInPersist(mongo);
+	    }
+	});
+    }
+
+    /**
+     * @Title: getCacheValue.
+     * @Description: the asynchronous GeneralDBClient.getCacheValue.
+     * @param key: the cache key.
+     * @return CompletableFuture<String>: the value, null when the key does not exist.
+     */
+    public CompletableFuture<String> getCacheValue(final String key)
+    {
+	return this.cacheSubmit(key, new Callable<String>()
+	{
+	    @Override
+	    public String call()
+	    {
+		return client.getCacheValue(key);
+	    }
+	});
+    }
+
+    /**
+     * @Title: getPersistDocument.
+     * @Description: the asynchronous GeneralDBClient.getPersistDocument.
+     * @param dbName: the database name.
+     * @param collName: the collection name.
+     * @param key: the _id of the document.
+     * @return CompletableFuture<DBObject>: the document, null when it does not exist.
+     */
+    public CompletableFuture<DBObject> getPersistDocument(final String dbName, final String collName, final String key)
+    {
+	return this.persistSubmit(key, new Callable<DBObject>()
+	{
+	    @Override
+	    public DBObject call()
+	    {
+		return client.getPersistDocument(dbName, collName, key);
+	    }
+	});
+    }
+
+    /**
+     * @Title: get.
+     * @Description: the asynchronous cache-aside GeneralDBClient.get, it takes a permit of the cache shard of the document.
+     * @param dbName: the database name.
+     * @param collName: the collection name.
+     * @param key: the _id of the document.
+     * @return CompletableFuture<DBObject>: the document, null when it does not exist.
+     */
+    public CompletableFuture<DBObject> get(final String dbName, final String collName, final String key)
+    {
+	return this.cacheSubmit(GeneralDBClient.cacheKey(dbName, collName, key), new Callable<DBObject>()
+	{
+	    @Override
+	    public DBObject call()
+	    {
+		return client.get(dbName, collName, key);
+	    }
+	});
+    }
+
+    /**
+     * @Title: put.
+     * @Description: the asynchronous GeneralDBClient.put, it takes a permit of the persistent shard of the document.
+     * @param dbName: the database name.
+     * @param collName: the collection name.
+     * @param key: the _id of the document.
+     * @param doc: the document.
+     * @return CompletableFuture<Void>: completed when the document is written and its cached copy is invalidated.
+     */
+    public CompletableFuture<Void> put(final String dbName, final String collName, final String key, final DBObject doc)
+    {
+	return this.persistSubmit(key, new Callable<Void>()
+	{
+	    @Override
+	    public Void call()
+	    {
+		client.put(dbName, collName, key, doc);
+		return null;
+	    }
+	});
+    }
+
+    /**
+     * @Title: delete.
+     * @Description: the asynchronous GeneralDBClient.delete, it takes a permit of the persistent shard of the document.
+     * @param dbName: the database name.
+     * @param collName: the collection name.
+     * @param key: the _id of the document.
+     * @return CompletableFuture<Void>: completed when the document is removed and its cached copy is invalidated.
+     */
+    public CompletableFuture<Void> delete(final String dbName, final String collName, final String key)
+    {
+	return this.persistSubmit(key, new Callable<Void>()
+	{
+	    @Override
+	    public Void call()
+	    {
+		client.delete(dbName, collName, key);
+		return null;
+	    }
+	});
+    }
+
+    /**
+     * @Title: setMaxQueuedPerShard.
+     * @Description: the function which is used to change the max number of the requests which wait for a saturated shard.
+     * @param maxQueuedPerShard: the request number, 0 fails at once.
+     * @return none.
+     */
+    public void setMaxQueuedPerShard(int maxQueuedPerShard)
+    {
+	this.MaxQueuedPerShard = Math.max(0, maxQueuedPerShard);
+    }
+
+    /**
+     * @Title: getQueuedRequests.
+     * @Description: the function which is used to get the number of the requests which waited for a saturated shard.
+     * @return long: the queued request number.
+     */
+    public long getQueuedRequests()
+    {
+	return this.QueuedRequests.get();
+    }
+
+    /**
+     * @Title: getRejections.
+     * @Description: the function which is used to get the number of the requests rejected by the backpressure.
+     * @return long: the rejection number.
+     */
+    public long getRejections()
+    {
+	return this.Rejections.get();
+    }
+
+    /**
+     * @Title: shutdown.
+     * @Description: the function which shuts down the default executor after the queued requests,
+     *               a specific executor is left to its owner.
+     * @return none.
+     */
+    public void shutdown()
+    {
+	AdaptivePoolController controller = this.client.getCacheClient().getPoolController();
+	if(controller != null)
+	{
+	    controller.removeResizeListener(this.ResizeListener);
+	}
+	if(this.ownExecutor)
+	{
+	    this.executor.shutdown();
+	}
+    }
+}
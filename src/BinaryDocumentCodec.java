@@ -0,0 +1,298 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: BinaryDocumentCodec.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The compact binary format of the cached documents(version 1).
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of BinaryDocumentCodec was written.
+ *    2.2026-10-17 Document that the unsupported types fall back to the legacy JSON of ValueCodecs.
+ */
+//package name.
+package generaldbplatform;
+
+//class import for java utilities.
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+//class import for mongodb client.
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import org.bson.types.Binary;
+import org.bson.types.ObjectId;
+
+/**
+ * @ClassName: BinaryDocumentCodec.
+ * @Description: this class writes each value as a one byte type tag and its data:
+ *               the integers & dates as zigzag varints, the doubles as 8 bytes, the strings & binaries as a varint length
+ *               and the bytes, the ObjectIds as 12 bytes, the documents as the field number and the name & value of each field,
+ *               and the arrays as the item number and the items. the field names are not repeated in a dictionary,
+ *               the repeated names are left to the compression of ValueCodecs.
+ *               the Float, Short & Byte values are widened to Double & Integer, like the JSON format did.
+ *               the other types(e.g. UUID, Pattern, BSONTimestamp, Decimal128, Code, MinKey & MaxKey) are rejected by an
+ *               IllegalArgumentException, and ValueCodecs writes such a document as legacy JSON.
+ */
+public final class BinaryDocumentCodec implements ValueCodec
+{
+    /**
+     * @FieldName: VERSION.
+     * @Description: the version of this format, it must not change.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * @FieldName: The type tags.
+     * @Description: the first byte of each value, they must not change.
+     */
+    private static final int TYPE_NULL = 0;
+    private static final int TYPE_FALSE = 1;
+    private static final int TYPE_TRUE = 2;
+    private static final int TYPE_INT = 3;
+    private static final int TYPE_LONG = 4;
+    private static final int TYPE_DOUBLE = 5;
+    private static final int TYPE_STRING = 6;
+    private static final int TYPE_DATE = 7;
+    private static final int TYPE_OBJECT_ID = 8;
+    private static final int TYPE_BINARY = 9;
+    private static final int TYPE_DOCUMENT = 10;
+    private static final int TYPE_ARRAY = 11;
+
+    /**
+     * @FieldName: MAX_DEPTH.
+     * @Description: the max nesting of the documents & arrays, so a malformed value can not overflow the stack.
+     */
+    private static final int MAX_DEPTH = 100;
+
+    @Override
+    public int getVersion()
+    {
+	return VERSION;
+    }
+
+    @Override
+    public void encode(DBObject doc, CodecBuffer out)
+    {
+	this.writeDocument(doc, out, 0);
+    }
+
+    @Override
+    public DBObject decode(CodecBuffer in)
+    {
+	if(in.readByte() != TYPE_DOCUMENT)
+	{
+	    throw new IllegalArgumentException("the value is not a document");
+	}
+	DBObject doc = this.readDocument(in, 0);
+	if(in.remaining() != 0)
+	{
+	    throw new IllegalArgumentException(in.remaining() + " bytes after the document");
+	}
+	return doc;
+    }
+
+    /**
+     * @Title: writeDocument.
+     * @Description: the function which writes the fields of a document in their order.
+     * @param doc: the document.
+     * @param out: the buffer.
+     * @param depth: the nesting of the document.
+     * @return none.
+     */
+    private void writeDocument(DBObject doc, CodecBuffer out, int depth)
+    {
+	out.writeByte(TYPE_DOCUMENT);
+	out.writeVarint(doc.keySet().size());
+	for(String name : doc.keySet())
+	{
+	    out.writeString(name);
+	    this.writeValue(doc.get(name), out, depth + 1);
+	}
+    }
+
+    /**
+     * @Title: writeValue.
+     * @Description: the function which writes one value with its type tag.
+     * @param value: the value.
+     * @param out: the buffer.
+     * @param depth: the nesting of the value.
+     * @return none.
+     */
+    @SuppressWarnings("rawtypes")
+    private void writeValue(Object value, CodecBuffer out, int depth)
+    {
+	if(depth > MAX_DEPTH)
+	{
+	    throw new IllegalArgumentException("the document is nested deeper than " + MAX_DEPTH);
+	}
+	if(value == null)
+	{
+	    out.writeByte(TYPE_NULL);
+	}
+	else if(value instanceof String)
+	{
+	    out.writeByte(TYPE_STRING);
+	    out.writeString((String)value);
+	}
+	else if((value instanceof Integer) || (value instanceof Short) || (value instanceof Byte))
+	{
+	    out.writeByte(TYPE_INT);
+	    out.writeVarint(zigzag(((Number)value).intValue()));
+	}
+	else if(value instanceof Long)
+	{
+	    out.writeByte(TYPE_LONG);
+	    out.writeVarint(zigzag(((Long)value).longValue()));
+	}
+	else if((value instanceof Double) || (value instanceof Float))
+	{
+	    out.writeByte(TYPE_DOUBLE);
+	    out.writeLong(Double.doubleToRawLongBits(((Number)value).doubleValue()));
+	}
+	else if(value instanceof Boolean)
+	{
+	    out.writeByte(((Boolean)value).booleanValue() ? TYPE_TRUE : TYPE_FALSE);
+	}
+	else if(value instanceof Date)
+	{
+	    out.writeByte(TYPE_DATE);
+	    out.writeVarint(zigzag(((Date)value).getTime()));
+	}
+	else if(value instanceof ObjectId)
+	{
+	    out.writeByte(TYPE_OBJECT_ID);
+	    out.writeBytes(((ObjectId)value).toByteArray(), 0, 12);
+	}
+	else if((value instanceof byte[]) || (value instanceof Binary))
+	{
+	    byte[] bytes = (value instanceof Binary) ? ((Binary)value).getData() : (byte[])value;
+	    out.writeByte(TYPE_BINARY);
+	    out.writeVarint(bytes.length);
+	    out.writeBytes(bytes, 0, bytes.length);
+	}
+	else if(value instanceof List)
+	{
+	    //a BasicDBList is a DBObject too, it is written as an array.
+	    List list = (List)value;
+	    out.writeByte(TYPE_ARRAY);
+	    out.writeVarint(list.size());
+	    for(Object item : list)
+	    {
+		this.writeValue(item, out, depth + 1);
+	    }
+	}
+	else if(value instanceof DBObject)
+	{
+	    this.writeDocument((DBObject)value, out, depth);
+	}
+	else if(value instanceof Map)
+	{
+	    Map map = (Map)value;
+	    out.writeByte(TYPE_DOCUMENT);
+	    out.writeVarint(map.size());
+	    for(Object entry : map.entrySet())
+	    {
+		out.writeString(String.valueOf(((Map.Entry)entry).getKey()));
+		this.writeValue(((Map.Entry)entry).getValue(), out, depth + 1);
+	    }
+	}
+	else
+	{
+	    throw new IllegalArgumentException("the binary format does not support " + value.getClass().getName());
+	}
+    }
+
+    /**
+     * @Title: readDocument.
+     * @Description: the function which reads the fields of a document after its type tag.
+     * @param in: the buffer.
+     * @param depth: the nesting of the document.
+     * @return DBObject: the document.
+     */
+    private DBObject readDocument(CodecBuffer in, int depth)
+    {
+	int size = in.readLength();
+	BasicDBObject doc = new BasicDBObject();
+	for(int i = 0; i < size; i++)
+	{
+	    String name = in.readString();
+	    doc.put(name, this.readValue(in, depth + 1));
+	}
+	return doc;
+    }
+
+    /**
+     * @Title: readValue.
+     * @Description: the function which reads one value with its type tag.
+     * @param in: the buffer.
+     * @param depth: the nesting of the value.
+     * @return Object: the value.
+     */
+    private Object readValue(CodecBuffer in, int depth)
+    {
+	if(depth > MAX_DEPTH)
+	{
+	    throw new IllegalArgumentException("the value is nested deeper than " + MAX_DEPTH);
+	}
+	int type = in.readByte();
+	switch(type)
+	{
+	case TYPE_NULL:
+	    return null;
+	case TYPE_FALSE:
+	    return Boolean.FALSE;
+	case TYPE_TRUE:
+	    return Boolean.TRUE;
+	case TYPE_INT:
+	    return Integer.valueOf((int)unzigzag(in.readVarint()));
+	case TYPE_LONG:
+	    return Long.valueOf(unzigzag(in.readVarint()));
+	case TYPE_DOUBLE:
+	    return Double.valueOf(Double.longBitsToDouble(in.readLong()));
+	case TYPE_STRING:
+	    return in.readString();
+	case TYPE_DATE:
+	    return new Date(unzigzag(in.readVarint()));
+	case TYPE_OBJECT_ID:
+	{
+	    byte[] id = new byte[12];
+	    in.readBytes(id, 0, 12);
+	    return new ObjectId(id);
+	}
+	case TYPE_BINARY:
+	{
+	    byte[] bytes = new byte[in.readLength()];
+	    in.readBytes(bytes, 0, bytes.length);
+	    return bytes;
+	}
+	case TYPE_DOCUMENT:
+	    return this.readDocument(in, depth);
+	case TYPE_ARRAY:
+	{
+	    int size = in.readLength();
+	    BasicDBList list = new BasicDBList();
+	    for(int i = 0; i < size; i++)
+	    {
+		list.add(this.readValue(in, depth + 1));
+	    }
+	    return list;
+	}
+	default:
+	    throw new IllegalArgumentException("unknown type tag " + type);
+	}
+    }
+
+    private static long zigzag(long value)
+    {
+	return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value)
+    {
+	return (value >>> 1) ^ -(value & 1);
+    }
+}
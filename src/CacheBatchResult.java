@@ -0,0 +1,188 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: CacheBatchResult.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The per-key result of one multi-key cache operation.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of CacheBatchResult was written.
+ */
+//package name.
+package generaldbplatform;
+
+//class import for java utilities.
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @ClassName: CacheBatchResult.
+ * @Description: this class holds the value or the error of every key of a batch, in the order of the keys of the caller.
+ *               (one failing shard only fails its own keys, the keys of the other shards still have their values).
+ * @param <T>: the value type of the operation.
+ */
+public class CacheBatchResult<T>
+{
+    /**
+     * @FieldName: keys.
+     * @Description: the keys of the batch, in the order of the caller.
+     */
+    private final List<String> keys;
+
+    /**
+     * @FieldName: values.
+     * @Description: the value of each key, null when the key failed.
+     */
+    private final Object[] values;
+
+    /**
+     * @FieldName: errors.
+     * @Description: the error of each key, null when the key succeeded.
+     */
+    private final RuntimeException[] errors;
+
+    /**
+     * @Title: CacheBatchResult.
+     * @Description: the construct function of the CacheBatchResult class.
+     * @param keys: the keys of the batch.
+     * @return none.
+     */
+    CacheBatchResult(List<String> keys)
+    {
+	this.keys = keys;
+	this.values = new Object[keys.size()];
+	this.errors = new RuntimeException[keys.size()];
+    }
+
+    /**
+     * @Title: setValue.
+     * @Description: the function which is used to set the value of one key.
+     * @param index: the index of the key.
+     * @param value: the value.
+     * @return none.
+     */
+    void setValue(int index, T value)
+    {
+	this.values[index] = value;
+    }
+
+    /**
+     * @Title: setError.
+     * @Description: the function which is used to set the error of one key.
+     * @param index: the index of the key.
+     * @param error: the error.
+     * @return none.
+     */
+    void setError(int index, RuntimeException error)
+    {
+	this.errors[index] = error;
+    }
+
+    /**
+     * @Title: size.
+     * @Description: the function which is used to get the number of the keys.
+     * @return int: the key number.
+     */
+    public int size()
+    {
+	return this.values.length;
+    }
+
+    /**
+     * @Title: getKey.
+     * @Description: the function which is used to get the key at the index.
+     * @param index: the index of the key.
+     * @return String: the key.
+     */
+    public String getKey(int index)
+    {
+	return this.keys.get(index);
+    }
+
+    /**
+     * @Title: getValue.
+     * @Description: the function which is used to get the value of the key at the index.
+     * @param index: the index of the key.
+     * @return T: the value, null when the key does not exist or failed.
+     */
+    @SuppressWarnings("unchecked")
+    public T getValue(int index)
+    {
+	return (T)this.values[index];
+    }
+
+    /**
+     * @Title: getError.
+     * @Description: the function which is used to get the error of the key at the index.
+     * @param index: the index of the key.
+     * @return RuntimeException: the error, null when the key succeeded.
+     */
+    public RuntimeException getError(int index)
+    {
+	return this.errors[index];
+    }
+
+    /**
+     * @Title: isSuccess.
+     * @Description: the function which shows the key at the index succeeded or not.
+     * @param index: the index of the key.
+     * @return boolean: true when the key has no error.
+     */
+    public boolean isSuccess(int index)
+    {
+	return this.errors[index] == null;
+    }
+
+    /**
+     * @Title: hasErrors.
+     * @Description: the function which shows any key of the batch failed or not.
+     * @return boolean: true when at least one key failed.
+     */
+    public boolean hasErrors()
+    {
+	for(int i = 0; i < this.errors.length; i++)
+	{
+	    if(this.errors[i] != null)
+	    {
+		return true;
+	    }
+	}
+	return false;
+    }
+
+    /**
+     * @Title: getFailedKeys.
+     * @Description: the function which is used to get the keys which failed, for a retry.
+     * @return List<String>: the failed keys in the order of the caller.
+     */
+    public List<String> getFailedKeys()
+    {
+	List<String> failed = new ArrayList<String>();
+	for(int i = 0; i < this.errors.length; i++)
+	{
+	    if(this.errors[i] != null)
+	    {
+		failed.add(this.keys.get(i));
+	    }
+	}
+	return failed;
+    }
+
+    /**
+     * @Title: getValues.
+     * @Description: the function which is used to get all the values in the order of the caller.
+     * @return List<T>: the values, null for the missing or failed keys.
+     */
+    @SuppressWarnings("unchecked")
+    public List<T> getValues()
+    {
+	List<T> list = new ArrayList<T>(this.values.length);
+	for(int i = 0; i < this.values.length; i++)
+	{
+	    list.add((T)this.values[i]);
+	}
+	return list;
+    }
+}
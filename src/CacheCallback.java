@@ -0,0 +1,34 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: CacheCallback.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The callback of one operation on a borrowed cache connection.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of CacheCallback was written.
+ */
+//package name.
+package generaldbplatform;
+
+//class import for jedis client.
+import redis.clients.jedis.Jedis;
+
+/**
+ * @ClassName: CacheCallback.
+ * @Description: this interface is used with CacheLayerClient.execute, the connection is borrowed before the callback
+ *               and returned(or returned as broken) after it, so the callback must not keep the connection.
+ * @param <T>: the result type of the operation.
+ */
+public interface CacheCallback<T>
+{
+    /**
+     * @Title: doInCache.
+     * @Description: the function which runs the operation on the borrowed connection.
+     * @param jedis: the borrowed connection.
+     * @return T: the result of the operation.
+     */
+    public T doInCache(Jedis jedis);
+}
@@ -0,0 +1,820 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: CacheKeyMigrator.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The background key migration engine of the cache layer expansion.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of CacheKeyMigrator was written.
+ *    2.2026-10-17 Route the scanned keys by their hash tag, like the CacheLayerClient.
+ *    3.2026-10-17 a batch which fails with any RuntimeException is counted and retried from the checkpoints.
+ *    4.2026-10-17 only the holder of a config database lease migrates each old_new pair.
+ *    5.2026-10-17 Restore by the version-guarded script of GeneralDBClient, so a key invalidated during the move is not restored,
+ *                 and keep the source of a key whose restore failed with another error.
+ */
+//package name.
+package generaldbplatform;
+
+//class import for java utilities.
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+//class import for jedis client.
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisSentinelPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+/**
+ * @ClassName: CacheKeyMigrator.
+ * @Description: this class moves the keys which were written under the old routing view to their new owners after a CACHE_AUTO_EXTERN.
+ *               each old shard is iterated by SCAN, the keys whose new owner is another shard are moved by DUMP/PTTL + RESTORE
+ *               in pipelined batches, and then deleted from the source shard.
+ *               the SCAN cursor of each shard is stored in the config database after every batch, so a restarted client resumes
+ *               the same migration where it stopped. when all the old shards are done, the old routing view is retired.
+ *               only the client which holds the config database lease of the old_new pair migrates it(see ConfigLease),
+ *               the other clients retire their old view when the holder marks the pair done.
+ *               (the keys are routed by their String form, so it only works for the values which were stored by String keys;
+ *               the writers should use the new routing view during the migration, or a write to the source may be lost).
+ */
+public class CacheKeyMigrator implements Runnable
+{
+    /**
+     * @FieldName: CHECKPOINT_KEY_PREFIX.
+     * @Description: the prefix of the config database hash which records the SCAN cursor of each old shard.
+     */
+    public static final String CHECKPOINT_KEY_PREFIX = "CACHE_MIGRATION_CHECKPOINT:";
+
+    /**
+     * @FieldName: LEASE_KEY_PREFIX & DONE_KEY_PREFIX & LEASE_MILLIS.
+     * @Description: the prefix of the config database lease which lets only one client migrate an old_new pair,
+     *               the prefix of the key which marks the pair has been migrated, and the expire time of the lease.
+     */
+    public static final String LEASE_KEY_PREFIX = "CACHE_MIGRATION_LEASE:";
+    public static final String DONE_KEY_PREFIX = "CACHE_MIGRATION_DONE:";
+    private static final long LEASE_MILLIS = 30000;
+
+    /**
+     * @FieldName: CHECKPOINT_DONE.
+     * @Description: the cursor value which marks the shard has been scanned completely.
+     */
+    private static final String CHECKPOINT_DONE = "DONE";
+
+    /**
+     * @FieldName: RETRY_INTERVAL_MILLIS.
+     * @Description: the wait time before the migration resumes from the checkpoints after a failed batch.
+     */
+    private static final long RETRY_INTERVAL_MILLIS = 5000;
+
+    /**
+     * @FieldName: cacheClient.
+     * @Description: the cache layer client whose topology is migrated.
+     */
+    private final CacheLayerClient cacheClient;
+
+    /**
+     * @FieldName: configdb.
+     * @Description: the ConfigServer database client which stores the checkpoints.
+     */
+    private final ConfigDBClient configdb;
+
+    /**
+     * @FieldName: Throttle.
+     * @Description: the rate limiter of the migrated keys(keys per second).
+     */
+    private final ThroughputThrottle Throttle;
+
+    /**
+     * @FieldName: BatchSize.
+     * @Description: the COUNT hint of each SCAN, which is also the size of each pipelined batch.
+     */
+    private volatile int BatchSize = 500;
+
+    /**
+     * @FieldName: Topology.
+     * @Description: the topology which is being migrated, from its old view to its new view.
+     */
+    private volatile ShardTopology<JedisSentinelPool> Topology;
+
+    /**
+     * @FieldName: Worker.
+     * @Description: the running migration thread, null when no migration is running.
+     */
+    private Thread Worker;
+
+    /**
+     * @FieldName: Lease.
+     * @Description: the lease of the running migration, a shard stops after its current batch when it is lost.
+     */
+    private volatile ConfigLease Lease;
+
+    /**
+     * @FieldName: Stopped.
+     * @Description: the flag which asks the running migration thread to stop after the current batch.
+     */
+    private volatile boolean Stopped = false;
+
+    /**
+     * @FieldName: Progress counters.
+     * @Description: the scanned & moved key counters, the counter of the batches which failed and were retried,
+     *               the estimated total key number of the old shards and the start time.
+     */
+    private final AtomicLong ScannedKeys = new AtomicLong();
+    private final AtomicLong MovedKeys = new AtomicLong();
+    private final AtomicLong FailedBatches = new AtomicLong();
+    private volatile long EstimatedTotalKeys = 0;
+    private volatile long StartTimeMillis = 0;
+    private volatile boolean Finished = false;
+
+    /**
+     * @Title: CacheKeyMigrator.
+     * @Description: the construct function of the CacheKeyMigrator class.
+     * @param cacheClient: the cache layer client whose topology is migrated.
+     * @param configdb: the ConfigServer database client which stores the checkpoints.
+     * @param keysPerSecond: the max number of the keys which are scanned in one second, <= 0 means no limit.
+     * @return none.
+     */
+    public CacheKeyMigrator(CacheLayerClient cacheClient, ConfigDBClient configdb, double keysPerSecond)
+    {
+	this.cacheClient = cacheClient;
+	this.configdb = configdb;
+	this.Throttle = new ThroughputThrottle(keysPerSecond);
+    }
+
+    /**
+     * @Title: start.
+     * @Description: the function which is used to start(or resume) the migration of one topology.
+     *               a running migration of an earlier topology is stopped first, the keys it left behind are
+     *               still in the old shards of the new topology, so they are moved by the new migration.
+     * @param topology: the topology which is migrated from its old view to its new view.
+     * @return none.
+     */
+    public synchronized void start(ShardTopology<JedisSentinelPool> topology)
+    {
+	stop();
+	if(!topology.isExpanding())
+	{
+	    return;
+	}
+
+	this.Topology = topology;
+	this.Stopped = false;
+	this.Finished = false;
+	this.ScannedKeys.set(0);
+	this.MovedKeys.set(0);
+	this.FailedBatches.set(0);
+	this.StartTimeMillis = System.currentTimeMillis();
+	this.Worker = new Thread(this, "cacheMigratorThread");
+	this.Worker.setDaemon(true);
+	this.Worker.start();
+    }
+
+    /**
+     * @Title: stop.
+     * @Description: the function which is used to stop the running migration, the checkpoints are kept for the next start.
+     * @return none.
+     */
+    public synchronized void stop()
+    {
+	this.Stopped = true;
+	if(this.Worker != null)
+	{
+	    this.Worker.interrupt();
+	    try
+	    {
+		this.Worker.join();
+	    }
+	    catch(InterruptedException e)
+	    {
+		Thread.currentThread().interrupt();
+	    }
+	    this.Worker = null;
+	}
+    }
+
+    /**
+     * @Title: run.
+     * @Description: the body of the migration thread. only the holder of the lease of the old_new pair migrates the old shards
+     *               one by one, the other clients wait until the holder marks the pair done(or until its lease expires and they
+     *               take it), then every client retires its own old view.
+     * @return none.
+     */
+    @Override
+    public void run()
+    {
+	ShardTopology<JedisSentinelPool> topology = this.Topology;
+	String checkpoint_key = checkpointKey(topology);
+
+	long total = 0;
+	for(int shard = 0; shard < topology.getOldShardNum(); shard++)
+	{
+	    total += dbSize(topology.getShard(shard));
+	}
+	this.EstimatedTotalKeys = total;
+
+	String pair = topology.getOldShardNum() + "_" + topology.getNewShardNum();
+	String done_key = DONE_KEY_PREFIX + pair;
+	ConfigLease lease = new ConfigLease(configdb, LEASE_KEY_PREFIX + pair, LEASE_MILLIS);
+	this.Lease = lease;
+
+	try
+	{
+	    while(!Stopped && !isDone(done_key))
+	    {
+		if(lease.tryAcquire())
+		{
+		    try
+		    {
+			Map<String, String> checkpoints = loadCheckpoints(checkpoint_key);
+			for(int shard = 0; (shard < topology.getOldShardNum()) && !Stopped && lease.isHeld(); shard++)
+			{
+			    String cursor = checkpoints.get(String.valueOf(shard));
+			    if(CHECKPOINT_DONE.equals(cursor))
+			    {
+				continue;
+			    }
+			    migrateShard(topology, shard, (cursor == null) ? ScanParams.SCAN_POINTER_START : cursor, checkpoint_key);
+			}
+			if(!Stopped && lease.isHeld())
+			{
+			    if(markDone(done_key))
+			    {
+				//the checkpoints are kept until the other clients can see the pair is done.
+				deleteCheckpoints(checkpoint_key);
+			    }
+			    break;
+			}
+		    }
+		    catch(RuntimeException e)
+		    {
+			//a shard is failing over(JedisConnectionException), or a data error failed the batch(e.g. a LOADING shard),
+			//wait and resume from the checkpoints. the thread must not die, or the old view is never retired.
+			FailedBatches.incrementAndGet();
+		    }
+		}
+		Thread.sleep(RETRY_INTERVAL_MILLIS);
+	    }
+	}
+	catch(InterruptedException e)
+	{
+	    return;
+	}
+	finally
+	{
+	    lease.release();
+	}
+
+	if(!Stopped)
+	{
+	    //all the old shards are done, no key is left under the old routing view.
+	    cacheClient.retireOldView(topology);
+	    this.Finished = true;
+	}
+    }
+
+    /**
+     * @Title: migrateShard.
+     * @Description: the function which is used to migrate one old shard from the cursor.
+     * @param topology: the topology which is migrated.
+     * @param shard: the index of the old shard.
+     * @param cursor: the SCAN cursor to start from.
+     * @param checkpoint_key: the config database hash which records the cursors.
+     * @return none.
+     * @throws InterruptedException: when the migration is stopped while waiting for the throttle.
+     */
+    private void migrateShard(ShardTopology<JedisSentinelPool> topology, int shard, String cursor, String checkpoint_key) throws InterruptedException
+    {
+	JedisSentinelPool source = topology.getShard(shard);
+	ShardRoutingStrategy strategy = cacheClient.getRoutingStrategy();
+	int new_num = topology.getNewShardNum();
+
+	do
+	{
+	    ScanResult<String> scan_result = scan(source, cursor);
+	    List<String> keys = scan_result.getResult();
+	    Throttle.acquire(keys.size());
+
+	    //group the keys which belong to another shard by their new owner.
+	    Map<Integer, List<String>> moving = new HashMap<Integer, List<String>>();
+	    for(String key : keys)
+	    {
+		int owner = strategy.getShardIndex(ShardKeyHash.routingHash(key), new_num);
+		if(owner != shard)
+		{
+		    List<String> group = moving.get(owner);
+		    if(group == null)
+		    {
+			group = new ArrayList<String>();
+			moving.put(owner, group);
+		    }
+		    group.add(key);
+		}
+	    }
+	    for(Map.Entry<Integer, List<String>> entry : moving.entrySet())
+	    {
+		moveKeys(source, topology.getShard(entry.getKey()), entry.getValue());
+	    }
+
+	    ScannedKeys.addAndGet(keys.size());
+	    cursor = scan_result.getStringCursor();
+	    saveCheckpoint(checkpoint_key, shard, ScanParams.SCAN_POINTER_START.equals(cursor) ? CHECKPOINT_DONE : cursor);
+	}
+	while(!ScanParams.SCAN_POINTER_START.equals(cursor) && !Stopped && Lease.isHeld());
+    }
+
+    /**
+     * @Title: scan.
+     * @Description: the function which is used to run one SCAN on the source shard.
+     * @param source: the source shard.
+     * @param cursor: the SCAN cursor.
+     * @return ScanResult<String>: the keys and the next cursor.
+     */
+    private ScanResult<String> scan(JedisSentinelPool source, String cursor)
+    {
+	Jedis jedis = null;
+	boolean borrowOrOprSuccess = true;
+	try
+	{
+	    jedis = source.getResource();
+	    return jedis.scan(cursor, new ScanParams().count(BatchSize));
+	}
+	catch(JedisConnectionException e)
+	{
+	    borrowOrOprSuccess = false;
+	    if(jedis != null)
+	    {
+		source.returnBrokenResource(jedis);
+	    }
+	    throw e;
+	}
+	finally
+	{
+	    if(borrowOrOprSuccess && (jedis != null))
+	    {
+		source.returnResource(jedis);
+	    }
+	}
+    }
+
+    /**
+     * @Title: moveKeys.
+     * @Description: the function which is used to move one batch of keys from the source shard to the target shard.
+     *               the write versions are read from the target first, then the values & ttls are read by one pipeline,
+     *               restored by one pipeline of GeneralDBClient.RESTORE_SCRIPT, and then deleted by one pipeline.
+     *               (a key which already exists on the target was written through the new routing view, it is newer, so it is kept.
+     *               a key whose version changed was invalidated by GeneralDBClient meanwhile, the stale value is not restored).
+     *               a restore which fails with another error keeps its source key and fails the batch, it is retried later.
+     * @param source: the source shard.
+     * @param target: the target shard.
+     * @param keys: the keys to be moved.
+     * @return none.
+     */
+    private void moveKeys(JedisSentinelPool source, JedisSentinelPool target, List<String> keys)
+    {
+	Jedis source_jedis = null;
+	Jedis target_jedis = null;
+	boolean borrowOrOprSuccess = true;
+	try
+	{
+	    source_jedis = source.getResource();
+	    target_jedis = target.getResource();
+
+	    //read the write versions before the values, an invalidate after this read changes them.
+	    Pipeline version_pipe = target_jedis.pipelined();
+	    List<Response<String>> versions = new ArrayList<Response<String>>(keys.size());
+	    for(String key : keys)
+	    {
+		versions.add(version_pipe.get(GeneralDBClient.CACHE_VERSION_PREFIX + key));
+	    }
+	    version_pipe.sync();
+
+	    //read the serialized values and the remaining ttls.
+	    Pipeline source_pipe = source_jedis.pipelined();
+	    List<Response<byte[]>> dumps = new ArrayList<Response<byte[]>>(keys.size());
+	    List<Response<Long>> ttls = new ArrayList<Response<Long>>(keys.size());
+	    for(String key : keys)
+	    {
+		dumps.add(source_pipe.dump(key));
+		ttls.add(source_pipe.pttl(key));
+	    }
+	    source_pipe.sync();
+
+	    //restore them on the target while their versions are unchanged.
+	    Pipeline target_pipe = target_jedis.pipelined();
+	    List<String> restored = new ArrayList<String>(keys.size());
+	    List<Response<Object>> restores = new ArrayList<Response<Object>>(keys.size());
+	    for(int i = 0; i < keys.size(); i++)
+	    {
+		byte[] value = dumps.get(i).get();
+		long ttl = ttls.get(i).get();
+		if((value == null) || (ttl == -2))
+		{
+		    //expired or deleted after the SCAN.
+		    continue;
+		}
+		String key = keys.get(i);
+		String version = versions.get(i).get();
+		List<byte[]> script_keys = Arrays.asList(CacheLayerClient.keyBytes(key),
+							 CacheLayerClient.keyBytes(GeneralDBClient.CACHE_VERSION_PREFIX + key));
+		List<byte[]> script_args = Arrays.asList(CacheLayerClient.keyBytes((version == null) ? "" : version),
+							 CacheLayerClient.keyBytes(String.valueOf((ttl < 0) ? 0 : ttl)), value);
+		restored.add(key);
+		restores.add(target_pipe.eval(GeneralDBClient.RESTORE_SCRIPT, script_keys, script_args));
+	    }
+	    target_pipe.sync();
+
+	    //delete the source copies which were restored, or refused for a newer value or a newer version on the target.
+	    Pipeline delete_pipe = source_jedis.pipelined();
+	    JedisDataException failure = null;
+	    int moved = 0;
+	    for(int i = 0; i < restored.size(); i++)
+	    {
+		try
+		{
+		    restores.get(i).get();
+		}
+		catch(JedisDataException e)
+		{
+		    //e.g. a DUMP payload of another Redis version, the source is kept for the retry.
+		    failure = e;
+		    continue;
+		}
+		delete_pipe.del(restored.get(i));
+		moved++;
+	    }
+	    delete_pipe.sync();
+	    MovedKeys.addAndGet(moved);
+	    if(failure != null)
+	    {
+		throw failure;
+	    }
+	}
+	catch(JedisConnectionException e)
+	{
+	    borrowOrOprSuccess = false;
+	    if(source_jedis != null)
+	    {
+		source.returnBrokenResource(source_jedis);
+		source_jedis = null;
+	    }
+	    if(target_jedis != null)
+	    {
+		target.returnBrokenResource(target_jedis);
+		target_jedis = null;
+	    }
+	    throw e;
+	}
+	finally
+	{
+	    if(borrowOrOprSuccess)
+	    {
+		if(source_jedis != null)
+		{
+		    source.returnResource(source_jedis);
+		}
+		if(target_jedis != null)
+		{
+		    target.returnResource(target_jedis);
+		}
+	    }
+	}
+    }
+
+    /**
+     * @Title: dbSize.
+     * @Description: the function which is used to get the key number of one shard for the ETA.
+     * @param pool: the shard.
+     * @return long: the key number.
+     */
+    private long dbSize(JedisSentinelPool pool)
+    {
+	Jedis jedis = null;
+	boolean borrowOrOprSuccess = true;
+	try
+	{
+	    jedis = pool.getResource();
+	    return jedis.dbSize();
+	}
+	catch(JedisConnectionException e)
+	{
+	    borrowOrOprSuccess = false;
+	    if(jedis != null)
+	    {
+		pool.returnBrokenResource(jedis);
+	    }
+	    return 0;
+	}
+	finally
+	{
+	    if(borrowOrOprSuccess && (jedis != null))
+	    {
+		pool.returnResource(jedis);
+	    }
+	}
+    }
+
+    /**
+     * @Title: checkpointKey.
+     * @Description: the function which is used to build the checkpoint hash name of one migration.
+     *               (it is named by the old & new shard numbers, so a restarted client finds the same hash).
+     * @param topology: the topology which is migrated.
+     * @return String: the config database key.
+     */
+    private static String checkpointKey(ShardTopology<JedisSentinelPool> topology)
+    {
+	return CHECKPOINT_KEY_PREFIX + topology.getOldShardNum() + "_" + topology.getNewShardNum();
+    }
+
+    /**
+     * @Title: loadCheckpoints.
+     * @Description: the function which is used to load the cursors of the old shards from the config database.
+     * @param checkpoint_key: the config database hash.
+     * @return Map<String, String>: the shard index -> the SCAN cursor(or DONE).
+     */
+    private Map<String, String> loadCheckpoints(String checkpoint_key)
+    {
+	Jedis jedis = null;
+	boolean borrowOrOprSuccess = true;
+	try
+	{
+	    jedis = configdb.db_client.getResource();
+	    Map<String, String> checkpoints = jedis.hgetAll(checkpoint_key);
+	    return (checkpoints == null) ? new HashMap<String, String>() : checkpoints;
+	}
+	catch(JedisConnectionException e)
+	{
+	    borrowOrOprSuccess = false;
+	    if(jedis != null)
+	    {
+		configdb.db_client.returnBrokenResource(jedis);
+	    }
+	    return new HashMap<String, String>();
+	}
+	finally
+	{
+	    if(borrowOrOprSuccess && (jedis != null))
+	    {
+		configdb.db_client.returnResource(jedis);
+	    }
+	}
+    }
+
+    /**
+     * @Title: saveCheckpoint.
+     * @Description: the function which is used to save the cursor of one old shard to the config database.
+     * @param checkpoint_key: the config database hash.
+     * @param shard: the index of the old shard.
+     * @param cursor: the SCAN cursor(or DONE).
+     * @return none.
+     */
+    private void saveCheckpoint(String checkpoint_key, int shard, String cursor)
+    {
+	Jedis jedis = null;
+	boolean borrowOrOprSuccess = true;
+	try
+	{
+	    jedis = configdb.db_client.getResource();
+	    jedis.hset(checkpoint_key, String.valueOf(shard), cursor);
+	}
+	catch(JedisConnectionException e)
+	{
+	    //the checkpoint is only an optimization, the batch will be migrated again after a restart.
+	    borrowOrOprSuccess = false;
+	    if(jedis != null)
+	    {
+		configdb.db_client.returnBrokenResource(jedis);
+	    }
+	}
+	finally
+	{
+	    if(borrowOrOprSuccess && (jedis != null))
+	    {
+		configdb.db_client.returnResource(jedis);
+	    }
+	}
+    }
+
+    /**
+     * @Title: deleteCheckpoints.
+     * @Description: the function which is used to delete the checkpoint hash of a finished migration.
+     * @param checkpoint_key: the config database hash.
+     * @return none.
+     */
+    private void deleteCheckpoints(String checkpoint_key)
+    {
+	Jedis jedis = null;
+	boolean borrowOrOprSuccess = true;
+	try
+	{
+	    jedis = configdb.db_client.getResource();
+	    jedis.del(checkpoint_key);
+	}
+	catch(JedisConnectionException e)
+	{
+	    borrowOrOprSuccess = false;
+	    if(jedis != null)
+	    {
+		configdb.db_client.returnBrokenResource(jedis);
+	    }
+	}
+	finally
+	{
+	    if(borrowOrOprSuccess && (jedis != null))
+	    {
+		configdb.db_client.returnResource(jedis);
+	    }
+	}
+    }
+
+    /**
+     * @Title: isDone.
+     * @Description: the function which shows the old_new pair has been migrated by a lease holder.
+     * @param done_key: the config database key of the pair.
+     * @return boolean: true when the pair is done, false when it is not or the config database is not reachable.
+     */
+    private boolean isDone(String done_key)
+    {
+	Jedis jedis = null;
+	boolean borrowOrOprSuccess = true;
+	boolean done = false;
+	try
+	{
+	    jedis = configdb.db_client.getResource();
+	    done = jedis.exists(done_key);
+	}
+	catch(JedisConnectionException e)
+	{
+	    borrowOrOprSuccess = false;
+	    if(jedis != null)
+	    {
+		configdb.db_client.returnBrokenResource(jedis);
+	    }
+	}
+	finally
+	{
+	    if(borrowOrOprSuccess && (jedis != null))
+	    {
+		configdb.db_client.returnResource(jedis);
+	    }
+	}
+	return done;
+    }
+
+    /**
+     * @Title: markDone.
+     * @Description: the function which marks the old_new pair has been migrated, so the other clients retire their old view.
+     * @param done_key: the config database key of the pair.
+     * @return boolean: true when the mark is stored.
+     */
+    private boolean markDone(String done_key)
+    {
+	Jedis jedis = null;
+	boolean borrowOrOprSuccess = true;
+	try
+	{
+	    jedis = configdb.db_client.getResource();
+	    jedis.set(done_key, CHECKPOINT_DONE);
+	}
+	catch(JedisConnectionException e)
+	{
+	    borrowOrOprSuccess = false;
+	    if(jedis != null)
+	    {
+		configdb.db_client.returnBrokenResource(jedis);
+	    }
+	}
+	finally
+	{
+	    if(borrowOrOprSuccess && (jedis != null))
+	    {
+		configdb.db_client.returnResource(jedis);
+	    }
+	}
+	return borrowOrOprSuccess;
+    }
+
+    /**
+     * @Title: setRate.
+     * @Description: the function which is used to change the max number of the keys which are scanned in one second.
+     * @param keysPerSecond: the keys per second, <= 0 means no limit.
+     * @return none.
+     */
+    public void setRate(double keysPerSecond)
+    {
+	this.Throttle.setRate(keysPerSecond);
+    }
+
+    /**
+     * @Title: setBatchSize.
+     * @Description: the function which is used to change the COUNT hint of each SCAN & the size of each pipelined batch.
+     * @param batchSize: the batch size.
+     * @return none.
+     */
+    public void setBatchSize(int batchSize)
+    {
+	this.BatchSize = batchSize;
+    }
+
+    /**
+     * @Title: isRunning.
+     * @Description: the function which shows a migration is running or not.
+     * @return boolean: true when the migration thread is alive.
+     */
+    public synchronized boolean isRunning()
+    {
+	return (this.Worker != null) && this.Worker.isAlive();
+    }
+
+    /**
+     * @Title: isFinished.
+     * @Description: the function which shows the last migration has finished and retired the old view.
+     * @return boolean: true when finished.
+     */
+    public boolean isFinished()
+    {
+	return this.Finished;
+    }
+
+    /**
+     * @Title: getScannedKeys.
+     * @Description: the function which is used to get the number of the scanned keys of the current migration.
+     * @return long: the scanned key number.
+     */
+    public long getScannedKeys()
+    {
+	return this.ScannedKeys.get();
+    }
+
+    /**
+     * @Title: getMovedKeys.
+     * @Description: the function which is used to get the number of the moved keys of the current migration.
+     * @return long: the moved key number.
+     */
+    public long getMovedKeys()
+    {
+	return this.MovedKeys.get();
+    }
+
+    /**
+     * @Title: getFailedBatches.
+     * @Description: the function which is used to get the number of the batches which failed and were retried from the checkpoints.
+     * @return long: the failed batch number.
+     */
+    public long getFailedBatches()
+    {
+	return this.FailedBatches.get();
+    }
+
+    /**
+     * @Title: getEstimatedTotalKeys.
+     * @Description: the function which is used to get the key number of the old shards when the migration started.
+     * @return long: the estimated total key number.
+     */
+    public long getEstimatedTotalKeys()
+    {
+	return this.EstimatedTotalKeys;
+    }
+
+    /**
+     * @Title: getEtaSeconds.
+     * @Description: the function which is used to estimate the remaining time by the average scan rate of the current migration.
+     * @return long: the remaining seconds, or -1 when it can not be estimated yet.
+     */
+    public long getEtaSeconds()
+    {
+	long scanned = this.ScannedKeys.get();
+	long elapsed = System.currentTimeMillis() - this.StartTimeMillis;
+	if((scanned == 0) || (elapsed <= 0))
+	{
+	    return -1;
+	}
+	long remaining = Math.max(0, this.EstimatedTotalKeys - scanned);
+	return (long)(remaining * (elapsed / 1000.0) / scanned);
+    }
+
+    /**
+     * @Title: toString.
+     * @Description: the progress line of the current migration.
+     * @return String: the progress description.
+     */
+    @Override
+    public String toString()
+    {
+	ShardTopology<JedisSentinelPool> topology = this.Topology;
+	return "CacheKeyMigrator[" + ((topology == null) ? "idle" : (topology.getOldShardNum() + "->" + topology.getNewShardNum()))
+	     + ", scanned=" + getScannedKeys() + "/" + getEstimatedTotalKeys()
+	     + ", moved=" + getMovedKeys() + ", failedBatches=" + getFailedBatches() + ", eta=" + getEtaSeconds() + "s"
+	     + ", running=" + isRunning() + ", finished=" + isFinished() + "]";
+    }
+}
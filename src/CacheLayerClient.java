@@ -10,21 +10,72 @@
  * @History: 
  *    1.2015-07-21 First version of CacheLayerClient was written.
  *    2.2015-08-13 Modify subscribe interface,add ConfigDBClient support. 
+ *    3.2026-10-17 Add pluggable ShardRoutingStrategy support(the modulo, ring & jump consistent hash strategies).
+ *    4.2026-10-17 Route by the full-key hash of ShardKeyHash instead of the last char or the low 8 bits.
+ *    5.2026-10-17 Replace the CacheShardingMap & mod numbers with the immutable ShardTopology snapshot.
+ *    6.2026-10-17 Add the background CacheKeyMigrator which moves the keys after an expansion and retires the old view.
+ *    7.2026-10-17 Add the execute function which borrows & returns the connection around a CacheCallback.
+ *    8.2026-10-17 Add the shard-grouped pipelined multi-key functions(mget/mset/mdel) with the parallel fan-out.
+ *    9.2026-10-17 Expose the pool capacity for the backpressure of AsyncDBClient.
+ *    10.2026-10-17 Receive the topology messages from the shared TopologyService instead of an own ConfigDBClient & subscriber.
+ *    11.2026-10-17 Bootstrap the versioned topology from the config database or the local snapshot, and refetch the version gaps.
+ *    12.2026-10-17 Build the new shard pools in parallel, pre-warm & health-check them before the topology is published.
+ *    13.2026-10-17 Record the borrow & operation latencies, the errors and the pool gauges of each shard(see LayerMetrics).
+ *    14.2026-10-17 Detect the hot keys and serve them from the NearCache, the invalidations are broadcast over the config database.
+ *    15.2026-10-17 Split the parsing of the topology message from the pool creation, and add the detached constructor for the benchmarks.
+ *    16.2026-10-17 Resize the shard pools by their load with the AdaptivePoolController, and evict the idle connections.
+ *    17.2026-10-17 Add the opt-in replica reads, the read-only commands go to the sentinel-discovered replicas of the shard.
+ *    18.2026-10-17 Give the weights of the "@weight" suffix in the topology message to a WeightedRendezvousRoutingStrategy.
+ *    19.2026-10-17 Route the String keys by their hash tag, and add the single-shard functions(executeOnShard/multi/eval).
+ *    20.2026-10-17 Add the opt-in multiplexed transport(MultiplexedShardClient), the multi-key functions use it when it is enabled.
+ *    21.2026-10-17 Add the versioned binary document codecs(ValueCodecs) with the getDocument & setDocument functions.
+ *    22.2026-10-17 Fall back to the master only on the replica-state errors, return the replica connection in finally,
+ *                  and record the replica reads in the shard metrics.
+ *    23.2026-10-17 Retry the topology sync with a backoff(TopologyService.retrySync) after a message or a catch-up fails to apply.
+ *    24.2026-10-17 Build the slot table of the WeightedRendezvousRoutingStrategy for the new shard number before publishing it.
+ *    25.2026-10-17 The detached constructor only serves the JMH benchmarks of the benchmark source set.
+ *    26.2026-10-17 Keep the ModuloRoutingStrategy as the default of the legacy constructor, the jump hashing is an explicit opt-in.
+ *    27.2026-10-17 Correct the doc of the legacy constructor: only the int keys keep their "key % N" placement.
+ *    28.2026-10-17 The detached constructor also serves the tests of the test source set.
+ *    29.2026-10-17 Record the replica reads by ShardMetrics.recordReplica, which builds no String per read.
+ *    30.2026-10-17 Invalidate the near cache values of the keys written by mset & mdel.
  */
 //package name.
 package generaldbplatform;
 
 //class import for java utilities.
-import java.util.HashMap;
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+//class import for mongodb client.
+import com.mongodb.DBObject;
 
 //class import for jedis client.
 import redis.clients.jedis.Jedis;
-import redis.clients.jedis.JedisPubSub;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
 import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisSentinelPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.Transaction;
 import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
 
 /**
@@ -34,155 +85,461 @@ import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
  */
 public class CacheLayerClient 
 {
-    /**
-     * @FieldName: SentinelPool_TEMP.
-     * @Description: the temp redis sentinel pool which is used when connect redis server when initialize the CacheShardingMap.
-     */
-    private JedisSentinelPool SentinelPool_TEMP=null;
-    
     /**
      * @FieldName: PoolConfig.
      * @Description: Member variable,the config object which is used when connect redis server.
      */ 
     private GenericObjectPoolConfig PoolConfig;
     
-    /**
-     * @FieldName: CurrentCacheMapIndex.
-     * @Description: the index of the CacheShardingMap,which to be inserted.
-     *               (when new node information comes,this index shows HashMap index with the JedisSentinelPool)
-     */
-    private int CurrentCacheMapIndex = 0;  //the index of map tobe insert.
-    
     /**
      * @FieldName:SentinelPoolTimeout.
      * @Description: Member variable,the timeout value which is used when create the JedisSentinelPool.
      */
     private int SentinelPoolTimeout = 100000;
 	
+    /**
+     * @FieldName: PrewarmConnections & ShardBuildTimeoutMillis.
+     * @Description: the number of the connections which are opened & checked in each new pool before it is published,
+     *               and the max time to build all the pools of one topology message.
+     */
+    public static final int DEFAULT_PREWARM_CONNECTIONS = 8;
+    public static final long DEFAULT_SHARD_BUILD_TIMEOUT_MILLIS = 120000;
+    private volatile int PrewarmConnections = DEFAULT_PREWARM_CONNECTIONS;
+    private volatile long ShardBuildTimeoutMillis = DEFAULT_SHARD_BUILD_TIMEOUT_MILLIS;
+	
     /**
      * @FieldName: configdb.
      * @Description: the ConfigServer database client.
      */
     private ConfigDBClient configdb;
+    
+    /**
+     * @FieldName: topologyService.
+     * @Description: the shared topology service which owns the configdb and delivers the topology messages.
+     */
+    private TopologyService topologyService;
+    
+    /**
+     * @FieldName: TopologyChannel.
+     * @Description: the channel of the topology messages, it also names the topology log in the config database.
+     */
+    private String TopologyChannel;
+    
+    /**
+     * @FieldName: AppliedDeltas.
+     * @Description: the topology deltas which have been applied, the version of the topology is its size.(guarded by this)
+     */
+    private final List<String> AppliedDeltas = new ArrayList<String>();
+    
+    /**
+     * @FieldName: SnapshotFile.
+     * @Description: the local snapshot file of the applied deltas, null when it is not enabled(see TopologySnapshotFile).
+     */
+    private File SnapshotFile;
+    
+    /**
+     * @FieldName: GapRefetches.
+     * @Description: the number of the version gaps which were refetched from the config database.
+     */
+    private final AtomicLong GapRefetches = new AtomicLong();
 	
     /**
-     * @FieldName: CACHE_SERVER_NUM_OLD.
-     * @Description: the new mod_number which is used to store/fetch value from the old HashMap.
+     * @FieldName: Metrics.
+     * @Description: the latency histograms, the error counters & the pool gauges of each shard, exported by JMX.
      */
-    protected int CACHE_SERVER_NUM_OLD = 1;
+    private final LayerMetrics Metrics = new LayerMetrics("cache");
 	
     /**
-     * @FieldName: CACHE_SERVER_NUM_NEW.
-     * @Description: the new mod_number which is used to store/fetch value from the new HashMap.
+     * @FieldName: RoutingStrategy.
+     * @Description: the strategy which is used to map a key to the shard index of the CacheTopology.
+     */
+    private ShardRoutingStrategy RoutingStrategy;
+    
+    /**
+     * @FieldName: CacheTopology.
+     * @Description: Member variable,the current routing snapshot which is used for sharding function.
+     *               (it holds the JedisSentinelPool of each shard, the old & new shard numbers and the epoch,
+     *               the subscriber thread replaces it as a whole, so the request threads never see a half-updated topology).
+     */
+    protected volatile ShardTopology<JedisSentinelPool> CacheTopology = ShardTopology.empty();
+    
+    /**
+     * @FieldName: KeyMigrator.
+     * @Description: the background key migration engine, it is started on every expansion.
+     */
+    private CacheKeyMigrator KeyMigrator;
+    
+    /**
+     * @FieldName: DEFAULT_MIGRATION_KEYS_PER_SECOND.
+     * @Description: the default max number of the keys which are scanned by the KeyMigrator in one second.
+     */
+    public static final double DEFAULT_MIGRATION_KEYS_PER_SECOND = 5000;
+    
+    /**
+     * @FieldName: BATCH_THREAD_NUM.
+     * @Description: the thread number of the BatchExecutor.
+     */
+    private static final int BATCH_THREAD_NUM = 32;
+    
+    /**
+     * @FieldName: BatchExecutor.
+     * @Description: the threads which run the pipelines of the multi-key functions on the different shards at the same time.
+     */
+    private ExecutorService BatchExecutor;
+    
+    /**
+     * @FieldName: PoolController.
+     * @Description: the controller which resizes the pool of each shard by its borrow wait & utilization.
+     */
+    private AdaptivePoolController PoolController;
+    
+    /**
+     * @FieldName: IDLE_EVICT_MILLIS & EVICTION_RUN_MILLIS.
+     * @Description: a connection which is idle for IDLE_EVICT_MILLIS is closed(except minIdle connections),
+     *               the eviction runs every EVICTION_RUN_MILLIS.
+     */
+    private static final long IDLE_EVICT_MILLIS = 60000;
+    private static final long EVICTION_RUN_MILLIS = 30000;
+    
+    /**
+     * @FieldName: DEFAULT_MAX_REPLICA_LAG_BYTES & REPLICA_REFRESH_MILLIS.
+     * @Description: a replica which lags behind its master by more bytes is not read,
+     *               the replicas & their lag are refreshed from the sentinels every REPLICA_REFRESH_MILLIS.
+     */
+    public static final long DEFAULT_MAX_REPLICA_LAG_BYTES = 1024 * 1024;
+    private static final long REPLICA_REFRESH_MILLIS = 2000;
+    
+    /**
+     * @FieldName: ReplicaReads & MaxReplicaLagBytes.
+     * @Description: the read-only commands go to the replicas or not(default false: a replica may miss the latest writes),
+     *               and the max replication lag of a replica which is read.
+     */
+    private volatile boolean ReplicaReads = false;
+    private volatile long MaxReplicaLagBytes = DEFAULT_MAX_REPLICA_LAG_BYTES;
+    
+    /**
+     * @FieldName: ReplicaRefresher & ReplicaPoolConfig.
+     * @Description: the thread which refreshes the replicas while the replica reads are enabled, and the config of the replica pools.
+     */
+    private ScheduledExecutorService ReplicaRefresher;
+    private GenericObjectPoolConfig ReplicaPoolConfig;
+    
+    /**
+     * @FieldName: MultiplexedConnections.
+     * @Description: the connection number of the multiplexed transport of each shard, 0 means the transport is disabled(default).
      */
-    protected int CACHE_SERVER_NUM_NEW = 1;
+    private volatile int MultiplexedConnections = 0;
     
     /**
-     * @FieldName: CacheShardingMap.
-     * @Description: Member variable,the map which is used for sharding function.
+     * @FieldName: Codecs & UTF8.
+     * @Description: the codecs of the documents which are stored as binary values, and the charset of the binary keys.
      */
-    protected Map<Integer, JedisSentinelPool> CacheShardingMap;  
+    private final ValueCodecs Codecs = new ValueCodecs();
+    private static final Charset UTF8 = Charset.forName("UTF-8");
     
     /**
      * @FieldName: CachaInitOK.
      * @Description: the boolean value which shows the cache database client initialize ok or not.
      */
-    protected boolean CacheInitOK = false;
+    protected volatile boolean CacheInitOK = false;
 	
     /**
-     * @Title: ConfigDBInit.
-     * @Description: this function is used to initialize the configdb.
-     * @param serverinfo_0: the first redis server node ip & port information in the redis sentinel.
-     * @param serverinfo_1: the second redis server node ip & port information in the redis sentinel.
-     * @param serverinfo_2: the third redis server node ip & port information in the redis sentinel.
-     * @return none.
+     * @FieldName: NEAR_CACHE_CHANNEL_SUFFIX.
+     * @Description: the suffix of the channel which broadcasts the near cache invalidations, after the topology channel.
      */
-    private void ConfigDBInit(String serverinfo_0, String serverinfo_1, String serverinfo_2)
-    {
-	this.configdb = new ConfigDBClient(serverinfo_0, serverinfo_1, serverinfo_2);
-    }
-
+    public static final String NEAR_CACHE_CHANNEL_SUFFIX = ":NEAR_CACHE_INVALIDATE";
+	
+    /**
+     * @FieldName: HotKeys & LocalCache.
+     * @Description: the streaming hot-key detector, and the in-process cache of the hot keys.
+     *               (a hot key is pinned to one shard by the routing, so its reads are served in the JVM for a short ttl).
+     */
+    private final HotKeyDetector HotKeys = new HotKeyDetector();
+    private final NearCache LocalCache = new NearCache(NearCache.DEFAULT_MAX_ENTRIES, NearCache.DEFAULT_TTL_MILLIS);
+	
+    /**
+     * @FieldName: InvalidationErrors.
+     * @Description: the invalidations which could not be broadcast(the other JVMs drop their values when the ttl expires).
+     */
+    private final AtomicLong InvalidationErrors = new AtomicLong();
+	
     /**
      * @Title: Subscriber.
-     * @Description: the function which is used to subscribe one channel from redis server.
-     * @param ip: the redis server ip address. 
+     * @Description: the function which is used to receive the messages of one channel from the shared TopologyService.
+     *               (the service multiplexes the channels of all the layer clients on one subscription and reconnects after a drop).
      * @param channel: the specific channel which was subscribed by the application.
      * @return none.
      */
     private void Subscriber(final String channel)
     {
-	final JedisPubSub jedisPubSub = new JedisPubSub() 
-	{
-	    @Override	
-	    public void onMessage(String channel, String message) 
-	    {  
-	        //System.out.println("Input channel =="+channel + "----input message ==" + message); 
-		if(channel.equals("CACHE_AUTO_EXTERN"))
-		{
-		    CacheShardMapInit(message);
-		}
-            }  
-	};
-	new Thread(new Runnable() 
+	this.topologyService.addListener(channel, new TopologyListener()
 	{
 	    @Override
-	    public void run() 
+	    public void onTopologyMessage(String channel, String message)
 	    {
-		//System.out.println("Start!!!"); 
-                Jedis jedisConnector = null;
-		boolean borrowOrOprSuccess = true;
-		
-		try 
+		try
 		{
-		    jedisConnector = configdb.db_client.getResource();
-		    jedisConnector.subscribe(jedisPubSub, channel);
+		    applyTopologyMessage(message);
 		}
-		catch(JedisConnectionException e)
+		catch(RuntimeException e)
 		{
-		    borrowOrOprSuccess = false;
-	            if(jedisConnector != null)
-		    {
-			configdb.db_client.returnBrokenResource(jedisConnector);
-			jedisConnector = null;
-		    }
+		    //the message is not applied(e.g. a new shard is not ready), its delta is refetched by the retries.
+		    retryTopologySync();
 		    throw e;
 		}
-		finally
+	    }
+	    
+	    @Override
+	    public void onSubscribed(String channel)
+	    {
+		//catch up with the versions which were published while the subscription was down.
+		try
+		{
+		    syncTopology();
+		}
+		catch(RuntimeException e)
 		{
-	            if(borrowOrOprSuccess && (jedisConnector!=null))
-	            {
-			configdb.db_client.returnResource(jedisConnector);
-		    }
+		    retryTopologySync();
 		}
 	    }
-	}, "subscriberThread").start();
+	});
+    }
+    
+    /**
+     * @Title: NearCacheSubscriber.
+     * @Description: the function which is used to receive the near cache invalidations of all the JVMs.
+     *               all the values are dropped when the subscription is (re)established, the invalidations may have been lost.
+     * @param channel: the invalidation channel.
+     * @return none.
+     */
+    private void NearCacheSubscriber(String channel)
+    {
+	this.topologyService.addListener(channel, new TopologyListener()
+	{
+	    @Override
+	    public void onTopologyMessage(String channel, String message)
+	    {
+		LocalCache.invalidate(message);
+	    }
+	    
+	    @Override
+	    public void onSubscribed(String channel)
+	    {
+		LocalCache.clear();
+	    }
+	});
     }
     
     /**
      * @Title: CacheShardMapInit.
-     * @Description: the function is used to initialize the CacheShardingMap.(when the client got the info_message)
+     * @Description: the function is used to extend the CacheTopology.(when the client got the info_message)
+     *               all the new JedisSentinelPools are created first, then the next topology is published at once.
      * @param info_message:the message which was published from the redis server and contain the cache server info such as ip & port.
      *        the message should be like this:"1.0.0.1:6379_1.0.2.3:6349_1.0.0.5:5689;1.0.0.22:6379_1.10.2.3:6349_12.0.0.5:5689".
+     *        a shard may end with an optional weight like "...@256"(see WeightedRendezvousRoutingStrategy).
      * @return none.
      */
     public void CacheShardMapInit(String info_message)
     {
-	//create a temp set of String to store redis HostAndPort info.
-	Set<String> sentinel_temp = new HashSet<String>();
+	ShardTopology<JedisSentinelPool> next;
+	synchronized(this)
+	{
+	    next = this.applyDeltas(Collections.singletonList(info_message));
+	}
+	this.startRelocation(next);
+    }
+	
+    /**
+     * @Title: applyTopologyMessage.
+     * @Description: the function is used to apply a message of the topology channel.
+     *               a versioned message("version#delta") is applied when it is the next version, ignored when it has been applied
+     *               (by the bootstrap or a refetch), and a gap refetches all the missing deltas from the config database.
+     *               a legacy message without version is applied like CacheShardMapInit.
+     * @param message: the message of the channel.
+     * @return none.
+     */
+    private void applyTopologyMessage(String message)
+    {
+	long version = TopologyService.parseVersion(message);
+	if(version < 0)
+	{
+	    this.CacheShardMapInit(message);
+	    return;
+	}
+	ShardTopology<JedisSentinelPool> next;
+	synchronized(this)
+	{
+	    long applied = this.AppliedDeltas.size();
+	    if(version <= applied)
+	    {
+		return;
+	    }
+	    List<String> deltas;
+	    if(version == applied + 1)
+	    {
+		deltas = Collections.singletonList(TopologyService.parseDelta(message));
+	    }
+	    else
+	    {
+		this.GapRefetches.incrementAndGet();
+		deltas = this.topologyService.fetchDeltas(this.TopologyChannel, applied);
+	    }
+	    next = this.applyDeltas(deltas);
+	}
+	this.startRelocation(next);
+    }
+	
+    /**
+     * @Title: syncTopology.
+     * @Description: the function is used to apply the deltas of the config database which have not been applied yet.
+     * @return none.
+     */
+    public void syncTopology()
+    {
+	ShardTopology<JedisSentinelPool> next;
+	synchronized(this)
+	{
+	    next = this.applyDeltas(this.topologyService.fetchDeltas(this.TopologyChannel, this.AppliedDeltas.size()));
+	}
+	this.startRelocation(next);
+    }
+	
+    /**
+     * @Title: retryTopologySync.
+     * @Description: the function is used to retry the syncTopology with a backoff until all the deltas are applied.
+     * @return none.
+     */
+    private void retryTopologySync()
+    {
+	this.topologyService.retrySync(this.TopologyChannel, new Runnable()
+	{
+	    @Override
+	    public void run()
+	    {
+		syncTopology();
+	    }
+	});
+    }
+	
+    /**
+     * @Title: bootstrapTopology.
+     * @Description: the function is used to load the full topology at construction, so the client routes at once:
+     *               from the local snapshot file when there is one(the subscriber catches up with the config database
+     *               when it is subscribed), else from the config database.
+     * @return none.
+     */
+    private void bootstrapTopology()
+    {
+	List<String> snapshot = TopologySnapshotFile.read(this.SnapshotFile);
+	try
+	{
+	    if((snapshot != null) && !snapshot.isEmpty())
+	    {
+		ShardTopology<JedisSentinelPool> next = null;
+		synchronized(this)
+		{
+		    if(this.AppliedDeltas.isEmpty())
+		    {
+			next = this.applyDeltas(snapshot);
+		    }
+		}
+		this.startRelocation(next);
+		return;
+	    }
+	    this.syncTopology();
+	}
+	catch(JedisConnectionException e)
+	{
+	    //the config server or a new shard is not ready, the subscriber loads the topology when it is subscribed.
+	}
+    }
+	
+    /**
+     * @Title: applyDeltas.
+     * @Description: the function is used to append the shards of deltas as one expansion and record their versions.
+     *               (the caller holds the lock of this client).
+     *               when an empty client loads several deltas and the keys of the last one are still being relocated
+     *               (its checkpoint exists), the last delta is applied as an expansion of its own, so both views are routed.
+     * @param deltas: the deltas of the next versions in order.
+     * @return ShardTopology<JedisSentinelPool>: the published topology, null when there is no delta.
+     */
+    private ShardTopology<JedisSentinelPool> applyDeltas(List<String> deltas)
+    {
+	if(deltas.isEmpty())
+	{
+	    return null;
+	}
+	ShardTopology<JedisSentinelPool> next;
+	int last = deltas.size() - 1;
+	if((this.CacheTopology.getNewShardNum() == 0) && (last > 0) && this.isRelocationPending(deltas))
+	{
+	    this.appendCacheShards(TopologyService.joinDeltas(deltas.subList(0, last)));
+	    next = this.appendCacheShards(deltas.get(last));
+	}
+	else
+	{
+	    next = this.appendCacheShards(TopologyService.joinDeltas(deltas));
+	}
+	this.AppliedDeltas.addAll(deltas);
+	TopologySnapshotFile.write(this.SnapshotFile, this.AppliedDeltas);
+	return next;
+    }
+	
+    /**
+     * @Title: isRelocationPending.
+     * @Description: the function shows the relocation of the last delta has a checkpoint in the config database or not.
+     * @param deltas: the deltas from the version 1.
+     * @return boolean: true when the relocation of the last delta has not finished.
+     */
+    private boolean isRelocationPending(List<String> deltas)
+    {
+	int old_num = TopologyService.countShards(deltas.subList(0, deltas.size() - 1));
+	int new_num = old_num + TopologyService.countShards(deltas.subList(deltas.size() - 1, deltas.size()));
+	try
+	{
+	    return this.topologyService.hasKey(CacheKeyMigrator.CHECKPOINT_KEY_PREFIX + old_num + "_" + new_num);
+	}
+	catch(JedisConnectionException e)
+	{
+	    return false;
+	}
+    }
+	
+    /**
+     * @Title: startRelocation.
+     * @Description: the function is used to start the migrator on an expanding topology, it retires the old view when it finishes.
+     *               (it must be started out of the lock, a running migrator may be waiting for the lock to retire its own topology).
+     * @param next: the published topology, null when nothing was published.
+     * @return none.
+     */
+    private void startRelocation(ShardTopology<JedisSentinelPool> next)
+    {
+	if((next != null) && next.isExpanding())
+	{
+	    this.KeyMigrator.start(next);
+	}
+    }
+	
+    /**
+     * @Title: parseCacheShards.
+     * @Description: the function is used to parse the sentinel addresses of each new shard in the info_message.
+     * @param info_message:the message which contains the cache server info, see CacheShardMapInit.
+     * @return List<Set<String>>: the 3 sentinel "ip:port" of each shard, in the order of the message.
+     */
+    static List<Set<String>> parseCacheShards(String info_message)
+    {
+	List<Set<String>> shards = new ArrayList<Set<String>>();
 		
 	//split the info_message like this:"1.0.0.1:6379_1.0.2.3:6349_1.0.0.5:5689",3 ip:port segments.
 	String[] arr_new_node = info_message.split(";");  //must split by ";".
 		
-	//Assign the old mod number to CACHE_SERVER_NUM_OLD.
-	this.CACHE_SERVER_NUM_OLD = CacheShardingMap.size();
-		
 	for(int i = 0; i < arr_new_node.length; i++)
 	{
-	    //clear the old HostAndPort info.
-	    sentinel_temp.clear();
+	    //create a set of String to store the redis HostAndPort info of this shard.
+	    Set<String> sentinel_temp = new HashSet<String>();
 			
 	    //split the "1.0.0.1:6379_1.0.2.3:6349_1.0.0.5:5689" like:"1.0.0.1:6379".
-	    String[] arr_ip_port = arr_new_node[i].split("_");
+	    String[] arr_ip_port = TopologyService.stripWeight(arr_new_node[i]).split("_");
 			
 	    //split the "1.0.0.1:6379" like: ip->1.0.0.1, port->6379.
 	    String ip0 = arr_ip_port[0].split(":")[0];
@@ -196,85 +553,1259 @@ public class CacheLayerClient
 	    sentinel_temp.add(new HostAndPort(ip0,port0).toString());
 	    sentinel_temp.add(new HostAndPort(ip1,port1).toString());
 	    sentinel_temp.add(new HostAndPort(ip2,port2).toString());
-			
-	    //Create a new JedisSentinelPool instance and insert it into CacheShardingMap with the latest mod index.
-	    SentinelPool_TEMP = new JedisSentinelPool("mymaster"+CurrentCacheMapIndex, sentinel_temp, this.PoolConfig, this.SentinelPoolTimeout);
-	    CacheShardingMap.put(CurrentCacheMapIndex, SentinelPool_TEMP);
-	    CurrentCacheMapIndex += 1;
-	}
-		
-        //check the CacheShardingMap size and assign the value to CACHE_SERVER_NUM_NEW.
-	if(CacheShardingMap.size()>0)
-	{
-	    this.CACHE_SERVER_NUM_NEW = CacheShardingMap.size(); 
-	    this.CacheInitOK = true;
+	    shards.add(sentinel_temp);
 	}
+	return shards;
     }
 	
     /**
-     * @Title: getOldShardedCacheClient.
-     * @Description: the function which is used to fetch the JedisSentinelPool mod by the CACHE_SERVER_NUM_OLD.
-     * @param key: int value which is indicates the value.
-     * @return JedisSentinelPool: the Redis sentinel client which is used to access the Redis sentinel.
+     * @Title: appendCacheShards.
+     * @Description: the function is used to create the JedisSentinelPools of the info_message and publish the next topology.
+     * @param info_message:the message which contains the cache server info, see CacheShardMapInit.
+     * @return ShardTopology<JedisSentinelPool>: the published topology.
      */
-    public JedisSentinelPool getOldShardedCacheClient(int key)
+    private ShardTopology<JedisSentinelPool> appendCacheShards(String info_message)
     {
-        return this.CacheShardingMap.get(key % this.CACHE_SERVER_NUM_OLD);
+	//the current topology, the new shards are appended after its shards.
+	ShardTopology<JedisSentinelPool> current = this.CacheTopology;
+	List<Callable<JedisSentinelPool>> build_tasks = new ArrayList<Callable<JedisSentinelPool>>();
+	List<Set<String>> shard_sentinels = parseCacheShards(info_message);
+	double[] shard_weights = TopologyService.parseWeights(info_message);
+		
+	for(int i = 0; i < shard_sentinels.size(); i++)
+	{
+	    final Set<String> sentinel_temp = shard_sentinels.get(i);
+			
+	    //the new JedisSentinelPool is created & pre-warmed on a build thread, its shard index is the tail index of the topology.
+	    final int shard_index = current.getNewShardNum() + i;
+	    build_tasks.add(new Callable<JedisSentinelPool>()
+	    {
+		@Override
+		public JedisSentinelPool call()
+		{
+		    JedisSentinelPool pool = new CacheShardPool("mymaster"+shard_index, sentinel_temp, PoolConfig, SentinelPoolTimeout,
+								shard_index, Metrics.shard(shard_index));
+		    try
+		    {
+			prewarmCachePool(pool);
+		    }
+		    catch(RuntimeException e)
+		    {
+			pool.destroy();
+			throw e;
+		    }
+		    return pool;
+		}
+	    });
+	}
+	
+	//all the pools are built at the same time, and the topology is published only when every pool is ready.
+	List<JedisSentinelPool> new_pools;
+	try
+	{
+	    new_pools = ShardPoolBuilder.buildAll(build_tasks, this.ShardBuildTimeoutMillis, new ShardPoolBuilder.Closer<JedisSentinelPool>()
+	    {
+		@Override
+		public void close(JedisSentinelPool pool)
+		{
+		    pool.destroy();
+		}
+	    }, "cacheShardBuildThread");
+	}
+	catch(ExecutionException e)
+	{
+	    throw new JedisConnectionException("the new cache shards are not ready, the topology is not changed", e.getCause());
+	}
+		
+        //publish the next topology, the old shard number becomes the new shard number of the current topology.
+	//the weights of the new shards only change the routing of the views which contain them, so they are set before publishing.
+	if(this.RoutingStrategy instanceof WeightedRendezvousRoutingStrategy)
+	{
+	    for(int i = 0; i < shard_weights.length; i++)
+	    {
+		((WeightedRendezvousRoutingStrategy)this.RoutingStrategy).setShardWeight(current.getNewShardNum() + i, shard_weights[i]);
+	    }
+	    //the first requests of the new view must not wait for its table.
+	    ((WeightedRendezvousRoutingStrategy)this.RoutingStrategy).prepareTable(current.getNewShardNum() + new_pools.size());
+	}
+	ShardTopology<JedisSentinelPool> next = current.extend(new_pools);
+	this.CacheTopology = next;
+	if(next.getNewShardNum()>0)
+	{
+	    this.CacheInitOK = true;
+	}
+	return next;
     }
 	
     /**
-     * @Title: getNewShardedCacheClient.
-     * @Description: the function which is used to fetch the JedisSentinelPool mod by the CACHE_SERVER_NUM_NEW.
-     * @param key: int value which is indicates the value.
-     * @return JedisSentinelPool: the Redis sentinel client which is used to access the Redis sentinel.
+     * @Title: prewarmCachePool.
+     * @Description: the function is used to open the PrewarmConnections connections of a new pool and check each of them
+     *               with a PING, the connections stay idle in the pool for the first requests.
+     * @param pool: the new JedisSentinelPool.
+     * @return none.
      */
-    public JedisSentinelPool getNewShardedCacheClient(int key)
+    private void prewarmCachePool(JedisSentinelPool pool)
     {
-	return this.CacheShardingMap.get(key % this.CACHE_SERVER_NUM_NEW);
+	int warm_num = Math.max(1, Math.min(this.PrewarmConnections, this.PoolConfig.getMaxIdle()));
+	List<Jedis> borrowed = new ArrayList<Jedis>(warm_num);
+	try
+	{
+	    for(int i = 0; i < warm_num; i++)
+	    {
+		Jedis jedis = pool.getResource();
+		borrowed.add(jedis);
+		String reply = jedis.ping();
+		if(!"PONG".equals(reply))
+		{
+		    throw new JedisConnectionException("unexpected PING reply: " + reply);
+		}
+	    }
+	}
+	catch(JedisConnectionException e)
+	{
+	    for(Jedis jedis : borrowed)
+	    {
+		pool.returnBrokenResource(jedis);
+	    }
+	    borrowed.clear();
+	    throw e;
+	}
+	finally
+	{
+	    for(Jedis jedis : borrowed)
+	    {
+		pool.returnResource(jedis);
+	    }
+	}
     }
 	
     /**
-     * @Title: getOldShardedCacheClient
-     * @Description: the function which is used to fetch the JedisSentinelPool mod by the CACHE_SERVER_NUM_OLD.
-     * @param key:long value which is indicates the value.
-     * @return JedisSentinelPool: the Redis sentinel client which is used to access the Redis sentinel.
+     * @Title: retireOldView.
+     * @Description: the function is used to make the old routing view the same as the new routing view,
+     *               when all the keys of the expected topology have been moved to their new owners.
+     * @param expected: the topology whose keys have been moved.
+     * @return boolean: true when the old view was retired, false when the topology has changed since then.
      */
-    public JedisSentinelPool getOldShardedCacheClient(long key)
+    public synchronized boolean retireOldView(ShardTopology<JedisSentinelPool> expected)
     {
-        return this.CacheShardingMap.get(((int)(key & 0xFF)) % this.CACHE_SERVER_NUM_OLD);
+	if(this.CacheTopology != expected)
+	{
+	    return false;
+	}
+	this.CacheTopology = expected.retireOldView();
+	return true;
     }
 	
     /**
-     * @Title: getNewShardedCacheClient.
-     * @Description: the function which is used to fetch the JedisSentinelPool mod by the CACHE_SERVER_NUM_NEW.
-     * @param key:long value which is indicates the value.
-     * @return JedisSentinelPool: the Redis sentinel client which is used to access the Redis sentinel.
+     * @Title: execute.
+     * @Description: the function is used to run one operation on a connection of the pool.
+     *               (the connection is returned as broken when the operation fails on the connection).
+     * @param pool: the JedisSentinelPool of the shard.
+     * @param callback: the operation.
+     * @return T: the result of the operation.
      */
-    public JedisSentinelPool getNewShardedCacheClient(long key)
+    public <T> T execute(JedisSentinelPool pool, CacheCallback<T> callback)
     {
-	return this.CacheShardingMap.get(((int)(key & 0xFF)) % this.CACHE_SERVER_NUM_NEW);
+	return this.execute(pool, "execute", callback);
     }
 	
     /**
-     * @Title: getOldShardedCacheClient.
-     * @Description: the function which is used to fetch the JedisSentinelPool mod by the CACHE_SERVER_NUM_OLD.
-     * @param key: String value which is indicates the value.
-     * @return JedisSentinelPool: the Redis sentinel client which is used to access the Redis sentinel.
+     * @Title: execute.
+     * @Description: the function is used to run one operation on a connection of the pool, and record the borrow time
+     *               & the operation time in the histograms of the shard(the operation name is the histogram name).
+     * @param pool: the JedisSentinelPool of the shard.
+     * @param operation: the operation name, like "execute" or "pipeline".
+     * @param callback: the operation.
+     * @return T: the result of the operation.
      */
-    public JedisSentinelPool getOldShardedCacheClient(String key)
+    public <T> T execute(JedisSentinelPool pool, String operation, CacheCallback<T> callback)
     {
-	return this.CacheShardingMap.get((int)(key.toCharArray()[key.length()-1]) % this.CACHE_SERVER_NUM_OLD);
-    }
-	
-    /**
+	ShardMetrics metrics = (pool instanceof CacheShardPool) ? ((CacheShardPool)pool).getMetrics() : null;
+	Jedis jedis = null;
+	boolean borrowOrOprSuccess = true;
+	long start = System.nanoTime();
+	try
+	{
+	    jedis = pool.getResource();
+	    if(metrics != null)
+	    {
+		metrics.record("borrow", start);
+		start = System.nanoTime();
+	    }
+	    T result = callback.doInCache(jedis);
+	    if(metrics != null)
+	    {
+		metrics.record(operation, start);
+	    }
+	    return result;
+	}
+	catch(JedisConnectionException e)
+	{
+	    borrowOrOprSuccess = false;
+	    if(metrics != null)
+	    {
+		metrics.recordError(LayerMetrics.isTimeout(e));
+	    }
+	    if(jedis != null)
+	    {
+		pool.returnBrokenResource(jedis);
+		jedis = null;
+	    }
+	    throw e;
+	}
+	catch(RuntimeException e)
+	{
+	    if(metrics != null)
+	    {
+		metrics.recordError(LayerMetrics.isTimeout(e));
+	    }
+	    throw e;
+	}
+	finally
+	{
+	    if(borrowOrOprSuccess && (jedis != null))
+	    {
+		pool.returnResource(jedis);
+	    }
+	}
+    }
+	
+    /**
+     * @Title: executeRead.
+     * @Description: the function is used to run one read-only operation, on a replica of the shard when the replica reads
+     *               are enabled and a healthy replica is known, otherwise on the master. the replica is chosen by its read
+     *               latency(see CacheShardPool.chooseReplica). a replica which fails on the connection or answers a replica-state
+     *               error(see isReplicaStateError) is marked unhealthy until the next refresh, and the operation is retried
+     *               on the master; the other data errors are thrown as the master would throw them. the replica reads are
+     *               recorded in the shard metrics as "replica-borrow" & "replica-" + operation.
+     *               the callback must not write: a replica rejects the writes.
+     * @param pool: the JedisSentinelPool of the shard.
+     * @param operation: the operation name, like "get" or "pipeline".
+     * @param callback: the read-only operation.
+     * @return T: the result of the operation.
+     */
+    public <T> T executeRead(JedisSentinelPool pool, String operation, CacheCallback<T> callback)
+    {
+	CacheReplica replica = null;
+	if(this.ReplicaReads && (pool instanceof CacheShardPool))
+	{
+	    replica = ((CacheShardPool)pool).chooseReplica();
+	}
+	if(replica == null)
+	{
+	    return this.execute(pool, operation, callback);
+	}
+	ShardMetrics metrics = ((CacheShardPool)pool).getMetrics();
+	JedisPool replicaPool = replica.getPool();
+	Jedis jedis = null;
+	boolean borrowOrOprSuccess = true;
+	long start = System.nanoTime();
+	try
+	{
+	    jedis = replicaPool.getResource();
+	    long borrowed = System.nanoTime();
+	    if(metrics != null)
+	    {
+		metrics.record("replica-borrow", start);
+	    }
+	    T result = callback.doInCache(jedis);
+	    if(metrics != null)
+	    {
+		metrics.recordReplica(operation, borrowed);
+	    }
+	    replica.recordRead((System.nanoTime() - start) / 1000);
+	    return result;
+	}
+	catch(JedisConnectionException e)
+	{
+	    borrowOrOprSuccess = false;
+	    replica.recordFailure();
+	    if(metrics != null)
+	    {
+		metrics.recordError(LayerMetrics.isTimeout(e));
+	    }
+	    if(jedis != null)
+	    {
+		replicaPool.returnBrokenResource(jedis);
+		jedis = null;
+	    }
+	}
+	catch(JedisDataException e)
+	{
+	    if(metrics != null)
+	    {
+		metrics.recordError(false);
+	    }
+	    if(!isReplicaStateError(e))
+	    {
+		throw e;
+	    }
+	    replica.recordFailure();
+	}
+	finally
+	{
+	    if(borrowOrOprSuccess && (jedis != null))
+	    {
+		replicaPool.returnResource(jedis);
+	    }
+	}
+	return this.execute(pool, operation, callback);
+    }
+	
+    /**
+     * @Title: isReplicaStateError.
+     * @Description: the function shows an error reply comes from the state of the replica, not from the command:
+     *               LOADING(the replica loads its data), MASTERDOWN(it lost its master and does not serve stale data)
+     *               and BUSY(a script blocks it). the master may answer the same command.
+     * @param e: the error reply.
+     * @return boolean: true for a replica-state error.
+     */
+    private static boolean isReplicaStateError(JedisDataException e)
+    {
+	String message = String.valueOf(e.getMessage());
+	return message.startsWith("LOADING") || message.startsWith("MASTERDOWN") || message.startsWith("BUSY");
+    }
+	
+    /**
+     * @Title: getCacheTopology.
+     * @Description: the function is used to get the current routing snapshot.
+     * @return ShardTopology<JedisSentinelPool>: the current topology.
+     */
+    public ShardTopology<JedisSentinelPool> getCacheTopology()
+    {
+	return this.CacheTopology;
+    }
+	
+    /**
+     * @Title: getRoutingStrategy.
+     * @Description: the function is used to get the routing strategy of this layer.
+     * @return ShardRoutingStrategy: the routing strategy.
+     */
+    public ShardRoutingStrategy getRoutingStrategy()
+    {
+	return this.RoutingStrategy;
+    }
+	
+    /**
+     * @Title: getTopologyVersion.
+     * @Description: the function is used to get the version of the applied topology, the number of the applied deltas.
+     * @return long: the topology version.
+     */
+    public synchronized long getTopologyVersion()
+    {
+	return this.AppliedDeltas.size();
+    }
+	
+    /**
+     * @Title: getGapRefetches.
+     * @Description: the function is used to get the number of the version gaps which were refetched from the config database.
+     * @return long: the gap refetch number.
+     */
+    public long getGapRefetches()
+    {
+	return this.GapRefetches.get();
+    }
+	
+    /**
+     * @Title: readNearCache.
+     * @Description: the function which counts one read of a key in the hot-key detector and returns its near cache value.
+     *               it is called before every read of a key, so the detector sees the whole read traffic.
+     * @param key: the cache key.
+     * @return String: the value in the near cache, null when the key is not cached in the JVM.
+     */
+    public String readNearCache(String key)
+    {
+	if(!this.HotKeys.record(key))
+	{
+	    return null;
+	}
+	return this.LocalCache.get(key);
+    }
+	
+    /**
+     * @Title: promoteNearCache.
+     * @Description: the function which caches the value that was read from Redis in the JVM, when the key is hot.
+     * @param key: the cache key.
+     * @param value: the value which was read from Redis.
+     * @return none.
+     */
+    public void promoteNearCache(String key, String value)
+    {
+	if(this.HotKeys.isHot(key))
+	{
+	    this.LocalCache.put(key, value);
+	}
+    }
+	
+    /**
+     * @Title: readNearCacheBytes.
+     * @Description: the function which counts one read of a key in the hot-key detector and returns its binary near cache value.
+     * @param key: the cache key.
+     * @return byte[]: the value in the near cache, null when the key is not cached in the JVM.
+     */
+    public byte[] readNearCacheBytes(String key)
+    {
+	if(!this.HotKeys.record(key))
+	{
+	    return null;
+	}
+	return this.LocalCache.getBytes(key);
+    }
+	
+    /**
+     * @Title: promoteNearCache.
+     * @Description: the function which caches the binary value that was read from Redis in the JVM, when the key is hot.
+     * @param key: the cache key.
+     * @param value: the value which was read from Redis, it must not be changed after the call.
+     * @return none.
+     */
+    public void promoteNearCache(String key, byte[] value)
+    {
+	if(this.HotKeys.isHot(key))
+	{
+	    this.LocalCache.put(key, value);
+	}
+    }
+	
+    /**
+     * @Title: invalidateNearCache.
+     * @Description: the function which drops the near cache value of a key in this JVM and broadcasts the invalidation
+     *               to the other JVMs, it is called after the key is changed in Redis.
+     * @param key: the cache key.
+     * @return none.
+     */
+    public void invalidateNearCache(String key)
+    {
+	this.LocalCache.invalidate(key);
+	try
+	{
+	    this.topologyService.publish(this.TopologyChannel + NEAR_CACHE_CHANNEL_SUFFIX, key);
+	}
+	catch(JedisConnectionException e)
+	{
+	    this.InvalidationErrors.incrementAndGet();
+	}
+    }
+	
+    /**
+     * @Title: getHotKeys.
+     * @Description: the function is used to get the current hot keys for the operators, the hottest first.
+     * @return List<Map.Entry<String, Long>>: the hot keys & their estimated reads in the last 2 windows.
+     */
+    public List<Map.Entry<String, Long>> getHotKeys()
+    {
+	return this.HotKeys.getHotKeys();
+    }
+	
+    /**
+     * @Title: getHotKeyDetector.
+     * @Description: the function is used to get the hot-key detector, for the threshold, window & top-K settings.
+     * @return HotKeyDetector: the hot-key detector.
+     */
+    public HotKeyDetector getHotKeyDetector()
+    {
+	return this.HotKeys;
+    }
+	
+    /**
+     * @Title: getNearCache.
+     * @Description: the function is used to get the near cache, for the ttl & size settings and the hit counters.
+     * @return NearCache: the near cache.
+     */
+    public NearCache getNearCache()
+    {
+	return this.LocalCache;
+    }
+	
+    /**
+     * @Title: getInvalidationErrors.
+     * @Description: the function is used to get the number of the invalidations which could not be broadcast.
+     * @return long: the error number.
+     */
+    public long getInvalidationErrors()
+    {
+	return this.InvalidationErrors.get();
+    }
+	
+    /**
+     * @Title: getPoolController.
+     * @Description: the function is used to get the pool controller, for its bounds, thresholds & resize events.
+     * @return AdaptivePoolController: the pool controller, null for a detached client.
+     */
+    public AdaptivePoolController getPoolController()
+    {
+	return this.PoolController;
+    }
+	
+    /**
+     * @Title: setReplicaReads.
+     * @Description: the function is used to send the read-only commands to the replicas or not.
+     *               enabling it starts the refresh thread and refreshes the replicas once before the first replica read,
+     *               disabling it stops the thread(the replica pools are kept until the shard pools are destroyed).
+     *               the replica reads are eventually consistent: a read may miss a write which was not replicated yet.
+     * @param enabled: the replica reads are enabled or not.
+     * @return none.
+     */
+    public synchronized void setReplicaReads(boolean enabled)
+    {
+	if(enabled && (this.ReplicaRefresher == null))
+	{
+	    this.refreshReplicas();
+	    this.ReplicaRefresher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+	    {
+		@Override
+		public Thread newThread(Runnable r)
+		{
+		    Thread thread = new Thread(r, "replicaRefreshThread");
+		    thread.setDaemon(true);
+		    return thread;
+		}
+	    });
+	    this.ReplicaRefresher.scheduleWithFixedDelay(new Runnable()
+	    {
+		@Override
+		public void run()
+		{
+		    try
+		    {
+			refreshReplicas();
+		    }
+		    catch(RuntimeException e)
+		    {
+			//keep refreshing, a failed refresh marks the replicas unhealthy.
+		    }
+		}
+	    }, REPLICA_REFRESH_MILLIS, REPLICA_REFRESH_MILLIS, TimeUnit.MILLISECONDS);
+	}
+	else if(!enabled && (this.ReplicaRefresher != null))
+	{
+	    this.ReplicaRefresher.shutdownNow();
+	    this.ReplicaRefresher = null;
+	}
+	this.ReplicaReads = enabled;
+    }
+	
+    /**
+     * @Title: setMultiplexedConnections.
+     * @Description: the function is used to enable the multiplexed transport with connectionNum connections per shard,
+     *               or to disable it with 0. when it is enabled, mget/mset/mdel send their commands over the transport instead of
+     *               a pipeline on a pooled connection, and getMultiplexedClient returns the transport of a shard.
+     *               (the number of a transport which was already created does not change).
+     * @param connectionNum: the connection number per shard, 0 to disable the transport.
+     * @return none.
+     */
+    public void setMultiplexedConnections(int connectionNum)
+    {
+	if(connectionNum < 0)
+	{
+	    throw new IllegalArgumentException("connectionNum must not be negative: " + connectionNum);
+	}
+	this.MultiplexedConnections = connectionNum;
+    }
+	
+    /**
+     * @Title: getMultiplexedClient.
+     * @Description: the function is used to get the multiplexed transport of a shard.
+     * @param pool: the JedisSentinelPool of the shard.
+     * @return MultiplexedShardClient: the transport, null when the transport is disabled.
+     */
+    public MultiplexedShardClient getMultiplexedClient(JedisSentinelPool pool)
+    {
+	int connection_num = this.MultiplexedConnections;
+	if((connection_num == 0) || !(pool instanceof CacheShardPool))
+	{
+	    return null;
+	}
+	return ((CacheShardPool)pool).getMultiplexedClient(connection_num, this.SentinelPoolTimeout);
+    }
+	
+    /**
+     * @Title: isReplicaReads.
+     * @Description: the function is used to know the read-only commands go to the replicas or not.
+     * @return boolean: the replica reads are enabled or not.
+     */
+    public boolean isReplicaReads()
+    {
+	return this.ReplicaReads;
+    }
+	
+    /**
+     * @Title: setMaxReplicaLagBytes.
+     * @Description: the function is used to set the max replication lag of a replica which is read, from the next refresh.
+     * @param maxLagBytes: the max lag in bytes.
+     * @return none.
+     */
+    public void setMaxReplicaLagBytes(long maxLagBytes)
+    {
+	this.MaxReplicaLagBytes = maxLagBytes;
+    }
+	
+    /**
+     * @Title: refreshReplicas.
+     * @Description: the function which refreshes the replicas of all the shards of the current topology
+     *               (the old view is a prefix of the new view, so its shards are refreshed too).
+     * @return none.
+     */
+    private void refreshReplicas()
+    {
+	ShardTopology<JedisSentinelPool> topology = this.CacheTopology;
+	for(int i = 0; i < topology.getNewShardNum(); i++)
+	{
+	    JedisSentinelPool pool = topology.getShard(i);
+	    if(pool instanceof CacheShardPool)
+	    {
+		((CacheShardPool)pool).refreshReplicas(this.ReplicaPoolConfig, this.SentinelPoolTimeout, this.MaxReplicaLagBytes);
+	    }
+	}
+    }
+	
+    /**
+     * @Title: getMetrics.
+     * @Description: the function is used to get the latency histograms, the error counters & the pool gauges of each shard.
+     * @return LayerMetrics: the metrics of this layer.
+     */
+    public LayerMetrics getMetrics()
+    {
+	return this.Metrics;
+    }
+	
+    /**
+     * @Title: getKeyMigrator.
+     * @Description: the function is used to get the key migration engine, for the progress & the rate settings.
+     * @return CacheKeyMigrator: the key migration engine.
+     */
+    public CacheKeyMigrator getKeyMigrator()
+    {
+	return this.KeyMigrator;
+    }
+	
+    /**
+     * @Title: getPoolMaxTotal.
+     * @Description: the function is used to get the max connection number of the pool of each shard.
+     * @return int: the maxTotal of the pool config.
+     */
+    public int getPoolMaxTotal()
+    {
+	return this.PoolConfig.getMaxTotal();
+    }
+	
+    /**
+     * @Title: setPrewarmConnections.
+     * @Description: the function is used to change the number of the connections which are pre-warmed in each new pool.
+     * @param prewarmConnections: the connection number(at least 1 connection is always checked).
+     * @return none.
+     */
+    public void setPrewarmConnections(int prewarmConnections)
+    {
+	this.PrewarmConnections = prewarmConnections;
+    }
+	
+    /**
+     * @Title: setShardBuildTimeoutMillis.
+     * @Description: the function is used to change the max time to build the pools of one topology message.
+     * @param shardBuildTimeoutMillis: the time in milliseconds.
+     * @return none.
+     */
+    public void setShardBuildTimeoutMillis(long shardBuildTimeoutMillis)
+    {
+	this.ShardBuildTimeoutMillis = shardBuildTimeoutMillis;
+    }
+	
+    /**
+     * @Title: routeCacheClient.
+     * @Description: the function which is used to route a key hash to the JedisSentinelPool of one routing view.
+     *               (it reads the CacheTopology only once, so the shard numbers and the pools always come from the same snapshot).
+     * @param keyHash: the full-key hash of the ShardKeyHash.
+     * @param oldView: true to route with the old shard number, false to route with the new shard number.
+     * @return JedisSentinelPool: the Redis sentinel client, or null before the first topology message.
+     */
+    private JedisSentinelPool routeCacheClient(long keyHash, boolean oldView)
+    {
+	ShardTopology<JedisSentinelPool> topology = this.CacheTopology;
+	int shard_num = oldView ? topology.getOldShardNum() : topology.getNewShardNum();
+	if(shard_num == 0)
+	{
+	    return null;
+	}
+	return topology.getShard(this.RoutingStrategy.getShardIndex(keyHash, shard_num));
+    }
+	
+    /**
+     * @Title: getOldShardedCacheClient.
+     * @Description: the function which is used to fetch the JedisSentinelPool routed by the RoutingStrategy with the old shard number.
+     * @param key: int value which is indicates the value.
+     * @return JedisSentinelPool: the Redis sentinel client which is used to access the Redis sentinel.
+     */
+    public JedisSentinelPool getOldShardedCacheClient(int key)
+    {
+        return this.routeCacheClient(ShardKeyHash.hash(key), true);
+    }
+	
+    /**
+     * @Title: getNewShardedCacheClient.
+     * @Description: the function which is used to fetch the JedisSentinelPool routed by the RoutingStrategy with the new shard number.
+     * @param key: int value which is indicates the value.
+     * @return JedisSentinelPool: the Redis sentinel client which is used to access the Redis sentinel.
+     */
+    public JedisSentinelPool getNewShardedCacheClient(int key)
+    {
+	return this.routeCacheClient(ShardKeyHash.hash(key), false);
+    }
+	
+    /**
+     * @Title: getOldShardedCacheClient
+     * @Description: the function which is used to fetch the JedisSentinelPool routed by the RoutingStrategy with the old shard number.
+     * @param key:long value which is indicates the value.
+     * @return JedisSentinelPool: the Redis sentinel client which is used to access the Redis sentinel.
+     */
+    public JedisSentinelPool getOldShardedCacheClient(long key)
+    {
+        return this.routeCacheClient(ShardKeyHash.hash(key), true);
+    }
+	
+    /**
+     * @Title: getNewShardedCacheClient.
+     * @Description: the function which is used to fetch the JedisSentinelPool routed by the RoutingStrategy with the new shard number.
+     * @param key:long value which is indicates the value.
+     * @return JedisSentinelPool: the Redis sentinel client which is used to access the Redis sentinel.
+     */
+    public JedisSentinelPool getNewShardedCacheClient(long key)
+    {
+	return this.routeCacheClient(ShardKeyHash.hash(key), false);
+    }
+	
+    /**
+     * @Title: getOldShardedCacheClient.
+     * @Description: the function which is used to fetch the JedisSentinelPool routed by the RoutingStrategy with the old shard number.
+     * @param key: String value which is indicates the value.
+     * @return JedisSentinelPool: the Redis sentinel client which is used to access the Redis sentinel.
+     */
+    public JedisSentinelPool getOldShardedCacheClient(String key)
+    {
+	return this.routeCacheClient(ShardKeyHash.routingHash(key), true);
+    }
+	
+    /**
      * @Title: getNewShardedCacheClient.
-     * @Description: the function which is used to fetch the JedisSentinelPool mod by the CACHE_SERVER_NUM_NEW.
+     * @Description: the function which is used to fetch the JedisSentinelPool routed by the RoutingStrategy with the new shard number.
      * @param key: String value which is indicates the value.
      * @return JedisSentinelPool: the Redis sentinel client which is used to access the Redis sentinel.
      */
     public JedisSentinelPool getNewShardedCacheClient(String key)
     {
-	return this.CacheShardingMap.get((int)(key.toCharArray()[key.length()-1]) % this.CACHE_SERVER_NUM_NEW);
+	return this.routeCacheClient(ShardKeyHash.routingHash(key), false);
+    }
+	
+    /**
+     * @Title: getShardOfKeys.
+     * @Description: the function which is used to find the one shard which owns all the keys, for a transaction or a script.
+     *               the keys must have the same owner(use a hash tag like "{user:42}:profile" & "{user:42}:cart", see ShardKeyHash),
+     *               and during an expansion their owner must not change, or the migrator could move them between the commands.
+     * @param keys: the keys of the transaction or the script.
+     * @return JedisSentinelPool: the shard which owns all the keys.
+     * @throws IllegalArgumentException: when there is no key, or the keys belong to different shards.
+     * @throws IllegalStateException: when there is no shard yet, or the keys are being relocated by an expansion.
+     */
+    public JedisSentinelPool getShardOfKeys(List<String> keys)
+    {
+	if(keys.isEmpty())
+	{
+	    throw new IllegalArgumentException("at least one key is needed to find the shard");
+	}
+	ShardTopology<JedisSentinelPool> topology = this.CacheTopology;
+	int new_num = topology.getNewShardNum();
+	if(new_num == 0)
+	{
+	    throw new IllegalStateException("the cache layer has no shard yet");
+	}
+	int shard = -1;
+	for(String key : keys)
+	{
+	    long key_hash = ShardKeyHash.routingHash(key);
+	    int owner = this.RoutingStrategy.getShardIndex(key_hash, new_num);
+	    if(shard < 0)
+	    {
+		shard = owner;
+	    }
+	    else if(owner != shard)
+	    {
+		throw new IllegalArgumentException("the keys belong to the shards " + shard + " and " + owner
+						   + ", use the same hash tag like {user:42} to co-locate them: " + keys);
+	    }
+	    if(topology.isExpanding() && (this.RoutingStrategy.getShardIndex(key_hash, topology.getOldShardNum()) != owner))
+	    {
+		throw new IllegalStateException("the key is being relocated by the expansion: " + key);
+	    }
+	}
+	return topology.getShard(shard);
+    }
+	
+    /**
+     * @Title: executeOnShard.
+     * @Description: the function is used to run one operation on the shard which owns all the keys(see getShardOfKeys),
+     *               such as a WATCH/MULTI/EXEC or a script which reads & writes several keys at once.
+     * @param keys: the keys which are touched by the operation.
+     * @param callback: the operation, it must only touch the keys.
+     * @return T: the result of the operation.
+     */
+    public <T> T executeOnShard(List<String> keys, CacheCallback<T> callback)
+    {
+	return this.execute(this.getShardOfKeys(keys), "shard", callback);
+    }
+	
+    /**
+     * @Title: multi.
+     * @Description: the function is used to run the commands of a transaction in one MULTI/EXEC on the shard which owns all the keys.
+     * @param keys: the keys which are touched by the transaction.
+     * @param transaction: the commands of the transaction.
+     * @return List<Object>: the replies of the commands, null when the transaction was aborted by a WATCH.
+     */
+    public List<Object> multi(List<String> keys, final CacheTransaction transaction)
+    {
+	return this.execute(this.getShardOfKeys(keys), "multi", new CacheCallback<List<Object>>()
+	{
+	    @Override
+	    public List<Object> doInCache(Jedis jedis)
+	    {
+		Transaction tx = jedis.multi();
+		try
+		{
+		    transaction.queue(tx);
+		}
+		catch(RuntimeException e)
+		{
+		    tx.discard();
+		    throw e;
+		}
+		return tx.exec();
+	    }
+	});
+    }
+	
+    /**
+     * @Title: eval.
+     * @Description: the function is used to run a Lua script on the shard which owns all the keys.
+     * @param script: the Lua script.
+     * @param keys: the keys of the script(KEYS), the script must not touch any other key.
+     * @param args: the arguments of the script(ARGV).
+     * @return Object: the reply of the script.
+     */
+    public Object eval(final String script, final List<String> keys, final List<String> args)
+    {
+	return this.execute(this.getShardOfKeys(keys), "eval", new CacheCallback<Object>()
+	{
+	    @Override
+	    public Object doInCache(Jedis jedis)
+	    {
+		return jedis.eval(script, keys, args);
+	    }
+	});
+    }
+	
+    /**
+     * @Title: getCodecs.
+     * @Description: the function is used to get the document codecs, to register a codec or change the write version.
+     * @return ValueCodecs: the document codecs.
+     */
+    public ValueCodecs getCodecs()
+    {
+	return this.Codecs;
+    }
+	
+    /**
+     * @Title: keyBytes.
+     * @Description: the function is used to encode a key for the binary commands of Jedis.
+     * @param key: the cache key.
+     * @return byte[]: the UTF-8 bytes of the key.
+     */
+    static byte[] keyBytes(String key)
+    {
+	return key.getBytes(UTF8);
+    }
+	
+    /**
+     * @Title: getDocument.
+     * @Description: the function is used to read a document which was stored by setDocument(or as JSON before the codecs).
+     * @param key: the cache key.
+     * @return DBObject: the document, null when the key does not exist.
+     */
+    public DBObject getDocument(String key)
+    {
+	final byte[] raw_key = keyBytes(key);
+	byte[] value = this.executeRead(this.getNewShardedCacheClient(key), "get", new CacheCallback<byte[]>()
+	{
+	    @Override
+	    public byte[] doInCache(Jedis jedis)
+	    {
+		return jedis.get(raw_key);
+	    }
+	});
+	return this.Codecs.decode(value);
+    }
+	
+    /**
+     * @Title: setDocument.
+     * @Description: the function is used to store a document as a binary value of the current write codec.
+     * @param key: the cache key.
+     * @param ttlSeconds: the ttl of the key, <= 0 means no ttl.
+     * @param doc: the document.
+     * @return none.
+     */
+    public void setDocument(String key, final int ttlSeconds, DBObject doc)
+    {
+	final byte[] raw_key = keyBytes(key);
+	final byte[] value = this.Codecs.encode(doc);
+	this.execute(this.getNewShardedCacheClient(key), "set", new CacheCallback<String>()
+	{
+	    @Override
+	    public String doInCache(Jedis jedis)
+	    {
+		return (ttlSeconds > 0) ? jedis.setex(raw_key, ttlSeconds, value) : jedis.set(raw_key, value);
+	    }
+	});
+    }
+	
+    /**
+     * @ClassName: BatchOperation.
+     * @Description: the operation of one key in a multi-key function, it is queued into the pipeline of the key's shard.
+     * @param <T>: the result type of the operation.
+     */
+    private interface BatchOperation<T>
+    {
+	/**
+	 * @Title: queue.
+	 * @Description: the function which queues the command of one key into the pipeline.
+	 * @param pipe: the pipeline of the key's shard.
+	 * @param index: the index of the key in the caller's key list.
+	 * @return Response<T>: the pending reply.
+	 */
+	public Response<T> queue(Pipeline pipe, int index);
+	
+	/**
+	 * @Title: command.
+	 * @Description: the function which builds the same command for the multiplexed transport.
+	 * @param index: the index of the key in the caller's key list.
+	 * @return String[]: the command name & the arguments.
+	 */
+	public String[] command(int index);
+    }
+	
+    /**
+     * @Title: mget.
+     * @Description: the function which is used to get the values of many keys by one pipeline per shard.
+     * @param keys: the keys.
+     * @return CacheBatchResult<String>: the values in the order of the keys, null for the missing keys.
+     */
+    public CacheBatchResult<String> mget(final List<String> keys)
+    {
+	return this.executeBatch(keys, true, new BatchOperation<String>()
+	{
+	    @Override
+	    public Response<String> queue(Pipeline pipe, int index)
+	    {
+		return pipe.get(keys.get(index));
+	    }
+	    
+	    @Override
+	    public String[] command(int index)
+	    {
+		return new String[] { "GET", keys.get(index) };
+	    }
+	});
+    }
+	
+    /**
+     * @Title: mset.
+     * @Description: the function which is used to set the values of many keys by one pipeline per shard.
+     * @param keys: the keys.
+     * @param values: the values, in the same order as the keys.
+     * @param ttlSeconds: the ttl of the keys, <= 0 means no ttl.
+     *               (the near cache values of the keys are invalidated after the pipelines).
+     * @return CacheBatchResult<String>: the reply("OK") of each key.
+     */
+    public CacheBatchResult<String> mset(final List<String> keys, final List<String> values, final int ttlSeconds)
+    {
+	if(keys.size() != values.size())
+	{
+	    throw new IllegalArgumentException("keys and values must have the same size: " + keys.size() + " != " + values.size());
+	}
+	CacheBatchResult<String> result = this.executeBatch(keys, false, new BatchOperation<String>()
+	{
+	    @Override
+	    public Response<String> queue(Pipeline pipe, int index)
+	    {
+		if(ttlSeconds > 0)
+		{
+		    return pipe.setex(keys.get(index), ttlSeconds, values.get(index));
+		}
+		return pipe.set(keys.get(index), values.get(index));
+	    }
+	    
+	    @Override
+	    public String[] command(int index)
+	    {
+		if(ttlSeconds > 0)
+		{
+		    return new String[] { "SETEX", keys.get(index), Integer.toString(ttlSeconds), values.get(index) };
+		}
+		return new String[] { "SET", keys.get(index), values.get(index) };
+	    }
+	});
+	this.invalidateNearCache(keys);
+	return result;
+    }
+	
+    /**
+     * @Title: mdel.
+     * @Description: the function which is used to delete many keys by one pipeline per shard.
+     *               (the near cache values of the keys are invalidated after the pipelines).
+     * @param keys: the keys.
+     * @return CacheBatchResult<Long>: the deleted number(0 or 1) of each key.
+     */
+    public CacheBatchResult<Long> mdel(final List<String> keys)
+    {
+	CacheBatchResult<Long> result = this.executeBatch(keys, false, new BatchOperation<Long>()
+	{
+	    @Override
+	    public Response<Long> queue(Pipeline pipe, int index)
+	    {
+		return pipe.del(keys.get(index));
+	    }
+	    
+	    @Override
+	    public String[] command(int index)
+	    {
+		return new String[] { "DEL", keys.get(index) };
+	    }
+	});
+	this.invalidateNearCache(keys);
+	return result;
+    }
+	
+    /**
+     * @Title: invalidateNearCache.
+     * @Description: the function which drops the near cache values of the keys of a batch write, like the single key writes.
+     *               (every key is invalidated, a failed pipeline may still have applied some of its writes).
+     * @param keys: the cache keys.
+     * @return none.
+     */
+    private void invalidateNearCache(List<String> keys)
+    {
+	for(int i = 0; i < keys.size(); i++)
+	{
+	    this.invalidateNearCache(keys.get(i));
+	}
+    }
+	
+    /**
+     * @Title: executeBatch.
+     * @Description: the function which groups the keys by their new owner shard, runs one pipeline per shard
+     *               (the first group on the calling thread, the others on the BatchExecutor), and puts the replies back
+     *               in the order of the keys. a failing shard only fails its own keys.
+     * @param keys: the keys.
+     * @param readOnly: the operation only reads, so the pipelines may run on the replicas.
+     * @param operation: the operation of each key.
+     * @return CacheBatchResult<T>: the result of each key.
+     */
+    private <T> CacheBatchResult<T> executeBatch(List<String> keys, final boolean readOnly, final BatchOperation<T> operation)
+    {
+	final CacheBatchResult<T> result = new CacheBatchResult<T>(keys);
+	ShardTopology<JedisSentinelPool> topology = this.CacheTopology;
+	int shard_num = topology.getNewShardNum();
+	if(shard_num == 0)
+	{
+	    IllegalStateException error = new IllegalStateException("the cache layer has no shard yet");
+	    for(int i = 0; i < keys.size(); i++)
+	    {
+		result.setError(i, error);
+	    }
+	    return result;
+	}
+
+	if(this.MultiplexedConnections > 0)
+	{
+	    this.sendBatch(keys, topology, operation, result);
+	    return result;
+	}
+
+	//group the key indexes by the shard index.
+	int[] shard_of_key = new int[keys.size()];
+	int[] group_size = new int[shard_num];
+	for(int i = 0; i < keys.size(); i++)
+	{
+	    shard_of_key[i] = this.RoutingStrategy.getShardIndex(ShardKeyHash.routingHash(keys.get(i)), shard_num);
+	    group_size[shard_of_key[i]] += 1;
+	}
+	int[][] groups = new int[shard_num][];
+	for(int shard = 0; shard < shard_num; shard++)
+	{
+	    groups[shard] = new int[group_size[shard]];
+	    group_size[shard] = 0;
+	}
+	for(int i = 0; i < keys.size(); i++)
+	{
+	    int shard = shard_of_key[i];
+	    groups[shard][group_size[shard]++] = i;
+	}
+
+	//run the pipelines, the first non-empty group runs on this thread.
+	List<Future<?>> futures = new ArrayList<Future<?>>();
+	Callable<Void> local = null;
+	for(int shard = 0; shard < shard_num; shard++)
+	{
+	    if(groups[shard].length == 0)
+	    {
+		continue;
+	    }
+	    final JedisSentinelPool pool = topology.getShard(shard);
+	    final int[] indexes = groups[shard];
+	    Callable<Void> task = new Callable<Void>()
+	    {
+		@Override
+		public Void call()
+		{
+		    runPipeline(pool, indexes, readOnly, operation, result);
+		    return null;
+		}
+	    };
+	    if(local == null)
+	    {
+		local = task;
+	    }
+	    else
+	    {
+		futures.add(this.BatchExecutor.submit(task));
+	    }
+	}
+	if(local != null)
+	{
+	    try
+	    {
+		local.call();
+	    }
+	    catch(Exception e)
+	    {
+		//runPipeline never throws, the errors are recorded per key.
+	    }
+	}
+	for(Future<?> future : futures)
+	{
+	    try
+	    {
+		future.get();
+	    }
+	    catch(InterruptedException e)
+	    {
+		Thread.currentThread().interrupt();
+		break;
+	    }
+	    catch(ExecutionException e)
+	    {
+		//runPipeline never throws, the errors are recorded per key.
+	    }
+	}
+	return result;
+    }
+	
+    /**
+     * @Title: sendBatch.
+     * @Description: the function which sends the command of each key over the multiplexed transport of its shard,
+     *               all the commands are sent before the first reply is awaited, so the shards work at the same time
+     *               without the BatchExecutor. a failing shard only fails its own keys.
+     * @param keys: the keys.
+     * @param topology: the routing snapshot.
+     * @param operation: the operation of each key.
+     * @param result: the result of the batch.
+     * @return none.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> void sendBatch(List<String> keys, ShardTopology<JedisSentinelPool> topology, BatchOperation<T> operation,
+			       CacheBatchResult<T> result)
+    {
+	int shard_num = topology.getNewShardNum();
+	List<CompletableFuture<Object>> replies = new ArrayList<CompletableFuture<Object>>(keys.size());
+	for(int i = 0; i < keys.size(); i++)
+	{
+	    JedisSentinelPool pool = topology.getShard(this.RoutingStrategy.getShardIndex(ShardKeyHash.routingHash(keys.get(i)), shard_num));
+	    MultiplexedShardClient client = this.getMultiplexedClient(pool);
+	    if(client == null)
+	    {
+		//the transport was disabled while the batch was routed.
+		CompletableFuture<Object> failed = new CompletableFuture<Object>();
+		failed.completeExceptionally(new IllegalStateException("the multiplexed transport is disabled"));
+		replies.add(failed);
+		continue;
+	    }
+	    replies.add(client.send(operation.command(i)));
+	}
+	for(int i = 0; i < keys.size(); i++)
+	{
+	    try
+	    {
+		result.setValue(i, (T)MultiplexedShardClient.await(replies.get(i), this.SentinelPoolTimeout));
+	    }
+	    catch(RuntimeException e)
+	    {
+		result.setError(i, e);
+	    }
+	}
+    }
+	
+    /**
+     * @Title: runPipeline.
+     * @Description: the function which runs the operations of one shard's keys in one pipeline and records the result of each key.
+     * @param pool: the shard.
+     * @param indexes: the indexes of the keys of this shard.
+     * @param readOnly: the operation only reads, so the pipeline may run on a replica.
+     * @param operation: the operation of each key.
+     * @param result: the result of the batch.
+     * @return none.
+     */
+    private <T> void runPipeline(JedisSentinelPool pool, final int[] indexes, boolean readOnly, final BatchOperation<T> operation,
+				 CacheBatchResult<T> result)
+    {
+	CacheCallback<List<Response<T>>> pipeline = new CacheCallback<List<Response<T>>>()
+	{
+	    @Override
+	    public List<Response<T>> doInCache(Jedis jedis)
+	    {
+		Pipeline pipe = jedis.pipelined();
+		List<Response<T>> queued = new ArrayList<Response<T>>(indexes.length);
+		for(int i = 0; i < indexes.length; i++)
+		{
+		    queued.add(operation.queue(pipe, indexes[i]));
+		}
+		pipe.sync();
+		return queued;
+	    }
+	};
+	List<Response<T>> responses;
+	try
+	{
+	    responses = readOnly ? this.executeRead(pool, "pipeline", pipeline) : this.execute(pool, "pipeline", pipeline);
+	}
+	catch(RuntimeException e)
+	{
+	    //the whole shard failed.
+	    for(int i = 0; i < indexes.length; i++)
+	    {
+		result.setError(indexes[i], e);
+	    }
+	    return;
+	}
+
+	for(int i = 0; i < indexes.length; i++)
+	{
+	    try
+	    {
+		result.setValue(indexes[i], responses.get(i).get());
+	    }
+	    catch(RuntimeException e)
+	    {
+		//the command of this key failed, such as a WRONGTYPE error.
+		result.setError(indexes[i], e);
+	    }
+	}
     }
 	
     /**
@@ -285,15 +1816,94 @@ public class CacheLayerClient
      * @param serverinfo_2: the third redis server node ip & port information in the redis sentinel.
      * @param channel: the channel that subscribed by the CacheLayerClient.
      * @return none.
+     *         (it routes by the ModuloRoutingStrategy like the clients before the pluggable strategies: the int keys keep
+     *         their "key % N" placement, the long & String keys are placed by their full-key hash of ShardKeyHash instead of
+     *         their low 8 bits or last char, so the long & String keys which the earlier clients stored are not on their shards.
+     *         pass a JumpHashRoutingStrategy to the strategy constructor to opt in the consistent routing).
      */
     public CacheLayerClient(String serverinfo_0, String serverinfo_1, String serverinfo_2, String channel)
     {
+	this(serverinfo_0, serverinfo_1, serverinfo_2, channel, new ModuloRoutingStrategy());
+    }
+	
+    /**
+     * @Title: CacheLayerClient.
+     * @Description: the construct function of the CacheLayerClient class with a specific routing strategy.
+     * @param serverinfo_0: the first redis server node ip & port information in the redis sentinel.
+     * @param serverinfo_1: the second redis server node ip & port information in the redis sentinel.
+     * @param serverinfo_2: the third redis server node ip & port information in the redis sentinel.
+     * @param channel: the channel that subscribed by the CacheLayerClient.
+     * @param strategy: the strategy which is used to map a key to the shard.
+     *        (the strategy is fed with the full-key hash of ShardKeyHash).
+     * @return none.
+     */
+    public CacheLayerClient(String serverinfo_0, String serverinfo_1, String serverinfo_2, String channel, ShardRoutingStrategy strategy)
+    {
+	this(TopologyService.getInstance(serverinfo_0, serverinfo_1, serverinfo_2), channel, strategy);
+    }
+	
+    /**
+     * @Title: CacheLayerClient.
+     * @Description: the construct function of the CacheLayerClient class on a specific topology service.
+     *               (the layer clients of one config server share its service, see TopologyService.getInstance).
+     * @param topologyService: the topology service which delivers the messages of the channel.
+     * @param channel: the channel that subscribed by the CacheLayerClient.
+     * @param strategy: the strategy which is used to map a key to the shard.
+     * @return none.
+     */
+    public CacheLayerClient(TopologyService topologyService, String channel, ShardRoutingStrategy strategy)
+    {
+	this.RoutingStrategy = strategy;
+	this.topologyService = topologyService;
+	this.configdb = topologyService.getConfigDB();
 	this.PoolConfig = new GenericObjectPoolConfig();
 	this.PoolConfig.setMaxIdle(25);
 	this.PoolConfig.setMaxTotal(250);
 	this.PoolConfig.setMaxWaitMillis(10000);
-	this.ConfigDBInit(serverinfo_0, serverinfo_1, serverinfo_2);
-    	this.CacheShardingMap = new HashMap<Integer, JedisSentinelPool>();
-    	this.Subscriber(channel);
+	this.PoolConfig.setMinIdle(AdaptivePoolController.DEFAULT_MIN_IDLE);
+	this.PoolConfig.setSoftMinEvictableIdleTimeMillis(IDLE_EVICT_MILLIS);
+	this.PoolConfig.setTimeBetweenEvictionRunsMillis(EVICTION_RUN_MILLIS);
+	this.PoolConfig.setNumTestsPerEvictionRun(-1);
+	this.ReplicaPoolConfig = new GenericObjectPoolConfig();
+	this.ReplicaPoolConfig.setMaxIdle(8);
+	this.ReplicaPoolConfig.setMaxTotal(64);
+	this.ReplicaPoolConfig.setMaxWaitMillis(100);
+	this.ReplicaPoolConfig.setSoftMinEvictableIdleTimeMillis(IDLE_EVICT_MILLIS);
+	this.ReplicaPoolConfig.setTimeBetweenEvictionRunsMillis(EVICTION_RUN_MILLIS);
+	this.ReplicaPoolConfig.setNumTestsPerEvictionRun(-1);
+	this.KeyMigrator = new CacheKeyMigrator(this, this.configdb, DEFAULT_MIGRATION_KEYS_PER_SECOND);
+	this.BatchExecutor = Executors.newFixedThreadPool(BATCH_THREAD_NUM, new ThreadFactory()
+	{
+	    @Override
+	    public Thread newThread(Runnable r)
+	    {
+		Thread thread = new Thread(r, "cacheBatchThread");
+		thread.setDaemon(true);
+		return thread;
+	    }
+	});
+	this.TopologyChannel = channel;
+	this.SnapshotFile = TopologySnapshotFile.forChannel(channel);
+	this.Subscriber(channel);
+	this.NearCacheSubscriber(channel + NEAR_CACHE_CHANNEL_SUFFIX);
+	this.bootstrapTopology();
+	this.PoolController = new AdaptivePoolController(this);
+	this.PoolController.start();
+    }
+	
+    /**
+     * @Title: CacheLayerClient.
+     * @Description: the construct function of a detached CacheLayerClient which is not subscribed to any channel,
+     *               it routes the keys over a topology which is given by the caller(it only exists for the JMH ShardingBenchmark
+     *               of the benchmark source set and the tests of the test source set, which share this package, see pom.xml).
+     * @param strategy: the strategy which is used to map a key to the shard.
+     * @param topology: the routing snapshot.
+     * @return none.
+     */
+    CacheLayerClient(ShardRoutingStrategy strategy, ShardTopology<JedisSentinelPool> topology)
+    {
+	this.RoutingStrategy = strategy;
+	this.CacheTopology = topology;
+	this.CacheInitOK = (topology.getNewShardNum() > 0);
     }
 }
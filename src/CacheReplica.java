@@ -0,0 +1,151 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: CacheReplica.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: One Redis replica of a cache shard, with its read pool and its read latency.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of CacheReplica was written.
+ */
+//package name.
+package generaldbplatform;
+
+//class import for java utilities.
+import java.util.concurrent.atomic.AtomicLong;
+
+//class import for jedis client.
+import redis.clients.jedis.JedisPool;
+
+/**
+ * @ClassName: CacheReplica.
+ * @Description: this class holds the JedisPool of one replica which the sentinels reported for a shard.
+ *               the read latency is an exponentially weighted moving average(EWMA) of the reads, the shard pool sends a read
+ *               to the faster one of 2 random healthy replicas. a replica is unhealthy when its replication lags behind
+ *               the master, its link to the master is down, or a read on it failed(until the next refresh checks it again).
+ */
+public class CacheReplica
+{
+    /**
+     * @FieldName: EWMA_WEIGHT.
+     * @Description: the weight of the latest read in the moving average.
+     */
+    private static final double EWMA_WEIGHT = 0.2;
+
+    /**
+     * @FieldName: address & pool.
+     * @Description: the "ip:port" of the replica & its connection pool.
+     */
+    private final String address;
+    private final JedisPool pool;
+
+    /**
+     * @FieldName: latencyMicros & healthy & lagBytes.
+     * @Description: the moving average of the read latency, the replica could be read or not, and the replication lag.
+     */
+    private volatile double latencyMicros = 0;
+    private volatile boolean healthy = true;
+    private volatile long lagBytes = 0;
+
+    /**
+     * @FieldName: reads & failures.
+     * @Description: the reads which were sent to the replica, and the ones among them which failed.
+     */
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    /**
+     * @Title: CacheReplica.
+     * @Description: the construct function of the CacheReplica class.
+     * @param address: the "ip:port" of the replica.
+     * @param pool: the connection pool of the replica.
+     * @return none.
+     */
+    public CacheReplica(String address, JedisPool pool)
+    {
+	this.address = address;
+	this.pool = pool;
+    }
+
+    /**
+     * @Title: recordRead.
+     * @Description: the function which records a successful read in the moving average.
+     * @param micros: the read latency in microseconds.
+     * @return none.
+     */
+    void recordRead(long micros)
+    {
+	this.reads.incrementAndGet();
+	double current = this.latencyMicros;
+	this.latencyMicros = (current == 0) ? micros : (current * (1 - EWMA_WEIGHT) + micros * EWMA_WEIGHT);
+    }
+
+    /**
+     * @Title: recordFailure.
+     * @Description: the function which marks the replica unhealthy after a failed read.
+     * @return none.
+     */
+    void recordFailure()
+    {
+	this.reads.incrementAndGet();
+	this.failures.incrementAndGet();
+	this.healthy = false;
+    }
+
+    /**
+     * @Title: setState.
+     * @Description: the function which is used by the refresh to set the replication state.
+     * @param healthy: the replica could be read or not.
+     * @param lagBytes: the replication lag in bytes.
+     * @return none.
+     */
+    void setState(boolean healthy, long lagBytes)
+    {
+	this.healthy = healthy;
+	this.lagBytes = lagBytes;
+    }
+
+    public String getAddress()
+    {
+	return this.address;
+    }
+
+    public JedisPool getPool()
+    {
+	return this.pool;
+    }
+
+    public double getLatencyMicros()
+    {
+	return this.latencyMicros;
+    }
+
+    public boolean isHealthy()
+    {
+	return this.healthy;
+    }
+
+    public long getLagBytes()
+    {
+	return this.lagBytes;
+    }
+
+    public long getReads()
+    {
+	return this.reads.get();
+    }
+
+    public long getFailures()
+    {
+	return this.failures.get();
+    }
+
+    @Override
+    public String toString()
+    {
+	return String.format("%s healthy=%s lag=%dB latency=%.0fus reads=%d failures=%d",
+			     this.address, this.healthy, this.lagBytes, this.latencyMicros, this.reads.get(), this.failures.get());
+    }
+}
@@ -0,0 +1,398 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: CacheShardPool.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The JedisSentinelPool of one cache shard which carries the metrics of the shard.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of CacheShardPool was written.
+ *    2.2026-10-17 Add the resize function for the AdaptivePoolController.
+ *    3.2026-10-17 Create the multiplexed transport under its own lock, a slow refreshReplicas does not block it.
+ */
+//package name.
+package generaldbplatform;
+
+//class import for java utilities.
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+//class import for jedis client.
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisSentinelPool;
+import redis.clients.jedis.exceptions.JedisException;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+
+/**
+ * @ClassName: CacheShardPool.
+ * @Description: this class is the JedisSentinelPool which CacheLayerClient creates for each shard,
+ *               it knows its shard index and exports its active/idle/waiter counts to the ShardMetrics of the shard.
+ *               it also keeps a read pool for each replica of the master which the sentinels report, refreshReplicas() must be
+ *               called periodically to follow the replicas & their replication lag(CacheLayerClient does it when the replica
+ *               reads are enabled).
+ */
+public class CacheShardPool extends JedisSentinelPool implements ShardMetrics.PoolStats
+{
+    /**
+     * @FieldName: shardIndex & metrics.
+     * @Description: the shard index & the metrics of the shard.
+     */
+    private final int shardIndex;
+    private final ShardMetrics metrics;
+
+    /**
+     * @FieldName: masterName & sentinels.
+     * @Description: the master name of the shard & the sentinel addresses, which are asked for the replicas.
+     */
+    private final String masterName;
+    private final Set<String> sentinels;
+
+    /**
+     * @FieldName: replicas.
+     * @Description: the replicas of the master, the list is replaced by the refresh and never changed in place.
+     */
+    private volatile List<CacheReplica> replicas = Collections.emptyList();
+
+    /**
+     * @FieldName: multiplexed.
+     * @Description: the multiplexed transport of the shard, it is created by the first getMultiplexedClient
+     *               under multiplexedLock(not the monitor of the pool, which refreshReplicas holds while it talks to the sentinels).
+     */
+    private volatile MultiplexedShardClient multiplexed;
+    private final Object multiplexedLock = new Object();
+
+    /**
+     * @Title: CacheShardPool.
+     * @Description: the construct function of the CacheShardPool class.
+     * @param masterName: the master name of the shard in the sentinels.
+     * @param sentinels: the sentinel addresses.
+     * @param poolConfig: the pool config.
+     * @param timeout: the connection & socket timeout.
+     * @param shardIndex: the shard index.
+     * @param metrics: the metrics of the shard.
+     * @return none.
+     */
+    public CacheShardPool(String masterName, Set<String> sentinels, GenericObjectPoolConfig poolConfig, int timeout,
+			  int shardIndex, ShardMetrics metrics)
+    {
+	super(masterName, sentinels, poolConfig, timeout);
+	this.masterName = masterName;
+	this.sentinels = sentinels;
+	this.shardIndex = shardIndex;
+	this.metrics = metrics;
+	metrics.setPoolStats(this);
+    }
+
+    /**
+     * @Title: getShardIndex.
+     * @Description: the function is used to get the shard index of the pool.
+     * @return int: the shard index.
+     */
+    public int getShardIndex()
+    {
+	return this.shardIndex;
+    }
+
+    /**
+     * @Title: getMetrics.
+     * @Description: the function is used to get the metrics of the shard.
+     * @return ShardMetrics: the metrics.
+     */
+    public ShardMetrics getMetrics()
+    {
+	return this.metrics;
+    }
+
+    /**
+     * @Title: getMaxTotal.
+     * @Description: the function is used to get the current max connection number of the pool.
+     * @return int: the max connection number.
+     */
+    public int getMaxTotal()
+    {
+	return this.internalPool.getMaxTotal();
+    }
+
+    /**
+     * @Title: getMaxIdle.
+     * @Description: the function is used to get the current max idle connection number of the pool.
+     * @return int: the max idle connection number.
+     */
+    public int getMaxIdle()
+    {
+	return this.internalPool.getMaxIdle();
+    }
+
+    /**
+     * @Title: resize.
+     * @Description: the function is used to change the size of the pool at runtime, the borrowed connections are not touched:
+     *               a smaller pool closes the extra connections when they are returned, a larger pool wakes up its waiters.
+     *               (the sentinel failover rebuilds the pool with the original config, the controller resizes it again).
+     * @param maxTotal: the max connection number.
+     * @param maxIdle: the max idle connection number.
+     * @return none.
+     */
+    public void resize(int maxTotal, int maxIdle)
+    {
+	this.internalPool.setMaxTotal(maxTotal);
+	this.internalPool.setMaxIdle(maxIdle);
+    }
+
+    /**
+     * @Title: getReplicas.
+     * @Description: the function is used to get the replicas which were found by the last refresh.
+     * @return List<CacheReplica>: the replicas.
+     */
+    public List<CacheReplica> getReplicas()
+    {
+	return this.replicas;
+    }
+
+    /**
+     * @Title: chooseReplica.
+     * @Description: the function is used to choose the replica of a read, it takes 2 random healthy replicas and returns
+     *               the one with the lower read latency(the power of two choices), so a slow replica gets less reads
+     *               without all the clients rushing to the same fastest one.
+     * @return CacheReplica: the replica, null when no replica is healthy(the read goes to the master).
+     */
+    public CacheReplica chooseReplica()
+    {
+	List<CacheReplica> current = this.replicas;
+	List<CacheReplica> healthy = new ArrayList<CacheReplica>(current.size());
+	for(CacheReplica replica : current)
+	{
+	    if(replica.isHealthy())
+	    {
+		healthy.add(replica);
+	    }
+	}
+	if(healthy.isEmpty())
+	{
+	    return null;
+	}
+	ThreadLocalRandom random = ThreadLocalRandom.current();
+	CacheReplica first = healthy.get(random.nextInt(healthy.size()));
+	if(healthy.size() == 1)
+	{
+	    return first;
+	}
+	CacheReplica second = healthy.get(random.nextInt(healthy.size()));
+	return (second.getLatencyMicros() < first.getLatencyMicros()) ? second : first;
+    }
+
+    /**
+     * @Title: refreshReplicas.
+     * @Description: the function is used to ask the sentinels for the replicas of the master, it opens the pools of the new
+     *               replicas, closes the pools of the gone ones, and marks a replica unhealthy when the sentinels see it down,
+     *               its link to the master is down, or its replication offset lags behind the master by more than maxLagBytes.
+     *               when no sentinel answers, the known replicas are kept but marked unhealthy.
+     * @param poolConfig: the pool config of a replica pool.
+     * @param timeout: the connection & socket timeout.
+     * @param maxLagBytes: the max replication lag of a healthy replica.
+     * @return none.
+     */
+    public synchronized void refreshReplicas(GenericObjectPoolConfig poolConfig, int timeout, long maxLagBytes)
+    {
+	List<Map<String, String>> reported = this.querySentinels();
+	if(reported == null)
+	{
+	    for(CacheReplica replica : this.replicas)
+	    {
+		replica.setState(false, replica.getLagBytes());
+	    }
+	    return;
+	}
+	long masterOffset = this.masterReplicationOffset();
+	HostAndPort master = this.getCurrentHostMaster();
+	String masterAddress = (master == null) ? null : master.getHost() + ":" + master.getPort();
+
+	Map<String, CacheReplica> known = new HashMap<String, CacheReplica>();
+	for(CacheReplica replica : this.replicas)
+	{
+	    known.put(replica.getAddress(), replica);
+	}
+	List<CacheReplica> refreshed = new ArrayList<CacheReplica>(reported.size());
+	Set<String> seen = new HashSet<String>();
+	for(Map<String, String> info : reported)
+	{
+	    String host = info.get("ip");
+	    String port = info.get("port");
+	    if((host == null) || (port == null))
+	    {
+		continue;
+	    }
+	    String address = host + ":" + port;
+	    //after a failover the old master could be listed until the sentinels forget it.
+	    if(address.equals(masterAddress) || !seen.add(address))
+	    {
+		continue;
+	    }
+	    CacheReplica replica = known.remove(address);
+	    if(replica == null)
+	    {
+		replica = new CacheReplica(address, new JedisPool(poolConfig, host, Integer.parseInt(port), timeout));
+	    }
+	    String flags = String.valueOf(info.get("flags"));
+	    boolean down = flags.contains("s_down") || flags.contains("o_down") || flags.contains("disconnected");
+	    boolean linked = "ok".equals(info.get("master-link-status"));
+	    long lag = lagOf(masterOffset, info.get("slave-repl-offset"));
+	    replica.setState(!down && linked && (lag >= 0) && (lag <= maxLagBytes), Math.max(lag, 0));
+	    refreshed.add(replica);
+	}
+	this.replicas = Collections.unmodifiableList(refreshed);
+	for(CacheReplica gone : known.values())
+	{
+	    gone.getPool().destroy();
+	}
+    }
+
+    /**
+     * @Title: querySentinels.
+     * @Description: the function which asks the sentinels in turn for the replicas of the master.
+     * @return List<Map<String, String>>: the replicas which the first answering sentinel reported, null when none answered.
+     */
+    private List<Map<String, String>> querySentinels()
+    {
+	for(String sentinel : this.sentinels)
+	{
+	    String[] hostPort = sentinel.split(":");
+	    Jedis jedis = null;
+	    try
+	    {
+		jedis = new Jedis(hostPort[0], Integer.parseInt(hostPort[1]));
+		return jedis.sentinelSlaves(this.masterName);
+	    }
+	    catch(JedisException e)
+	    {
+		//try the next sentinel.
+	    }
+	    finally
+	    {
+		if(jedis != null)
+		{
+		    jedis.close();
+		}
+	    }
+	}
+	return null;
+    }
+
+    /**
+     * @Title: masterReplicationOffset.
+     * @Description: the function which reads the replication offset of the master.
+     * @return long: the offset, -1 when it is unknown(the lag of the replicas is not checked then).
+     */
+    private long masterReplicationOffset()
+    {
+	Jedis jedis = null;
+	try
+	{
+	    jedis = this.getResource();
+	    String info = jedis.info("replication");
+	    this.returnResource(jedis);
+	    jedis = null;
+	    for(String line : String.valueOf(info).split("\r?\n"))
+	    {
+		if(line.startsWith("master_repl_offset:"))
+		{
+		    return Long.parseLong(line.substring("master_repl_offset:".length()).trim());
+		}
+	    }
+	}
+	catch(JedisException e)
+	{
+	    if(jedis != null)
+	    {
+		this.returnBrokenResource(jedis);
+	    }
+	}
+	catch(NumberFormatException e)
+	{
+	    //unknown offset.
+	}
+	return -1;
+    }
+
+    /**
+     * @Title: lagOf.
+     * @Description: the function which computes the replication lag of a replica.
+     * @param masterOffset: the replication offset of the master, -1 when it is unknown.
+     * @param replicaOffset: the replication offset which the sentinel reported for the replica.
+     * @return long: the lag in bytes, 0 when the master offset is unknown, -1 when the replica offset is unknown.
+     */
+    private static long lagOf(long masterOffset, String replicaOffset)
+    {
+	if(masterOffset < 0)
+	{
+	    return 0;
+	}
+	try
+	{
+	    return Math.max(masterOffset - Long.parseLong(replicaOffset), 0);
+	}
+	catch(NumberFormatException e)
+	{
+	    return -1;
+	}
+    }
+
+    /**
+     * @Title: getMultiplexedClient.
+     * @Description: the function is used to get the multiplexed transport of the shard, it is created at the first call
+     *               with the same master name & sentinels as the pool.
+     * @param connectionNum: the number of the connections of a new transport.
+     * @param timeout: the connect & reply timeout of a new transport in milliseconds.
+     * @return MultiplexedShardClient: the multiplexed transport.
+     */
+    public MultiplexedShardClient getMultiplexedClient(int connectionNum, int timeout)
+    {
+	MultiplexedShardClient client = this.multiplexed;
+	if(client != null)
+	{
+	    return client;
+	}
+	synchronized(this.multiplexedLock)
+	{
+	    if(this.multiplexed == null)
+	    {
+		this.multiplexed = new MultiplexedShardClient(this.masterName, this.sentinels, connectionNum, timeout, this.metrics);
+	    }
+	    return this.multiplexed;
+	}
+    }
+
+    /**
+     * @Title: destroy.
+     * @Description: the function is used to close the master pool, the replica pools & the multiplexed transport.
+     * @return none.
+     */
+    @Override
+    public void destroy()
+    {
+	super.destroy();
+	synchronized(this.multiplexedLock)
+	{
+	    if(this.multiplexed != null)
+	    {
+		this.multiplexed.close();
+		this.multiplexed = null;
+	    }
+	}
+	List<CacheReplica> current = this.replicas;
+	this.replicas = Collections.emptyList();
+	for(CacheReplica replica : current)
+	{
+	    replica.getPool().destroy();
+	}
+    }
+}
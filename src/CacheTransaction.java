@@ -0,0 +1,33 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: CacheTransaction.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The commands of one MULTI/EXEC transaction on a cache shard.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of CacheTransaction was written.
+ */
+//package name.
+package generaldbplatform;
+
+//class import for jedis client.
+import redis.clients.jedis.Transaction;
+
+/**
+ * @ClassName: CacheTransaction.
+ * @Description: this interface is used with CacheLayerClient.multi, the commands are queued between the MULTI & EXEC
+ *               of the shard which owns all the keys, so the callback must only touch the keys which were given to multi.
+ */
+public interface CacheTransaction
+{
+    /**
+     * @Title: queue.
+     * @Description: the function which queues the commands of the transaction.
+     * @param transaction: the transaction of the shard.
+     * @return none.
+     */
+    public void queue(Transaction transaction);
+}
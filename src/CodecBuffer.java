@@ -0,0 +1,323 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: CodecBuffer.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The reusable byte buffer of the value codecs.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of CodecBuffer was written.
+ */
+//package name.
+package generaldbplatform;
+
+//class import for java utilities.
+import java.nio.charset.Charset;
+
+/**
+ * @ClassName: CodecBuffer.
+ * @Description: this class is a growable byte array with a read position & a write position, the codecs write a value into it
+ *               and read a value from it. it is not thread-safe: ValueCodecs keeps one per thread and clears it for each value,
+ *               so the hot path only allocates the final byte[] of an encoded value and the objects of a decoded value.
+ *               the varints are unsigned LEB128(7 bits per byte, the low bits first), the fixed numbers are big-endian.
+ */
+public final class CodecBuffer
+{
+    /**
+     * @FieldName: UTF8.
+     * @Description: the charset of the decoded strings(the strings are encoded by hand, without a temporary byte[]).
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * @FieldName: data & position & limit.
+     * @Description: the bytes, the next read or write index, and the end of the readable bytes.
+     */
+    private byte[] data;
+    private int position;
+    private int limit;
+
+    /**
+     * @Title: CodecBuffer.
+     * @Description: the construct function of the CodecBuffer class.
+     * @param capacity: the initial capacity in bytes.
+     * @return none.
+     */
+    public CodecBuffer(int capacity)
+    {
+	this.data = new byte[Math.max(16, capacity)];
+    }
+
+    /**
+     * @Title: clear.
+     * @Description: the function is used to empty the buffer for the next write.
+     * @return CodecBuffer: this buffer.
+     */
+    public CodecBuffer clear()
+    {
+	this.position = 0;
+	this.limit = 0;
+	return this;
+    }
+
+    /**
+     * @Title: wrap.
+     * @Description: the function is used to read a part of a byte array(it is not copied, and must not be changed while it is read).
+     * @param bytes: the byte array.
+     * @param offset: the first byte.
+     * @param length: the byte number.
+     * @return CodecBuffer: this buffer.
+     */
+    public CodecBuffer wrap(byte[] bytes, int offset, int length)
+    {
+	this.data = bytes;
+	this.position = offset;
+	this.limit = offset + length;
+	return this;
+    }
+
+    /**
+     * @Title: ensure.
+     * @Description: the function is used to make room for more bytes after the write position, the array grows by doubling.
+     * @param more: the byte number.
+     * @return none.
+     */
+    public void ensure(int more)
+    {
+	int needed = this.position + more;
+	if(needed > this.data.length)
+	{
+	    byte[] larger = new byte[Math.max(needed, this.data.length * 2)];
+	    System.arraycopy(this.data, 0, larger, 0, this.position);
+	    this.data = larger;
+	}
+    }
+
+    public byte[] array()
+    {
+	return this.data;
+    }
+
+    public int position()
+    {
+	return this.position;
+    }
+
+    public int capacity()
+    {
+	return this.data.length;
+    }
+
+    /**
+     * @Title: position.
+     * @Description: the function is used to move the write position, after the bytes were written into array() directly.
+     * @param position: the new position.
+     * @return none.
+     */
+    public void position(int position)
+    {
+	this.position = position;
+    }
+
+    /**
+     * @Title: remaining.
+     * @Description: the function is used to get the number of the unread bytes.
+     * @return int: the unread bytes.
+     */
+    public int remaining()
+    {
+	return this.limit - this.position;
+    }
+
+    /**
+     * @Title: toByteArray.
+     * @Description: the function is used to copy the written bytes into a new array of their exact size.
+     * @return byte[]: the written bytes.
+     */
+    public byte[] toByteArray()
+    {
+	byte[] bytes = new byte[this.position];
+	System.arraycopy(this.data, 0, bytes, 0, this.position);
+	return bytes;
+    }
+
+    public void writeByte(int value)
+    {
+	this.ensure(1);
+	this.data[this.position++] = (byte)value;
+    }
+
+    public void writeBytes(byte[] bytes, int offset, int length)
+    {
+	this.ensure(length);
+	System.arraycopy(bytes, offset, this.data, this.position, length);
+	this.position += length;
+    }
+
+    public void writeVarint(long value)
+    {
+	this.ensure(10);
+	while((value & ~0x7FL) != 0)
+	{
+	    this.data[this.position++] = (byte)((value & 0x7F) | 0x80);
+	    value >>>= 7;
+	}
+	this.data[this.position++] = (byte)value;
+    }
+
+    public void writeLong(long value)
+    {
+	this.ensure(8);
+	for(int shift = 56; shift >= 0; shift -= 8)
+	{
+	    this.data[this.position++] = (byte)(value >>> shift);
+	}
+    }
+
+    /**
+     * @Title: writeString.
+     * @Description: the function is used to write a string as its UTF-8 length & bytes, it encodes the chars into the buffer
+     *               directly(an unpaired surrogate is written as '?', like String.getBytes).
+     * @param value: the string.
+     * @return none.
+     */
+    public void writeString(String value)
+    {
+	int length = value.length();
+	int utf8_length = 0;
+	for(int i = 0; i < length; i++)
+	{
+	    char c = value.charAt(i);
+	    if(c < 0x80)
+	    {
+		utf8_length += 1;
+	    }
+	    else if(c < 0x800)
+	    {
+		utf8_length += 2;
+	    }
+	    else if(Character.isHighSurrogate(c) && (i + 1 < length) && Character.isLowSurrogate(value.charAt(i + 1)))
+	    {
+		utf8_length += 4;
+		i++;
+	    }
+	    else if(Character.isSurrogate(c))
+	    {
+		utf8_length += 1;
+	    }
+	    else
+	    {
+		utf8_length += 3;
+	    }
+	}
+	this.writeVarint(utf8_length);
+	this.ensure(utf8_length);
+	byte[] bytes = this.data;
+	int p = this.position;
+	for(int i = 0; i < length; i++)
+	{
+	    char c = value.charAt(i);
+	    if(c < 0x80)
+	    {
+		bytes[p++] = (byte)c;
+	    }
+	    else if(c < 0x800)
+	    {
+		bytes[p++] = (byte)(0xC0 | (c >> 6));
+		bytes[p++] = (byte)(0x80 | (c & 0x3F));
+	    }
+	    else if(Character.isHighSurrogate(c) && (i + 1 < length) && Character.isLowSurrogate(value.charAt(i + 1)))
+	    {
+		int code_point = Character.toCodePoint(c, value.charAt(++i));
+		bytes[p++] = (byte)(0xF0 | (code_point >> 18));
+		bytes[p++] = (byte)(0x80 | ((code_point >> 12) & 0x3F));
+		bytes[p++] = (byte)(0x80 | ((code_point >> 6) & 0x3F));
+		bytes[p++] = (byte)(0x80 | (code_point & 0x3F));
+	    }
+	    else if(Character.isSurrogate(c))
+	    {
+		bytes[p++] = (byte)'?';
+	    }
+	    else
+	    {
+		bytes[p++] = (byte)(0xE0 | (c >> 12));
+		bytes[p++] = (byte)(0x80 | ((c >> 6) & 0x3F));
+		bytes[p++] = (byte)(0x80 | (c & 0x3F));
+	    }
+	}
+	this.position = p;
+    }
+
+    public int readByte()
+    {
+	this.check(1);
+	return this.data[this.position++];
+    }
+
+    public void readBytes(byte[] bytes, int offset, int length)
+    {
+	this.check(length);
+	System.arraycopy(this.data, this.position, bytes, offset, length);
+	this.position += length;
+    }
+
+    public long readVarint()
+    {
+	long value = 0;
+	for(int shift = 0; shift < 64; shift += 7)
+	{
+	    int b = this.readByte();
+	    value |= (long)(b & 0x7F) << shift;
+	    if((b & 0x80) == 0)
+	    {
+		return value;
+	    }
+	}
+	throw new IllegalArgumentException("malformed varint");
+    }
+
+    public long readLong()
+    {
+	this.check(8);
+	long value = 0;
+	for(int i = 0; i < 8; i++)
+	{
+	    value = (value << 8) | (this.data[this.position++] & 0xFF);
+	}
+	return value;
+    }
+
+    public String readString()
+    {
+	int length = this.readLength();
+	this.check(length);
+	String value = new String(this.data, this.position, length, UTF8);
+	this.position += length;
+	return value;
+    }
+
+    /**
+     * @Title: readLength.
+     * @Description: the function is used to read a varint length, and check it is not beyond the unread bytes.
+     * @return int: the length.
+     */
+    public int readLength()
+    {
+	long length = this.readVarint();
+	if((length < 0) || (length > this.remaining()))
+	{
+	    throw new IllegalArgumentException("malformed length " + length + ", " + this.remaining() + " bytes remain");
+	}
+	return (int)length;
+    }
+
+    private void check(int length)
+    {
+	if(length > this.limit - this.position)
+	{
+	    throw new IllegalArgumentException("the value is truncated");
+	}
+    }
+}
@@ -0,0 +1,283 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: ConfigLease.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The expiring exclusive lease of a background job in the config database.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of ConfigLease was written.
+ */
+//package name.
+package generaldbplatform;
+
+//class import for java utilities.
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+//class import for jedis client.
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+/**
+ * @ClassName: ConfigLease.
+ * @Description: this class makes sure only one process of the platform runs a job(e.g. a rebalance or a key migration).
+ *               the lease is a config database key which holds the unique owner id of this instance, it is taken by SET NX PX,
+ *               renewed every LeaseMillis / 3 by a daemon thread, and released at the end of the job. the renewal & the release
+ *               only touch the key while it still holds the owner id(by a Lua script), so a lease which expired and was taken
+ *               by another process is never extended or deleted. a process which can not renew in time(a pause or a lost
+ *               config database) loses the lease locally after LeaseMillis, the job must check isHeld() between its steps.
+ */
+public class ConfigLease
+{
+    /**
+     * @FieldName: RENEW_SCRIPT & RELEASE_SCRIPT.
+     * @Description: the Lua scripts which extend & delete the lease only while it is held by the owner.
+     */
+    private static final String RENEW_SCRIPT = "if redis.call('get', KEYS[1]) == ARGV[1] then "
+					     + "return redis.call('pexpire', KEYS[1], ARGV[2]) else return 0 end";
+    private static final String RELEASE_SCRIPT = "if redis.call('get', KEYS[1]) == ARGV[1] then "
+					       + "return redis.call('del', KEYS[1]) else return 0 end";
+
+    /**
+     * @FieldName: OWNER_RANDOM.
+     * @Description: the random source of the owner ids.
+     */
+    private static final Random OWNER_RANDOM = new Random();
+
+    /**
+     * @FieldName: configdb.
+     * @Description: the ConfigServer database client which stores the lease.
+     */
+    private final ConfigDBClient configdb;
+
+    /**
+     * @FieldName: LeaseKey & LeaseMillis & Owner.
+     * @Description: the config database key, the expire time of the lease, and the unique id of this holder.
+     */
+    private final String LeaseKey;
+    private final long LeaseMillis;
+    private final String Owner;
+
+    /**
+     * @FieldName: Held & RenewedAt.
+     * @Description: the lease is held or not, and the time(System.nanoTime) of the last successful SET or renewal.
+     */
+    private volatile boolean Held = false;
+    private volatile long RenewedAt;
+
+    /**
+     * @FieldName: Renewer.
+     * @Description: the thread which renews the held lease, null when it is not held.
+     */
+    private ScheduledExecutorService Renewer;
+
+    /**
+     * @Title: ConfigLease.
+     * @Description: the construct function of the ConfigLease class.
+     * @param configdb: the ConfigServer database client which stores the lease.
+     * @param leaseKey: the config database key of the lease.
+     * @param leaseMillis: the expire time of the lease, a crashed holder blocks the job for at most this time.
+     * @return none.
+     */
+    public ConfigLease(ConfigDBClient configdb, String leaseKey, long leaseMillis)
+    {
+	if(leaseMillis < 3)
+	{
+	    throw new IllegalArgumentException("the lease must be longer than 3 ms");
+	}
+	this.configdb = configdb;
+	this.LeaseKey = leaseKey;
+	this.LeaseMillis = leaseMillis;
+	synchronized(OWNER_RANDOM)
+	{
+	    this.Owner = Long.toHexString(System.currentTimeMillis()) + "-" + Long.toHexString(OWNER_RANDOM.nextLong());
+	}
+    }
+
+    /**
+     * @Title: tryAcquire.
+     * @Description: the function which is used to take the lease when no other holder has it, and start its renewal.
+     * @return boolean: true when this instance holds the lease.
+     */
+    public synchronized boolean tryAcquire()
+    {
+	if(isHeld())
+	{
+	    return true;
+	}
+	//a lease which expired locally is given up first, its renewal must not run beside the new one.
+	release();
+
+	Jedis jedis = null;
+	boolean borrowOrOprSuccess = true;
+	boolean acquired = false;
+	try
+	{
+	    long now = System.nanoTime();
+	    jedis = configdb.db_client.getResource();
+	    acquired = "OK".equals(jedis.set(this.LeaseKey, this.Owner, "NX", "PX", this.LeaseMillis));
+	    if(acquired)
+	    {
+		this.RenewedAt = now;
+	    }
+	}
+	catch(JedisConnectionException e)
+	{
+	    borrowOrOprSuccess = false;
+	    if(jedis != null)
+	    {
+		configdb.db_client.returnBrokenResource(jedis);
+	    }
+	}
+	finally
+	{
+	    if(borrowOrOprSuccess && (jedis != null))
+	    {
+		configdb.db_client.returnResource(jedis);
+	    }
+	}
+	if(!acquired)
+	{
+	    return false;
+	}
+
+	this.Held = true;
+	this.Renewer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+	{
+	    @Override
+	    public Thread newThread(Runnable r)
+	    {
+		Thread thread = new Thread(r, "configLeaseThread");
+		thread.setDaemon(true);
+		return thread;
+	    }
+	});
+	this.Renewer.scheduleWithFixedDelay(new Runnable()
+	{
+	    @Override
+	    public void run()
+	    {
+		renew();
+	    }
+	}, this.LeaseMillis / 3, this.LeaseMillis / 3, TimeUnit.MILLISECONDS);
+	return true;
+    }
+
+    /**
+     * @Title: renew.
+     * @Description: the function which extends the held lease, the lease is lost when another holder has taken the key.
+     *               (a failed connection keeps the lease until its local expiry, the next renewal may still make it).
+     * @return none.
+     */
+    private void renew()
+    {
+	if(!this.Held)
+	{
+	    return;
+	}
+	Jedis jedis = null;
+	boolean borrowOrOprSuccess = true;
+	try
+	{
+	    long now = System.nanoTime();
+	    jedis = configdb.db_client.getResource();
+	    Object renewed = jedis.eval(RENEW_SCRIPT, Collections.singletonList(this.LeaseKey),
+					Arrays.asList(this.Owner, String.valueOf(this.LeaseMillis)));
+	    if(Long.valueOf(1).equals(renewed))
+	    {
+		this.RenewedAt = now;
+	    }
+	    else
+	    {
+		this.Held = false;
+	    }
+	}
+	catch(JedisConnectionException e)
+	{
+	    borrowOrOprSuccess = false;
+	    if(jedis != null)
+	    {
+		configdb.db_client.returnBrokenResource(jedis);
+	    }
+	}
+	finally
+	{
+	    if(borrowOrOprSuccess && (jedis != null))
+	    {
+		configdb.db_client.returnResource(jedis);
+	    }
+	}
+    }
+
+    /**
+     * @Title: release.
+     * @Description: the function which is used to stop the renewal and delete the lease if this instance still holds it.
+     * @return none.
+     */
+    public synchronized void release()
+    {
+	if(this.Renewer != null)
+	{
+	    this.Renewer.shutdownNow();
+	    this.Renewer = null;
+	}
+	if(!this.Held)
+	{
+	    return;
+	}
+	this.Held = false;
+
+	Jedis jedis = null;
+	boolean borrowOrOprSuccess = true;
+	try
+	{
+	    jedis = configdb.db_client.getResource();
+	    jedis.eval(RELEASE_SCRIPT, Collections.singletonList(this.LeaseKey), Collections.singletonList(this.Owner));
+	}
+	catch(JedisConnectionException e)
+	{
+	    //the lease expires by itself after LeaseMillis.
+	    borrowOrOprSuccess = false;
+	    if(jedis != null)
+	    {
+		configdb.db_client.returnBrokenResource(jedis);
+	    }
+	}
+	finally
+	{
+	    if(borrowOrOprSuccess && (jedis != null))
+	    {
+		configdb.db_client.returnResource(jedis);
+	    }
+	}
+    }
+
+    /**
+     * @Title: isHeld.
+     * @Description: the function shows this instance still holds the lease: it was taken, no other holder has replaced it,
+     *               and it was renewed within LeaseMillis.
+     * @return boolean: true when the lease is held.
+     */
+    public boolean isHeld()
+    {
+	return this.Held && (System.nanoTime() - this.RenewedAt < TimeUnit.MILLISECONDS.toNanos(this.LeaseMillis));
+    }
+
+    public String getLeaseKey()
+    {
+	return this.LeaseKey;
+    }
+
+    public String getOwner()
+    {
+	return this.Owner;
+    }
+}
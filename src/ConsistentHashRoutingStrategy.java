@@ -0,0 +1,173 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: ConsistentHashRoutingStrategy.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The consistent hash ring(with virtual nodes) routing strategy.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of ConsistentHashRoutingStrategy was written.
+ */
+//package name.
+package generaldbplatform;
+
+//class import for java utilities.
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * @ClassName: ConsistentHashRoutingStrategy.
+ * @Description: this class places VirtualNodeNum points of every shard on a 64-bit hash ring,
+ *               and a key belongs to the first point clockwise from the hash of the key.
+ *               (the ring of each shard number is built once and cached, the old & new routing views use different rings).
+ */
+public class ConsistentHashRoutingStrategy implements ShardRoutingStrategy
+{
+    /**
+     * @FieldName: DEFAULT_VIRTUAL_NODE_NUM.
+     * @Description: the default number of the virtual nodes of each shard.
+     */
+    public static final int DEFAULT_VIRTUAL_NODE_NUM = 160;
+
+    /**
+     * @FieldName: VirtualNodeNum.
+     * @Description: the number of the virtual nodes of each shard on the ring.
+     */
+    private final int VirtualNodeNum;
+
+    /**
+     * @FieldName: RingCache.
+     * @Description: the built rings, the map key is the shard number of the ring.
+     */
+    private final ConcurrentMap<Integer, HashRing> RingCache = new ConcurrentHashMap<Integer, HashRing>();
+
+    /**
+     * @ClassName: HashRing.
+     * @Description: the immutable ring of one shard number, the points are sorted and the owners share the same index.
+     */
+    private static final class HashRing
+    {
+	final long[] points;
+	final int[] owners;
+
+	HashRing(long[] points, int[] owners)
+	{
+	    this.points = points;
+	    this.owners = owners;
+	}
+    }
+
+    /**
+     * @Title: ConsistentHashRoutingStrategy.
+     * @Description: the construct function which uses the DEFAULT_VIRTUAL_NODE_NUM.
+     * @return none.
+     */
+    public ConsistentHashRoutingStrategy()
+    {
+	this(DEFAULT_VIRTUAL_NODE_NUM);
+    }
+
+    /**
+     * @Title: ConsistentHashRoutingStrategy.
+     * @Description: the construct function of the ConsistentHashRoutingStrategy class.
+     * @param virtualNodeNum: the number of the virtual nodes of each shard.
+     * @return none.
+     */
+    public ConsistentHashRoutingStrategy(int virtualNodeNum)
+    {
+	if(virtualNodeNum <= 0)
+	{
+	    throw new IllegalArgumentException("virtualNodeNum must be positive: " + virtualNodeNum);
+	}
+	this.VirtualNodeNum = virtualNodeNum;
+    }
+
+    /**
+     * @Title: getShardIndex.
+     * @Description: the function which is used to compute the shard index by the consistent hash ring.
+     * @param keyHash: the hash value of the key.
+     * @param shardNum: the number of the shards in the current routing view(old or new).
+     * @return int: the shard index in the range [0, shardNum).
+     */
+    @Override
+    public int getShardIndex(long keyHash, int shardNum)
+    {
+	HashRing ring = RingCache.get(shardNum);
+	if(ring == null)
+	{
+	    ring = buildRing(shardNum);
+	    HashRing existed = RingCache.putIfAbsent(shardNum, ring);
+	    if(existed != null)
+	    {
+		ring = existed;
+	    }
+	}
+
+	int pos = Arrays.binarySearch(ring.points, mix64(keyHash));
+	if(pos < 0)
+	{
+	    pos = -pos - 1;
+	}
+	if(pos == ring.points.length)
+	{
+	    //wrap around the ring.
+	    pos = 0;
+	}
+	return ring.owners[pos];
+    }
+
+    /**
+     * @Title: buildRing.
+     * @Description: the function which is used to build the ring of one shard number.
+     *               (the points of a shard only depend on the shard index, so the existing points never move when a shard is appended).
+     * @param shardNum: the number of the shards on the ring.
+     * @return HashRing: the built ring.
+     */
+    private HashRing buildRing(int shardNum)
+    {
+	int total = shardNum * VirtualNodeNum;
+	final long[] hashes = new long[total];
+	long[] points = new long[total];
+	int[] owners = new int[total];
+
+	//sort the point indexes by the point hash, the point index is shard * VirtualNodeNum + vnode.
+	Integer[] order = new Integer[total];
+	for(int i = 0; i < total; i++)
+	{
+	    hashes[i] = mix64(((long)(i / VirtualNodeNum) << 32) | (i % VirtualNodeNum));
+	    order[i] = Integer.valueOf(i);
+	}
+	Arrays.sort(order, new Comparator<Integer>()
+	{
+	    @Override
+	    public int compare(Integer a, Integer b)
+	    {
+		return Long.compare(hashes[a.intValue()], hashes[b.intValue()]);
+	    }
+	});
+	for(int i = 0; i < total; i++)
+	{
+	    int index = order[i].intValue();
+	    points[i] = hashes[index];
+	    owners[i] = index / VirtualNodeNum;
+	}
+	return new HashRing(points, owners);
+    }
+
+    /**
+     * @Title: mix64.
+     * @Description: the 64-bit finalizer of the SplitMix64 generator, spreads the bits of the input over the whole ring.
+     * @param z: the input value.
+     * @return long: the mixed value.
+     */
+    private static long mix64(long z)
+    {
+	z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+	z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+	return z ^ (z >>> 31);
+    }
+}
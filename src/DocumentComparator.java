@@ -0,0 +1,179 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: DocumentComparator.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The comparator which orders the documents like a MongoDB sort specification.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of DocumentComparator was written.
+ */
+//package name.
+package generaldbplatform;
+
+//class import for java utilities.
+import java.util.Comparator;
+import java.util.Date;
+
+//class import for mongodb client.
+import com.mongodb.DBObject;
+
+/**
+ * @ClassName: DocumentComparator.
+ * @Description: this class compares two documents by the fields of a sort specification such as {"age": -1, "name": 1},
+ *               it is used to merge the sorted results of the shards. the dotted field names(like "address.city") are supported.
+ *               the values of different types are ordered like MongoDB: null < numbers < strings < objects < booleans < dates.
+ */
+public class DocumentComparator implements Comparator<DBObject>
+{
+    /**
+     * @FieldName: fields & directions.
+     * @Description: the sort fields and their directions(1 ascending, -1 descending).
+     */
+    private final String[] fields;
+    private final int[] directions;
+
+    /**
+     * @Title: DocumentComparator.
+     * @Description: the construct function of the DocumentComparator class.
+     * @param sort: the sort specification, null or empty means all the documents are equal.
+     * @return none.
+     */
+    public DocumentComparator(DBObject sort)
+    {
+	int size = (sort == null) ? 0 : sort.keySet().size();
+	this.fields = new String[size];
+	this.directions = new int[size];
+	int i = 0;
+	if(sort != null)
+	{
+	    for(String field : sort.keySet())
+	    {
+		this.fields[i] = field;
+		Object direction = sort.get(field);
+		this.directions[i] = ((direction instanceof Number) && (((Number)direction).intValue() < 0)) ? -1 : 1;
+		i += 1;
+	    }
+	}
+    }
+
+    /**
+     * @Title: compare.
+     * @Description: the function which compares two documents field by field.
+     * @param a: the first document.
+     * @param b: the second document.
+     * @return int: negative, zero or positive like Comparator.compare.
+     */
+    @Override
+    public int compare(DBObject a, DBObject b)
+    {
+	for(int i = 0; i < fields.length; i++)
+	{
+	    int result = compareValues(getField(a, fields[i]), getField(b, fields[i]));
+	    if(result != 0)
+	    {
+		return result * directions[i];
+	    }
+	}
+	return 0;
+    }
+
+    /**
+     * @Title: getField.
+     * @Description: the function which reads a (dotted) field of a document.
+     * @param doc: the document.
+     * @param field: the field name like "address.city".
+     * @return Object: the value, null when the field does not exist.
+     */
+    static Object getField(DBObject doc, String field)
+    {
+	Object value = doc;
+	int start = 0;
+	while((value instanceof DBObject) && (start <= field.length()))
+	{
+	    int dot = field.indexOf('.', start);
+	    String name = (dot < 0) ? field.substring(start) : field.substring(start, dot);
+	    value = ((DBObject)value).get(name);
+	    if(dot < 0)
+	    {
+		return value;
+	    }
+	    start = dot + 1;
+	}
+	return null;
+    }
+
+    /**
+     * @Title: typeOrder.
+     * @Description: the function which gives the MongoDB order of the value types.
+     * @param value: the value.
+     * @return int: the order of its type.
+     */
+    private static int typeOrder(Object value)
+    {
+	if(value == null)
+	{
+	    return 0;
+	}
+	if(value instanceof Number)
+	{
+	    return 1;
+	}
+	if(value instanceof String)
+	{
+	    return 2;
+	}
+	if(value instanceof DBObject)
+	{
+	    return 3;
+	}
+	if(value instanceof Boolean)
+	{
+	    return 5;
+	}
+	if(value instanceof Date)
+	{
+	    return 6;
+	}
+	return 4;
+    }
+
+    /**
+     * @Title: compareValues.
+     * @Description: the function which compares two field values.
+     * @param a: the first value.
+     * @param b: the second value.
+     * @return int: negative, zero or positive like Comparator.compare.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    static int compareValues(Object a, Object b)
+    {
+	int ta = typeOrder(a);
+	int tb = typeOrder(b);
+	if(ta != tb)
+	{
+	    return (ta < tb) ? -1 : 1;
+	}
+	if(a == null)
+	{
+	    return 0;
+	}
+	if(a instanceof Number)
+	{
+	    Number na = (Number)a;
+	    Number nb = (Number)b;
+	    if(((a instanceof Integer) || (a instanceof Long)) && ((b instanceof Integer) || (b instanceof Long)))
+	    {
+		return Long.compare(na.longValue(), nb.longValue());
+	    }
+	    return Double.compare(na.doubleValue(), nb.doubleValue());
+	}
+	if((a instanceof Comparable) && a.getClass().isInstance(b))
+	{
+	    return ((Comparable)a).compareTo(b);
+	}
+	return a.toString().compareTo(b.toString());
+    }
+}
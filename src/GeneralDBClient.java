@@ -10,11 +10,68 @@
  * @History: 
  *    1.2015-07-21 First version of GeneralDBClient was written.
  *    2.2015-08-13 Modify the constructor function add ConfigDBClient support.
+ *    3.2026-10-17 Add the expansion-aware read functions with the asynchronous read-repair.
+ *    4.2026-10-17 Add the cache-aside get/put/delete functions with the single-flight loading & the early refresh.
+ *    5.2026-10-17 Expose the layer clients for the asynchronous facade AsyncDBClient.
+ *    6.2026-10-17 Run the document reads & writes through PersistentLayerClient.execute, so they are recorded in the shard metrics.
+ *    7.2026-10-17 Serve the hot keys of the get function from the near cache of the CacheLayerClient.
+ *    8.2026-10-17 Read the documents through PersistentLayerClient.findOne, which may hedge the read to a secondary.
+ *    9.2026-10-17 Read the cache values of the new owner through CacheLayerClient.executeRead, which may read a replica.
+ *    10.2026-10-17 Read the cached value & its ttl of the get function over the multiplexed transport when it is enabled.
+ *    11.2026-10-17 Send the document writes through the write-behind when it is enabled, and read its unflushed writes.
+ *    12.2026-10-17 Maintain the GlobalSecondaryIndex on the writes, and add the findByIndex function.
+ *    13.2026-10-17 Cache the documents as the binary values of ValueCodecs instead of JSON strings(the JSON values are still read).
+ *    14.2026-10-17 Add the GlobalSecondaryIndex entry before the document is written, so a failed write never leaves a document unindexed.
+ *    15.2026-10-17 Guard the cache fill of a load by the write version of the document, so a load racing with a put can not cache
+ *                  the old document.
+ *    16.2026-10-17 Fill the cache & repair the documents from the primary reads only, never from a hedged read.
+ *    17.2026-10-17 Send the writes of the persistent read-repair through upsertDocument & removeDocument, so they use the write-behind,
+ *                  the write concern and the shard metrics like the other writes.
+ *    18.2026-10-17 Route by the ModuloRoutingStrategy by default, and add the constructor which chooses the strategies of the layers.
+ *    19.2026-10-17 Leave the tombstone of a document which is deleted during an expansion, so the rebalancer can not bring it back.
+ *    20.2026-10-17 Repair a document by an insert-if-absent and remove the old copy only while it is unchanged, and guard the
+ *                  RESTORE of the cache read-repair by the write version, so a repair never undoes a put, a delete or an invalidate.
+ *    21.2026-10-17 Share CACHE_VERSION_PREFIX & RESTORE_SCRIPT with the CacheKeyMigrator.
+ *    22.2026-10-17 Document the key placement of the default constructor.
+ *    23.2026-10-17 Judge a GlobalSecondaryIndex entry stale only by the primary read of the document.
  */
 
 //package name.
 package generaldbplatform;
 
+//class import for java utilities.
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+//class import for jedis client.
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisSentinelPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+//class import for mongodb client.
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import com.mongodb.DuplicateKeyException;
+import com.mongodb.MongoClient;
+import com.mongodb.MongoException;
+import com.mongodb.WriteConcern;
+
 public class GeneralDBClient 
 {
     /**
@@ -39,6 +96,115 @@ public class GeneralDBClient
      */
     protected boolean allClientOK = false;
     
+    /**
+     * @FieldName: READ_REPAIR_QUEUE_SIZE.
+     * @Description: the max number of the pending read-repairs, the repairs beyond it are dropped(the next read schedules them again).
+     */
+    private static final int READ_REPAIR_QUEUE_SIZE = 10000;
+    
+    /**
+     * @FieldName: CACHE_REPLY_TIMEOUT_MILLIS.
+     * @Description: the max wait for a reply of the multiplexed transport, like the max borrow wait of the shard pools.
+     */
+    private static final long CACHE_REPLY_TIMEOUT_MILLIS = 10000;
+    
+    /**
+     * @FieldName: CACHE_VERSION_PREFIX & CACHE_VERSION_TTL_SECONDS.
+     * @Description: the prefix of the write version of a cached document, which is kept on the new owner of the document,
+     *               and its ttl, which must be much longer than a load.
+     */
+    static final String CACHE_VERSION_PREFIX = "CACHE_VERSION:";
+    private static final int CACHE_VERSION_TTL_SECONDS = 600;
+    
+    /**
+     * @FieldName: UTF8.
+     * @Description: the charset of the binary script of the cache fill.
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    
+    /**
+     * @FieldName: INVALIDATE_SCRIPT & FILL_SCRIPT.
+     * @Description: the Lua scripts which bump the write version & delete the cached document, and which cache a loaded
+     *               document only when the write version is still the one which was read before the load.
+     */
+    private static final String INVALIDATE_SCRIPT = "redis.call('incr', KEYS[2]) redis.call('expire', KEYS[2], ARGV[1]) "
+						  + "return redis.call('del', KEYS[1])";
+    private static final byte[] FILL_SCRIPT = ("if (redis.call('get', KEYS[2]) or '') == ARGV[1] then "
+					       + "return redis.call('setex', KEYS[1], ARGV[2], ARGV[3]) else return 0 end").getBytes(UTF8);
+    
+    /**
+     * @FieldName: RESTORE_SCRIPT.
+     * @Description: the Lua script of the cache read-repair, which restores a dumped value only when the write version is still
+     *               the one which was read before the DUMP and the new owner has no value of the key(which would be newer).
+     *               it returns -1 for a changed version, 0 for an existing key and 1 for a restored value(the CacheKeyMigrator uses it too).
+     */
+    static final byte[] RESTORE_SCRIPT = ("if (redis.call('get', KEYS[2]) or '') ~= ARGV[1] then return -1 end "
+						  + "if redis.call('exists', KEYS[1]) == 1 then return 0 end "
+						  + "redis.call('restore', KEYS[1], ARGV[2], ARGV[3]) return 1").getBytes(UTF8);
+    
+    /**
+     * @FieldName: ReadRepairExecutor.
+     * @Description: the single background thread which copies the values found by the fallback reads to their new owners.
+     */
+    private ExecutorService ReadRepairExecutor;
+    
+    /**
+     * @FieldName: Read-repair counters.
+     * @Description: the fallback hits(the value was only found on the old owner) and the finished repairs of each layer.
+     *               when the fallback hits stop growing, the expansion window could be closed.
+     */
+    private final AtomicLong CacheFallbackHits = new AtomicLong();
+    private final AtomicLong CacheRepairs = new AtomicLong();
+    private final AtomicLong PersistFallbackHits = new AtomicLong();
+    private final AtomicLong PersistRepairs = new AtomicLong();
+    
+    /**
+     * @FieldName: CacheTtlSeconds.
+     * @Description: the ttl of the documents which are populated into the cache by the get function.
+     */
+    private volatile int CacheTtlSeconds = 3600;
+    
+    /**
+     * @FieldName: EarlyRefreshBeta.
+     * @Description: the beta of the probabilistic early refresh(XFetch), > 1.0 favors earlier refresh, 0 disables it.
+     */
+    private volatile double EarlyRefreshBeta = 1.0;
+    
+    /**
+     * @FieldName: LoadTimeMillis.
+     * @Description: the moving average of the time which is spent to load one document from the persistent layer.
+     *               (it is the delta of the XFetch, a slow load starts to refresh earlier).
+     */
+    private volatile double LoadTimeMillis = 10.0;
+    
+    /**
+     * @FieldName: InFlightLoads.
+     * @Description: the loads which are running now, the concurrent misses on the same key wait for the same load(single-flight).
+     */
+    private final ConcurrentMap<String, FutureTask<DBObject>> InFlightLoads = new ConcurrentHashMap<String, FutureTask<DBObject>>();
+    
+    /**
+     * @FieldName: RefreshExecutor.
+     * @Description: the background threads which run the early refreshes.
+     */
+    private ExecutorService RefreshExecutor;
+    
+    /**
+     * @FieldName: Cache-aside counters.
+     * @Description: the cache hits, the misses which were loaded from the persistent layer, the early refreshes,
+     *               and the loads which were not cached because a write changed the document meanwhile.
+     */
+    private final AtomicLong CacheHits = new AtomicLong();
+    private final AtomicLong CacheLoads = new AtomicLong();
+    private final AtomicLong EarlyRefreshes = new AtomicLong();
+    private final AtomicLong RacedLoads = new AtomicLong();
+    
+    /**
+     * @FieldName: SecondaryIndex.
+     * @Description: the global secondary index of the non-sharding-key fields, it is stored in the cache layer.
+     */
+    private GlobalSecondaryIndex SecondaryIndex;
+    
     /**
      * @Title: PersistentLayerClient.
      * @Description: the construct function of this PersistentLayerClient class.
@@ -48,11 +214,36 @@ public class GeneralDBClient
      * @param cache_channel: the channel that subscribed by the CacheLayerClient.    
      * @param persist_channel: the channel that subscribed by the PersistentLayerClient.
      * @return none.
+     *         (both layers route by the ModuloRoutingStrategy over the full-key hash of the String keys, so the documents &
+     *         values which the clients before ShardKeyHash stored by the last char are not on their shards, see CacheLayerClient).
      */    
     public GeneralDBClient(String serverinfo_0, String serverinfo_1, String serverinfo_2, String cache_channel, String persist_channel)
     {
-    	this.mCacheClient = new CacheLayerClient(serverinfo_0, serverinfo_1, serverinfo_2, cache_channel);
-    	this.mPersistClient = new PersistentLayerClient(serverinfo_0, serverinfo_1, serverinfo_2, persist_channel);
+    	this(serverinfo_0, serverinfo_1, serverinfo_2, cache_channel, persist_channel, new ModuloRoutingStrategy(), new ModuloRoutingStrategy());
+    }
+    
+    /**
+     * @Title: GeneralDBClient.
+     * @Description: the construct function of the GeneralDBClient class with the specific routing strategies of the layers,
+     *               like the JumpHashRoutingStrategy(the default ModuloRoutingStrategy remaps almost every key on an expansion).
+     * @param serverinfo_0: the first redis server node ip & port information in the redis sentinel(config server).
+     * @param serverinfo_1: the second redis server node ip & port information in the redis sentinel(config server).
+     * @param serverinfo_2: the third redis server node ip & port information in the redis sentinel(config server).
+     * @param cache_channel: the channel that subscribed by the CacheLayerClient.
+     * @param persist_channel: the channel that subscribed by the PersistentLayerClient.
+     * @param cache_strategy: the routing strategy of the cache layer.
+     * @param persist_strategy: the routing strategy of the persistent layer(an instance must not be shared with the cache layer).
+     * @return none.
+     */
+    public GeneralDBClient(String serverinfo_0, String serverinfo_1, String serverinfo_2, String cache_channel, String persist_channel,
+			   ShardRoutingStrategy cache_strategy, ShardRoutingStrategy persist_strategy)
+    {
+    	this.mCacheClient = new CacheLayerClient(serverinfo_0, serverinfo_1, serverinfo_2, cache_channel, cache_strategy);
+    	this.mPersistClient = new PersistentLayerClient(serverinfo_0, serverinfo_1, serverinfo_2, persist_channel, persist_strategy);
+    	this.SecondaryIndex = new GlobalSecondaryIndex(this.mCacheClient, this.mPersistClient);
+    	
+    	this.ReadRepairExecutor = newBackgroundExecutor("readRepairThread", 1);
+    	this.RefreshExecutor = newBackgroundExecutor("cacheRefreshThread", 2);
     	
     	//if((this.mCacheClient.CachaInitOK == true) && (this.mPersistClient.PersistInitOK == true))
     	//{
@@ -63,4 +254,884 @@ public class GeneralDBClient
     	//	this.allClientOK = false;
     	//}
     }
+    
+    /**
+     * @Title: newBackgroundExecutor.
+     * @Description: the function which is used to create a bounded executor of daemon threads,
+     *               the tasks beyond READ_REPAIR_QUEUE_SIZE are dropped, they are only optimizations.
+     * @param name: the thread name.
+     * @param threads: the thread number.
+     * @return ExecutorService: the executor.
+     */
+    private static ExecutorService newBackgroundExecutor(final String name, int threads)
+    {
+	return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+				      new ArrayBlockingQueue<Runnable>(READ_REPAIR_QUEUE_SIZE),
+				      new ThreadFactory()
+				      {
+					  @Override
+					  public Thread newThread(Runnable r)
+					  {
+					      Thread thread = new Thread(r, name);
+					      thread.setDaemon(true);
+					      return thread;
+					  }
+				      },
+				      new ThreadPoolExecutor.DiscardPolicy());
+    }
+    
+    /**
+     * @Title: getCacheValue.
+     * @Description: the function which is used to read a cache value during or after an expansion.
+     *               the new owner is read first, on a miss the old owner is read, and when the old owner has the value,
+     *               it is copied to the new owner and deleted from the old owner in the background.
+     * @param key: the cache key.
+     * @return String: the value, or null when neither owner has it.
+     */
+    public String getCacheValue(final String key)
+    {
+	return this.readCacheValue(key, new CacheCallback<String>()
+	{
+	    @Override
+	    public String doInCache(Jedis jedis)
+	    {
+		return jedis.get(key);
+	    }
+	});
+    }
+    
+    /**
+     * @Title: getCacheBytes.
+     * @Description: the function which is used to read a binary cache value(like a document of ValueCodecs) during or after
+     *               an expansion, the same way as getCacheValue.
+     * @param key: the cache key.
+     * @return byte[]: the value, or null when neither owner has it.
+     */
+    public byte[] getCacheBytes(String key)
+    {
+	final byte[] raw_key = CacheLayerClient.keyBytes(key);
+	return this.readCacheValue(key, new CacheCallback<byte[]>()
+	{
+	    @Override
+	    public byte[] doInCache(Jedis jedis)
+	    {
+		return jedis.get(raw_key);
+	    }
+	});
+    }
+    
+    /**
+     * @Title: readCacheValue.
+     * @Description: the function which reads a cache value from the new owner, then from the old owner with the read-repair.
+     * @param key: the cache key.
+     * @param read: the read of the value.
+     * @return T: the value, or null when neither owner has it.
+     */
+    private <T> T readCacheValue(final String key, CacheCallback<T> read)
+    {
+	final JedisSentinelPool new_pool = this.mCacheClient.getNewShardedCacheClient(key);
+	T value = this.mCacheClient.executeRead(new_pool, "get", read);
+	if(value != null)
+	{
+	    return value;
+	}
+
+	final JedisSentinelPool old_pool = this.mCacheClient.getOldShardedCacheClient(key);
+	if(old_pool == new_pool)
+	{
+	    return null;
+	}
+	value = this.mCacheClient.execute(old_pool, read);
+	if(value != null)
+	{
+	    this.CacheFallbackHits.incrementAndGet();
+	    this.ReadRepairExecutor.execute(new Runnable()
+	    {
+		@Override
+		public void run()
+		{
+		    repairCacheValue(key, old_pool, new_pool);
+		}
+	    });
+	}
+	return value;
+    }
+    
+    /**
+     * @Title: repairCacheValue.
+     * @Description: the function which is used to move one cache value from its old owner to its new owner with its ttl.
+     *               (when the new owner already has the key, it was written through the new routing view and is kept).
+     *               the write version of the key is read before the DUMP, and the value is restored only while it is unchanged
+     *               (see RESTORE_SCRIPT), so a value which an invalidate deleted meanwhile is never restored.
+     * @param key: the cache key.
+     * @param old_pool: the old owner.
+     * @param new_pool: the new owner.
+     * @return none.
+     */
+    private void repairCacheValue(final String key, JedisSentinelPool old_pool, JedisSentinelPool new_pool)
+    {
+	final String version_key = CACHE_VERSION_PREFIX + key;
+	String version = this.mCacheClient.execute(new_pool, new CacheCallback<String>()
+	{
+	    @Override
+	    public String doInCache(Jedis jedis)
+	    {
+		return jedis.get(version_key);
+	    }
+	});
+	final Object[] dumped = this.mCacheClient.execute(old_pool, new CacheCallback<Object[]>()
+	{
+	    @Override
+	    public Object[] doInCache(Jedis jedis)
+	    {
+		return new Object[] { jedis.dump(key), jedis.pttl(key) };
+	    }
+	});
+	final byte[] value = (byte[])dumped[0];
+	final long ttl = (Long)dumped[1];
+	if((value == null) || (ttl == -2))
+	{
+	    //expired or moved by the CacheKeyMigrator already.
+	    return;
+	}
+
+	final List<byte[]> keys = Arrays.asList(CacheLayerClient.keyBytes(key), CacheLayerClient.keyBytes(version_key));
+	final List<byte[]> args = Arrays.asList(CacheLayerClient.keyBytes((version == null) ? "" : version),
+						CacheLayerClient.keyBytes(String.valueOf((ttl < 0) ? 0 : ttl)), value);
+	this.mCacheClient.execute(new_pool, new CacheCallback<Object>()
+	{
+	    @Override
+	    public Object doInCache(Jedis jedis)
+	    {
+		return jedis.eval(RESTORE_SCRIPT, keys, args);
+	    }
+	});
+	this.mCacheClient.execute(old_pool, new CacheCallback<Long>()
+	{
+	    @Override
+	    public Long doInCache(Jedis jedis)
+	    {
+		return jedis.del(key);
+	    }
+	});
+	this.CacheRepairs.incrementAndGet();
+    }
+    
+    /**
+     * @Title: findDocument.
+     * @Description: the function which is used to find a document on one shard, its time is recorded as "find" in the metrics of the shard.
+     *               (see PersistentLayerClient.findOne for the hedged reads).
+     *               a write of the document which is still buffered by the write-behind is returned instead.
+     * @param client: the MongoClient of the shard.
+     * @param dbName: the database name.
+     * @param collName: the collection name.
+     * @param query: the query of the document.
+     * @param hedge: true to allow the hedged read, false to read the primary only(the document is cached or copied).
+     * @return DBObject: the document, or null.
+     */
+    private DBObject findDocument(MongoClient client, final String dbName, final String collName, final DBObject query, boolean hedge)
+    {
+	PersistWriteBehind write_behind = this.mPersistClient.getWriteBehind();
+	if(write_behind != null)
+	{
+	    PersistWriteBehind.PendingWrite pending = write_behind.lookup(client, dbName, collName, query.get("_id"));
+	    if(pending != null)
+	    {
+		return pending.getDocument();
+	    }
+	}
+	return this.mPersistClient.findOne(client, dbName, collName, query, hedge);
+    }
+    
+    /**
+     * @Title: upsertDocument.
+     * @Description: the function which is used to upsert a document on one shard, its time is recorded as "update".
+     *               when the write-behind is enabled, the document is buffered and written by its next flush.
+     * @param client: the MongoClient of the shard.
+     * @param dbName: the database name.
+     * @param collName: the collection name.
+     * @param query: the query of the document.
+     * @param doc: the document.
+     * @return none.
+     */
+    private void upsertDocument(MongoClient client, final String dbName, final String collName, final DBObject query, final DBObject doc)
+    {
+	PersistWriteBehind write_behind = this.mPersistClient.getWriteBehind();
+	if(write_behind != null)
+	{
+	    write_behind.upsert(client, dbName, collName, query.get("_id"), doc);
+	    return;
+	}
+	final WriteConcern write_concern = this.mPersistClient.getWriteConcern();
+	this.mPersistClient.execute(client, "update", new PersistCallback<Void>()
+	{
+	    @Override
+	    public Void doInPersist(MongoClient shard)
+	    {
+		shard.getDB(dbName).getCollection(collName).update(query, doc, true, false, write_concern);
+		return null;
+	    }
+	});
+    }
+    
+    /**
+     * @Title: removeDocument.
+     * @Description: the function which is used to remove a document from one shard, its time is recorded as "remove".
+     *               when the write-behind is enabled, the remove is buffered and sent by its next flush.
+     * @param client: the MongoClient of the shard.
+     * @param dbName: the database name.
+     * @param collName: the collection name.
+     * @param query: the query of the document.
+     * @return none.
+     */
+    private void removeDocument(MongoClient client, final String dbName, final String collName, final DBObject query)
+    {
+	PersistWriteBehind write_behind = this.mPersistClient.getWriteBehind();
+	if(write_behind != null)
+	{
+	    write_behind.remove(client, dbName, collName, query.get("_id"));
+	    return;
+	}
+	final WriteConcern write_concern = this.mPersistClient.getWriteConcern();
+	this.mPersistClient.execute(client, "remove", new PersistCallback<Void>()
+	{
+	    @Override
+	    public Void doInPersist(MongoClient shard)
+	    {
+		shard.getDB(dbName).getCollection(collName).remove(query, write_concern);
+		return null;
+	    }
+	});
+    }
+    
+    /**
+     * @Title: getPersistDocument.
+     * @Description: the function which is used to read a document by its _id during or after an expansion.
+     *               the new owner is read first, on a miss the old owner is read, and when the old owner has the document,
+     *               it is copied to the new owner and removed from the old owner in the background.
+     * @param dbName: the database name.
+     * @param collName: the collection name.
+     * @param key: the _id of the document, which is also the sharding key.
+     * @return DBObject: the document, or null when neither owner has it.
+     */
+    public DBObject getPersistDocument(String dbName, String collName, String key)
+    {
+	return this.readPersistDocument(dbName, collName, key, true);
+    }
+    
+    /**
+     * @Title: readPersistDocument.
+     * @Description: the function which reads a document like getPersistDocument, the hedged read of the new owner could be refused.
+     *               the old owner is always read from its primary, its document is copied to the new owner by the read-repair.
+     * @param dbName: the database name.
+     * @param collName: the collection name.
+     * @param key: the _id of the document, which is also the sharding key.
+     * @param hedge: true to allow the hedged read of the new owner, false to read the primaries only(e.g. to fill the cache).
+     * @return DBObject: the document, or null when neither owner has it.
+     */
+    private DBObject readPersistDocument(final String dbName, final String collName, String key, boolean hedge)
+    {
+	MongoClient new_client = this.mPersistClient.getNewShardedPersistClient(key);
+	final DBObject query = new BasicDBObject("_id", key);
+	DBObject doc = this.findDocument(new_client, dbName, collName, query, hedge);
+	if(doc != null)
+	{
+	    return doc;
+	}
+
+	MongoClient old_client = this.mPersistClient.getOldShardedPersistClient(key);
+	if(old_client == new_client)
+	{
+	    return null;
+	}
+	final long read_millis = System.currentTimeMillis();
+	final DBObject found = this.findDocument(old_client, dbName, collName, query, false);
+	if(found != null)
+	{
+	    this.PersistFallbackHits.incrementAndGet();
+	    final MongoClient repair_new_client = new_client;
+	    final MongoClient repair_old_client = old_client;
+	    this.ReadRepairExecutor.execute(new Runnable()
+	    {
+		@Override
+		public void run()
+		{
+		    repairPersistDocument(dbName, collName, query, found, read_millis, repair_old_client, repair_new_client);
+		}
+	    });
+	}
+	return found;
+    }
+    
+    /**
+     * @Title: repairPersistDocument.
+     * @Description: the function which is used to move one document from its old owner to its new owner.
+     *               the copy is inserted only when the new owner has no document of the _id(a duplicate key means a put wrote
+     *               the newer version through the new routing view), and it is removed again when a delete left its tombstone
+     *               after the read(see PersistentRebalancer.recordDelete). the old owner copy is removed only while it still
+     *               equals the found document.
+     * @param dbName: the database name.
+     * @param collName: the collection name.
+     * @param query: the query of the document.
+     * @param found: the document which was read from the old owner.
+     * @param read_millis: the time when the document was read.
+     * @param old_client: the old owner.
+     * @param new_client: the new owner.
+     * @return none.
+     */
+    private void repairPersistDocument(final String dbName, final String collName, DBObject query, final DBObject found,
+				       long read_millis, MongoClient old_client, MongoClient new_client)
+    {
+	final WriteConcern write_concern = this.mPersistClient.getWriteConcern();
+	Boolean inserted = this.mPersistClient.execute(new_client, "insert", new PersistCallback<Boolean>()
+	{
+	    @Override
+	    public Boolean doInPersist(MongoClient shard)
+	    {
+		try
+		{
+		    shard.getDB(dbName).getCollection(collName).insert(found, write_concern);
+		    return true;
+		}
+		catch(DuplicateKeyException e)
+		{
+		    return false;
+		}
+	    }
+	});
+	if(inserted && this.mPersistClient.getRebalancer().isDeletedSince(dbName, collName, query.get("_id"), read_millis))
+	{
+	    //the document was deleted after the read, only the copy of this repair is removed.
+	    this.removeUnchanged(new_client, dbName, collName, found);
+	}
+	this.removeUnchanged(old_client, dbName, collName, found);
+	this.PersistRepairs.incrementAndGet();
+    }
+    
+    /**
+     * @Title: removeUnchanged.
+     * @Description: the function which is used to remove a document from one shard only while its whole content equals the given copy,
+     *               its time is recorded as "remove"(it bypasses the write-behind, a buffered remove could not be conditional).
+     * @param client: the MongoClient of the shard.
+     * @param dbName: the database name.
+     * @param collName: the collection name.
+     * @param doc: the copy of the document.
+     * @return none.
+     */
+    private void removeUnchanged(MongoClient client, final String dbName, final String collName, final DBObject doc)
+    {
+	final WriteConcern write_concern = this.mPersistClient.getWriteConcern();
+	this.mPersistClient.execute(client, "remove", new PersistCallback<Void>()
+	{
+	    @Override
+	    public Void doInPersist(MongoClient shard)
+	    {
+		shard.getDB(dbName).getCollection(collName).remove(doc, write_concern);
+		return null;
+	    }
+	});
+    }
+    
+    /**
+     * @Title: getCacheFallbackHits.
+     * @Description: the function which is used to get the number of the cache reads which were only served by the old owner.
+     * @return long: the fallback hit number.
+     */
+    public long getCacheFallbackHits()
+    {
+	return this.CacheFallbackHits.get();
+    }
+    
+    /**
+     * @Title: getCacheRepairs.
+     * @Description: the function which is used to get the number of the cache values which were moved by the read-repair.
+     * @return long: the repair number.
+     */
+    public long getCacheRepairs()
+    {
+	return this.CacheRepairs.get();
+    }
+    
+    /**
+     * @Title: getPersistFallbackHits.
+     * @Description: the function which is used to get the number of the document reads which were only served by the old owner.
+     * @return long: the fallback hit number.
+     */
+    public long getPersistFallbackHits()
+    {
+	return this.PersistFallbackHits.get();
+    }
+    
+    /**
+     * @Title: getPersistRepairs.
+     * @Description: the function which is used to get the number of the documents which were moved by the read-repair.
+     * @return long: the repair number.
+     */
+    public long getPersistRepairs()
+    {
+	return this.PersistRepairs.get();
+    }
+    
+    /**
+     * @Title: getCacheClient.
+     * @Description: the function which is used to get the client of the cache layer.
+     * @return CacheLayerClient: the cache layer client.
+     */
+    public CacheLayerClient getCacheClient()
+    {
+	return this.mCacheClient;
+    }
+    
+    /**
+     * @Title: getPersistClient.
+     * @Description: the function which is used to get the client of the persistent layer.
+     * @return PersistentLayerClient: the persistent layer client.
+     */
+    public PersistentLayerClient getPersistClient()
+    {
+	return this.mPersistClient;
+    }
+    
+    /**
+     * @Title: cacheKey.
+     * @Description: the function which is used to build the cache key of a document.
+     * @param dbName: the database name.
+     * @param collName: the collection name.
+     * @param key: the _id of the document.
+     * @return String: the cache key like "db:collection:key".
+     */
+    static String cacheKey(String dbName, String collName, String key)
+    {
+	return dbName + ":" + collName + ":" + key;
+    }
+    
+    /**
+     * @Title: get.
+     * @Description: the function which is used to read a document through the cache(cache-aside).
+     *               on a hit the cached document is returned, and it may be refreshed in the background before it expires
+     *               (the probability grows as the ttl runs out, so the popular keys never expire all at once).
+     *               on a miss the document is loaded from the persistent layer and put into the cache with CacheTtlSeconds,
+     *               the concurrent misses on the same key share one load.
+     *               a hot key is served from the near cache of the CacheLayerClient for a short ttl(see HotKeyDetector).
+     *               the documents are cached as the values of the ValueCodecs of the CacheLayerClient(legacy JSON until
+     *               its write version chooses the binary codec, either is read).
+     * @param dbName: the database name.
+     * @param collName: the collection name.
+     * @param key: the _id of the document, which is also the sharding key.
+     * @return DBObject: the document, or null when it does not exist.
+     */
+    public DBObject get(final String dbName, final String collName, final String key)
+    {
+	final String cache_key = cacheKey(dbName, collName, key);
+	ValueCodecs codecs = this.mCacheClient.getCodecs();
+	byte[] near = this.mCacheClient.readNearCacheBytes(cache_key);
+	if(near != null)
+	{
+	    this.CacheHits.incrementAndGet();
+	    return codecs.decode(near);
+	}
+	JedisSentinelPool pool = this.mCacheClient.getNewShardedCacheClient(cache_key);
+	MultiplexedShardClient multiplexed = this.mCacheClient.getMultiplexedClient(pool);
+	List<Object> cached;
+	if(multiplexed != null)
+	{
+	    CompletableFuture<Object> value_reply = multiplexed.sendBinary("GET", cache_key);
+	    CompletableFuture<Object> ttl_reply = multiplexed.send("PTTL", cache_key);
+	    cached = Arrays.asList(MultiplexedShardClient.await(value_reply, CACHE_REPLY_TIMEOUT_MILLIS),
+				   MultiplexedShardClient.await(ttl_reply, CACHE_REPLY_TIMEOUT_MILLIS));
+	}
+	else
+	{
+	    cached = this.mCacheClient.executeRead(pool, "get", new CacheCallback<List<Object>>()
+	    {
+		@Override
+		public List<Object> doInCache(Jedis jedis)
+		{
+		    Pipeline pipe = jedis.pipelined();
+		    pipe.get(CacheLayerClient.keyBytes(cache_key));
+		    pipe.pttl(cache_key);
+		    return pipe.syncAndReturnAll();
+		}
+	    });
+	}
+	byte[] value = (byte[])cached.get(0);
+	if(value == null)
+	{
+	    //the value may be still on the old owner during an expansion.
+	    value = this.getCacheBytes(cache_key);
+	}
+	else if(shouldRefreshEarly((Long)cached.get(1)))
+	{
+	    this.EarlyRefreshes.incrementAndGet();
+	    this.RefreshExecutor.execute(new Runnable()
+	    {
+		@Override
+		public void run()
+		{
+		    loadSingleFlight(dbName, collName, key, cache_key);
+		}
+	    });
+	}
+
+	if(value != null)
+	{
+	    this.CacheHits.incrementAndGet();
+	    this.mCacheClient.promoteNearCache(cache_key, value);
+	    return codecs.decode(value);
+	}
+	return loadSingleFlight(dbName, collName, key, cache_key);
+    }
+    
+    /**
+     * @Title: shouldRefreshEarly.
+     * @Description: the function which decides to refresh a cached value before it expires(the XFetch algorithm):
+     *               refresh when -LoadTimeMillis * EarlyRefreshBeta * ln(random) >= the remaining ttl.
+     * @param pttl: the remaining ttl in milliseconds.
+     * @return boolean: true to refresh now.
+     */
+    private boolean shouldRefreshEarly(Long pttl)
+    {
+	if((pttl == null) || (pttl < 0) || (this.EarlyRefreshBeta <= 0))
+	{
+	    return false;
+	}
+	double gap = -this.LoadTimeMillis * this.EarlyRefreshBeta * Math.log(ThreadLocalRandom.current().nextDouble());
+	return gap >= pttl;
+    }
+    
+    /**
+     * @Title: loadSingleFlight.
+     * @Description: the function which is used to load a document into the cache, only one load of a key runs at the same time,
+     *               the other callers wait for its result.
+     * @param dbName: the database name.
+     * @param collName: the collection name.
+     * @param key: the _id of the document.
+     * @param cache_key: the cache key of the document.
+     * @return DBObject: the loaded document, or null when it does not exist.
+     */
+    private DBObject loadSingleFlight(final String dbName, final String collName, final String key, final String cache_key)
+    {
+	FutureTask<DBObject> task = new FutureTask<DBObject>(new Callable<DBObject>()
+	{
+	    @Override
+	    public DBObject call()
+	    {
+		return loadDocument(dbName, collName, key, cache_key);
+	    }
+	});
+	FutureTask<DBObject> running = this.InFlightLoads.putIfAbsent(cache_key, task);
+	if(running == null)
+	{
+	    //this caller is the leader of the load.
+	    running = task;
+	    try
+	    {
+		task.run();
+	    }
+	    finally
+	    {
+		this.InFlightLoads.remove(cache_key, task);
+	    }
+	}
+
+	try
+	{
+	    return running.get();
+	}
+	catch(InterruptedException e)
+	{
+	    Thread.currentThread().interrupt();
+	    throw new MongoException("interrupted while loading " + cache_key, e);
+	}
+	catch(ExecutionException e)
+	{
+	    if(e.getCause() instanceof RuntimeException)
+	    {
+		throw (RuntimeException)e.getCause();
+	    }
+	    throw new MongoException("failed to load " + cache_key, e.getCause());
+	}
+    }
+    
+    /**
+     * @Title: loadDocument.
+     * @Description: the function which is used to read a document from the persistent layer and put it into the cache.
+     *               the write version of the document is read before the load, and the document is cached only when the version
+     *               has not changed(see INVALIDATE_SCRIPT & FILL_SCRIPT). so a load which read the document before a put or a delete
+     *               can not cache it after the put or the delete invalidated the cache, the next miss loads the new document.
+     * @param dbName: the database name.
+     * @param collName: the collection name.
+     * @param key: the _id of the document.
+     * @param cache_key: the cache key of the document.
+     * @return DBObject: the loaded document, or null when it does not exist.
+     */
+    private DBObject loadDocument(String dbName, String collName, String key, final String cache_key)
+    {
+	JedisSentinelPool pool = this.mCacheClient.getNewShardedCacheClient(cache_key);
+	final String version_key = CACHE_VERSION_PREFIX + cache_key;
+	String version = this.mCacheClient.execute(pool, new CacheCallback<String>()
+	{
+	    @Override
+	    public String doInCache(Jedis jedis)
+	    {
+		return jedis.get(version_key);
+	    }
+	});
+
+	//a hedged read may return an older document from a secondary, it must not be cached for the whole ttl.
+	long start = System.nanoTime();
+	DBObject doc = this.readPersistDocument(dbName, collName, key, false);
+	double elapsed = (System.nanoTime() - start) / 1000000.0;
+	this.LoadTimeMillis = this.LoadTimeMillis * 0.9 + elapsed * 0.1;
+	this.CacheLoads.incrementAndGet();
+
+	if(doc != null)
+	{
+	    final byte[] value = this.mCacheClient.getCodecs().encode(doc);
+	    final List<byte[]> keys = Arrays.asList(CacheLayerClient.keyBytes(cache_key), CacheLayerClient.keyBytes(version_key));
+	    final List<byte[]> args = Arrays.asList(CacheLayerClient.keyBytes((version == null) ? "" : version),
+						    CacheLayerClient.keyBytes(String.valueOf(this.CacheTtlSeconds)), value);
+	    Object filled = this.mCacheClient.execute(pool, new CacheCallback<Object>()
+	    {
+		@Override
+		public Object doInCache(Jedis jedis)
+		{
+		    return jedis.eval(FILL_SCRIPT, keys, args);
+		}
+	    });
+	    if(Long.valueOf(0).equals(filled))
+	    {
+		//a write invalidated the document during the load, the loaded copy may be stale.
+		this.RacedLoads.incrementAndGet();
+	    }
+	    else
+	    {
+		this.mCacheClient.promoteNearCache(cache_key, value);
+	    }
+	}
+	return doc;
+    }
+    
+    /**
+     * @Title: put.
+     * @Description: the function which is used to write a document to its new owner and invalidate its cached copy.
+     *               (the copy on the old owner is removed during an expansion, so no stale document is read or relocated later).
+     *               the _id is added to the GlobalSecondaryIndex of the indexed fields before the document is written.
+     * @param dbName: the database name.
+     * @param collName: the collection name.
+     * @param key: the _id of the document, which is also the sharding key.
+     * @param doc: the document, its _id is set to the key.
+     * @return none.
+     */
+    public void put(String dbName, String collName, String key, DBObject doc)
+    {
+	DBObject query = new BasicDBObject("_id", key);
+	doc.put("_id", key);
+	//the index entry is added first: a failure after it leaves a stale entry, which findByIndex drops, never a missing one.
+	this.SecondaryIndex.onWrite(dbName, collName, key, doc);
+	MongoClient new_client = this.mPersistClient.getNewShardedPersistClient(key);
+	this.upsertDocument(new_client, dbName, collName, query, doc);
+
+	MongoClient old_client = this.mPersistClient.getOldShardedPersistClient(key);
+	if(old_client != new_client)
+	{
+	    this.removeDocument(old_client, dbName, collName, query);
+	}
+	this.invalidate(cacheKey(dbName, collName, key));
+    }
+    
+    /**
+     * @Title: delete.
+     * @Description: the function which is used to remove a document from both owners and invalidate its cached copy.
+     *               during an expansion the tombstone of the document is left first, so a copy which the PersistentRebalancer
+     *               read before the delete is removed again(see PersistentRebalancer.recordDelete).
+     * @param dbName: the database name.
+     * @param collName: the collection name.
+     * @param key: the _id of the document, which is also the sharding key.
+     * @return none.
+     */
+    public void delete(String dbName, String collName, String key)
+    {
+	DBObject query = new BasicDBObject("_id", key);
+	MongoClient new_client = this.mPersistClient.getNewShardedPersistClient(key);
+	MongoClient old_client = this.mPersistClient.getOldShardedPersistClient(key);
+	if(old_client != new_client)
+	{
+	    this.mPersistClient.getRebalancer().recordDelete(dbName, collName, key);
+	}
+	this.removeDocument(new_client, dbName, collName, query);
+
+	if(old_client != new_client)
+	{
+	    this.removeDocument(old_client, dbName, collName, query);
+	}
+	this.invalidate(cacheKey(dbName, collName, key));
+    }
+    
+    /**
+     * @Title: invalidate.
+     * @Description: the function which is used to delete a cache key from its new owner and its old owner,
+     *               and from the near caches of all the JVMs. the write version of the key is bumped on the new owner,
+     *               so a load which started before can not cache its copy.
+     * @param cache_key: the cache key.
+     * @return none.
+     */
+    private void invalidate(final String cache_key)
+    {
+	final List<String> keys = Arrays.asList(cache_key, CACHE_VERSION_PREFIX + cache_key);
+	final List<String> args = Arrays.asList(String.valueOf(CACHE_VERSION_TTL_SECONDS));
+	JedisSentinelPool new_pool = this.mCacheClient.getNewShardedCacheClient(cache_key);
+	JedisSentinelPool old_pool = this.mCacheClient.getOldShardedCacheClient(cache_key);
+	//the version is bumped on the new owner, where the loads read it & fill the cache.
+	this.mCacheClient.execute(new_pool, new CacheCallback<Object>()
+	{
+	    @Override
+	    public Object doInCache(Jedis jedis)
+	    {
+		return jedis.eval(INVALIDATE_SCRIPT, keys, args);
+	    }
+	});
+	if(old_pool != new_pool)
+	{
+	    this.mCacheClient.execute(old_pool, new CacheCallback<Long>()
+	    {
+		@Override
+		public Long doInCache(Jedis jedis)
+		{
+		    return jedis.del(cache_key);
+		}
+	    });
+	}
+	this.mCacheClient.invalidateNearCache(cache_key);
+    }
+    
+    /**
+     * @Title: addSecondaryIndex.
+     * @Description: the function which is used to index a non-sharding-key field of a collection, like "email".
+     * @param dbName: the database name.
+     * @param collName: the collection name.
+     * @param field: the field.
+     * @return none.
+     */
+    public void addSecondaryIndex(String dbName, String collName, String field)
+    {
+	this.SecondaryIndex.addIndex(dbName, collName, field);
+    }
+    
+    /**
+     * @Title: findByIndex.
+     * @Description: the function which is used to find the documents by the value of an indexed field.
+     *               the _ids are read from the GlobalSecondaryIndex and each document is read from its owner only;
+     *               a document which no longer has the value on its primary is dropped from the result and from the index.
+     *               (a miss of the hedged read is checked on the primary first, and the document is read again from the
+     *               primary after the removal, so a write which set the value meanwhile is indexed again).
+     * @param dbName: the database name.
+     * @param collName: the collection name.
+     * @param field: the indexed field.
+     * @param value: the value of the field.
+     * @return List<DBObject>: the documents, empty when no document has the value.
+     */
+    public List<DBObject> findByIndex(String dbName, String collName, String field, Object value)
+    {
+	List<DBObject> docs = new ArrayList<DBObject>();
+	String expected = String.valueOf(value);
+	for(String key : this.SecondaryIndex.lookup(dbName, collName, field, value))
+	{
+	    DBObject doc = this.getPersistDocument(dbName, collName, key);
+	    if((doc != null) && expected.equals(String.valueOf(doc.get(field))))
+	    {
+		docs.add(doc);
+		continue;
+	    }
+	    //a hedged read may come from a lagging secondary, the entry is only judged stale by the primary.
+	    doc = this.readPersistDocument(dbName, collName, key, false);
+	    if((doc != null) && expected.equals(String.valueOf(doc.get(field))))
+	    {
+		docs.add(doc);
+		continue;
+	    }
+	    this.SecondaryIndex.removeStale(dbName, collName, field, value, key);
+	    doc = this.readPersistDocument(dbName, collName, key, false);
+	    if((doc != null) && expected.equals(String.valueOf(doc.get(field))))
+	    {
+		this.SecondaryIndex.onWrite(dbName, collName, key, doc);
+		docs.add(doc);
+	    }
+	}
+	return docs;
+    }
+    
+    /**
+     * @Title: getSecondaryIndex.
+     * @Description: the function which is used to get the global secondary index, for its counters.
+     * @return GlobalSecondaryIndex: the global secondary index.
+     */
+    public GlobalSecondaryIndex getSecondaryIndex()
+    {
+	return this.SecondaryIndex;
+    }
+    
+    /**
+     * @Title: setCacheTtlSeconds.
+     * @Description: the function which is used to change the ttl of the documents which are populated into the cache.
+     * @param ttlSeconds: the ttl in seconds.
+     * @return none.
+     */
+    public void setCacheTtlSeconds(int ttlSeconds)
+    {
+	this.CacheTtlSeconds = ttlSeconds;
+    }
+    
+    /**
+     * @Title: setEarlyRefreshBeta.
+     * @Description: the function which is used to change the beta of the probabilistic early refresh.
+     * @param beta: > 1.0 favors earlier refresh, 0 disables the early refresh.
+     * @return none.
+     */
+    public void setEarlyRefreshBeta(double beta)
+    {
+	this.EarlyRefreshBeta = beta;
+    }
+    
+    /**
+     * @Title: getCacheHits.
+     * @Description: the function which is used to get the number of the get calls which were served by the cache.
+     * @return long: the cache hit number.
+     */
+    public long getCacheHits()
+    {
+	return this.CacheHits.get();
+    }
+    
+    /**
+     * @Title: getCacheLoads.
+     * @Description: the function which is used to get the number of the loads from the persistent layer.
+     *               (the concurrent misses on the same key are counted once).
+     * @return long: the load number.
+     */
+    public long getCacheLoads()
+    {
+	return this.CacheLoads.get();
+    }
+    
+    /**
+     * @Title: getEarlyRefreshes.
+     * @Description: the function which is used to get the number of the early refreshes.
+     * @return long: the early refresh number.
+     */
+    public long getEarlyRefreshes()
+    {
+	return this.EarlyRefreshes.get();
+    }
+    
+    /**
+     * @Title: getRacedLoads.
+     * @Description: the function which is used to get the number of the loads which were not cached, because a put or a delete
+     *               changed the document while it was loaded.
+     * @return long: the raced load number.
+     */
+    public long getRacedLoads()
+    {
+	return this.RacedLoads.get();
+    }
 }
@@ -0,0 +1,347 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: GlobalSecondaryIndex.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The global secondary index of the documents, which is stored in the cache layer.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of GlobalSecondaryIndex was written.
+ */
+//package name.
+package generaldbplatform;
+
+//class import for java utilities.
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+//class import for jedis client.
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisSentinelPool;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+//class import for mongodb client.
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+
+/**
+ * @ClassName: GlobalSecondaryIndex.
+ * @Description: this class maps the value of an indexed field to the _ids(the sharding keys) of the documents which have it,
+ *               so a lookup by the field reads one cache key and then only the owners of those _ids, instead of a
+ *               scatter-gather query on all the shards. the index stores the _ids instead of the shards, so it stays right
+ *               when the shard number changes(the _ids are routed by the current topology when they are read).
+ *               each indexed value is a Redis set "GSI:db.coll:field:value" of the _ids, routed like the other cache keys.
+ *               a set which holds the COMPLETE_MARKER has all the _ids: it was built by a scatter-gather query, and every
+ *               later write adds its _id(SADD only adds, so a write during the build is never lost). a set without the marker
+ *               (never built, or evicted) is rebuilt from the persistent layer on its next lookup.
+ *               the _ids of the documents which were changed or removed are not removed on the write, the reader verifies
+ *               each document and removes the stale _ids.
+ */
+public class GlobalSecondaryIndex
+{
+    /**
+     * @FieldName: INDEX_KEY_PREFIX & COMPLETE_MARKER.
+     * @Description: the prefix of the index keys, and the member which marks an index set as complete(no _id is "\0").
+     */
+    public static final String INDEX_KEY_PREFIX = "GSI:";
+    private static final String COMPLETE_MARKER = "\0";
+
+    /**
+     * @FieldName: mCacheClient & mPersistClient.
+     * @Description: the cache layer which stores the index, and the persistent layer which rebuilds it.
+     */
+    private final CacheLayerClient mCacheClient;
+    private final PersistentLayerClient mPersistClient;
+
+    /**
+     * @FieldName: IndexedFields.
+     * @Description: the indexed fields of each collection, the key is "db.coll".
+     */
+    private final ConcurrentMap<String, List<String>> IndexedFields = new ConcurrentHashMap<String, List<String>>();
+
+    /**
+     * @FieldName: Lookups & Rebuilds & StaleEntries.
+     * @Description: the index lookups, the index sets which were rebuilt from the persistent layer,
+     *               and the stale _ids which were removed by the lookups.
+     */
+    private final AtomicLong Lookups = new AtomicLong();
+    private final AtomicLong Rebuilds = new AtomicLong();
+    private final AtomicLong StaleEntries = new AtomicLong();
+
+    /**
+     * @Title: GlobalSecondaryIndex.
+     * @Description: the construct function of the GlobalSecondaryIndex class.
+     * @param cacheClient: the cache layer which stores the index.
+     * @param persistClient: the persistent layer which rebuilds the index.
+     * @return none.
+     */
+    public GlobalSecondaryIndex(CacheLayerClient cacheClient, PersistentLayerClient persistClient)
+    {
+	this.mCacheClient = cacheClient;
+	this.mPersistClient = persistClient;
+    }
+
+    /**
+     * @Title: addIndex.
+     * @Description: the function is used to index a field of a collection, the documents written before are found by the
+     *               rebuild of each value on its first lookup.
+     * @param dbName: the database name.
+     * @param collName: the collection name.
+     * @param field: the indexed field, like "email".
+     * @return none.
+     */
+    public void addIndex(String dbName, String collName, String field)
+    {
+	if("_id".equals(field))
+	{
+	    throw new IllegalArgumentException("the _id is the sharding key, it needs no secondary index");
+	}
+	String name = dbName + "." + collName;
+	List<String> fields = this.IndexedFields.get(name);
+	if(fields == null)
+	{
+	    fields = new CopyOnWriteArrayList<String>();
+	    List<String> existed = this.IndexedFields.putIfAbsent(name, fields);
+	    if(existed != null)
+	    {
+		fields = existed;
+	    }
+	}
+	synchronized(fields)
+	{
+	    if(!fields.contains(field))
+	    {
+		fields.add(field);
+	    }
+	}
+    }
+
+    /**
+     * @Title: isIndexed.
+     * @Description: the function shows a field of a collection is indexed or not.
+     * @param dbName: the database name.
+     * @param collName: the collection name.
+     * @param field: the field.
+     * @return boolean: true when the field is indexed.
+     */
+    public boolean isIndexed(String dbName, String collName, String field)
+    {
+	List<String> fields = this.IndexedFields.get(dbName + "." + collName);
+	return (fields != null) && fields.contains(field);
+    }
+
+    /**
+     * @Title: indexKey.
+     * @Description: the function is used to get the cache key of the index set of one value.
+     * @param dbName: the database name.
+     * @param collName: the collection name.
+     * @param field: the indexed field.
+     * @param value: the value of the field.
+     * @return String: the cache key.
+     */
+    public static String indexKey(String dbName, String collName, String field, Object value)
+    {
+	return INDEX_KEY_PREFIX + dbName + "." + collName + ":" + field + ":" + String.valueOf(value);
+    }
+
+    /**
+     * @Title: onWrite.
+     * @Description: the function which adds the _id of a written document to the index set of each of its indexed values.
+     *               it is called after the document is written, so a rebuild which misses the document still gets its _id.
+     * @param dbName: the database name.
+     * @param collName: the collection name.
+     * @param key: the _id of the document.
+     * @param doc: the written document.
+     * @return none.
+     */
+    public void onWrite(String dbName, String collName, final String key, DBObject doc)
+    {
+	List<String> fields = this.IndexedFields.get(dbName + "." + collName);
+	if(fields == null)
+	{
+	    return;
+	}
+	for(String field : fields)
+	{
+	    Object value = doc.get(field);
+	    if(value == null)
+	    {
+		continue;
+	    }
+	    final String index_key = indexKey(dbName, collName, field, value);
+	    this.mCacheClient.execute(this.routeIndex(index_key), "sadd", new CacheCallback<Long>()
+	    {
+		@Override
+		public Long doInCache(Jedis jedis)
+		{
+		    return jedis.sadd(index_key, key);
+		}
+	    });
+	}
+    }
+
+    /**
+     * @Title: lookup.
+     * @Description: the function is used to get the _ids of the documents whose field has the value.
+     *               the new owner of the index set is read first; during an expansion the old owner is read when the new
+     *               owner has no complete set; when neither has it, the set is rebuilt by a scatter-gather query.
+     *               the _ids may be stale, the caller verifies the documents and calls removeStale.
+     * @param dbName: the database name.
+     * @param collName: the collection name.
+     * @param field: the indexed field.
+     * @param value: the value of the field.
+     * @return Set<String>: the _ids, empty when no document has the value.
+     */
+    public Set<String> lookup(String dbName, String collName, String field, Object value)
+    {
+	if(!this.isIndexed(dbName, collName, field))
+	{
+	    throw new IllegalArgumentException(dbName + "." + collName + ":" + field + " is not indexed");
+	}
+	this.Lookups.incrementAndGet();
+	final String index_key = indexKey(dbName, collName, field, value);
+	JedisSentinelPool new_pool = this.routeIndex(index_key);
+	Set<String> members = this.readIndex(new_pool, index_key);
+	if(!members.contains(COMPLETE_MARKER))
+	{
+	    JedisSentinelPool old_pool = this.mCacheClient.getOldShardedCacheClient(index_key);
+	    Set<String> old_members = (old_pool == new_pool) ? Collections.<String>emptySet() : this.readIndex(old_pool, index_key);
+	    if(old_members.contains(COMPLETE_MARKER))
+	    {
+		//the set is not moved yet, the _ids written through the new routing view are on the new owner.
+		members.addAll(old_members);
+	    }
+	    else
+	    {
+		members.addAll(this.rebuild(new_pool, index_key, dbName, collName, field, value));
+	    }
+	}
+	members.remove(COMPLETE_MARKER);
+	return members;
+    }
+
+    /**
+     * @Title: rebuild.
+     * @Description: the function which finds the _ids of a value on all the shards and stores them with the COMPLETE_MARKER.
+     *               (the query fails on a failed shard, so an incomplete set is never marked as complete).
+     * @param pool: the new owner of the index set.
+     * @param index_key: the cache key of the index set.
+     * @param dbName: the database name.
+     * @param collName: the collection name.
+     * @param field: the indexed field.
+     * @param value: the value of the field.
+     * @return List<String>: the found _ids.
+     */
+    private List<String> rebuild(JedisSentinelPool pool, final String index_key, String dbName, String collName, String field, Object value)
+    {
+	List<String> keys = new ArrayList<String>();
+	ScatterGatherCursor cursor = this.mPersistClient.scatterGather(dbName, collName, new BasicDBObject(field, value), null, 0);
+	try
+	{
+	    while(cursor.hasNext())
+	    {
+		keys.add(String.valueOf(cursor.next().get("_id")));
+	    }
+	}
+	finally
+	{
+	    cursor.close();
+	}
+	final String[] members = keys.toArray(new String[keys.size() + 1]);
+	members[keys.size()] = COMPLETE_MARKER;
+	this.mCacheClient.execute(pool, "sadd", new CacheCallback<Long>()
+	{
+	    @Override
+	    public Long doInCache(Jedis jedis)
+	    {
+		return jedis.sadd(index_key, members);
+	    }
+	});
+	this.Rebuilds.incrementAndGet();
+	return keys;
+    }
+
+    /**
+     * @Title: removeStale.
+     * @Description: the function is used to remove the _id of a document which no longer has the value from its index set.
+     * @param dbName: the database name.
+     * @param collName: the collection name.
+     * @param field: the indexed field.
+     * @param value: the value of the field.
+     * @param key: the stale _id.
+     * @return none.
+     */
+    public void removeStale(String dbName, String collName, String field, Object value, final String key)
+    {
+	final String index_key = indexKey(dbName, collName, field, value);
+	this.mCacheClient.execute(this.routeIndex(index_key), "srem", new CacheCallback<Long>()
+	{
+	    @Override
+	    public Long doInCache(Jedis jedis)
+	    {
+		return jedis.srem(index_key, key);
+	    }
+	});
+	this.StaleEntries.incrementAndGet();
+    }
+
+    /**
+     * @Title: readIndex.
+     * @Description: the function which reads an index set from the master of a shard(a replica may miss the latest _ids).
+     * @param pool: the owner of the index set.
+     * @param index_key: the cache key of the index set.
+     * @return Set<String>: a copy of the members, empty when the set does not exist.
+     */
+    private Set<String> readIndex(JedisSentinelPool pool, final String index_key)
+    {
+	Set<String> members = this.mCacheClient.execute(pool, "smembers", new CacheCallback<Set<String>>()
+	{
+	    @Override
+	    public Set<String> doInCache(Jedis jedis)
+	    {
+		return jedis.smembers(index_key);
+	    }
+	});
+	return (members == null) ? new HashSet<String>() : new HashSet<String>(members);
+    }
+
+    /**
+     * @Title: routeIndex.
+     * @Description: the function which routes an index set to its new owner.
+     * @param index_key: the cache key of the index set.
+     * @return JedisSentinelPool: the owner.
+     */
+    private JedisSentinelPool routeIndex(String index_key)
+    {
+	JedisSentinelPool pool = this.mCacheClient.getNewShardedCacheClient(index_key);
+	if(pool == null)
+	{
+	    throw new JedisConnectionException("no cache shard for the index key " + index_key);
+	}
+	return pool;
+    }
+
+    public long getLookups()
+    {
+	return this.Lookups.get();
+    }
+
+    public long getRebuilds()
+    {
+	return this.Rebuilds.get();
+    }
+
+    public long getStaleEntries()
+    {
+	return this.StaleEntries.get();
+    }
+}
@@ -0,0 +1,372 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: HotKeyDetector.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The streaming hot-key detector of the cache layer(a count-min sketch with the top-K keys).
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of HotKeyDetector was written.
+ *    2.2026-10-17 Skip the lock of the top-K for a key whose count is not above the coldest hot key of a full top-K.
+ */
+//package name.
+package generaldbplatform;
+
+//class import for java utilities.
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * @ClassName: HotKeyDetector.
+ * @Description: this class counts the key accesses in a count-min sketch(DEPTH rows of Width counters) and keeps the
+ *               top-K keys whose count reaches the HotThreshold as the hot keys.
+ *               the counts slide with the time: there is a sketch for the current window and one for the previous window,
+ *               the count of a key is the sum of both, and the previous sketch is dropped when a new window starts,
+ *               so a key which is not accessed any more stops being hot after 2 windows at most.
+ *               record() hashes the key once and increments DEPTH atomic counters, it only locks when a hot key is added
+ *               to a full top-K or when the window rotates.
+ */
+public class HotKeyDetector
+{
+    /**
+     * @FieldName: DEPTH.
+     * @Description: the row number of the sketch, the estimate is the minimum of the rows.
+     */
+    private static final int DEPTH = 4;
+
+    /**
+     * @FieldName: DEFAULT_WIDTH & DEFAULT_WINDOW_MILLIS & DEFAULT_HOT_THRESHOLD & DEFAULT_TOP_K.
+     * @Description: the default counters per row, window length, hot count in 2 windows & max hot key number.
+     */
+    public static final int DEFAULT_WIDTH = 4096;
+    public static final long DEFAULT_WINDOW_MILLIS = 5000;
+    public static final long DEFAULT_HOT_THRESHOLD = 1000;
+    public static final int DEFAULT_TOP_K = 32;
+
+    /**
+     * @ClassName: Window.
+     * @Description: the sketch of one time window.
+     */
+    private static final class Window
+    {
+	final long startMillis;
+	final AtomicLongArray counts;
+
+	Window(long startMillis, int width)
+	{
+	    this.startMillis = startMillis;
+	    this.counts = new AtomicLongArray(DEPTH * width);
+	}
+    }
+
+    /**
+     * @FieldName: Width & Mask.
+     * @Description: the counters per row(a power of 2) & the index mask.
+     */
+    private final int Width;
+    private final int Mask;
+
+    /**
+     * @FieldName: WindowMillis & HotThreshold & TopK.
+     * @Description: the window length, the count which makes a key hot, and the max hot key number.
+     */
+    private volatile long WindowMillis;
+    private volatile long HotThreshold;
+    private volatile int TopK;
+
+    /**
+     * @FieldName: current & previous.
+     * @Description: the sketches of the current & the previous window.(replaced together under the lock of this)
+     */
+    private volatile Window current;
+    private volatile Window previous;
+
+    /**
+     * @FieldName: hotKeys.
+     * @Description: the hot keys & their counts when they were last seen.
+     */
+    private final ConcurrentMap<String, Long> hotKeys = new ConcurrentHashMap<String, Long>();
+
+    /**
+     * @FieldName: MinHotCount.
+     * @Description: the count of the coldest hot key when the top-K is full, 0 when it is not full.
+     *               (it is updated under the lock of hotKeys, the counts which are replaced out of the lock may make it stale
+     *               until the next change of the top-K).
+     */
+    private volatile long MinHotCount = 0;
+
+    /**
+     * @Title: HotKeyDetector.
+     * @Description: the construct function of the HotKeyDetector class with the default settings.
+     * @return none.
+     */
+    public HotKeyDetector()
+    {
+	this(DEFAULT_WIDTH, DEFAULT_WINDOW_MILLIS, DEFAULT_HOT_THRESHOLD, DEFAULT_TOP_K);
+    }
+
+    /**
+     * @Title: HotKeyDetector.
+     * @Description: the construct function of the HotKeyDetector class.
+     * @param width: the counters per row, rounded up to a power of 2.
+     * @param windowMillis: the window length in milliseconds.
+     * @param hotThreshold: the accesses in the current & the previous window which make a key hot.
+     * @param topK: the max hot key number.
+     * @return none.
+     */
+    public HotKeyDetector(int width, long windowMillis, long hotThreshold, int topK)
+    {
+	int rounded = Integer.highestOneBit(Math.max(16, width - 1) << 1);
+	this.Width = rounded;
+	this.Mask = rounded - 1;
+	this.WindowMillis = windowMillis;
+	this.HotThreshold = hotThreshold;
+	this.TopK = topK;
+	long now = System.currentTimeMillis();
+	this.current = new Window(now, rounded);
+	this.previous = new Window(now - windowMillis, rounded);
+    }
+
+    /**
+     * @Title: record.
+     * @Description: the function which counts one access of a key.
+     * @param key: the key.
+     * @return boolean: the key is hot or not after this access.
+     */
+    public boolean record(String key)
+    {
+	Window window = this.rotateIfNeeded();
+	Window last = this.previous;
+	long hash = ShardKeyHash.hash(key);
+	int h1 = (int)hash;
+	int h2 = (int)(hash >>> 32) | 1;
+	long current_min = Long.MAX_VALUE;
+	long previous_min = Long.MAX_VALUE;
+	for(int row = 0; row < DEPTH; row++)
+	{
+	    int index = row * this.Width + ((h1 + row * h2) & this.Mask);
+	    current_min = Math.min(current_min, window.counts.incrementAndGet(index));
+	    previous_min = Math.min(previous_min, last.counts.get(index));
+	}
+	long count = current_min + previous_min;
+	if(count < this.HotThreshold)
+	{
+	    return false;
+	}
+	return this.offer(key, count);
+    }
+
+    /**
+     * @Title: isHot.
+     * @Description: the function which shows a key is in the top-K hot keys or not.
+     * @param key: the key.
+     * @return boolean: true for a hot key.
+     */
+    public boolean isHot(String key)
+    {
+	return this.hotKeys.containsKey(key);
+    }
+
+    /**
+     * @Title: offer.
+     * @Description: the function which puts a key over the threshold into the top-K, the coldest key is dropped when it is full.
+     * @param key: the key.
+     * @param count: the estimated count of the key.
+     * @return boolean: the key is in the top-K or not.
+     */
+    private boolean offer(String key, long count)
+    {
+	if(this.hotKeys.replace(key, count) != null)
+	{
+	    return true;
+	}
+	//the key would be the coldest of a full top-K and be dropped at once.
+	if(count <= this.MinHotCount)
+	{
+	    return false;
+	}
+	synchronized(this.hotKeys)
+	{
+	    this.hotKeys.put(key, count);
+	    while(this.hotKeys.size() > Math.max(1, this.TopK))
+	    {
+		String coldest = null;
+		long coldest_count = Long.MAX_VALUE;
+		for(Map.Entry<String, Long> entry : this.hotKeys.entrySet())
+		{
+		    if(entry.getValue() < coldest_count)
+		    {
+			coldest = entry.getKey();
+			coldest_count = entry.getValue();
+		    }
+		}
+		this.hotKeys.remove(coldest);
+	    }
+	    this.updateMinHotCount();
+	    return this.hotKeys.containsKey(key);
+	}
+    }
+
+    /**
+     * @Title: updateMinHotCount.
+     * @Description: the function which sets MinHotCount by the current top-K.(the caller holds the lock of hotKeys)
+     * @return none.
+     */
+    private void updateMinHotCount()
+    {
+	if(this.hotKeys.size() < Math.max(1, this.TopK))
+	{
+	    this.MinHotCount = 0;
+	    return;
+	}
+	long min_count = Long.MAX_VALUE;
+	for(Long value : this.hotKeys.values())
+	{
+	    min_count = Math.min(min_count, value);
+	}
+	this.MinHotCount = min_count;
+    }
+
+    /**
+     * @Title: rotateIfNeeded.
+     * @Description: the function which starts a new window when the current window is over,
+     *               drops the hot keys whose count is below the threshold in the new pair of windows, and recounts the others.
+     * @return Window: the current window.
+     */
+    private Window rotateIfNeeded()
+    {
+	Window window = this.current;
+	long now = System.currentTimeMillis();
+	if(now - window.startMillis < this.WindowMillis)
+	{
+	    return window;
+	}
+	synchronized(this)
+	{
+	    window = this.current;
+	    if(now - window.startMillis < this.WindowMillis)
+	    {
+		return window;
+	    }
+	    //after an idle period longer than a window the old counts are both outdated.
+	    boolean idle = (now - window.startMillis >= 2 * this.WindowMillis);
+	    this.previous = idle ? new Window(now - this.WindowMillis, this.Width) : window;
+	    this.current = new Window(now, this.Width);
+	    synchronized(this.hotKeys)
+	    {
+		Iterator<Map.Entry<String, Long>> it = this.hotKeys.entrySet().iterator();
+		while(it.hasNext())
+		{
+		    Map.Entry<String, Long> entry = it.next();
+		    long count = this.estimate(entry.getKey());
+		    if(count < this.HotThreshold)
+		    {
+			it.remove();
+		    }
+		    else
+		    {
+			entry.setValue(count);
+		    }
+		}
+		this.updateMinHotCount();
+	    }
+	    return this.current;
+	}
+    }
+
+    /**
+     * @Title: estimate.
+     * @Description: the function which estimates the accesses of a key in the current & the previous window.
+     *               (the count-min sketch never under-estimates, it over-estimates by about 2/Width of all the accesses).
+     * @param key: the key.
+     * @return long: the estimated count.
+     */
+    public long estimate(String key)
+    {
+	Window window = this.current;
+	Window last = this.previous;
+	long hash = ShardKeyHash.hash(key);
+	int h1 = (int)hash;
+	int h2 = (int)(hash >>> 32) | 1;
+	long current_min = Long.MAX_VALUE;
+	long previous_min = Long.MAX_VALUE;
+	for(int row = 0; row < DEPTH; row++)
+	{
+	    int index = row * this.Width + ((h1 + row * h2) & this.Mask);
+	    current_min = Math.min(current_min, window.counts.get(index));
+	    previous_min = Math.min(previous_min, last.counts.get(index));
+	}
+	return current_min + previous_min;
+    }
+
+    /**
+     * @Title: getHotKeys.
+     * @Description: the function which is used to get the current hot keys, the hottest first.
+     * @return List<Map.Entry<String, Long>>: the hot keys & their counts when they were last seen.
+     */
+    public List<Map.Entry<String, Long>> getHotKeys()
+    {
+	this.rotateIfNeeded();
+	List<Map.Entry<String, Long>> keys = new ArrayList<Map.Entry<String, Long>>();
+	for(Map.Entry<String, Long> entry : this.hotKeys.entrySet())
+	{
+	    keys.add(new AbstractMap.SimpleImmutableEntry<String, Long>(entry.getKey(), entry.getValue()));
+	}
+	Collections.sort(keys, new Comparator<Map.Entry<String, Long>>()
+	{
+	    @Override
+	    public int compare(Map.Entry<String, Long> a, Map.Entry<String, Long> b)
+	    {
+		return Long.compare(b.getValue(), a.getValue());
+	    }
+	});
+	return keys;
+    }
+
+    /**
+     * @Title: setHotThreshold.
+     * @Description: the function which is used to change the count which makes a key hot.
+     * @param hotThreshold: the accesses in the current & the previous window.
+     * @return none.
+     */
+    public void setHotThreshold(long hotThreshold)
+    {
+	this.HotThreshold = hotThreshold;
+    }
+
+    /**
+     * @Title: setWindowMillis.
+     * @Description: the function which is used to change the window length, it takes effect from the next window.
+     * @param windowMillis: the window length in milliseconds.
+     * @return none.
+     */
+    public void setWindowMillis(long windowMillis)
+    {
+	this.WindowMillis = windowMillis;
+    }
+
+    /**
+     * @Title: setTopK.
+     * @Description: the function which is used to change the max hot key number.
+     * @param topK: the max hot key number.
+     * @return none.
+     */
+    public void setTopK(int topK)
+    {
+	synchronized(this.hotKeys)
+	{
+	    this.TopK = topK;
+	    this.updateMinHotCount();
+	}
+    }
+}
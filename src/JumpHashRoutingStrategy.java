@@ -0,0 +1,46 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: JumpHashRoutingStrategy.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The jump consistent hash routing strategy.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of JumpHashRoutingStrategy was written.
+ */
+//package name.
+package generaldbplatform;
+
+/**
+ * @ClassName: JumpHashRoutingStrategy.
+ * @Description: this class implements the jump consistent hash of Lamping & Veach.
+ *               (when the shard number grows from N to N+1, only about 1/(N+1) of the keys move, and all of them move to the new shard).
+ *               it needs no memory and fits our sharding map well, because the new shards are always appended at the tail.
+ */
+public class JumpHashRoutingStrategy implements ShardRoutingStrategy
+{
+    /**
+     * @Title: getShardIndex.
+     * @Description: the function which is used to compute the shard index by the jump consistent hash.
+     * @param keyHash: the hash value of the key.
+     * @param shardNum: the number of the shards in the current routing view(old or new).
+     * @return int: the shard index in the range [0, shardNum).
+     */
+    @Override
+    public int getShardIndex(long keyHash, int shardNum)
+    {
+	long key = keyHash;
+	long b = -1;
+	long j = 0;
+
+	while(j < shardNum)
+	{
+	    b = j;
+	    key = key * 2862933555777941757L + 1;
+	    j = (long)((b + 1) * ((double)(1L << 31) / (double)((key >>> 33) + 1)));
+	}
+	return (int)b;
+    }
+}
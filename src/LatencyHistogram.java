@@ -0,0 +1,214 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: LatencyHistogram.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The lock-free & allocation-free latency histogram of one operation on one shard.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of LatencyHistogram was written.
+ *    2.2026-10-17 Add the getSum function for the interval means of the AdaptivePoolController.
+ */
+//package name.
+package generaldbplatform;
+
+//class import for java utilities.
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * @ClassName: LatencyHistogram.
+ * @Description: this class counts the latencies(in microseconds) in log-linear buckets like the HdrHistogram:
+ *               the values below 32 have their own bucket, and every power of 2 above is split in 16 buckets,
+ *               so a percentile is within 1/16(6.25%) of the real value. the buckets cover 0us ~ 2^41us(25 days)
+ *               in 608 counters, the larger values are counted in the last bucket.
+ *               record() is a few atomic increments on a pre-allocated AtomicLongArray, it never allocates or locks.
+ */
+public class LatencyHistogram
+{
+    /**
+     * @FieldName: SUB_BITS & SUB_NUM & LINEAR_NUM & MAX_EXPONENT & BUCKET_NUM.
+     * @Description: the layout of the buckets(see the class description).
+     */
+    private static final int SUB_BITS = 4;
+    private static final int SUB_NUM = 1 << SUB_BITS;
+    private static final int LINEAR_NUM = SUB_NUM * 2;
+    private static final int MAX_EXPONENT = 40;
+    static final int BUCKET_NUM = LINEAR_NUM + (MAX_EXPONENT - SUB_BITS) * SUB_NUM;
+
+    /**
+     * @FieldName: buckets.
+     * @Description: the count of each bucket.
+     */
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_NUM);
+
+    /**
+     * @FieldName: count & sum & max.
+     * @Description: the number, the total & the max of the recorded latencies.
+     */
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @Title: bucketIndex.
+     * @Description: the function which maps a latency to its bucket.
+     * @param micros: the latency in microseconds, >= 0.
+     * @return int: the bucket index.
+     */
+    static int bucketIndex(long micros)
+    {
+	if(micros < LINEAR_NUM)
+	{
+	    return (int)micros;
+	}
+	int exponent = 63 - Long.numberOfLeadingZeros(micros);
+	int sub = (int)((micros >>> (exponent - SUB_BITS)) & (SUB_NUM - 1));
+	int index = LINEAR_NUM + (exponent - SUB_BITS - 1) * SUB_NUM + sub;
+	return (index < BUCKET_NUM) ? index : (BUCKET_NUM - 1);
+    }
+
+    /**
+     * @Title: bucketUpperBound.
+     * @Description: the function which gives the largest latency of a bucket.
+     * @param index: the bucket index.
+     * @return long: the largest latency in microseconds.
+     */
+    static long bucketUpperBound(int index)
+    {
+	if(index < LINEAR_NUM)
+	{
+	    return index;
+	}
+	if(index >= BUCKET_NUM - 1)
+	{
+	    return Long.MAX_VALUE;
+	}
+	int exponent = (index - LINEAR_NUM) / SUB_NUM + SUB_BITS + 1;
+	int sub = (index - LINEAR_NUM) % SUB_NUM;
+	long lower = ((long)(SUB_NUM + sub)) << (exponent - SUB_BITS);
+	return lower + (1L << (exponent - SUB_BITS)) - 1;
+    }
+
+    /**
+     * @Title: record.
+     * @Description: the function which records one latency.
+     * @param micros: the latency in microseconds, a negative value is recorded as 0.
+     * @return none.
+     */
+    public void record(long micros)
+    {
+	long value = (micros < 0) ? 0 : micros;
+	this.buckets.incrementAndGet(bucketIndex(value));
+	this.count.incrementAndGet();
+	this.sum.addAndGet(value);
+	long current = this.max.get();
+	while((value > current) && !this.max.compareAndSet(current, value))
+	{
+	    current = this.max.get();
+	}
+    }
+
+    /**
+     * @Title: getCount.
+     * @Description: the function which is used to get the number of the recorded latencies.
+     * @return long: the count.
+     */
+    public long getCount()
+    {
+	return this.count.get();
+    }
+
+    /**
+     * @Title: getSum.
+     * @Description: the function which is used to get the total of the recorded latencies.
+     * @return long: the total in microseconds.
+     */
+    public long getSum()
+    {
+	return this.sum.get();
+    }
+
+    /**
+     * @Title: getMax.
+     * @Description: the function which is used to get the max recorded latency.
+     * @return long: the max latency in microseconds.
+     */
+    public long getMax()
+    {
+	return this.max.get();
+    }
+
+    /**
+     * @Title: getPercentile.
+     * @Description: the function which is used to get a percentile of the recorded latencies.
+     *               (the buckets are read one by one while the others record, so it is a close estimate under load).
+     * @param percentile: the percentile in 0.0 ~ 100.0, like 99.9.
+     * @return long: the latency in microseconds, 0 when nothing was recorded.
+     */
+    public long getPercentile(double percentile)
+    {
+	long[] counts = new long[BUCKET_NUM];
+	long total = 0;
+	for(int i = 0; i < BUCKET_NUM; i++)
+	{
+	    counts[i] = this.buckets.get(i);
+	    total += counts[i];
+	}
+	return percentileOf(counts, total, percentile, this.max.get());
+    }
+
+    /**
+     * @Title: percentileOf.
+     * @Description: the function which finds a percentile in the bucket counts.
+     * @param counts: the bucket counts.
+     * @param total: the sum of the counts.
+     * @param percentile: the percentile in 0.0 ~ 100.0.
+     * @param max: the max recorded latency, the result never exceeds it.
+     * @return long: the latency in microseconds.
+     */
+    private static long percentileOf(long[] counts, long total, double percentile, long max)
+    {
+	if(total == 0)
+	{
+	    return 0;
+	}
+	long target = Math.max(1, (long)Math.ceil(total * percentile / 100.0));
+	long seen = 0;
+	for(int i = 0; i < counts.length; i++)
+	{
+	    seen += counts[i];
+	    if(seen >= target)
+	    {
+		return Math.min(bucketUpperBound(i), max);
+	    }
+	}
+	return max;
+    }
+
+    /**
+     * @Title: summarize.
+     * @Description: the function which is used to take a consistent summary of the histogram.
+     * @return LatencySummary: the count, mean, percentiles & max.
+     */
+    public LatencySummary summarize()
+    {
+	long[] counts = new long[BUCKET_NUM];
+	long total = 0;
+	for(int i = 0; i < BUCKET_NUM; i++)
+	{
+	    counts[i] = this.buckets.get(i);
+	    total += counts[i];
+	}
+	long max_value = this.max.get();
+	double mean = (total == 0) ? 0.0 : ((double)this.sum.get() / Math.max(total, this.count.get()));
+	return new LatencySummary(total, mean,
+				  percentileOf(counts, total, 50.0, max_value),
+				  percentileOf(counts, total, 90.0, max_value),
+				  percentileOf(counts, total, 99.0, max_value),
+				  percentileOf(counts, total, 99.9, max_value),
+				  max_value);
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: LatencySummary.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The summary of a LatencyHistogram at one moment.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of LatencySummary was written.
+ */
+//package name.
+package generaldbplatform;
+
+//class import for java utilities.
+import java.beans.ConstructorProperties;
+
+/**
+ * @ClassName: LatencySummary.
+ * @Description: this class is the immutable summary(count, mean, p50, p90, p99, p999, max) of a histogram,
+ *               all the latencies are in microseconds. it is exported by JMX as a CompositeData.
+ */
+public class LatencySummary
+{
+    private final long count;
+    private final double mean;
+    private final long p50;
+    private final long p90;
+    private final long p99;
+    private final long p999;
+    private final long max;
+
+    /**
+     * @Title: LatencySummary.
+     * @Description: the construct function of the LatencySummary class.
+     * @return none.
+     */
+    @ConstructorProperties({"count", "mean", "p50", "p90", "p99", "p999", "max"})
+    public LatencySummary(long count, double mean, long p50, long p90, long p99, long p999, long max)
+    {
+	this.count = count;
+	this.mean = mean;
+	this.p50 = p50;
+	this.p90 = p90;
+	this.p99 = p99;
+	this.p999 = p999;
+	this.max = max;
+    }
+
+    public long getCount()
+    {
+	return count;
+    }
+
+    public double getMean()
+    {
+	return mean;
+    }
+
+    public long getP50()
+    {
+	return p50;
+    }
+
+    public long getP90()
+    {
+	return p90;
+    }
+
+    public long getP99()
+    {
+	return p99;
+    }
+
+    public long getP999()
+    {
+	return p999;
+    }
+
+    public long getMax()
+    {
+	return max;
+    }
+
+    @Override
+    public String toString()
+    {
+	return String.format("count=%d mean=%.1fus p50=%dus p90=%dus p99=%dus p999=%dus max=%dus", count, mean, p50, p90, p99, p999, max);
+    }
+}
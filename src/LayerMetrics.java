@@ -0,0 +1,177 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: LayerMetrics.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The ShardMetrics of all the shards of one layer client.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of LayerMetrics was written.
+ */
+//package name.
+package generaldbplatform;
+
+//class import for java utilities.
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//class import for jmx.
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * @ClassName: LayerMetrics.
+ * @Description: this class holds the ShardMetrics of each shard index in an array which is copied when a shard is added,
+ *               so the request threads find the metrics of a shard without lock or allocation.
+ *               every ShardMetrics is registered in the platform MBeanServer as
+ *               "generaldbplatform:type=ShardMetrics,layer=<layer>,client=<id>,shard=<index>"
+ *               (the id tells apart the layer clients of one JVM). getShards() is the pull-style snapshot API.
+ */
+public class LayerMetrics
+{
+    /**
+     * @FieldName: CLIENT_IDS.
+     * @Description: the id generator of the layer clients.
+     */
+    private static final AtomicInteger CLIENT_IDS = new AtomicInteger();
+
+    /**
+     * @FieldName: layer & clientId.
+     * @Description: the layer name & the id of the layer client.
+     */
+    private final String layer;
+    private final int clientId;
+
+    /**
+     * @FieldName: shards.
+     * @Description: the ShardMetrics by the shard index.
+     */
+    private volatile ShardMetrics[] shards = new ShardMetrics[0];
+
+    /**
+     * @Title: LayerMetrics.
+     * @Description: the construct function of the LayerMetrics class.
+     * @param layer: the layer name("cache" or "persist").
+     * @return none.
+     */
+    public LayerMetrics(String layer)
+    {
+	this.layer = layer;
+	this.clientId = CLIENT_IDS.incrementAndGet();
+    }
+
+    /**
+     * @Title: shard.
+     * @Description: the function which is used to get the metrics of a shard, they are created & registered on the first call.
+     * @param index: the shard index.
+     * @return ShardMetrics: the metrics of the shard.
+     */
+    public ShardMetrics shard(int index)
+    {
+	ShardMetrics[] current = this.shards;
+	if((index < current.length) && (current[index] != null))
+	{
+	    return current[index];
+	}
+	synchronized(this)
+	{
+	    current = this.shards;
+	    if((index < current.length) && (current[index] != null))
+	    {
+		return current[index];
+	    }
+	    ShardMetrics[] next = Arrays.copyOf(current, Math.max(current.length, index + 1));
+	    ShardMetrics metrics = new ShardMetrics(this.layer, index);
+	    next[index] = metrics;
+	    this.shards = next;
+	    this.register(metrics);
+	    return metrics;
+	}
+    }
+
+    /**
+     * @Title: register.
+     * @Description: the function which registers the MBean of a shard.
+     *               (the metrics work without JMX, so a failed registration is ignored).
+     * @param metrics: the metrics of the shard.
+     * @return none.
+     */
+    private void register(ShardMetrics metrics)
+    {
+	try
+	{
+	    ObjectName name = new ObjectName("generaldbplatform:type=ShardMetrics,layer=" + this.layer
+					     + ",client=" + this.clientId + ",shard=" + metrics.getShardIndex());
+	    ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, name);
+	}
+	catch(JMException e)
+	{
+	}
+	catch(SecurityException e)
+	{
+	}
+    }
+
+    /**
+     * @Title: getShards.
+     * @Description: the function which is used to get the metrics of all the shards.
+     * @return List<ShardMetrics>: the metrics by the shard index.
+     */
+    public List<ShardMetrics> getShards()
+    {
+	ShardMetrics[] current = this.shards;
+	List<ShardMetrics> list = new ArrayList<ShardMetrics>(current.length);
+	for(ShardMetrics metrics : current)
+	{
+	    if(metrics != null)
+	    {
+		list.add(metrics);
+	    }
+	}
+	return Collections.unmodifiableList(list);
+    }
+
+    /**
+     * @Title: isTimeout.
+     * @Description: the function which shows an exception is a timeout or not: a socket timeout, a pool exhaustion,
+     *               or a MongoDB server selection/execution timeout, in the exception or its causes.
+     * @param e: the exception.
+     * @return boolean: true for a timeout.
+     */
+    public static boolean isTimeout(Throwable e)
+    {
+	for(Throwable cause = e; cause != null; cause = cause.getCause())
+	{
+	    if((cause instanceof java.net.SocketTimeoutException)
+	       || (cause instanceof java.util.NoSuchElementException)
+	       || (cause instanceof com.mongodb.MongoTimeoutException)
+	       || (cause instanceof com.mongodb.MongoExecutionTimeoutException)
+	       || (cause instanceof com.mongodb.MongoSocketReadTimeoutException))
+	    {
+		return true;
+	    }
+	    if(cause.getCause() == cause)
+	    {
+		break;
+	    }
+	}
+	return false;
+    }
+
+    @Override
+    public String toString()
+    {
+	StringBuilder builder = new StringBuilder();
+	for(ShardMetrics metrics : this.getShards())
+	{
+	    builder.append(metrics).append('\n');
+	}
+	return builder.toString();
+    }
+}
@@ -0,0 +1,250 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: LzCompressor.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The pure-Java LZ77 block compressor of the cache values.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of LzCompressor was written.
+ */
+//package name.
+package generaldbplatform;
+
+//class import for java utilities.
+import java.util.Arrays;
+
+/**
+ * @ClassName: LzCompressor.
+ * @Description: this class compresses a block with a single-probe hash table of the 4-byte sequences(like LZ4, it trades the ratio
+ *               for the speed), and writes it as sequences of a token, the literals, a 2-byte little-endian offset & the match length.
+ *               the high 4 bits of the token are the literal length, the low 4 bits are the match length - 4, and 15 means
+ *               more length bytes follow(255 means one more). the last sequence only has literals.
+ *               the format is fixed by the version of the codec header, it must not change(see ValueCodecs).
+ *               an instance keeps its hash table between the calls and is not thread-safe, ValueCodecs keeps one per thread.
+ */
+public final class LzCompressor
+{
+    /**
+     * @FieldName: MIN_MATCH & LAST_LITERALS & MAX_OFFSET & HASH_BITS & SKIP_STRENGTH.
+     * @Description: the shortest match, the bytes at the end which are always literals, the farthest match, the size of
+     *               the hash table, and how fast the search skips ahead in the bytes which do not compress.
+     */
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5;
+    private static final int MAX_OFFSET = 65535;
+    private static final int HASH_BITS = 12;
+    private static final int SKIP_STRENGTH = 6;
+
+    /**
+     * @FieldName: table.
+     * @Description: the last position of each hashed 4-byte sequence, -1 for none.
+     */
+    private final int[] table = new int[1 << HASH_BITS];
+
+    /**
+     * @Title: maxCompressedLength.
+     * @Description: the function is used to get the max size of a compressed block, for a block which does not compress.
+     * @param length: the size of the block.
+     * @return int: the max compressed size.
+     */
+    public static int maxCompressedLength(int length)
+    {
+	return length + length / 255 + 16;
+    }
+
+    /**
+     * @Title: compress.
+     * @Description: the function is used to compress a block at the write position of the buffer.
+     * @param src: the bytes.
+     * @param offset: the first byte of the block.
+     * @param length: the size of the block.
+     * @param out: the buffer.
+     * @return none.
+     */
+    public void compress(byte[] src, int offset, int length, CodecBuffer out)
+    {
+	out.ensure(maxCompressedLength(length));
+	byte[] dst = out.array();
+	int d = out.position();
+	Arrays.fill(this.table, -1);
+
+	int end = offset + length;
+	int match_limit = end - LAST_LITERALS;
+	int anchor = offset;
+	int i = offset;
+	int misses = 0;
+	while(i + MIN_MATCH <= match_limit)
+	{
+	    int sequence = readInt(src, i);
+	    int h = (sequence * -1640531535) >>> (32 - HASH_BITS);
+	    int ref = this.table[h];
+	    this.table[h] = i;
+	    if((ref < 0) || (i - ref > MAX_OFFSET) || (readInt(src, ref) != sequence))
+	    {
+		i += 1 + (misses++ >>> SKIP_STRENGTH);
+		continue;
+	    }
+	    misses = 0;
+	    int match_length = MIN_MATCH;
+	    while((i + match_length < match_limit) && (src[ref + match_length] == src[i + match_length]))
+	    {
+		match_length++;
+	    }
+	    d = writeSequence(src, anchor, i - anchor, dst, d, i - ref, match_length);
+	    i += match_length;
+	    anchor = i;
+	}
+	d = writeSequence(src, anchor, end - anchor, dst, d, 0, 0);
+	out.position(d);
+    }
+
+    /**
+     * @Title: decompress.
+     * @Description: the function is used to decompress a block at the write position of the buffer.
+     * @param src: the bytes.
+     * @param offset: the first byte of the compressed block.
+     * @param length: the size of the compressed block.
+     * @param out: the buffer.
+     * @param rawLength: the size of the block before the compression.
+     * @return none.
+     * @throws IllegalArgumentException: when the block is malformed or its size is not rawLength.
+     */
+    public static void decompress(byte[] src, int offset, int length, CodecBuffer out, int rawLength)
+    {
+	out.ensure(rawLength);
+	byte[] dst = out.array();
+	int start = out.position();
+	int d = start;
+	int d_end = start + rawLength;
+	int s = offset;
+	int s_end = offset + length;
+	while(true)
+	{
+	    if(s >= s_end)
+	    {
+		throw new IllegalArgumentException("the compressed block is truncated");
+	    }
+	    int token = src[s++] & 0xFF;
+	    int literal_length = token >>> 4;
+	    if(literal_length == 15)
+	    {
+		int b;
+		do
+		{
+		    if(s >= s_end)
+		    {
+			throw new IllegalArgumentException("the compressed block is truncated");
+		    }
+		    b = src[s++] & 0xFF;
+		    literal_length += b;
+		}
+		while(b == 255);
+	    }
+	    if((literal_length > s_end - s) || (literal_length > d_end - d))
+	    {
+		throw new IllegalArgumentException("the literals are out of the block");
+	    }
+	    System.arraycopy(src, s, dst, d, literal_length);
+	    s += literal_length;
+	    d += literal_length;
+	    if(s == s_end)
+	    {
+		break;
+	    }
+
+	    if(s + 2 > s_end)
+	    {
+		throw new IllegalArgumentException("the compressed block is truncated");
+	    }
+	    int match_offset = (src[s] & 0xFF) | ((src[s + 1] & 0xFF) << 8);
+	    s += 2;
+	    int match_length = token & 0x0F;
+	    if(match_length == 15)
+	    {
+		int b;
+		do
+		{
+		    if(s >= s_end)
+		    {
+			throw new IllegalArgumentException("the compressed block is truncated");
+		    }
+		    b = src[s++] & 0xFF;
+		    match_length += b;
+		}
+		while(b == 255);
+	    }
+	    match_length += MIN_MATCH;
+	    if((match_offset == 0) || (match_offset > d - start) || (match_length > d_end - d))
+	    {
+		throw new IllegalArgumentException("the match is out of the block");
+	    }
+	    //the match may overlap the bytes it writes(a repeated pattern), so it is copied byte by byte.
+	    int ref = d - match_offset;
+	    for(int k = 0; k < match_length; k++)
+	    {
+		dst[d++] = dst[ref++];
+	    }
+	}
+	if(d != d_end)
+	{
+	    throw new IllegalArgumentException("the block has " + (d - start) + " bytes instead of " + rawLength);
+	}
+	out.position(d);
+    }
+
+    /**
+     * @Title: writeSequence.
+     * @Description: the function which writes the token, the literals and the match of one sequence.
+     * @param src: the bytes.
+     * @param literals: the first literal.
+     * @param literalLength: the literal number.
+     * @param dst: the output bytes.
+     * @param d: the output position.
+     * @param matchOffset: the distance of the match, 0 for the last sequence.
+     * @param matchLength: the length of the match, 0 for the last sequence.
+     * @return int: the output position after the sequence.
+     */
+    private static int writeSequence(byte[] src, int literals, int literalLength, byte[] dst, int d, int matchOffset, int matchLength)
+    {
+	int token_position = d++;
+	int token = Math.min(literalLength, 15) << 4;
+	if(literalLength >= 15)
+	{
+	    d = writeLength(dst, d, literalLength - 15);
+	}
+	System.arraycopy(src, literals, dst, d, literalLength);
+	d += literalLength;
+	if(matchLength > 0)
+	{
+	    dst[d++] = (byte)matchOffset;
+	    dst[d++] = (byte)(matchOffset >>> 8);
+	    int length = matchLength - MIN_MATCH;
+	    token |= Math.min(length, 15);
+	    if(length >= 15)
+	    {
+		d = writeLength(dst, d, length - 15);
+	    }
+	}
+	dst[token_position] = (byte)token;
+	return d;
+    }
+
+    private static int writeLength(byte[] dst, int d, int length)
+    {
+	while(length >= 255)
+	{
+	    dst[d++] = (byte)255;
+	    length -= 255;
+	}
+	dst[d++] = (byte)length;
+	return d;
+    }
+
+    private static int readInt(byte[] src, int i)
+    {
+	return (src[i] & 0xFF) | ((src[i + 1] & 0xFF) << 8) | ((src[i + 2] & 0xFF) << 16) | ((src[i + 3] & 0xFF) << 24);
+    }
+}
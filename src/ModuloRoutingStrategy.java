@@ -0,0 +1,35 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: ModuloRoutingStrategy.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The legacy "key % N" routing strategy.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of ModuloRoutingStrategy was written.
+ */
+//package name.
+package generaldbplatform;
+
+/**
+ * @ClassName: ModuloRoutingStrategy.
+ * @Description: this class keeps the original "hash % N" routing as the baseline of the other strategies.
+ *               (almost every key is remapped when N changes, so it should not be used for the auto-extended clusters).
+ */
+public class ModuloRoutingStrategy implements ShardRoutingStrategy
+{
+    /**
+     * @Title: getShardIndex.
+     * @Description: the function which is used to compute the shard index by the mod_number.
+     * @param keyHash: the hash value of the key.
+     * @param shardNum: the number of the shards in the current routing view(old or new).
+     * @return int: the shard index in the range [0, shardNum).
+     */
+    @Override
+    public int getShardIndex(long keyHash, int shardNum)
+    {
+	return (int)((keyHash & Long.MAX_VALUE) % shardNum);
+    }
+}
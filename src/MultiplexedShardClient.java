@@ -0,0 +1,1019 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: MultiplexedShardClient.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The multiplexed & pipelined NIO transport of one cache shard.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of MultiplexedShardClient was written.
+ *    2.2026-10-17 Add the sendBinary function whose bulk replies are the raw bytes, for the values of ValueCodecs.
+ *    3.2026-10-17 Fail a connection whose oldest reply is late beyond the timeout, and cap the pending commands of a connection.
+ *    4.2026-10-17 The detached constructor only serves the JMH benchmarks of the benchmark source set.
+ */
+//package name.
+package generaldbplatform;
+
+//class import for java utilities.
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+//class import for jedis client.
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.exceptions.JedisException;
+
+/**
+ * @ClassName: MultiplexedShardClient.
+ * @Description: this class sends the commands of all the threads over a few non-blocking connections to the master of one shard,
+ *               instead of borrowing a blocking connection of the JedisSentinelPool for each command.
+ *               a command is encoded & queued on the caller thread, and its future is queued in the same order on the connection,
+ *               so the replies(which Redis sends in the command order) complete the futures in FIFO order.
+ *               the IO thread writes everything which was queued since its last write in one gathering write, so the commands
+ *               of concurrent threads are batched without waiting for each other.
+ *               the master is found by the sentinels, and checked every SENTINEL_CHECK_MILLIS: when it switched, or a connection
+ *               fails or gets a READONLY reply(it talks to a demoted master), the connection is closed, its pending commands fail
+ *               with JedisConnectionException, and the next command connects to the current master.
+ *               a reply which does not come within the timeout fails its connection as well(the IO thread checks the oldest
+ *               pending command of each connection), so the replies of a stalled server are never matched to the later commands.
+ *               a connection holds at most MaxPending commands, the commands beyond that fail at once.
+ *               the futures are completed on the IO thread, so their dependent stages must not block.
+ */
+public class MultiplexedShardClient implements Closeable
+{
+    /**
+     * @FieldName: DEFAULT_CONNECTIONS & SENTINEL_CHECK_MILLIS.
+     * @Description: the default connection number of a shard, and the interval of the master check.
+     */
+    public static final int DEFAULT_CONNECTIONS = 2;
+    private static final long SENTINEL_CHECK_MILLIS = 5000;
+
+    /**
+     * @FieldName: DEFAULT_MAX_PENDING & MAX_SELECT_MILLIS.
+     * @Description: the default max pending commands of a connection, and the max wait of the IO thread between two timeout checks.
+     */
+    public static final int DEFAULT_MAX_PENDING = 10000;
+    private static final long MAX_SELECT_MILLIS = 1000;
+
+    /**
+     * @FieldName: UTF8 & CRLF & INCOMPLETE.
+     * @Description: the charset of the commands & the replies, the line end of RESP, and the parse result of a partial reply.
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final byte[] CRLF = new byte[] { '\r', '\n' };
+    private static final Object INCOMPLETE = new Object();
+
+    /**
+     * @FieldName: SENTINEL_CHECKER.
+     * @Description: the thread which checks the masters of all the clients of the JVM.
+     */
+    private static final ScheduledExecutorService SENTINEL_CHECKER = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+    {
+	@Override
+	public Thread newThread(Runnable r)
+	{
+	    Thread thread = new Thread(r, "multiplexSentinelThread");
+	    thread.setDaemon(true);
+	    return thread;
+	}
+    });
+
+    /**
+     * @FieldName: masterName & sentinels & timeout & metrics.
+     * @Description: the master name of the shard, the sentinel addresses, the connect & reply timeout in milliseconds,
+     *               and the metrics of the shard(null when they are not recorded).
+     */
+    private final String masterName;
+    private final Set<String> sentinels;
+    private final int timeout;
+    private final ShardMetrics metrics;
+
+    /**
+     * @FieldName: connections & nextConnection.
+     * @Description: the connections to the master, the commands are spread over them in turn.
+     */
+    private final Connection[] connections;
+    private final AtomicInteger nextConnection = new AtomicInteger();
+
+    /**
+     * @FieldName: selector & ioThread & registrations & flushes.
+     * @Description: the selector of the connections & its thread, the new connections which must be registered by the thread,
+     *               and the connections which have queued commands to write.
+     */
+    private final Selector selector;
+    private final Thread ioThread;
+    private final ConcurrentLinkedQueue<Connection> registrations = new ConcurrentLinkedQueue<Connection>();
+    private final ConcurrentLinkedQueue<Connection> flushes = new ConcurrentLinkedQueue<Connection>();
+
+    /**
+     * @FieldName: master & checkTask & closed.
+     * @Description: the current master address, the periodic master check, and the client is closed or not.
+     */
+    private volatile HostAndPort master;
+    private final ScheduledFuture<?> checkTask;
+    private volatile boolean closed = false;
+
+    /**
+     * @FieldName: maxPending.
+     * @Description: the max pending commands of a connection.
+     */
+    private volatile int maxPending = DEFAULT_MAX_PENDING;
+
+    /**
+     * @FieldName: commands & writes & reconnects & timeouts & overloads.
+     * @Description: the sent commands, the gathering writes which sent them, the connections which were opened after a failure,
+     *               the connections which were failed by a late reply, and the commands which were rejected by a full connection.
+     */
+    private final AtomicLong commands = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong reconnects = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong overloads = new AtomicLong();
+
+    /**
+     * @Title: MultiplexedShardClient.
+     * @Description: the construct function of the MultiplexedShardClient class, the connections are opened by the first commands.
+     * @param masterName: the master name of the shard in the sentinels.
+     * @param sentinels: the sentinel addresses.
+     * @param connectionNum: the number of the connections to the master.
+     * @param timeout: the connect & reply timeout in milliseconds.
+     * @param metrics: the metrics of the shard, null when they are not recorded.
+     * @return none.
+     */
+    public MultiplexedShardClient(String masterName, Set<String> sentinels, int connectionNum, int timeout, ShardMetrics metrics)
+    {
+	if(connectionNum <= 0)
+	{
+	    throw new IllegalArgumentException("connectionNum must be positive: " + connectionNum);
+	}
+	this.masterName = masterName;
+	this.sentinels = sentinels;
+	this.timeout = timeout;
+	this.metrics = metrics;
+	this.connections = new Connection[connectionNum];
+	for(int i = 0; i < connectionNum; i++)
+	{
+	    this.connections[i] = new Connection();
+	}
+	try
+	{
+	    this.selector = Selector.open();
+	}
+	catch(IOException e)
+	{
+	    throw new JedisConnectionException("the selector could not be opened", e);
+	}
+	this.ioThread = new Thread(new Runnable()
+	{
+	    @Override
+	    public void run()
+	    {
+		ioLoop();
+	    }
+	}, "cacheMultiplexThread");
+	this.ioThread.setDaemon(true);
+	this.ioThread.start();
+	this.checkTask = SENTINEL_CHECKER.scheduleWithFixedDelay(new Runnable()
+	{
+	    @Override
+	    public void run()
+	    {
+		checkMaster();
+	    }
+	}, SENTINEL_CHECK_MILLIS, SENTINEL_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @Title: MultiplexedShardClient.
+     * @Description: the construct function of a detached MultiplexedShardClient which connects to a fixed address without sentinels
+     *               (it only exists for the JMH ShardingBenchmark of the benchmark source set against the RespStandIn).
+     * @param address: the address of the server.
+     * @param connectionNum: the number of the connections.
+     * @param timeout: the connect & reply timeout in milliseconds.
+     * @return none.
+     */
+    MultiplexedShardClient(HostAndPort address, int connectionNum, int timeout)
+    {
+	this("detached", Collections.<String>emptySet(), connectionNum, timeout, null);
+	this.master = address;
+    }
+
+    /**
+     * @Title: send.
+     * @Description: the function is used to send one command, the reply completes the future:
+     *               a status or a bulk reply as String(null for a missing value), an integer as Long, an array as List<Object>,
+     *               and an error reply as JedisDataException.
+     * @param args: the command name & the arguments, like "GET", "user:42".
+     * @return CompletableFuture<Object>: the reply of the command.
+     */
+    public CompletableFuture<Object> send(String... args)
+    {
+	return this.send(new CompletableFuture<Object>(), args);
+    }
+
+    /**
+     * @Title: sendBinary.
+     * @Description: the function is used to send one command whose bulk replies are the raw bytes(byte[]), like the binary
+     *               values of ValueCodecs, the other replies are the same as the replies of send.
+     * @param args: the command name & the arguments, like "GET", "user:42".
+     * @return CompletableFuture<Object>: the reply of the command.
+     */
+    public CompletableFuture<Object> sendBinary(String... args)
+    {
+	return this.send(new BinaryReply(), args);
+    }
+
+    /**
+     * @Title: send.
+     * @Description: the function which queues one command with the future of its reply.
+     * @param future: the future of the reply, a BinaryReply keeps the bulk replies as byte[].
+     * @param args: the command name & the arguments.
+     * @return CompletableFuture<Object>: the future.
+     */
+    private CompletableFuture<Object> send(CompletableFuture<Object> future, String... args)
+    {
+	if(this.closed)
+	{
+	    future.completeExceptionally(new JedisConnectionException("the multiplexed client of " + this.masterName + " is closed"));
+	    return future;
+	}
+	Connection connection = this.connections[(this.nextConnection.getAndIncrement() & 0x7FFFFFFF) % this.connections.length];
+	try
+	{
+	    connection.enqueue(encode(args), future);
+	}
+	catch(JedisConnectionException e)
+	{
+	    future.completeExceptionally(e);
+	}
+	this.commands.incrementAndGet();
+	return future;
+    }
+
+    /**
+     * @Title: call.
+     * @Description: the function is used to send one command and wait for its reply, the latency is recorded in the shard metrics
+     *               under the name of the command in lower case.
+     * @param args: the command name & the arguments.
+     * @return Object: the reply, see send.
+     */
+    public Object call(String... args)
+    {
+	long start = System.nanoTime();
+	try
+	{
+	    Object reply = await(this.send(args), this.timeout);
+	    if(this.metrics != null)
+	    {
+		this.metrics.record(args[0].toLowerCase(), start);
+	    }
+	    return reply;
+	}
+	catch(RuntimeException e)
+	{
+	    if(this.metrics != null)
+	    {
+		this.metrics.recordError(LayerMetrics.isTimeout(e));
+	    }
+	    throw e;
+	}
+    }
+
+    /**
+     * @Title: await.
+     * @Description: the function is used to wait for a reply, the failure is thrown as it is.
+     *               (a wait which times out leaves the command pending, the IO thread fails its connection once the reply
+     *               is late beyond the timeout of the client).
+     * @param future: the future of the reply.
+     * @param timeoutMillis: the max wait.
+     * @return Object: the reply.
+     */
+    public static Object await(CompletableFuture<Object> future, long timeoutMillis)
+    {
+	try
+	{
+	    return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+	}
+	catch(ExecutionException e)
+	{
+	    if(e.getCause() instanceof RuntimeException)
+	    {
+		throw (RuntimeException)e.getCause();
+	    }
+	    throw new JedisConnectionException(e.getCause());
+	}
+	catch(TimeoutException e)
+	{
+	    throw new JedisConnectionException("no reply in " + timeoutMillis + "ms", new SocketTimeoutException());
+	}
+	catch(InterruptedException e)
+	{
+	    Thread.currentThread().interrupt();
+	    throw new JedisConnectionException("interrupted while waiting for the reply", e);
+	}
+    }
+
+    /**
+     * @Title: get.
+     * @Description: the function is used to get the value of a key.
+     * @param key: the key.
+     * @return String: the value, null when the key does not exist.
+     */
+    public String get(String key)
+    {
+	return (String)this.call("GET", key);
+    }
+
+    /**
+     * @Title: getConnectionNum & getCommands & getWrites & getReconnects.
+     * @Description: the functions are used to get the connection number, the sent commands, the gathering writes
+     *               (commands / writes is the mean batch size) and the reconnects after a failure.
+     */
+    public int getConnectionNum()
+    {
+	return this.connections.length;
+    }
+
+    public long getCommands()
+    {
+	return this.commands.get();
+    }
+
+    public long getWrites()
+    {
+	return this.writes.get();
+    }
+
+    public long getReconnects()
+    {
+	return this.reconnects.get();
+    }
+
+    public long getTimeouts()
+    {
+	return this.timeouts.get();
+    }
+
+    public long getOverloads()
+    {
+	return this.overloads.get();
+    }
+
+    /**
+     * @Title: setMaxPending.
+     * @Description: the function is used to change the max pending commands of a connection.
+     * @param maxPending: the command number.
+     * @return none.
+     */
+    public void setMaxPending(int maxPending)
+    {
+	if(maxPending <= 0)
+	{
+	    throw new IllegalArgumentException("maxPending must be positive: " + maxPending);
+	}
+	this.maxPending = maxPending;
+    }
+
+    /**
+     * @Title: close.
+     * @Description: the function is used to close the connections, the pending commands fail.
+     * @return none.
+     */
+    @Override
+    public void close()
+    {
+	this.closed = true;
+	this.checkTask.cancel(false);
+	for(Connection connection : this.connections)
+	{
+	    connection.fail(new JedisConnectionException("the multiplexed client of " + this.masterName + " is closed"));
+	}
+	this.selector.wakeup();
+    }
+
+    /**
+     * @Title: ioLoop.
+     * @Description: the function of the IO thread, it registers the new connections, writes the queued commands, reads the replies
+     *               and fails the connections whose replies are late.
+     * @return none.
+     */
+    private void ioLoop()
+    {
+	long select_millis = (this.timeout > 0) ? Math.max(1, Math.min(MAX_SELECT_MILLIS, this.timeout / 2)) : MAX_SELECT_MILLIS;
+	while(!this.closed)
+	{
+	    if(this.timeout > 0)
+	    {
+		long now = System.nanoTime();
+		for(Connection timed : this.connections)
+		{
+		    timed.expire(now);
+		}
+	    }
+	    try
+	    {
+		this.selector.select(select_millis);
+	    }
+	    catch(IOException e)
+	    {
+		continue;
+	    }
+	    Connection connection;
+	    while((connection = this.registrations.poll()) != null)
+	    {
+		connection.register();
+	    }
+	    while((connection = this.flushes.poll()) != null)
+	    {
+		connection.flush();
+	    }
+	    Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+	    while(keys.hasNext())
+	    {
+		SelectionKey key = keys.next();
+		keys.remove();
+		connection = (Connection)key.attachment();
+		if(!key.isValid())
+		{
+		    continue;
+		}
+		if(key.isReadable())
+		{
+		    connection.read();
+		}
+		if(key.isValid() && key.isWritable())
+		{
+		    connection.flush();
+		}
+	    }
+	}
+	try
+	{
+	    this.selector.close();
+	}
+	catch(IOException e)
+	{
+	}
+    }
+
+    /**
+     * @Title: resolveMaster.
+     * @Description: the function which asks the sentinels in turn for the address of the master.
+     * @return HostAndPort: the master address.
+     */
+    private HostAndPort resolveMaster()
+    {
+	for(String sentinel : this.sentinels)
+	{
+	    String[] hostPort = sentinel.split(":");
+	    Jedis jedis = null;
+	    try
+	    {
+		jedis = new Jedis(hostPort[0], Integer.parseInt(hostPort[1]), this.timeout);
+		List<String> address = jedis.sentinelGetMasterAddrByName(this.masterName);
+		if((address != null) && (address.size() == 2))
+		{
+		    return new HostAndPort(address.get(0), Integer.parseInt(address.get(1)));
+		}
+	    }
+	    catch(JedisException e)
+	    {
+		//try the next sentinel.
+	    }
+	    finally
+	    {
+		if(jedis != null)
+		{
+		    jedis.close();
+		}
+	    }
+	}
+	throw new JedisConnectionException("no sentinel knows the master " + this.masterName);
+    }
+
+    /**
+     * @Title: checkMaster.
+     * @Description: the function which closes the connections to the old master after a failover.
+     * @return none.
+     */
+    private void checkMaster()
+    {
+	HostAndPort current = this.master;
+	if(this.closed || (current == null))
+	{
+	    return;
+	}
+	HostAndPort resolved;
+	try
+	{
+	    resolved = this.resolveMaster();
+	}
+	catch(JedisConnectionException e)
+	{
+	    return;
+	}
+	if(!sameAddress(current, resolved))
+	{
+	    this.master = resolved;
+	    for(Connection connection : this.connections)
+	    {
+		connection.fail(new JedisConnectionException("the master of " + this.masterName + " switched to " + resolved));
+	    }
+	}
+    }
+
+    private static boolean sameAddress(HostAndPort a, HostAndPort b)
+    {
+	return a.getHost().equals(b.getHost()) && (a.getPort() == b.getPort());
+    }
+
+    /**
+     * @Title: encode.
+     * @Description: the function which encodes a command as a RESP array of bulk strings.
+     * @param args: the command name & the arguments.
+     * @return byte[]: the encoded command.
+     */
+    static byte[] encode(String... args)
+    {
+	byte[][] encoded = new byte[args.length][];
+	int size = 16;
+	for(int i = 0; i < args.length; i++)
+	{
+	    encoded[i] = args[i].getBytes(UTF8);
+	    size += encoded[i].length + 16;
+	}
+	ByteBuffer buffer = ByteBuffer.allocate(size);
+	buffer.put((byte)'*').put(Integer.toString(args.length).getBytes(UTF8)).put(CRLF);
+	for(int i = 0; i < encoded.length; i++)
+	{
+	    buffer.put((byte)'$').put(Integer.toString(encoded[i].length).getBytes(UTF8)).put(CRLF);
+	    buffer.put(encoded[i]).put(CRLF);
+	}
+	byte[] command = new byte[buffer.position()];
+	buffer.flip();
+	buffer.get(command);
+	return command;
+    }
+
+    /**
+     * @Title: parse.
+     * @Description: the function which parses one reply from the position of the buffer, the position is moved after the reply.
+     * @param buffer: the received bytes.
+     * @return Object: the reply(see send, the bulk replies are byte[] until the reply is completed),
+     *                 or INCOMPLETE when the buffer does not hold the whole reply(the position is undefined then).
+     */
+    static Object parse(ByteBuffer buffer)
+    {
+	if(!buffer.hasRemaining())
+	{
+	    return INCOMPLETE;
+	}
+	byte type = buffer.get();
+	String line = readLine(buffer);
+	if(line == null)
+	{
+	    return INCOMPLETE;
+	}
+	switch(type)
+	{
+	case '+':
+	    return line;
+	case '-':
+	    return new JedisDataException(line);
+	case ':':
+	    return Long.valueOf(Long.parseLong(line));
+	case '$':
+	{
+	    int length = Integer.parseInt(line);
+	    if(length < 0)
+	    {
+		return null;
+	    }
+	    if(buffer.remaining() < length + 2)
+	    {
+		return INCOMPLETE;
+	    }
+	    byte[] value = new byte[length];
+	    buffer.get(value);
+	    buffer.position(buffer.position() + 2);
+	    return value;
+	}
+	case '*':
+	{
+	    int count = Integer.parseInt(line);
+	    if(count < 0)
+	    {
+		return null;
+	    }
+	    List<Object> items = new ArrayList<Object>(count);
+	    for(int i = 0; i < count; i++)
+	    {
+		Object item = parse(buffer);
+		if(item == INCOMPLETE)
+		{
+		    return INCOMPLETE;
+		}
+		items.add(item);
+	    }
+	    return items;
+	}
+	default:
+	    throw new JedisConnectionException("unknown RESP type: " + (char)type);
+	}
+    }
+
+    /**
+     * @Title: text.
+     * @Description: the function which decodes the bulk replies of a parsed reply as UTF-8 strings.
+     * @param reply: the parsed reply.
+     * @return Object: the reply with String instead of byte[].
+     */
+    static Object text(Object reply)
+    {
+	if(reply instanceof byte[])
+	{
+	    return new String((byte[])reply, UTF8);
+	}
+	if(reply instanceof List)
+	{
+	    List<?> items = (List<?>)reply;
+	    List<Object> texts = new ArrayList<Object>(items.size());
+	    for(Object item : items)
+	    {
+		texts.add(text(item));
+	    }
+	    return texts;
+	}
+	return reply;
+    }
+
+    /**
+     * @Title: readLine.
+     * @Description: the function which reads the chars up to the next "\r\n".
+     * @param buffer: the received bytes.
+     * @return String: the line without the "\r\n", null when the line is not complete.
+     */
+    private static String readLine(ByteBuffer buffer)
+    {
+	int start = buffer.position();
+	for(int i = start; i + 1 < buffer.limit(); i++)
+	{
+	    if((buffer.get(i) == '\r') && (buffer.get(i + 1) == '\n'))
+	    {
+		byte[] line = new byte[i - start];
+		buffer.get(line);
+		buffer.position(i + 2);
+		return new String(line, UTF8);
+	    }
+	}
+	return null;
+    }
+
+    /**
+     * @ClassName: Connection.
+     * @Description: one non-blocking connection to the master, with its queued output and the futures of its pending commands.
+     *               the output & the futures are changed under the lock of the connection, so their orders are the same.
+     */
+    private final class Connection
+    {
+	private SocketChannel channel;
+	private SelectionKey key;
+	private final ArrayDeque<ByteBuffer> output = new ArrayDeque<ByteBuffer>();
+	private final ArrayDeque<CompletableFuture<Object>> pending = new ArrayDeque<CompletableFuture<Object>>();
+	private final ArrayDeque<Long> sentAt = new ArrayDeque<Long>();
+	private boolean flushScheduled = false;
+	private boolean everConnected = false;
+	private ByteBuffer input = ByteBuffer.allocate(16 * 1024);
+
+	/**
+	 * @Title: enqueue.
+	 * @Description: the function which queues one command, it connects first when the connection is closed.
+	 * @param command: the encoded command.
+	 * @param future: the future of the reply.
+	 * @return none.
+	 * @throws JedisConnectionException: when the connection could not be opened or it holds maxPending commands.
+	 */
+	void enqueue(byte[] command, CompletableFuture<Object> future)
+	{
+	    boolean schedule;
+	    synchronized(this)
+	    {
+		if(this.pending.size() >= maxPending)
+		{
+		    overloads.incrementAndGet();
+		    throw new JedisConnectionException("the connection to " + master + " has " + this.pending.size() + " pending commands");
+		}
+		if(this.channel == null)
+		{
+		    this.connect();
+		}
+		this.output.add(ByteBuffer.wrap(command));
+		this.pending.add(future);
+		this.sentAt.add(Long.valueOf(System.nanoTime()));
+		schedule = !this.flushScheduled;
+		this.flushScheduled = true;
+	    }
+	    if(schedule)
+	    {
+		flushes.add(this);
+		selector.wakeup();
+	    }
+	}
+
+	/**
+	 * @Title: connect.
+	 * @Description: the function which connects to the master(the caller holds the lock), the IO thread registers the channel.
+	 * @return none.
+	 */
+	private void connect()
+	{
+	    HostAndPort address = master;
+	    if(address == null)
+	    {
+		address = resolveMaster();
+		master = address;
+	    }
+	    SocketChannel opened = null;
+	    try
+	    {
+		opened = SocketChannel.open();
+		opened.socket().setTcpNoDelay(true);
+		opened.socket().connect(new InetSocketAddress(address.getHost(), address.getPort()), timeout);
+		opened.configureBlocking(false);
+	    }
+	    catch(IOException e)
+	    {
+		closeQuietly(opened);
+		//the master may have moved, it is resolved again by the next connect.
+		master = null;
+		throw new JedisConnectionException("could not connect to " + address, e);
+	    }
+	    this.channel = opened;
+	    this.input.clear();
+	    if(this.everConnected)
+	    {
+		reconnects.incrementAndGet();
+	    }
+	    this.everConnected = true;
+	    registrations.add(this);
+	    selector.wakeup();
+	}
+
+	/**
+	 * @Title: register.
+	 * @Description: the function which registers the channel to the selector on the IO thread.
+	 * @return none.
+	 */
+	synchronized void register()
+	{
+	    if(this.channel == null)
+	    {
+		return;
+	    }
+	    try
+	    {
+		this.key = this.channel.register(selector, SelectionKey.OP_READ, this);
+	    }
+	    catch(IOException e)
+	    {
+		this.fail(new JedisConnectionException("could not register the connection", e));
+		return;
+	    }
+	    if(!this.output.isEmpty())
+	    {
+		this.flush();
+	    }
+	}
+
+	/**
+	 * @Title: flush.
+	 * @Description: the function which writes all the queued commands in one gathering write on the IO thread,
+	 *               what the socket does not take is written when it is writable again.
+	 * @return none.
+	 */
+	synchronized void flush()
+	{
+	    if((this.channel == null) || (this.key == null))
+	    {
+		//it is flushed after the registration.
+		return;
+	    }
+	    try
+	    {
+		ByteBuffer[] buffers = this.output.toArray(new ByteBuffer[this.output.size()]);
+		this.channel.write(buffers);
+		writes.incrementAndGet();
+		while(!this.output.isEmpty() && !this.output.peek().hasRemaining())
+		{
+		    this.output.poll();
+		}
+	    }
+	    catch(IOException e)
+	    {
+		this.fail(new JedisConnectionException("the connection to " + master + " failed", e));
+		return;
+	    }
+	    if(this.output.isEmpty())
+	    {
+		this.flushScheduled = false;
+		this.key.interestOps(SelectionKey.OP_READ);
+	    }
+	    else
+	    {
+		this.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+	    }
+	}
+
+	/**
+	 * @Title: read.
+	 * @Description: the function which reads the replies on the IO thread and completes the futures in FIFO order.
+	 * @return none.
+	 */
+	void read()
+	{
+	    List<CompletableFuture<Object>> done = new ArrayList<CompletableFuture<Object>>();
+	    List<Object> replies = new ArrayList<Object>();
+	    boolean demoted = false;
+	    synchronized(this)
+	    {
+		if(this.channel == null)
+		{
+		    return;
+		}
+		try
+		{
+		    if(this.channel.read(this.input) < 0)
+		    {
+			this.fail(new JedisConnectionException("the connection was closed by the server"));
+			return;
+		    }
+		}
+		catch(IOException e)
+		{
+		    this.fail(new JedisConnectionException("the connection to " + master + " failed", e));
+		    return;
+		}
+		this.input.flip();
+		while(true)
+		{
+		    int start = this.input.position();
+		    Object reply;
+		    try
+		    {
+			reply = parse(this.input);
+		    }
+		    catch(RuntimeException e)
+		    {
+			this.fail(new JedisConnectionException("the reply could not be parsed", e));
+			return;
+		    }
+		    if(reply == INCOMPLETE)
+		    {
+			this.input.position(start);
+			break;
+		    }
+		    CompletableFuture<Object> future = this.pending.poll();
+		    this.sentAt.poll();
+		    if(future != null)
+		    {
+			done.add(future);
+			replies.add(reply);
+		    }
+		    if((reply instanceof JedisDataException) && String.valueOf(((JedisDataException)reply).getMessage()).startsWith("READONLY"))
+		    {
+			demoted = true;
+		    }
+		}
+		this.input.compact();
+		if(!this.input.hasRemaining())
+		{
+		    //one reply is larger than the buffer.
+		    ByteBuffer larger = ByteBuffer.allocate(this.input.capacity() * 2);
+		    this.input.flip();
+		    larger.put(this.input);
+		    this.input = larger;
+		}
+	    }
+
+	    //the futures are completed out of the lock, their dependent stages may send the next commands.
+	    for(int i = 0; i < done.size(); i++)
+	    {
+		Object reply = replies.get(i);
+		if(reply instanceof JedisDataException)
+		{
+		    done.get(i).completeExceptionally((JedisDataException)reply);
+		}
+		else
+		{
+		    done.get(i).complete((done.get(i) instanceof BinaryReply) ? reply : text(reply));
+		}
+	    }
+	    if(demoted)
+	    {
+		master = null;
+		this.fail(new JedisConnectionException("the master of " + masterName + " was demoted"));
+	    }
+	}
+
+	/**
+	 * @Title: fail.
+	 * @Description: the function which closes the connection and fails its pending commands, the next command connects again.
+	 * @param error: the failure of the pending commands.
+	 * @return none.
+	 */
+	void fail(JedisConnectionException error)
+	{
+	    List<CompletableFuture<Object>> failed;
+	    synchronized(this)
+	    {
+		if(this.key != null)
+		{
+		    this.key.cancel();
+		    this.key = null;
+		}
+		closeQuietly(this.channel);
+		this.channel = null;
+		this.output.clear();
+		this.flushScheduled = false;
+		failed = new ArrayList<CompletableFuture<Object>>(this.pending);
+		this.pending.clear();
+		this.sentAt.clear();
+	    }
+	    for(CompletableFuture<Object> future : failed)
+	    {
+		future.completeExceptionally(error);
+	    }
+	}
+
+	/**
+	 * @Title: expire.
+	 * @Description: the function which fails the connection on the IO thread when its oldest pending command got no reply
+	 *               within the timeout, the replies which may still come could not be matched to their commands any more.
+	 * @param now: the current System.nanoTime.
+	 * @return none.
+	 */
+	void expire(long now)
+	{
+	    Long oldest;
+	    synchronized(this)
+	    {
+		oldest = this.sentAt.peek();
+	    }
+	    if((oldest != null) && (now - oldest.longValue() > TimeUnit.MILLISECONDS.toNanos(timeout)))
+	    {
+		timeouts.incrementAndGet();
+		this.fail(new JedisConnectionException("no reply from " + master + " in " + timeout + "ms", new SocketTimeoutException()));
+	    }
+	}
+    }
+
+    /**
+     * @ClassName: BinaryReply.
+     * @Description: the future of a command of sendBinary, its bulk replies are not decoded as strings.
+     */
+    private static final class BinaryReply extends CompletableFuture<Object>
+    {
+    }
+
+    private static void closeQuietly(SocketChannel channel)
+    {
+	if(channel != null)
+	{
+	    try
+	    {
+		channel.close();
+	    }
+	    catch(IOException e)
+	    {
+	    }
+	}
+    }
+}
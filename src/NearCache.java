@@ -0,0 +1,293 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: NearCache.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The bounded in-process cache of the hot keys.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of NearCache was written.
+ *    2.2026-10-17 Keep the binary values of ValueCodecs as well as the String values.
+ */
+//package name.
+package generaldbplatform;
+
+//class import for java utilities.
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @ClassName: NearCache.
+ * @Description: this class keeps the values of the hot keys in the JVM for TtlMillis, so a hot key is not read from its
+ *               Redis shard on every access. it holds MaxEntries values at most: when it is full the expired values are
+ *               dropped first, then any value. a value is dropped at once when its key is invalidated, and it is never
+ *               older than TtlMillis even when an invalidation is lost.
+ *               a value is a String or a byte[](see ValueCodecs), it is read by the getter of its own type.
+ */
+public class NearCache
+{
+    /**
+     * @FieldName: DEFAULT_MAX_ENTRIES & DEFAULT_TTL_MILLIS.
+     * @Description: the default max value number & the default time to live of a value.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 1024;
+    public static final long DEFAULT_TTL_MILLIS = 1000;
+
+    /**
+     * @ClassName: Entry.
+     * @Description: a value & its expire time.
+     */
+    private static final class Entry
+    {
+	final Object value;
+	final long expireMillis;
+
+	Entry(Object value, long expireMillis)
+	{
+	    this.value = value;
+	    this.expireMillis = expireMillis;
+	}
+    }
+
+    /**
+     * @FieldName: entries.
+     * @Description: the values by the key.
+     */
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+    /**
+     * @FieldName: MaxEntries & TtlMillis.
+     * @Description: the max value number & the time to live of a value, a TtlMillis <= 0 disables the cache.
+     */
+    private volatile int MaxEntries;
+    private volatile long TtlMillis;
+
+    /**
+     * @FieldName: Hits & Invalidations.
+     * @Description: the reads which were served by this cache, and the values which were dropped by an invalidation.
+     */
+    private final AtomicLong Hits = new AtomicLong();
+    private final AtomicLong Invalidations = new AtomicLong();
+
+    /**
+     * @Title: NearCache.
+     * @Description: the construct function of the NearCache class.
+     * @param maxEntries: the max value number.
+     * @param ttlMillis: the time to live of a value in milliseconds.
+     * @return none.
+     */
+    public NearCache(int maxEntries, long ttlMillis)
+    {
+	this.MaxEntries = maxEntries;
+	this.TtlMillis = ttlMillis;
+    }
+
+    /**
+     * @Title: get.
+     * @Description: the function which is used to read the value of a key.
+     * @param key: the key.
+     * @return String: the value, or null when it is not cached, expired or binary.
+     */
+    public String get(String key)
+    {
+	Object value = this.lookup(key);
+	if(!(value instanceof String))
+	{
+	    return null;
+	}
+	this.Hits.incrementAndGet();
+	return (String)value;
+    }
+
+    /**
+     * @Title: getBytes.
+     * @Description: the function which is used to read the binary value of a key.
+     * @param key: the key.
+     * @return byte[]: the value, or null when it is not cached, expired or a String(the caller must not change it).
+     */
+    public byte[] getBytes(String key)
+    {
+	Object value = this.lookup(key);
+	if(!(value instanceof byte[]))
+	{
+	    return null;
+	}
+	this.Hits.incrementAndGet();
+	return (byte[])value;
+    }
+
+    /**
+     * @Title: lookup.
+     * @Description: the function which reads the value of a key, it drops the expired value.
+     * @param key: the key.
+     * @return Object: the value, or null when it is not cached or expired.
+     */
+    private Object lookup(String key)
+    {
+	Entry entry = this.entries.get(key);
+	if(entry == null)
+	{
+	    return null;
+	}
+	if(entry.expireMillis <= System.currentTimeMillis())
+	{
+	    this.entries.remove(key, entry);
+	    return null;
+	}
+	return entry.value;
+    }
+
+    /**
+     * @Title: put.
+     * @Description: the function which is used to cache the value of a key for TtlMillis.
+     * @param key: the key.
+     * @param value: the value, null is not cached.
+     * @return none.
+     */
+    public void put(String key, String value)
+    {
+	this.store(key, value);
+    }
+
+    /**
+     * @Title: put.
+     * @Description: the function which is used to cache the binary value of a key for TtlMillis.
+     * @param key: the key.
+     * @param value: the value, null is not cached(it must not be changed after the call).
+     * @return none.
+     */
+    public void put(String key, byte[] value)
+    {
+	this.store(key, value);
+    }
+
+    private void store(String key, Object value)
+    {
+	long ttl = this.TtlMillis;
+	if((value == null) || (ttl <= 0))
+	{
+	    return;
+	}
+	long now = System.currentTimeMillis();
+	if(this.entries.size() >= this.MaxEntries && !this.entries.containsKey(key))
+	{
+	    this.evict(now);
+	}
+	this.entries.put(key, new Entry(value, now + ttl));
+    }
+
+    /**
+     * @Title: evict.
+     * @Description: the function which makes room for one value, it drops the expired values, or one value when none expired.
+     * @param now: the current time in milliseconds.
+     * @return none.
+     */
+    private void evict(long now)
+    {
+	boolean dropped = false;
+	Iterator<Map.Entry<String, Entry>> it = this.entries.entrySet().iterator();
+	while(it.hasNext())
+	{
+	    if(it.next().getValue().expireMillis <= now)
+	    {
+		it.remove();
+		dropped = true;
+	    }
+	}
+	if(dropped)
+	{
+	    return;
+	}
+	it = this.entries.entrySet().iterator();
+	if(it.hasNext())
+	{
+	    it.next();
+	    it.remove();
+	}
+    }
+
+    /**
+     * @Title: invalidate.
+     * @Description: the function which is used to drop the value of a key.
+     * @param key: the key.
+     * @return none.
+     */
+    public void invalidate(String key)
+    {
+	if(this.entries.remove(key) != null)
+	{
+	    this.Invalidations.incrementAndGet();
+	}
+    }
+
+    /**
+     * @Title: clear.
+     * @Description: the function which is used to drop all the values(when the invalidations may have been lost).
+     * @return none.
+     */
+    public void clear()
+    {
+	this.entries.clear();
+    }
+
+    /**
+     * @Title: size.
+     * @Description: the function which is used to get the number of the cached values.
+     * @return int: the value number, including the expired values which are not dropped yet.
+     */
+    public int size()
+    {
+	return this.entries.size();
+    }
+
+    /**
+     * @Title: setTtlMillis.
+     * @Description: the function which is used to change the time to live of the values which are cached from now on.
+     * @param ttlMillis: the time to live in milliseconds, <= 0 disables the cache.
+     * @return none.
+     */
+    public void setTtlMillis(long ttlMillis)
+    {
+	this.TtlMillis = ttlMillis;
+	if(ttlMillis <= 0)
+	{
+	    this.entries.clear();
+	}
+    }
+
+    /**
+     * @Title: setMaxEntries.
+     * @Description: the function which is used to change the max value number.
+     * @param maxEntries: the max value number.
+     * @return none.
+     */
+    public void setMaxEntries(int maxEntries)
+    {
+	this.MaxEntries = maxEntries;
+    }
+
+    /**
+     * @Title: getHits.
+     * @Description: the function which is used to get the number of the reads which were served by this cache.
+     * @return long: the hit number.
+     */
+    public long getHits()
+    {
+	return this.Hits.get();
+    }
+
+    /**
+     * @Title: getInvalidations.
+     * @Description: the function which is used to get the number of the values which were dropped by an invalidation.
+     * @return long: the invalidation number.
+     */
+    public long getInvalidations()
+    {
+	return this.Invalidations.get();
+    }
+}
@@ -0,0 +1,34 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: PersistCallback.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The callback of one operation on the MongoClient of a shard.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of PersistCallback was written.
+ */
+//package name.
+package generaldbplatform;
+
+//class import for mongodb client.
+import com.mongodb.MongoClient;
+
+/**
+ * @ClassName: PersistCallback.
+ * @Description: this interface is used with AsyncDBClient.executePersist, the MongoClient is the client of the shard
+ *               which owns the key, the callback must not keep it after the call.
+ * @param <T>: the result type of the operation.
+ */
+public interface PersistCallback<T>
+{
+    /**
+     * @Title: doInPersist.
+     * @Description: the function which runs the operation on the MongoClient of the shard.
+     * @param client: the MongoClient of the shard.
+     * @return T: the result of the operation.
+     */
+    public T doInPersist(MongoClient client);
+}
@@ -0,0 +1,122 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: PersistShardClient.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The MongoClient of one persistent shard which carries the metrics of the shard.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of PersistShardClient was written.
+ *    2.2026-10-17 Track the primary read latency of the recent window for the hedge delay.
+ */
+//package name.
+package generaldbplatform;
+
+//class import for java utilities.
+import java.util.List;
+
+//class import for mongodb client.
+import com.mongodb.MongoClient;
+import com.mongodb.MongoClientOptions;
+import com.mongodb.ServerAddress;
+
+/**
+ * @ClassName: PersistShardClient.
+ * @Description: this class is the MongoClient which PersistentLayerClient creates for each shard(a replica-set),
+ *               it knows its shard index and the ShardMetrics of the shard.
+ *               (the driver does not expose its connection pool, so the pool gauges of a persistent shard report -1).
+ */
+public class PersistShardClient extends MongoClient
+{
+    /**
+     * @FieldName: shardIndex & metrics.
+     * @Description: the shard index & the metrics of the shard.
+     */
+    private final int shardIndex;
+    private final ShardMetrics metrics;
+
+    /**
+     * @FieldName: primaryWindow & hedgeDelayMicros.
+     * @Description: the primary read latencies of the current window, and the hedge delay which was computed from the
+     *               last full window(-1 before the first window is full).
+     */
+    private volatile LatencyHistogram primaryWindow = new LatencyHistogram();
+    private volatile long hedgeDelayMicros = -1;
+
+    /**
+     * @Title: PersistShardClient.
+     * @Description: the construct function of the PersistShardClient class.
+     * @param seeds: the replica-set member addresses.
+     * @param options: the client options.
+     * @param shardIndex: the shard index.
+     * @param metrics: the metrics of the shard.
+     * @return none.
+     */
+    public PersistShardClient(List<ServerAddress> seeds, MongoClientOptions options, int shardIndex, ShardMetrics metrics)
+    {
+	super(seeds, options);
+	this.shardIndex = shardIndex;
+	this.metrics = metrics;
+    }
+
+    /**
+     * @Title: getShardIndex.
+     * @Description: the function is used to get the shard index of the client.
+     * @return int: the shard index.
+     */
+    public int getShardIndex()
+    {
+	return this.shardIndex;
+    }
+
+    /**
+     * @Title: getMetrics.
+     * @Description: the function is used to get the metrics of the shard.
+     * @return ShardMetrics: the metrics.
+     */
+    public ShardMetrics getMetrics()
+    {
+	return this.metrics;
+    }
+
+    /**
+     * @Title: recordPrimaryRead.
+     * @Description: the function which records the latency of a read on the primary, also when it lost a hedged read.
+     * @param micros: the latency in microseconds.
+     * @return none.
+     */
+    public void recordPrimaryRead(long micros)
+    {
+	this.primaryWindow.record(micros);
+    }
+
+    /**
+     * @Title: getHedgeDelayMicros.
+     * @Description: the function which gives the time to wait for the primary before a hedged read is sent:
+     *               the percentile of the primary reads of the last window of windowSamples reads, so it follows the
+     *               current latency of the shard(a window is replaced as soon as it has windowSamples reads).
+     * @param percentile: the percentile, like 95.0.
+     * @param windowSamples: the read number of a window.
+     * @param defaultMicros: the delay before the first window is full.
+     * @return long: the delay in microseconds.
+     */
+    public long getHedgeDelayMicros(double percentile, int windowSamples, long defaultMicros)
+    {
+	LatencyHistogram window = this.primaryWindow;
+	if(window.getCount() >= windowSamples)
+	{
+	    synchronized(this)
+	    {
+		if(this.primaryWindow == window)
+		{
+		    this.hedgeDelayMicros = window.getPercentile(percentile);
+		    this.primaryWindow = new LatencyHistogram();
+		}
+	    }
+	}
+	long delay = this.hedgeDelayMicros;
+	return (delay < 0) ? defaultMicros : delay;
+    }
+}
@@ -0,0 +1,736 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: PersistWriteBehind.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The per-shard write-behind stage of the persistent layer.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of PersistWriteBehind was written.
+ *    2.2026-10-17 retry the retryable bulk write errors, and only wait for the flushes which started before a barrier.
+ */
+//package name.
+package generaldbplatform;
+
+//class import for java utilities.
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+//class import for mongodb client.
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteException;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.DBObject;
+import com.mongodb.MongoClient;
+import com.mongodb.MongoException;
+import com.mongodb.MongoNodeIsRecoveringException;
+import com.mongodb.MongoNotPrimaryException;
+import com.mongodb.MongoSocketException;
+
+/**
+ * @ClassName: PersistWriteBehind.
+ * @Description: this class buffers the upserts & removes of each shard by their _id, so the repeated writes of one document are
+ *               coalesced(the last write wins), and sends each buffer as unordered bulk writes per collection when it holds
+ *               BatchSize documents or every FlushMillis, with the WriteConcern of the PersistentLayerClient.
+ *               the flushes of one shard run one after another, so the writes of one document keep their order.
+ *               at most MaxPending documents are buffered or being flushed, a writer waits up to MaxBlockMillis for a place,
+ *               then it gets a MongoException. the buffered writes are visible to lookup, so a reader of the same JVM sees them
+ *               before they are flushed. flush is the barrier: it returns when every write before it is acknowledged.
+ *               the writes of a bulk write which failed with a retryable error(see isRetryable) go back into the buffer,
+ *               except those which a later write of the same document replaced, and are retried after RETRY_MILLIS.
+ *               only a permanent error drops the writes, they are counted in FailedWrites and the barrier which waits for them throws.
+ */
+public class PersistWriteBehind
+{
+    /**
+     * @FieldName: DEFAULT_BATCH_SIZE & DEFAULT_FLUSH_MILLIS & DEFAULT_MAX_PENDING & DEFAULT_MAX_BLOCK_MILLIS.
+     * @Description: the default flush size of a shard, the default flush interval, the default max buffered documents
+     *               of all the shards, and the default max wait of a writer when the buffers are full.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final long DEFAULT_FLUSH_MILLIS = 50;
+    public static final int DEFAULT_MAX_PENDING = 20000;
+    public static final long DEFAULT_MAX_BLOCK_MILLIS = 10000;
+
+    /**
+     * @FieldName: FLUSH_THREAD_NUM.
+     * @Description: the thread number of the Flusher, the different shards are flushed at the same time.
+     */
+    private static final int FLUSH_THREAD_NUM = 4;
+
+    /**
+     * @FieldName: RETRY_MILLIS.
+     * @Description: the wait of a shard before it flushes the writes of a bulk write which failed with a retryable error.
+     */
+    private static final long RETRY_MILLIS = 1000;
+
+    /**
+     * @ClassName: PendingWrite.
+     * @Description: one buffered write of a document, an upsert of the whole document or a remove.
+     */
+    public static final class PendingWrite
+    {
+	private final DBObject document;
+
+	PendingWrite(DBObject document)
+	{
+	    this.document = document;
+	}
+
+	/**
+	 * @Title: isRemove.
+	 * @Description: the function shows the write removes the document or not.
+	 * @return boolean: true for a remove.
+	 */
+	public boolean isRemove()
+	{
+	    return this.document == null;
+	}
+
+	/**
+	 * @Title: getDocument.
+	 * @Description: the function is used to get the document of an upsert.
+	 * @return DBObject: the document, null for a remove.
+	 */
+	public DBObject getDocument()
+	{
+	    return this.document;
+	}
+    }
+
+    /**
+     * @ClassName: WriteKey.
+     * @Description: the database, the collection & the _id of a buffered write.
+     */
+    private static final class WriteKey
+    {
+	final String dbName;
+	final String collName;
+	final Object id;
+
+	WriteKey(String dbName, String collName, Object id)
+	{
+	    this.dbName = dbName;
+	    this.collName = collName;
+	    this.id = id;
+	}
+
+	@Override
+	public boolean equals(Object other)
+	{
+	    if(!(other instanceof WriteKey))
+	    {
+		return false;
+	    }
+	    WriteKey that = (WriteKey)other;
+	    return this.dbName.equals(that.dbName) && this.collName.equals(that.collName) && this.id.equals(that.id);
+	}
+
+	@Override
+	public int hashCode()
+	{
+	    return (this.dbName.hashCode() * 31 + this.collName.hashCode()) * 31 + this.id.hashCode();
+	}
+    }
+
+    /**
+     * @ClassName: ShardBuffer.
+     * @Description: the buffered writes of one shard, and the writes of its running flush.
+     *               the maps & the futures are changed under the lock of the buffer, FlushLock orders the flushes.
+     *               inFlightDone is reset when its flush ends, so a barrier never waits for(or throws on) an older flush.
+     */
+    private final class ShardBuffer
+    {
+	final MongoClient shard;
+	final Object FlushLock = new Object();
+	LinkedHashMap<WriteKey, PendingWrite> pending = new LinkedHashMap<WriteKey, PendingWrite>();
+	Map<WriteKey, PendingWrite> inFlight = new HashMap<WriteKey, PendingWrite>();
+	CompletableFuture<Void> pendingDone = new CompletableFuture<Void>();
+	CompletableFuture<Void> inFlightDone = CompletableFuture.completedFuture(null);
+	boolean flushQueued = false;
+	long retryAt = 0;
+
+	ShardBuffer(MongoClient shard)
+	{
+	    this.shard = shard;
+	}
+    }
+
+    /**
+     * @FieldName: persistClient & BatchSize & FlushMillis & MaxBlockMillis.
+     * @Description: the persistent layer whose WriteConcern & metrics are used, the flush size of a shard,
+     *               the flush interval, and the max wait of a writer when the buffers are full.
+     */
+    private final PersistentLayerClient persistClient;
+    private final int BatchSize;
+    private final long FlushMillis;
+    private volatile long MaxBlockMillis = DEFAULT_MAX_BLOCK_MILLIS;
+
+    /**
+     * @FieldName: Buffers & Permits.
+     * @Description: the buffer of each shard, and the places of the buffered documents(a coalesced write needs no new place).
+     */
+    private final ConcurrentMap<MongoClient, ShardBuffer> Buffers = new ConcurrentHashMap<MongoClient, ShardBuffer>();
+    private final Semaphore Permits;
+
+    /**
+     * @FieldName: Flusher.
+     * @Description: the threads which flush the buffers on the interval or when they are full.
+     */
+    private final ScheduledExecutorService Flusher;
+
+    /**
+     * @FieldName: Writes & CoalescedWrites & FlushedWrites & FailedWrites & RetriedWrites & BulkWrites.
+     * @Description: the accepted writes, the writes which replaced a buffered write of the same document,
+     *               the acknowledged writes, the writes which were dropped for a permanent error,
+     *               the writes which were put back into the buffer after a retryable error, and the bulk writes.
+     */
+    private final AtomicLong Writes = new AtomicLong();
+    private final AtomicLong CoalescedWrites = new AtomicLong();
+    private final AtomicLong FlushedWrites = new AtomicLong();
+    private final AtomicLong FailedWrites = new AtomicLong();
+    private final AtomicLong RetriedWrites = new AtomicLong();
+    private final AtomicLong BulkWrites = new AtomicLong();
+
+    /**
+     * @Title: PersistWriteBehind.
+     * @Description: the construct function of the PersistWriteBehind class, it starts the flush threads.
+     * @param persistClient: the persistent layer whose WriteConcern & metrics are used.
+     * @param batchSize: the buffered documents of a shard which start a flush.
+     * @param flushMillis: the max time a write stays in the buffer.
+     * @param maxPending: the max buffered & flushing documents of all the shards.
+     * @return none.
+     */
+    public PersistWriteBehind(PersistentLayerClient persistClient, int batchSize, long flushMillis, int maxPending)
+    {
+	if((batchSize <= 0) || (flushMillis <= 0) || (maxPending < batchSize))
+	{
+	    throw new IllegalArgumentException("invalid write-behind settings: batchSize=" + batchSize + " flushMillis=" + flushMillis
+					       + " maxPending=" + maxPending);
+	}
+	this.persistClient = persistClient;
+	this.BatchSize = batchSize;
+	this.FlushMillis = flushMillis;
+	this.Permits = new Semaphore(maxPending);
+	this.Flusher = Executors.newScheduledThreadPool(FLUSH_THREAD_NUM, new ThreadFactory()
+	{
+	    @Override
+	    public Thread newThread(Runnable r)
+	    {
+		Thread thread = new Thread(r, "persistWriteBehindThread");
+		thread.setDaemon(true);
+		return thread;
+	    }
+	});
+	this.Flusher.scheduleWithFixedDelay(new Runnable()
+	{
+	    @Override
+	    public void run()
+	    {
+		for(ShardBuffer buffer : Buffers.values())
+		{
+		    scheduleFlush(buffer);
+		}
+	    }
+	}, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @Title: upsert.
+     * @Description: the function is used to buffer the upsert of a whole document.
+     * @param shard: the MongoClient of the shard.
+     * @param dbName: the database name.
+     * @param collName: the collection name.
+     * @param id: the _id of the document.
+     * @param doc: the document, with the same _id.
+     * @return none.
+     */
+    public void upsert(MongoClient shard, String dbName, String collName, Object id, DBObject doc)
+    {
+	this.write(shard, new WriteKey(dbName, collName, id), new PendingWrite(doc));
+    }
+
+    /**
+     * @Title: remove.
+     * @Description: the function is used to buffer the remove of a document.
+     * @param shard: the MongoClient of the shard.
+     * @param dbName: the database name.
+     * @param collName: the collection name.
+     * @param id: the _id of the document.
+     * @return none.
+     */
+    public void remove(MongoClient shard, String dbName, String collName, Object id)
+    {
+	this.write(shard, new WriteKey(dbName, collName, id), new PendingWrite(null));
+    }
+
+    /**
+     * @Title: lookup.
+     * @Description: the function is used to find the write of a document which is not acknowledged yet.
+     * @param shard: the MongoClient of the shard.
+     * @param dbName: the database name.
+     * @param collName: the collection name.
+     * @param id: the _id of the document.
+     * @return PendingWrite: the latest unacknowledged write, null when there is none(the database has the latest document).
+     */
+    public PendingWrite lookup(MongoClient shard, String dbName, String collName, Object id)
+    {
+	ShardBuffer buffer = this.Buffers.get(shard);
+	if(buffer == null)
+	{
+	    return null;
+	}
+	WriteKey key = new WriteKey(dbName, collName, id);
+	synchronized(buffer)
+	{
+	    PendingWrite write = buffer.pending.get(key);
+	    return (write != null) ? write : buffer.inFlight.get(key);
+	}
+    }
+
+    /**
+     * @Title: write.
+     * @Description: the function which buffers one write, it replaces the buffered write of the same document,
+     *               or waits for a place and appends it.
+     * @param shard: the MongoClient of the shard.
+     * @param key: the document of the write.
+     * @param write: the write.
+     * @return none.
+     */
+    private void write(MongoClient shard, WriteKey key, PendingWrite write)
+    {
+	ShardBuffer buffer = this.bufferOf(shard);
+	this.Writes.incrementAndGet();
+	synchronized(buffer)
+	{
+	    if(buffer.pending.containsKey(key))
+	    {
+		buffer.pending.put(key, write);
+		this.CoalescedWrites.incrementAndGet();
+		return;
+	    }
+	}
+
+	//a new document needs a place, the writer waits for the flushes when all the places are taken.
+	try
+	{
+	    if(!this.Permits.tryAcquire(this.MaxBlockMillis, TimeUnit.MILLISECONDS))
+	    {
+		throw new MongoException("the write-behind buffers are full for " + this.MaxBlockMillis + "ms");
+	    }
+	}
+	catch(InterruptedException e)
+	{
+	    Thread.currentThread().interrupt();
+	    throw new MongoException("interrupted while waiting for the write-behind buffers", e);
+	}
+	boolean full;
+	synchronized(buffer)
+	{
+	    if(buffer.pending.put(key, write) != null)
+	    {
+		//another writer buffered the same document meanwhile.
+		this.Permits.release();
+		this.CoalescedWrites.incrementAndGet();
+	    }
+	    full = buffer.pending.size() >= this.BatchSize;
+	}
+	if(full)
+	{
+	    this.scheduleFlush(buffer);
+	}
+    }
+
+    /**
+     * @Title: bufferOf.
+     * @Description: the function which gets or creates the buffer of a shard.
+     * @param shard: the MongoClient of the shard.
+     * @return ShardBuffer: the buffer.
+     */
+    private ShardBuffer bufferOf(MongoClient shard)
+    {
+	ShardBuffer buffer = this.Buffers.get(shard);
+	if(buffer == null)
+	{
+	    buffer = new ShardBuffer(shard);
+	    ShardBuffer existed = this.Buffers.putIfAbsent(shard, buffer);
+	    if(existed != null)
+	    {
+		buffer = existed;
+	    }
+	}
+	return buffer;
+    }
+
+    /**
+     * @Title: scheduleFlush.
+     * @Description: the function which queues a flush of the buffer, unless one is queued already, the buffer is empty,
+     *               or the shard waits for the retry of a failed flush.
+     * @param buffer: the buffer of a shard.
+     * @return none.
+     */
+    private void scheduleFlush(final ShardBuffer buffer)
+    {
+	synchronized(buffer)
+	{
+	    if(buffer.flushQueued || buffer.pending.isEmpty() || (System.currentTimeMillis() < buffer.retryAt))
+	    {
+		return;
+	    }
+	    buffer.flushQueued = true;
+	}
+	this.Flusher.execute(new Runnable()
+	{
+	    @Override
+	    public void run()
+	    {
+		flushShard(buffer);
+	    }
+	});
+    }
+
+    /**
+     * @Title: flushShard.
+     * @Description: the function which sends the buffered writes of a shard as one unordered bulk write per collection.
+     *               the writes of a bulk write which failed with a retryable error are put back into the buffer, unless a newer
+     *               write of the same document replaced them, and the shard waits RETRY_MILLIS before its next flush.
+     *               the writes which were rejected by a permanent error are dropped, and the barrier which waits for them throws.
+     * @param buffer: the buffer of a shard.
+     * @return none.
+     */
+    private void flushShard(ShardBuffer buffer)
+    {
+	synchronized(buffer.FlushLock)
+	{
+	    final LinkedHashMap<WriteKey, PendingWrite> batch;
+	    final CompletableFuture<Void> done;
+	    synchronized(buffer)
+	    {
+		buffer.flushQueued = false;
+		if(buffer.pending.isEmpty())
+		{
+		    return;
+		}
+		batch = buffer.pending;
+		done = buffer.pendingDone;
+		buffer.pending = new LinkedHashMap<WriteKey, PendingWrite>();
+		buffer.pendingDone = new CompletableFuture<Void>();
+		buffer.inFlight = batch;
+		buffer.inFlightDone = done;
+	    }
+
+	    //a failed collection does not stop the bulk writes of the other collections.
+	    List<Map.Entry<WriteKey, PendingWrite>> retry = new ArrayList<Map.Entry<WriteKey, PendingWrite>>();
+	    RuntimeException error = null;
+	    for(final Map<WriteKey, PendingWrite> writes : groupByCollection(batch).values())
+	    {
+		try
+		{
+		    this.persistClient.execute(buffer.shard, "bulk", new PersistCallback<Void>()
+		    {
+			@Override
+			public Void doInPersist(MongoClient shard)
+			{
+			    bulkWrite(shard, writes);
+			    return null;
+			}
+		    });
+		    this.FlushedWrites.addAndGet(writes.size());
+		}
+		catch(RuntimeException e)
+		{
+		    if(isRetryable(e))
+		    {
+			retry.addAll(writes.entrySet());
+		    }
+		    else
+		    {
+			//an unordered bulk write applies the documents which have no write error.
+			int failed = (e instanceof BulkWriteException) ? ((BulkWriteException)e).getWriteErrors().size() : writes.size();
+			this.FailedWrites.addAndGet(failed);
+			this.FlushedWrites.addAndGet(writes.size() - failed);
+			error = e;
+		    }
+		}
+	    }
+
+	    int requeued = 0;
+	    synchronized(buffer)
+	    {
+		buffer.inFlight = new HashMap<WriteKey, PendingWrite>();
+		buffer.inFlightDone = CompletableFuture.completedFuture(null);
+		for(Map.Entry<WriteKey, PendingWrite> entry : retry)
+		{
+		    if(!buffer.pending.containsKey(entry.getKey()))
+		    {
+			buffer.pending.put(entry.getKey(), entry.getValue());
+			requeued++;
+		    }
+		}
+		if(!retry.isEmpty())
+		{
+		    buffer.retryAt = System.currentTimeMillis() + RETRY_MILLIS;
+		    if(error == null)
+		    {
+			//the barriers which wait for this batch wait for the retried writes(or the newer writes which replaced them).
+			buffer.pendingDone.whenComplete(new BiConsumer<Void, Throwable>()
+			{
+			    @Override
+			    public void accept(Void result, Throwable cause)
+			    {
+				if(cause == null)
+				{
+				    done.complete(null);
+				}
+				else
+				{
+				    done.completeExceptionally(cause);
+				}
+			    }
+			});
+		    }
+		}
+	    }
+	    //a requeued write keeps its place, a replaced write gives it back(the newer write took its own).
+	    this.Permits.release(batch.size() - requeued);
+	    this.RetriedWrites.addAndGet(requeued);
+	    if(error != null)
+	    {
+		done.completeExceptionally(error);
+	    }
+	    else if(retry.isEmpty())
+	    {
+		done.complete(null);
+	    }
+	}
+    }
+
+    /**
+     * @Title: groupByCollection.
+     * @Description: the function which groups the writes of a batch by their collection.
+     * @param batch: the writes.
+     * @return Map<String, Map<WriteKey, PendingWrite>>: the writes of each db.coll.
+     */
+    private static Map<String, Map<WriteKey, PendingWrite>> groupByCollection(Map<WriteKey, PendingWrite> batch)
+    {
+	Map<String, Map<WriteKey, PendingWrite>> groups = new LinkedHashMap<String, Map<WriteKey, PendingWrite>>();
+	for(Map.Entry<WriteKey, PendingWrite> entry : batch.entrySet())
+	{
+	    String name = entry.getKey().dbName + "." + entry.getKey().collName;
+	    Map<WriteKey, PendingWrite> group = groups.get(name);
+	    if(group == null)
+	    {
+		group = new LinkedHashMap<WriteKey, PendingWrite>();
+		groups.put(name, group);
+	    }
+	    group.put(entry.getKey(), entry.getValue());
+	}
+	return groups;
+    }
+
+    /**
+     * @Title: bulkWrite.
+     * @Description: the function which sends the writes of one collection as one unordered bulk write.
+     * @param shard: the MongoClient of the shard.
+     * @param writes: the writes of one db.coll.
+     * @return none.
+     */
+    private void bulkWrite(MongoClient shard, Map<WriteKey, PendingWrite> writes)
+    {
+	BulkWriteOperation bulk = null;
+	for(Map.Entry<WriteKey, PendingWrite> entry : writes.entrySet())
+	{
+	    WriteKey key = entry.getKey();
+	    if(bulk == null)
+	    {
+		bulk = shard.getDB(key.dbName).getCollection(key.collName).initializeUnorderedBulkOperation();
+	    }
+	    DBObject query = new BasicDBObject("_id", key.id);
+	    if(entry.getValue().isRemove())
+	    {
+		bulk.find(query).remove();
+	    }
+	    else
+	    {
+		bulk.find(query).upsert().replaceOne(entry.getValue().getDocument());
+	    }
+	}
+	if(bulk != null)
+	{
+	    bulk.execute(this.persistClient.getWriteConcern());
+	    this.BulkWrites.incrementAndGet();
+	}
+    }
+
+    /**
+     * @Title: isRetryable.
+     * @Description: the function shows a failed bulk write could succeed later: a lost connection, a timeout, a stepped down
+     *               or recovering primary, or a write concern error. the write errors of the documents(e.g. a duplicate unique key
+     *               or a failed validation) are permanent.
+     * @param e: the exception.
+     * @return boolean: true when the writes should be retried.
+     */
+    private static boolean isRetryable(RuntimeException e)
+    {
+	if(e instanceof BulkWriteException)
+	{
+	    return ((BulkWriteException)e).getWriteErrors().isEmpty();
+	}
+	return LayerMetrics.isTimeout(e) || (e instanceof MongoSocketException) || (e instanceof MongoNotPrimaryException)
+	    || (e instanceof MongoNodeIsRecoveringException);
+    }
+
+    /**
+     * @Title: flush.
+     * @Description: the function is the barrier of the write-behind: it flushes all the buffers now and waits until every write
+     *               which was accepted before the call is acknowledged with the WriteConcern.
+     * @param timeoutMillis: the max wait.
+     * @return none.
+     * @throws MongoException: when a bulk write of the waited writes failed, or the wait timed out.
+     */
+    public void flush(long timeoutMillis)
+    {
+	List<CompletableFuture<Void>> waits = new ArrayList<CompletableFuture<Void>>();
+	for(ShardBuffer buffer : this.Buffers.values())
+	{
+	    synchronized(buffer)
+	    {
+		//only the flush which is running now holds writes from before the barrier, an earlier one was reported already.
+		if(!buffer.inFlight.isEmpty())
+		{
+		    waits.add(buffer.inFlightDone);
+		}
+		if(!buffer.pending.isEmpty())
+		{
+		    waits.add(buffer.pendingDone);
+		}
+	    }
+	    this.scheduleFlush(buffer);
+	}
+	long deadline = System.currentTimeMillis() + timeoutMillis;
+	for(CompletableFuture<Void> wait : waits)
+	{
+	    try
+	    {
+		wait.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+	    }
+	    catch(ExecutionException e)
+	    {
+		throw new MongoException("a write-behind bulk write failed", e.getCause());
+	    }
+	    catch(TimeoutException e)
+	    {
+		throw new MongoException("the write-behind writes were not acknowledged in " + timeoutMillis + "ms", e);
+	    }
+	    catch(InterruptedException e)
+	    {
+		Thread.currentThread().interrupt();
+		throw new MongoException("interrupted while waiting for the write-behind writes", e);
+	    }
+	}
+    }
+
+    /**
+     * @Title: close.
+     * @Description: the function is used to flush the buffers and stop the flush threads.
+     * @param timeoutMillis: the max wait of the last flush.
+     * @return none.
+     */
+    public void close(long timeoutMillis)
+    {
+	try
+	{
+	    this.flush(timeoutMillis);
+	}
+	finally
+	{
+	    this.Flusher.shutdown();
+	}
+    }
+
+    /**
+     * @Title: setMaxBlockMillis.
+     * @Description: the function is used to set the max wait of a writer when the buffers are full.
+     * @param maxBlockMillis: the max wait in milliseconds.
+     * @return none.
+     */
+    public void setMaxBlockMillis(long maxBlockMillis)
+    {
+	this.MaxBlockMillis = maxBlockMillis;
+    }
+
+    public int getBatchSize()
+    {
+	return this.BatchSize;
+    }
+
+    public long getFlushMillis()
+    {
+	return this.FlushMillis;
+    }
+
+    /**
+     * @Title: getPendingWrites.
+     * @Description: the function is used to get the number of the buffered & flushing documents.
+     * @return int: the pending documents.
+     */
+    public int getPendingWrites()
+    {
+	int pending = 0;
+	for(ShardBuffer buffer : this.Buffers.values())
+	{
+	    synchronized(buffer)
+	    {
+		pending += buffer.pending.size() + buffer.inFlight.size();
+	    }
+	}
+	return pending;
+    }
+
+    public long getWrites()
+    {
+	return this.Writes.get();
+    }
+
+    public long getCoalescedWrites()
+    {
+	return this.CoalescedWrites.get();
+    }
+
+    public long getFlushedWrites()
+    {
+	return this.FlushedWrites.get();
+    }
+
+    public long getFailedWrites()
+    {
+	return this.FailedWrites.get();
+    }
+
+    public long getRetriedWrites()
+    {
+	return this.RetriedWrites.get();
+    }
+
+    public long getBulkWrites()
+    {
+	return this.BulkWrites.get();
+    }
+}
@@ -10,27 +10,63 @@
  * @History: 
  *    1.2015-07-21 First version of PersistentLayerClient was written.
  *    2.2015-08-13 Modify subscribe interface,add ConfigDBClient support. 
+ *    3.2026-10-17 Add pluggable ShardRoutingStrategy support(the modulo, ring & jump consistent hash strategies).
+ *    4.2026-10-17 Route by the full-key hash of ShardKeyHash instead of the last char or the low 8 bits.
+ *    5.2026-10-17 Replace the PersistShardingMap & mod numbers with the immutable ShardTopology snapshot.
+ *    6.2026-10-17 Add the background PersistentRebalancer which relocates the documents after an expansion.
+ *    7.2026-10-17 Add the parallel scatter-gather query with a k-way merge of the sorted results of all the shards.
+ *    8.2026-10-17 Expose the connection number per host for the backpressure of AsyncDBClient.
+ *    9.2026-10-17 Receive the topology messages from the shared TopologyService instead of an own ConfigDBClient & subscriber.
+ *    10.2026-10-17 Bootstrap the versioned topology from the config database or the local snapshot, and refetch the version gaps.
+ *    11.2026-10-17 Build the new MongoClients in parallel, pre-warm & health-check them before the topology is published.
+ *    12.2026-10-17 Add the execute function which records the operation latencies & the errors of each shard(see LayerMetrics).
+ *    13.2026-10-17 Split the parsing of the topology message from the client creation, and add the detached constructor for the benchmarks.
+ *    14.2026-10-17 Add the opt-in hedged reads which send a late primary read to a secondary with a bounded staleness.
+ *    15.2026-10-17 Give the weights of the "@weight" suffix in the topology message to a WeightedRendezvousRoutingStrategy.
+ *    16.2026-10-17 Route the String keys by their hash tag, like the CacheLayerClient.
+ *    17.2026-10-17 Replace the unacknowledged WriteConcern.NORMAL with a configurable WriteConcern, and add the opt-in write-behind.
+ *    18.2026-10-17 Add the findOne function which reads the primary only, for the reads which are cached or copied.
+ *    19.2026-10-17 Retry the topology sync with a backoff(TopologyService.retrySync) after a message or a catch-up fails to apply.
+ *    20.2026-10-17 Build the slot table of the WeightedRendezvousRoutingStrategy for the new shard number before publishing it.
+ *    21.2026-10-17 The detached constructor only serves the JMH benchmarks of the benchmark source set.
+ *    22.2026-10-17 Keep the ModuloRoutingStrategy as the default of the legacy constructor, the jump hashing is an explicit opt-in.
+ *    23.2026-10-17 Correct the doc of the legacy constructor: only the int keys keep their "key % N" placement.
+ *    24.2026-10-17 The detached constructor also serves the tests of the test source set.
  http://teams.in.hsbc/hts/Academy/HSDC Training Delivery/GCP/Lists/Confirmation for GCP Insourcing Case/AllItems.aspx
  */
 
 package generaldbplatform;
 
 //class import for java utilities.
+import java.io.File;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 //class import for mongodb client.
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
 import com.mongodb.MongoClient;
+import com.mongodb.MongoException;
 import com.mongodb.MongoClientOptions;
 import com.mongodb.ReadPreference;
 import com.mongodb.WriteConcern;
 import com.mongodb.ServerAddress;
 
 //class import for jedis client.
-import redis.clients.jedis.Jedis;
-import redis.clients.jedis.JedisPubSub;
+import redis.clients.jedis.exceptions.JedisConnectionException;
 
 public class PersistentLayerClient 
 {
@@ -41,144 +77,391 @@ public class PersistentLayerClient
     private MongoClientOptions mongoOption = null;
     
     /**
-     * @FieldName: CurrentPersistMapIndex.
-     * @Description: the index of the PersistShardingMap,which to be inserted.
-     *               (when new node information comes,this index shows HashMap index with the MongoClient)
+     * @FieldName: configdb.
+     * @Description: the ConfigServer database client.
      */
-    private int CurrentPersistMapIndex = 0;  
+    private ConfigDBClient configdb;
     
     /**
-     * @FieldName: mongoClient_temp.
-     * @Description: the temp MongoClient, which is used as a temp variable.
+     * @FieldName: topologyService.
+     * @Description: the shared topology service which owns the configdb and delivers the topology messages.
      */
-    private MongoClient mongoClient_temp = null;
-	
+    private TopologyService topologyService;
+    
     /**
-     * @FieldName: configdb.
-     * @Description: the ConfigServer database client.
+     * @FieldName: TopologyChannel.
+     * @Description: the channel of the topology messages, it also names the topology log in the config database.
      */
-    private ConfigDBClient configdb;	
+    private String TopologyChannel;
     
     /**
-     * @FieldName: PERSIST_SERVER_NUM_OLD.
-     * @Description: the old mod-number which is used to store/fetch value from the old HashMap.
+     * @FieldName: AppliedDeltas.
+     * @Description: the topology deltas which have been applied, the version of the topology is its size.(guarded by this)
      */
-    protected int PERSIST_SERVER_NUM_OLD = 1;
-	
+    private final List<String> AppliedDeltas = new ArrayList<String>();
+    
     /**
-     * @FieldName: PERSIST_SERVER_NUM_NEW.
-     * @Description: the new mod_number which is used to store/fetch value from the new HashMap.
+     * @FieldName: SnapshotFile.
+     * @Description: the local snapshot file of the applied deltas, null when it is not enabled(see TopologySnapshotFile).
      */
-    protected int PERSIST_SERVER_NUM_NEW = 1;
+    private File SnapshotFile;
+    
+    /**
+     * @FieldName: GapRefetches.
+     * @Description: the number of the version gaps which were refetched from the config database.
+     */
+    private final AtomicLong GapRefetches = new AtomicLong();
+    
+    /**
+     * @FieldName: Metrics.
+     * @Description: the latency histograms & the error counters of each shard, exported by JMX.
+     */
+    private final LayerMetrics Metrics = new LayerMetrics("persist");
+    
+    /**
+     * @FieldName: RoutingStrategy.
+     * @Description: the strategy which is used to map a key to the shard index of the PersistTopology.
+     */
+    private ShardRoutingStrategy RoutingStrategy;
 	
     /**
-     * @FieldName: PersistShardingMap.
-     * @Description: the HashMap which is used to store the different MongoClient.
+     * @FieldName: PersistTopology.
+     * @Description: the current routing snapshot which is used to store the different MongoClient.
      *               the MongoClient connected with a MongoDB replica-set.
+     *               (the subscriber thread replaces it as a whole, so the request threads never see a half-updated topology).
      */
-    protected Map<Integer, MongoClient> PersistShardingMap;  
+    protected volatile ShardTopology<MongoClient> PersistTopology = ShardTopology.empty();
     
     /**
-     * @FieldName: PersistInitOK.
-     * @Description: the boolean value which shows the persistent database client initialize ok or not.
+     * @FieldName: Rebalancer.
+     * @Description: the background document rebalancer, it is started on every expansion.
      */
-    protected boolean PersistInitOK = false;
-	
+    private PersistentRebalancer Rebalancer;
+    
     /**
-     * @Title: ConfigDBInit.
-     * @Description: this function is used to initialize the configdb.
-     * @param serverinfo_0: the first redis server node ip & port information in the redis sentinel.
-     * @param serverinfo_1: the second redis server node ip & port information in the redis sentinel.
-     * @param serverinfo_2: the third redis server node ip & port information in the redis sentinel.
-     * @return none.
+     * @FieldName: DEFAULT_REBALANCE_PARALLELISM & DEFAULT_REBALANCE_DOCS_PER_SECOND.
+     * @Description: the default worker number & the default max number of the documents which are streamed in one second.
      */
-    private void ConfigDBInit(String serverinfo_0, String serverinfo_1, String serverinfo_2)
-    {
-	this.configdb = new ConfigDBClient(serverinfo_0, serverinfo_1, serverinfo_2);
-    }
+    public static final int DEFAULT_REBALANCE_PARALLELISM = 2;
+    public static final double DEFAULT_REBALANCE_DOCS_PER_SECOND = 2000;
+    
+    /**
+     * @FieldName: DEFAULT_PREWARM_CONNECTIONS & ShardBuildTimeoutMillis.
+     * @Description: the number of the connections which each MongoClient keeps open(minConnectionsPerHost),
+     *               and the max time to build & check all the clients of one topology message.
+     */
+    public static final int DEFAULT_PREWARM_CONNECTIONS = 8;
+    public static final long DEFAULT_SHARD_BUILD_TIMEOUT_MILLIS = 120000;
+    private volatile long ShardBuildTimeoutMillis = DEFAULT_SHARD_BUILD_TIMEOUT_MILLIS;
+    
+    /**
+     * @FieldName: QueryExecutor.
+     * @Description: the threads which send the scatter-gather queries to the different shards at the same time.
+     */
+    private ExecutorService QueryExecutor;
+    
+    /**
+     * @FieldName: DEFAULT_HEDGE_PERCENTILE & DEFAULT_MAX_STALENESS_SECONDS.
+     * @Description: the default percentile of the primary latency to wait before a hedged read,
+     *               and the default max staleness of the secondary which answers it(90s is the minimum of the server).
+     */
+    public static final double DEFAULT_HEDGE_PERCENTILE = 95.0;
+    public static final long DEFAULT_MAX_STALENESS_SECONDS = 90;
+    
+    /**
+     * @FieldName: HEDGE_WINDOW_SAMPLES & DEFAULT_HEDGE_DELAY_MICROS & MIN_HEDGE_DELAY_MICROS.
+     * @Description: the primary reads of one latency window, the hedge delay before the first window is full,
+     *               and the min hedge delay(so a fast shard is not read twice on every jitter).
+     */
+    private static final int HEDGE_WINDOW_SAMPLES = 1000;
+    private static final long DEFAULT_HEDGE_DELAY_MICROS = 10000;
+    private static final long MIN_HEDGE_DELAY_MICROS = 1000;
+    
+    /**
+     * @FieldName: HedgedReads & HedgePercentile & HedgeReadPreference.
+     * @Description: the hedged reads are enabled or not, the percentile of the hedge delay, and the read preference
+     *               of the hedged duplicate.
+     */
+    private volatile boolean HedgedReads = false;
+    private volatile double HedgePercentile = DEFAULT_HEDGE_PERCENTILE;
+    private volatile ReadPreference HedgeReadPreference = ReadPreference.secondary(DEFAULT_MAX_STALENESS_SECONDS, TimeUnit.SECONDS);
+    
+    /**
+     * @FieldName: DEFAULT_WRITE_CONCERN & Durability.
+     * @Description: the default durability of the writes(acknowledged by the primary), and the durability of the writes
+     *               of this layer, like WriteConcern.JOURNALED or WriteConcern.MAJORITY.
+     */
+    public static final WriteConcern DEFAULT_WRITE_CONCERN = WriteConcern.ACKNOWLEDGED;
+    private volatile WriteConcern Durability = DEFAULT_WRITE_CONCERN;
+    
+    /**
+     * @FieldName: WriteBehind.
+     * @Description: the write-behind stage of the document writes, null when it is not enabled(see PersistWriteBehind).
+     */
+    private volatile PersistWriteBehind WriteBehind;
+    
+    /**
+     * @FieldName: PersistInitOK.
+     * @Description: the boolean value which shows the persistent database client initialize ok or not.
+     */
+    protected volatile boolean PersistInitOK = false;
 	
     /**
      * @Title: Subscriber.
-     * @Description: the function which is used to subscribe one channel from redis server.
-     * @param ip: the redis server ip address. 
+     * @Description: the function which is used to receive the messages of one channel from the shared TopologyService.
+     *               (the service multiplexes the channels of all the layer clients on one subscription and reconnects after a drop).
      * @param channel: the specific channel which was subscribed by the application.
      * @return none.
      */
     private void Subscriber(final String channel)
     {
- 	final JedisPubSub jedisPubSub = new JedisPubSub() 
-	{
-	    @Override	
-	    public void onMessage(String channel, String message) 
-	    {  
-		//System.out.println("Input channel =="+channel + "----input message ==" + message); 
-		        
-		if(channel.equals("PERSIST_AUTO_EXTERN"))
-		{
-		    PersistentShardMapInit(message);
-		}
-	    }  
-	};
-	new Thread(new Runnable() 
+	this.topologyService.addListener(channel, new TopologyListener()
 	{
 	    @Override
-	    public void run() 
+	    public void onTopologyMessage(String channel, String message)
 	    {
-		//System.out.println("Start!!!"); 
-                Jedis jedisConnector = null;
-		boolean borrowOrOprSuccess = true;
-	
-		try 
+		try
 		{
-	            jedisConnector = configdb.db_client.getResource();
-	            jedisConnector.subscribe(jedisPubSub, channel);
+		    applyTopologyMessage(message);
 		}
-		catch(JedisConnectionException e)
+		catch(RuntimeException e)
 		{
-		    borrowOrOprSuccess = false;
-	            if(jedisConnector != null)
-		    {
-		        configdb.db_client.returnBrokenResource(jedisConnector);
-		        jedisConnector = null;
-	            }
-	            throw e;
+		    //the message is not applied(e.g. a new shard is not ready), its delta is refetched by the retries.
+		    retryTopologySync();
+		    throw e;
 		}
-		finally
+	    }
+	    
+	    @Override
+	    public void onSubscribed(String channel)
+	    {
+		//catch up with the versions which were published while the subscription was down.
+		try
 		{
-	            if(borrowOrOprSuccess && (jedisConnector!=null))
-		    {
-		        configdb.db_client.returnResource(jedisConnector);
-		    }
+		    syncTopology();
+		}
+		catch(RuntimeException e)
+		{
+		    retryTopologySync();
 		}
 	    }
-	}, "subscriberThread").start();
+	});
     }
     
     /**
      * @Title: PersistentShardMapInit.
-     * @Description: the function is used to initialize the PersistentShardingMap.(when the client got the info_message)
+     * @Description: the function is used to extend the PersistTopology.(when the client got the info_message)
+     *               all the new MongoClients are created first, then the next topology is published at once.
      * @param info_message:the message which was published from the redis server and contain the persistent server info such as ip & port.
      *        the message should be like this:"1.0.0.1:27018_1.0.2.3:27017_1.0.0.5:27019;1.0.0.22:27017_1.10.2.3:27018_12.0.0.5:27019".
+     *        a shard may end with an optional weight like "...@256"(see WeightedRendezvousRoutingStrategy).
      * @return none.
      */
     public void PersistentShardMapInit(String info_message)
     {
-        //the list consists of ServerAddress which records the MongoDB ip & port information.
-	List<ServerAddress> server_addresses = new ArrayList<ServerAddress>();
+	ShardTopology<MongoClient> next;
+	synchronized(this)
+	{
+	    next = this.applyDeltas(Collections.singletonList(info_message));
+	}
+	this.startRelocation(next);
+    }
+	
+    /**
+     * @Title: applyTopologyMessage.
+     * @Description: the function is used to apply a message of the topology channel.
+     *               a versioned message("version#delta") is applied when it is the next version, ignored when it has been applied
+     *               (by the bootstrap or a refetch), and a gap refetches all the missing deltas from the config database.
+     *               a legacy message without version is applied like PersistentShardMapInit.
+     * @param message: the message of the channel.
+     * @return none.
+     */
+    private void applyTopologyMessage(String message)
+    {
+	long version = TopologyService.parseVersion(message);
+	if(version < 0)
+	{
+	    this.PersistentShardMapInit(message);
+	    return;
+	}
+	ShardTopology<MongoClient> next;
+	synchronized(this)
+	{
+	    long applied = this.AppliedDeltas.size();
+	    if(version <= applied)
+	    {
+		return;
+	    }
+	    List<String> deltas;
+	    if(version == applied + 1)
+	    {
+		deltas = Collections.singletonList(TopologyService.parseDelta(message));
+	    }
+	    else
+	    {
+		this.GapRefetches.incrementAndGet();
+		deltas = this.topologyService.fetchDeltas(this.TopologyChannel, applied);
+	    }
+	    next = this.applyDeltas(deltas);
+	}
+	this.startRelocation(next);
+    }
+	
+    /**
+     * @Title: syncTopology.
+     * @Description: the function is used to apply the deltas of the config database which have not been applied yet.
+     * @return none.
+     */
+    public void syncTopology()
+    {
+	ShardTopology<MongoClient> next;
+	synchronized(this)
+	{
+	    next = this.applyDeltas(this.topologyService.fetchDeltas(this.TopologyChannel, this.AppliedDeltas.size()));
+	}
+	this.startRelocation(next);
+    }
+	
+    /**
+     * @Title: retryTopologySync.
+     * @Description: the function is used to retry the syncTopology with a backoff until all the deltas are applied.
+     * @return none.
+     */
+    private void retryTopologySync()
+    {
+	this.topologyService.retrySync(this.TopologyChannel, new Runnable()
+	{
+	    @Override
+	    public void run()
+	    {
+		syncTopology();
+	    }
+	});
+    }
+    
+    /**
+     * @Title: bootstrapTopology.
+     * @Description: the function is used to load the full topology at construction, so the client routes at once:
+     *               from the local snapshot file when there is one(the subscriber catches up with the config database
+     *               when it is subscribed), else from the config database.
+     * @return none.
+     */
+    private void bootstrapTopology()
+    {
+	List<String> snapshot = TopologySnapshotFile.read(this.SnapshotFile);
+	try
+	{
+	    if((snapshot != null) && !snapshot.isEmpty())
+	    {
+		ShardTopology<MongoClient> next = null;
+		synchronized(this)
+		{
+		    if(this.AppliedDeltas.isEmpty())
+		    {
+			next = this.applyDeltas(snapshot);
+		    }
+		}
+		this.startRelocation(next);
+		return;
+	    }
+	    this.syncTopology();
+	}
+	catch(JedisConnectionException e)
+	{
+	    //the config server or a new shard is not ready, the subscriber loads the topology when it is subscribed.
+	}
+	catch(MongoException e)
+	{
+	    //a new shard is not ready, the subscriber loads the topology again when it is subscribed.
+	}
+    }
+	
+    /**
+     * @Title: applyDeltas.
+     * @Description: the function is used to append the shards of deltas as one expansion and record their versions.
+     *               (the caller holds the lock of this client).
+     *               when an empty client loads several deltas and the documents of the last one are still being relocated
+     *               (its checkpoint exists), the last delta is applied as an expansion of its own, so both views are routed.
+     * @param deltas: the deltas of the next versions in order.
+     * @return ShardTopology<MongoClient>: the published topology, null when there is no delta.
+     */
+    private ShardTopology<MongoClient> applyDeltas(List<String> deltas)
+    {
+	if(deltas.isEmpty())
+	{
+	    return null;
+	}
+	ShardTopology<MongoClient> next;
+	int last = deltas.size() - 1;
+	if((this.PersistTopology.getNewShardNum() == 0) && (last > 0) && this.isRelocationPending(deltas))
+	{
+	    this.appendPersistShards(TopologyService.joinDeltas(deltas.subList(0, last)));
+	    next = this.appendPersistShards(deltas.get(last));
+	}
+	else
+	{
+	    next = this.appendPersistShards(TopologyService.joinDeltas(deltas));
+	}
+	this.AppliedDeltas.addAll(deltas);
+	TopologySnapshotFile.write(this.SnapshotFile, this.AppliedDeltas);
+	return next;
+    }
+	
+    /**
+     * @Title: isRelocationPending.
+     * @Description: the function shows the relocation of the last delta has a checkpoint in the config database or not.
+     * @param deltas: the deltas from the version 1.
+     * @return boolean: true when the relocation of the last delta has not finished.
+     */
+    private boolean isRelocationPending(List<String> deltas)
+    {
+	int old_num = TopologyService.countShards(deltas.subList(0, deltas.size() - 1));
+	int new_num = old_num + TopologyService.countShards(deltas.subList(deltas.size() - 1, deltas.size()));
+	try
+	{
+	    return this.topologyService.hasKey(PersistentRebalancer.CHECKPOINT_KEY_PREFIX + old_num + "_" + new_num);
+	}
+	catch(JedisConnectionException e)
+	{
+	    return false;
+	}
+    }
+	
+    /**
+     * @Title: startRelocation.
+     * @Description: the function is used to start the rebalancer on an expanding topology, it retires the old view when it finishes.
+     *               (it must be started out of the lock, a running rebalancer may be waiting for the lock to retire its own topology).
+     * @param next: the published topology, null when nothing was published.
+     * @return none.
+     */
+    private void startRelocation(ShardTopology<MongoClient> next)
+    {
+	if((next != null) && next.isExpanding())
+	{
+	    this.Rebalancer.start(next);
+	}
+    }
+	
+    /**
+     * @Title: parsePersistShards.
+     * @Description: the function is used to parse the replica-set member addresses of each new shard in the info_message.
+     * @param info_message:the message which contains the MongoDB server info, see PersistentShardMapInit.
+     * @return List<List<ServerAddress>>: the 3 member addresses of each shard, in the order of the message.
+     */
+    static List<List<ServerAddress>> parsePersistShards(String info_message)
+    {
+	List<List<ServerAddress>> shards = new ArrayList<List<ServerAddress>>();
 	
 	//split the info_message like this:"1.0.0.1:27017_1.0.2.3:27018_1.0.0.5:27019",3 ip:port segments.
 	String[] arr_new_node = info_message.split(";");  //must split by ";".
 			
-	//Assign the old mod number to CACHE_SERVER_NUM_OLD.
-	this.PERSIST_SERVER_NUM_OLD = PersistShardingMap.size();
-				
 	for(int i = 0; i < arr_new_node.length; i++)
 	{
-	    //clear the old address info.
-	    server_addresses.clear();
+	    //the list consists of ServerAddress which records the MongoDB ip & port information.
+	    List<ServerAddress> server_addresses = new ArrayList<ServerAddress>(3);
 			
 	    //split the "1.0.0.1:27017_1.0.2.3:27018_1.0.0.5:27019" like:"1.0.0.1:27017".
-	    String[] arr_ip_port = arr_new_node[i].split("_");
+	    String[] arr_ip_port = TopologyService.stripWeight(arr_new_node[i]).split("_");
 					
 	    //split the "1.0.0.1:27017" like: ip->1.0.0.1, port->27017.
 	    String ip0 = arr_ip_port[0].split(":")[0];
@@ -195,85 +478,751 @@ public class PersistentLayerClient
 	    server_addresses.add(address0);
 	    server_addresses.add(address1);
 	    server_addresses.add(address2);
+	    shards.add(server_addresses);
+	}
+	return shards;
+    }
+	
+    /**
+     * @Title: appendPersistShards.
+     * @Description: the function is used to create the MongoClients of the info_message and publish the next topology.
+     * @param info_message:the message which contains the persistent server info, see PersistentShardMapInit.
+     * @return ShardTopology<MongoClient>: the published topology.
+     */
+    private ShardTopology<MongoClient> appendPersistShards(String info_message)
+    {
+	//the current topology, the new shards are appended after its shards.
+	ShardTopology<MongoClient> current = this.PersistTopology;
+	List<Callable<MongoClient>> build_tasks = new ArrayList<Callable<MongoClient>>();
+	List<List<ServerAddress>> shard_members = parsePersistShards(info_message);
+	double[] shard_weights = TopologyService.parseWeights(info_message);
 			
-	    //create a new MongoClient instance and insert it into PersistShardingMap with the latest mod index.
-	    mongoClient_temp = new MongoClient(server_addresses,this.mongoOption);
-	    this.PersistShardingMap.put(CurrentPersistMapIndex, mongoClient_temp);
-	    CurrentPersistMapIndex += 1;
+	for(int i = 0; i < shard_members.size(); i++)
+	{
+	    //the new MongoClient is created & checked on a build thread, its shard index is the tail index of the topology.
+	    final List<ServerAddress> shard_addresses = shard_members.get(i);
+	    final int shard_index = current.getNewShardNum() + i;
+	    build_tasks.add(new Callable<MongoClient>()
+	    {
+		@Override
+		public MongoClient call()
+		{
+		    MongoClient client = new PersistShardClient(shard_addresses, mongoOption, shard_index, Metrics.shard(shard_index));
+		    try
+		    {
+			//the ping waits for the replica-set discovery and opens the first connection,
+			//the driver keeps minConnectionsPerHost connections open from then on.
+			client.getDB("admin").command("ping").throwOnError();
+		    }
+		    catch(RuntimeException e)
+		    {
+			client.close();
+			throw e;
+		    }
+		    return client;
+		}
+	    });
+	}
+	
+	//all the clients are built at the same time, and the topology is published only when every client is ready.
+	List<MongoClient> new_clients;
+	try
+	{
+	    new_clients = ShardPoolBuilder.buildAll(build_tasks, this.ShardBuildTimeoutMillis, new ShardPoolBuilder.Closer<MongoClient>()
+	    {
+		@Override
+		public void close(MongoClient client)
+		{
+		    client.close();
+		}
+	    }, "persistShardBuildThread");
+	}
+	catch(ExecutionException e)
+	{
+	    throw new MongoException("the new persistent shards are not ready, the topology is not changed", e.getCause());
 	}
 			
-	//check the sharding map size and assign the value to PERSIST_SERVER_NUM_NEW.
-	if(PersistShardingMap.size()>0)
+	//publish the next topology, the old shard number becomes the new shard number of the current topology.
+	//the weights of the new shards only change the routing of the views which contain them, so they are set before publishing.
+	if(this.RoutingStrategy instanceof WeightedRendezvousRoutingStrategy)
+	{
+	    for(int i = 0; i < shard_weights.length; i++)
+	    {
+		((WeightedRendezvousRoutingStrategy)this.RoutingStrategy).setShardWeight(current.getNewShardNum() + i, shard_weights[i]);
+	    }
+	    //the first requests of the new view must not wait for its table.
+	    ((WeightedRendezvousRoutingStrategy)this.RoutingStrategy).prepareTable(current.getNewShardNum() + new_clients.size());
+	}
+	ShardTopology<MongoClient> next = current.extend(new_clients);
+	this.PersistTopology = next;
+	if(next.getNewShardNum()>0)
         {
-	    this.PERSIST_SERVER_NUM_NEW = PersistShardingMap.size(); 
 	    this.PersistInitOK = true;
 	}
+	return next;
+    }
+	
+    /**
+     * @Title: retireOldView.
+     * @Description: the function is used to make the old routing view the same as the new routing view,
+     *               when all the documents of the expected topology have been relocated to their new owners.
+     * @param expected: the topology whose documents have been relocated.
+     * @return boolean: true when the old view was retired, false when the topology has changed since then.
+     */
+    public synchronized boolean retireOldView(ShardTopology<MongoClient> expected)
+    {
+	if(this.PersistTopology != expected)
+	{
+	    return false;
+	}
+	this.PersistTopology = expected.retireOldView();
+	return true;
+    }
+	
+    /**
+     * @Title: getPersistTopology.
+     * @Description: the function is used to get the current routing snapshot.
+     * @return ShardTopology<MongoClient>: the current topology.
+     */
+    public ShardTopology<MongoClient> getPersistTopology()
+    {
+	return this.PersistTopology;
+    }
+	
+    /**
+     * @Title: getRoutingStrategy.
+     * @Description: the function is used to get the routing strategy of this layer.
+     * @return ShardRoutingStrategy: the routing strategy.
+     */
+    public ShardRoutingStrategy getRoutingStrategy()
+    {
+	return this.RoutingStrategy;
+    }
+	
+    /**
+     * @Title: getTopologyVersion.
+     * @Description: the function is used to get the version of the applied topology, the number of the applied deltas.
+     * @return long: the topology version.
+     */
+    public synchronized long getTopologyVersion()
+    {
+	return this.AppliedDeltas.size();
+    }
+	
+    /**
+     * @Title: getGapRefetches.
+     * @Description: the function is used to get the number of the version gaps which were refetched from the config database.
+     * @return long: the gap refetch number.
+     */
+    public long getGapRefetches()
+    {
+	return this.GapRefetches.get();
+    }
+	
+    /**
+     * @Title: getMetrics.
+     * @Description: the function is used to get the latency histograms & the error counters of each shard.
+     * @return LayerMetrics: the metrics of this layer.
+     */
+    public LayerMetrics getMetrics()
+    {
+	return this.Metrics;
+    }
+	
+    /**
+     * @Title: metricsOf.
+     * @Description: the function is used to get the metrics of the shard of a MongoClient.
+     * @param client: the MongoClient of the shard.
+     * @return ShardMetrics: the metrics, null when the client was not created by this layer.
+     */
+    static ShardMetrics metricsOf(MongoClient client)
+    {
+	return (client instanceof PersistShardClient) ? ((PersistShardClient)client).getMetrics() : null;
+    }
+	
+    /**
+     * @Title: execute.
+     * @Description: the function is used to run one operation on the MongoClient of a shard, and record its time in the
+     *               histogram of the shard(the operation name is the histogram name) or count its failure.
+     * @param client: the MongoClient of the shard.
+     * @param operation: the operation name, like "find", "update" or "remove".
+     * @param callback: the operation.
+     * @return T: the result of the operation.
+     */
+    public <T> T execute(MongoClient client, String operation, PersistCallback<T> callback)
+    {
+	ShardMetrics metrics = metricsOf(client);
+	long start = System.nanoTime();
+	try
+	{
+	    T result = callback.doInPersist(client);
+	    if(metrics != null)
+	    {
+		metrics.record(operation, start);
+	    }
+	    return result;
+	}
+	catch(RuntimeException e)
+	{
+	    if(metrics != null)
+	    {
+		metrics.recordError(LayerMetrics.isTimeout(e));
+	    }
+	    throw e;
+	}
+    }
+	
+    /**
+     * @Title: getRebalancer.
+     * @Description: the function is used to get the document rebalancer, for the progress, the parallelism & the rate settings.
+     * @return PersistentRebalancer: the document rebalancer.
+     */
+    public PersistentRebalancer getRebalancer()
+    {
+	return this.Rebalancer;
+    }
+	
+    /**
+     * @Title: getConnectionsPerHost.
+     * @Description: the function is used to get the max connection number of the MongoClient of each shard.
+     * @return int: the connectionsPerHost of the MongoClient options.
+     */
+    public int getConnectionsPerHost()
+    {
+	return this.mongoOption.getConnectionsPerHost();
+    }
+	
+    /**
+     * @Title: setShardBuildTimeoutMillis.
+     * @Description: the function is used to change the max time to build the clients of one topology message.
+     * @param shardBuildTimeoutMillis: the time in milliseconds.
+     * @return none.
+     */
+    public void setShardBuildTimeoutMillis(long shardBuildTimeoutMillis)
+    {
+	this.ShardBuildTimeoutMillis = shardBuildTimeoutMillis;
+    }
+	
+    /**
+     * @Title: findOne.
+     * @Description: the function is used to read one document from a shard, its time is recorded as "find" in the shard metrics.
+     *               with the hedged reads enabled, the read goes to the primary first, and when the primary has not answered
+     *               within the HedgePercentile of its recent latency(or has failed), the same read is sent to a secondary
+     *               within the max staleness. the first answer wins and the other read is cancelled.
+     * @param client: the MongoClient of the shard.
+     * @param dbName: the database name.
+     * @param collName: the collection name.
+     * @param query: the query of the document.
+     * @return DBObject: the document, or null.
+     */
+    public DBObject findOne(MongoClient client, String dbName, String collName, DBObject query)
+    {
+	return this.findOne(client, dbName, collName, query, true);
+    }
+	
+    /**
+     * @Title: findOne.
+     * @Description: the function is used to read one document from a shard, like findOne, but the hedge could be refused.
+     *               a read whose document is cached or copied afterwards must not hedge: a secondary may return an older
+     *               document, which would then be served from the cache for its whole ttl, or copied over a newer one.
+     * @param client: the MongoClient of the shard.
+     * @param dbName: the database name.
+     * @param collName: the collection name.
+     * @param query: the query of the document.
+     * @param hedge: true to allow the hedged read when it is enabled, false to read the primary only.
+     * @return DBObject: the document, or null.
+     */
+    public DBObject findOne(MongoClient client, final String dbName, final String collName, final DBObject query, boolean hedge)
+    {
+	if(!hedge || !this.HedgedReads || !(client instanceof PersistShardClient))
+	{
+	    return this.execute(client, "find", new PersistCallback<DBObject>()
+	    {
+		@Override
+		public DBObject doInPersist(MongoClient shard)
+		{
+		    return shard.getDB(dbName).getCollection(collName).findOne(query, null, ReadPreference.primary());
+		}
+	    });
+	}
+	return this.hedgedFindOne((PersistShardClient)client, dbName, collName, query);
+    }
+	
+    /**
+     * @Title: hedgedFindOne.
+     * @Description: the function which races the primary read with a late secondary read, see findOne.
+     * @param shard: the MongoClient of the shard.
+     * @param dbName: the database name.
+     * @param collName: the collection name.
+     * @param query: the query of the document.
+     * @return DBObject: the document, or null.
+     */
+    private DBObject hedgedFindOne(final PersistShardClient shard, final String dbName, final String collName, final DBObject query)
+    {
+	ShardMetrics metrics = shard.getMetrics();
+	final ReadPreference hedge_preference = this.HedgeReadPreference;
+	CompletionService<DBObject> race = new ExecutorCompletionService<DBObject>(this.QueryExecutor);
+	long start = System.nanoTime();
+	Future<DBObject> primary = race.submit(new Callable<DBObject>()
+	{
+	    @Override
+	    public DBObject call()
+	    {
+		long begin = System.nanoTime();
+		DBObject doc = shard.getDB(dbName).getCollection(collName).findOne(query, null, ReadPreference.primary());
+		shard.recordPrimaryRead((System.nanoTime() - begin) / 1000);
+		return doc;
+	    }
+	});
+	Future<DBObject> hedge = null;
+	Throwable error = null;
+	try
+	{
+	    long delay = Math.max(MIN_HEDGE_DELAY_MICROS,
+				  shard.getHedgeDelayMicros(this.HedgePercentile, HEDGE_WINDOW_SAMPLES, DEFAULT_HEDGE_DELAY_MICROS));
+	    Future<DBObject> done = race.poll(delay, TimeUnit.MICROSECONDS);
+	    if(done != null)
+	    {
+		try
+		{
+		    DBObject doc = done.get();
+		    metrics.record("find", start);
+		    return doc;
+		}
+		catch(ExecutionException e)
+		{
+		    error = e.getCause();
+		}
+	    }
+	    
+	    //the primary is late(or failed), send the duplicate to a secondary.
+	    hedge = race.submit(new Callable<DBObject>()
+	    {
+		@Override
+		public DBObject call()
+		{
+		    return shard.getDB(dbName).getCollection(collName).findOne(query, null, hedge_preference);
+		}
+	    });
+	    for(int pending = (error == null) ? 2 : 1; pending > 0; pending--)
+	    {
+		done = race.take();
+		try
+		{
+		    DBObject doc = done.get();
+		    metrics.recordHedge(done == hedge);
+		    metrics.record("find", start);
+		    return doc;
+		}
+		catch(ExecutionException e)
+		{
+		    if(error == null)
+		    {
+			error = e.getCause();
+		    }
+		}
+	    }
+	    metrics.recordHedge(false);
+	}
+	catch(InterruptedException e)
+	{
+	    Thread.currentThread().interrupt();
+	    error = e;
+	}
+	finally
+	{
+	    primary.cancel(true);
+	    if(hedge != null)
+	    {
+		hedge.cancel(true);
+	    }
+	}
+	
+	metrics.recordError(LayerMetrics.isTimeout(error));
+	if(error instanceof RuntimeException)
+	{
+	    throw (RuntimeException)error;
+	}
+	throw new MongoException("hedged read on " + dbName + "." + collName + " failed", error);
+    }
+	
+    /**
+     * @Title: setHedgedReads.
+     * @Description: the function is used to enable or disable the hedged reads of findOne.
+     *               (a hedged read may miss a document which was written within the max staleness, so enable it only
+     *               when the readers tolerate that, it is disabled by default).
+     * @param enabled: true to enable the hedged reads.
+     * @return none.
+     */
+    public void setHedgedReads(boolean enabled)
+    {
+	this.HedgedReads = enabled;
+    }
+	
+    /**
+     * @Title: setHedgePercentile.
+     * @Description: the function is used to change the percentile of the primary latency which is waited before a hedged read.
+     * @param percentile: the percentile, like 95.0(a lower one sends more hedged reads).
+     * @return none.
+     */
+    public void setHedgePercentile(double percentile)
+    {
+	this.HedgePercentile = percentile;
+    }
+	
+    /**
+     * @Title: setMaxStalenessSeconds.
+     * @Description: the function is used to change the max replication lag of the secondaries which may answer a hedged read.
+     * @param maxStalenessSeconds: the max staleness in seconds, at least 90.
+     * @return none.
+     */
+    public void setMaxStalenessSeconds(long maxStalenessSeconds)
+    {
+	this.HedgeReadPreference = ReadPreference.secondary(maxStalenessSeconds, TimeUnit.SECONDS);
+    }
+	
+    /**
+     * @Title: setWriteConcern.
+     * @Description: the function is used to change the durability of the writes of this layer, it is used by the next writes
+     *               and the next flushes of the write-behind(the options of the existing MongoClients are not changed).
+     * @param writeConcern: the WriteConcern, like WriteConcern.JOURNALED or WriteConcern.MAJORITY.
+     * @return none.
+     */
+    public void setWriteConcern(WriteConcern writeConcern)
+    {
+	if(writeConcern == null)
+	{
+	    throw new IllegalArgumentException("the WriteConcern is null");
+	}
+	this.Durability = writeConcern;
+    }
+	
+    /**
+     * @Title: getWriteConcern.
+     * @Description: the function is used to get the durability of the writes of this layer.
+     * @return WriteConcern: the WriteConcern.
+     */
+    public WriteConcern getWriteConcern()
+    {
+	return this.Durability;
+    }
+	
+    /**
+     * @Title: enableWriteBehind.
+     * @Description: the function is used to buffer the document writes per shard and send them as unordered bulk writes
+     *               (see PersistWriteBehind), the writes are acknowledged by the flushes instead of the writers.
+     * @param batchSize: the buffered documents of a shard which start a flush.
+     * @param flushMillis: the max time a write stays in the buffer.
+     * @param maxPending: the max buffered & flushing documents, the writers wait when they are reached.
+     * @return PersistWriteBehind: the write-behind stage, its flush function is the barrier of the buffered writes.
+     */
+    public synchronized PersistWriteBehind enableWriteBehind(int batchSize, long flushMillis, int maxPending)
+    {
+	if(this.WriteBehind != null)
+	{
+	    throw new IllegalStateException("the write-behind is already enabled");
+	}
+	this.WriteBehind = new PersistWriteBehind(this, batchSize, flushMillis, maxPending);
+	return this.WriteBehind;
+    }
+	
+    /**
+     * @Title: disableWriteBehind.
+     * @Description: the function is used to write the documents directly again, the buffered writes are flushed first.
+     * @param timeoutMillis: the max wait of the last flush.
+     * @return none.
+     */
+    public synchronized void disableWriteBehind(long timeoutMillis)
+    {
+	PersistWriteBehind write_behind = this.WriteBehind;
+	if(write_behind == null)
+	{
+	    return;
+	}
+	this.WriteBehind = null;
+	write_behind.close(timeoutMillis);
+    }
+	
+    /**
+     * @Title: getWriteBehind.
+     * @Description: the function is used to get the write-behind stage of the document writes.
+     * @return PersistWriteBehind: the write-behind stage, null when it is not enabled.
+     */
+    public PersistWriteBehind getWriteBehind()
+    {
+	return this.WriteBehind;
+    }
+	
+    /**
+     * @Title: routePersistClient.
+     * @Description: the function which is used to route a key hash to the MongoClient of one routing view.
+     *               (it reads the PersistTopology only once, so the shard numbers and the clients always come from the same snapshot).
+     * @param keyHash: the full-key hash of the ShardKeyHash.
+     * @param oldView: true to route with the old shard number, false to route with the new shard number.
+     * @return MongoClient: the MongoDB client, or null before the first topology message.
+     */
+    private MongoClient routePersistClient(long keyHash, boolean oldView)
+    {
+	ShardTopology<MongoClient> topology = this.PersistTopology;
+	int shard_num = oldView ? topology.getOldShardNum() : topology.getNewShardNum();
+	if(shard_num == 0)
+	{
+	    return null;
+	}
+	return topology.getShard(this.RoutingStrategy.getShardIndex(keyHash, shard_num));
     }
 
     /**
      * @Title: getOldShardedPersistClient.
-     * @Description: this function is used to fetch the MongoClient mod by the PERSIST_SERVER_NUM_OLD.
+     * @Description: this function is used to fetch the MongoClient routed by the RoutingStrategy with the old shard number.
      * @param key: int value which is indicates the value.
      * @return MongoClient:the MongoDB client which is used to access the MongoDB.
      */
     public MongoClient getOldShardedPersistClient(int key)
     {
-	return this.PersistShardingMap.get(key % this.PERSIST_SERVER_NUM_OLD);
+	return this.routePersistClient(ShardKeyHash.hash(key), true);
     }
 	
     /**
      * @Title: getNewShardedPersistClient.
-     * @Description: this function is used to fetch the MongoClient mod by the PERSIST_SERVER_NUM_NEW.
+     * @Description: this function is used to fetch the MongoClient routed by the RoutingStrategy with the new shard number.
      * @param key: int value which is indicates the value.
      * @return MongoClient:the MongoDB client which is used to access the MongoDB.
      */
     public MongoClient getNewShardedPersistClient(int key)
     {
-	return this.PersistShardingMap.get(key % this.PERSIST_SERVER_NUM_NEW);
+	return this.routePersistClient(ShardKeyHash.hash(key), false);
     }
 	
     /**
      * @Title: getOldShardedPersistClient.
-     * @Description: this function is used to fetch the MongoClient mod by the PERSIST_SERVER_NUM_OLD.
+     * @Description: this function is used to fetch the MongoClient routed by the RoutingStrategy with the old shard number.
      * @param key: long value which is indicates the value.
      * @return MongoClient:the MongoDB client which is used to access the MongoDB.
      */
     public MongoClient getOldShardedPersistClient(long key)
     {
-	return this.PersistShardingMap.get(((int)(key & 0xFF)) % this.PERSIST_SERVER_NUM_OLD);
+	return this.routePersistClient(ShardKeyHash.hash(key), true);
     }
 	
     /**
      * @Title: getNewShardedPersistClient.
-     * @Description: this function is used to fetch the MongoClient mod by the PERSIST_SERVER_NUM_NEW.
+     * @Description: this function is used to fetch the MongoClient routed by the RoutingStrategy with the new shard number.
      * @param key: long value which is indicates the value.
      * @return MongoClient:the MongoDB client which is used to access the MongoDB.
      */
     public MongoClient getNewShardedPersistClient(long key)
     {
-	return this.PersistShardingMap.get(((int)(key & 0xFF)) % this.PERSIST_SERVER_NUM_NEW);
+	return this.routePersistClient(ShardKeyHash.hash(key), false);
     }
 	
     /**
      * @Title: getOldShardedPersistClient.
-     * @Description: the function which is used to fetch the JedisSentinelPool mod by the PERSIST_SERVER_NUM_OLD.
+     * @Description: the function which is used to fetch the JedisSentinelPool routed by the RoutingStrategy with the old shard number.
      * @param key: String value which is indicates the value.
      * @return MongoClient:the MongoDB client which is used to access the MongoDB.
      */
     public MongoClient getOldShardedPersistClient(String key)
     {
-	return this.PersistShardingMap.get((int)(key.toCharArray()[key.length()-1]) % this.PERSIST_SERVER_NUM_OLD);
+	return this.routePersistClient(ShardKeyHash.routingHash(key), true);
     }
 	
     /**
      * @Title: getNewShardedPersistClient.
-     * @Description: the function which is used to fetch the MongoClient mod by the PERSIST_SERVER_NUM_NEW.
+     * @Description: the function which is used to fetch the MongoClient routed by the RoutingStrategy with the new shard number.
      * @param key: String value which is indicates the value.
      * @return MongoClient:the MongoDB client which is used to access the MongoDB.
      */
     public MongoClient getNewShardedPersistClient(String key)
     {
-	return this.PersistShardingMap.get((int)(key.toCharArray()[key.length()-1]) % this.PERSIST_SERVER_NUM_NEW);
+	return this.routePersistClient(ShardKeyHash.routingHash(key), false);
+    }
+	
+    /**
+     * @ClassName: ShardQuery.
+     * @Description: the query of one shard, it opens the cursor and waits for the first batch.
+     *               a query which is abandoned by the timeout closes its cursor when it returns late.
+     */
+    private static class ShardQuery implements Callable<DBCursor>
+    {
+	private final MongoClient client;
+	private final String dbName;
+	private final String collName;
+	private final DBObject filter;
+	private final DBObject sort;
+	private final int limit;
+	private final ScatterGatherOptions options;
+	private DBCursor cursor = null;
+	private boolean abandoned = false;
+	
+	ShardQuery(MongoClient client, String dbName, String collName, DBObject filter, DBObject sort, int limit, ScatterGatherOptions options)
+	{
+	    this.client = client;
+	    this.dbName = dbName;
+	    this.collName = collName;
+	    this.filter = filter;
+	    this.sort = sort;
+	    this.limit = limit;
+	    this.options = options;
+	}
+	
+	@Override
+	public DBCursor call()
+	{
+	    ShardMetrics metrics = metricsOf(this.client);
+	    long start = System.nanoTime();
+	    try
+	    {
+		DBCursor opened = this.open();
+		if(metrics != null)
+		{
+		    metrics.record("scatter", start);
+		}
+		return opened;
+	    }
+	    catch(RuntimeException e)
+	    {
+		if(metrics != null)
+		{
+		    metrics.recordError(LayerMetrics.isTimeout(e));
+		}
+		throw e;
+	    }
+	}
+	
+	private DBCursor open()
+	{
+	    DBCursor opened = this.client.getDB(this.dbName).getCollection(this.collName).find(this.filter);
+	    if(this.sort != null)
+	    {
+		opened.sort(this.sort);
+	    }
+	    if(this.limit > 0)
+	    {
+		//limit pushdown: the global first N documents are always in the first N documents of their shards.
+		opened.limit(this.limit);
+	    }
+	    opened.batchSize(this.options.getBatchSize());
+	    opened.maxTime(this.options.getShardTimeoutMillis(), TimeUnit.MILLISECONDS);
+	    synchronized(this)
+	    {
+		this.cursor = opened;
+		if(this.abandoned)
+		{
+		    opened.close();
+		    return opened;
+		}
+	    }
+	    //send the query and wait for the first batch on this thread, the getMore of the next batches are sent by the merge.
+	    opened.hasNext();
+	    return opened;
+	}
+	
+	synchronized void abandon()
+	{
+	    this.abandoned = true;
+	    if(this.cursor != null)
+	    {
+		this.cursor.close();
+	    }
+	}
+    }
+    
+    /**
+     * @Title: scatterGather.
+     * @Description: the function which sends a query to all the shards of the current topology at the same time and merges
+     *               their results in the order of the sort specification. every shard sorts & limits its own documents,
+     *               the merge only compares the head document of each shard and stops at the global limit.
+     *               a shard which does not return its first batch in the ShardTimeoutMillis(or fails) fails the query with the
+     *               FAIL policy, and is skipped with the PARTIAL policy(see ScatterGatherCursor.getFailedShards).
+     * @param dbName: the database name.
+     * @param collName: the collection name.
+     * @param filter: the query filter, null for all the documents.
+     * @param sort: the sort specification like {"age": -1}, null when the order does not matter.
+     * @param limit: the max number of the documents, 0 means no limit.
+     * @param options: the timeout, batch size & partial-result policy of the query.
+     * @return ScatterGatherCursor: the merged cursor, it must be closed when it is not read to the end.
+     */
+    public ScatterGatherCursor scatterGather(String dbName, String collName, DBObject filter, DBObject sort, int limit, ScatterGatherOptions options)
+    {
+	//read the PersistTopology only once, all the shards of the query come from the same snapshot.
+	//(the old shards are in the new view too, so the documents which are not relocated yet are found as well).
+	ShardTopology<MongoClient> topology = this.PersistTopology;
+	int shard_num = topology.getNewShardNum();
+	DBObject query = (filter == null) ? new BasicDBObject() : filter;
+	boolean partial = (options.getPolicy() == ScatterGatherOptions.PartialResultPolicy.PARTIAL);
+	
+	List<ShardQuery> queries = new ArrayList<ShardQuery>(shard_num);
+	List<Future<DBCursor>> futures = new ArrayList<Future<DBCursor>>(shard_num);
+	for(int i = 0; i < shard_num; i++)
+	{
+	    ShardQuery shard_query = new ShardQuery(topology.getShard(i), dbName, collName, query, sort, limit, options);
+	    queries.add(shard_query);
+	    futures.add(this.QueryExecutor.submit(shard_query));
+	}
+	
+	//all the shards share one deadline, so the query waits ShardTimeoutMillis at most whatever the shard number.
+	long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(options.getShardTimeoutMillis());
+	List<Integer> shards = new ArrayList<Integer>(shard_num);
+	List<DBCursor> cursors = new ArrayList<DBCursor>(shard_num);
+	List<Integer> failed = new ArrayList<Integer>();
+	for(int i = 0; i < shard_num; i++)
+	{
+	    Throwable error = null;
+	    try
+	    {
+		DBCursor cursor = futures.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+		shards.add(i);
+		cursors.add(cursor);
+		continue;
+	    }
+	    catch(TimeoutException e)
+	    {
+		error = e;
+	    }
+	    catch(ExecutionException e)
+	    {
+		error = e.getCause();
+	    }
+	    catch(InterruptedException e)
+	    {
+		Thread.currentThread().interrupt();
+		error = e;
+	    }
+	    
+	    queries.get(i).abandon();
+	    futures.get(i).cancel(true);
+	    if(!partial)
+	    {
+		for(int j = i + 1; j < shard_num; j++)
+		{
+		    queries.get(j).abandon();
+		    futures.get(j).cancel(true);
+		}
+		for(DBCursor cursor : cursors)
+		{
+		    cursor.close();
+		}
+		throw new MongoException("scatter-gather query on " + dbName + "." + collName + " failed on shard " + i, error);
+	    }
+	    failed.add(i);
+	}
+	return new ScatterGatherCursor(shards, cursors, sort, limit, partial, failed, topology.isExpanding());
+    }
+    
+    /**
+     * @Title: scatterGather.
+     * @Description: the function which runs a scatter-gather query with the default options(see ScatterGatherOptions).
+     * @param dbName: the database name.
+     * @param collName: the collection name.
+     * @param filter: the query filter, null for all the documents.
+     * @param sort: the sort specification, null when the order does not matter.
+     * @param limit: the max number of the documents, 0 means no limit.
+     * @return ScatterGatherCursor: the merged cursor.
+     */
+    public ScatterGatherCursor scatterGather(String dbName, String collName, DBObject filter, DBObject sort, int limit)
+    {
+	return this.scatterGather(dbName, collName, filter, sort, limit, new ScatterGatherOptions());
     }
 	
     /**
@@ -284,19 +1233,85 @@ public class PersistentLayerClient
      * @param serverinfo_2: the third redis server node ip & port information in the redis sentinel.
      * @param channel: the channel that subscribed by the PersistentLayerClient.
      * @return none.
+     *         (it routes by the ModuloRoutingStrategy like the clients before the pluggable strategies: the int keys keep
+     *         their "key % N" placement, the long & String keys are placed by their full-key hash of ShardKeyHash instead of
+     *         their low 8 bits or last char, so the long & String keys which the earlier clients stored are not on their shards.
+     *         pass a JumpHashRoutingStrategy to the strategy constructor to opt in the consistent routing).
      */
     public PersistentLayerClient(String serverinfo_0, String serverinfo_1, String serverinfo_2, String channel)
     {
+	this(serverinfo_0, serverinfo_1, serverinfo_2, channel, new ModuloRoutingStrategy());
+    }
+	
+    /**
+     * @Title: PersistentLayerClient.
+     * @Description: the construct function of this PersistentLayerClient class with a specific routing strategy.
+     * @param serverinfo_0: the first redis server node ip & port information in the redis sentinel.
+     * @param serverinfo_1: the second redis server node ip & port information in the redis sentinel.
+     * @param serverinfo_2: the third redis server node ip & port information in the redis sentinel.
+     * @param channel: the channel that subscribed by the PersistentLayerClient.
+     * @param strategy: the strategy which is used to map a key to the shard.
+     *        (the strategy is fed with the full-key hash of ShardKeyHash).
+     * @return none.
+     */
+    public PersistentLayerClient(String serverinfo_0, String serverinfo_1, String serverinfo_2, String channel, ShardRoutingStrategy strategy)
+    {
+	this(TopologyService.getInstance(serverinfo_0, serverinfo_1, serverinfo_2), channel, strategy);
+    }
+	
+    /**
+     * @Title: PersistentLayerClient.
+     * @Description: the construct function of the PersistentLayerClient class on a specific topology service.
+     *               (the layer clients of one config server share its service, see TopologyService.getInstance).
+     * @param topologyService: the topology service which delivers the messages of the channel.
+     * @param channel: the channel that subscribed by the PersistentLayerClient.
+     * @param strategy: the strategy which is used to map a key to the shard.
+     * @return none.
+     */
+    public PersistentLayerClient(TopologyService topologyService, String channel, ShardRoutingStrategy strategy)
+    {
+	this.RoutingStrategy = strategy;
+	this.topologyService = topologyService;
+	this.configdb = topologyService.getConfigDB();
 	this.mongoOption = new MongoClientOptions.Builder().socketKeepAlive(true)
 				           .connectTimeout(50000)
 				           .socketTimeout(30000)
 				           .readPreference(ReadPreference.primary())
 				           .connectionsPerHost(80)
+				           .minConnectionsPerHost(DEFAULT_PREWARM_CONNECTIONS)
 				           .maxWaitTime(1000*60*2)
 				           .threadsAllowedToBlockForConnectionMultiplier(40)
-				           .writeConcern(WriteConcern.NORMAL).build();
-	this.ConfigDBInit(serverinfo_0, serverinfo_1, serverinfo_2);
-	this.PersistShardingMap = new HashMap<Integer, MongoClient>();
+				           .writeConcern(DEFAULT_WRITE_CONCERN).build();
+	this.Rebalancer = new PersistentRebalancer(this, this.configdb, DEFAULT_REBALANCE_PARALLELISM, DEFAULT_REBALANCE_DOCS_PER_SECOND);
+	this.QueryExecutor = Executors.newCachedThreadPool(new ThreadFactory()
+	{
+	    @Override
+	    public Thread newThread(Runnable r)
+	    {
+		Thread thread = new Thread(r, "persistQueryThread");
+		thread.setDaemon(true);
+		return thread;
+	    }
+	});
+	this.TopologyChannel = channel;
+	this.SnapshotFile = TopologySnapshotFile.forChannel(channel);
 	this.Subscriber(channel);
+	this.bootstrapTopology();
+    }
+	
+    /**
+     * @Title: PersistentLayerClient.
+     * @Description: the construct function of a detached PersistentLayerClient which is not subscribed to any channel,
+     *               it routes the keys over a topology which is given by the caller(it only exists for the JMH ShardingBenchmark
+     *               of the benchmark source set and the tests of the test source set, which share this package, see pom.xml).
+     * @param strategy: the strategy which is used to map a key to the shard.
+     * @param topology: the routing snapshot.
+     * @return none.
+     */
+    PersistentLayerClient(ShardRoutingStrategy strategy, ShardTopology<MongoClient> topology)
+    {
+	this.RoutingStrategy = strategy;
+	this.PersistTopology = topology;
+	this.PersistInitOK = (topology.getNewShardNum() > 0);
     }
 }
@@ -0,0 +1,999 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: PersistentRebalancer.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The chunked & resumable document rebalancer of the persistent layer expansion.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of PersistentRebalancer was written.
+ *    2.2026-10-17 a copy which differs from the source is kept as the newer version, only a missing copy fails the chunk.
+ *    3.2026-10-17 only the holder of a config database lease rebalances each old_new pair.
+ *    4.2026-10-17 a copy of a document which was deleted during the move is removed again(see recordDelete), the source is only
+ *                 removed while it is unchanged, and the throttle waits before the chunk is read.
+ *    5.2026-10-17 Add isDeletedSince, the read-repair of GeneralDBClient checks the tombstones the same way.
+ */
+//package name.
+package generaldbplatform;
+
+//class import for java utilities.
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+//class import for mongodb client.
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteError;
+import com.mongodb.BulkWriteException;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import com.mongodb.MongoClient;
+import com.mongodb.MongoException;
+import com.mongodb.WriteConcern;
+import com.mongodb.util.JSON;
+
+//class import for jedis client.
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+/**
+ * @ClassName: PersistentRebalancer.
+ * @Description: this class relocates the documents to their new owner shards after a PERSIST_AUTO_EXTERN.
+ *               every collection of every old shard is streamed in _id-ordered chunks, the documents of a chunk which belong to
+ *               another shard are written to their new owner by an unordered bulk insert, verified that every copy exists,
+ *               and then removed from the source shard(a copy which differs is the newer version written through the new view).
+ *               the last _id of each collection is stored in the config database after every chunk, so a crash resumes
+ *               in the middle of the collection. the documents are routed by their _id(see ShardKeyHash.hash(Object)).
+ *               only the process which holds the config database lease of the old_new pair rebalances it(see ConfigLease),
+ *               the other processes retire their old view when the holder marks the pair done.
+ *               a delete of the GeneralDBClient during an expansion leaves a tombstone in the config database first(see recordDelete),
+ *               so a copy which was inserted from a chunk read before the delete is removed again instead of bringing it back.
+ */
+public class PersistentRebalancer implements Runnable
+{
+    /**
+     * @FieldName: CHECKPOINT_KEY_PREFIX.
+     * @Description: the prefix of the config database hash which records the last _id of each collection.
+     */
+    public static final String CHECKPOINT_KEY_PREFIX = "PERSIST_REBALANCE_CHECKPOINT:";
+
+    /**
+     * @FieldName: LEASE_KEY_PREFIX & DONE_KEY_PREFIX & LEASE_MILLIS.
+     * @Description: the prefix of the config database lease which lets only one process rebalance an old_new pair,
+     *               the prefix of the key which marks the pair has been rebalanced, and the expire time of the lease.
+     */
+    public static final String LEASE_KEY_PREFIX = "PERSIST_REBALANCE_LEASE:";
+    public static final String DONE_KEY_PREFIX = "PERSIST_REBALANCE_DONE:";
+    private static final long LEASE_MILLIS = 30000;
+
+    /**
+     * @FieldName: TOMBSTONE_KEY & TOMBSTONE_TTL_MILLIS & TOMBSTONE_SKEW_MILLIS.
+     * @Description: the config database sorted set of the deleted documents("db/collection/_id" -> the delete time),
+     *               the time after which a tombstone is trimmed, and the clock skew which is allowed between the processes.
+     *               (only a delete after the chunk was read can bring a document back, the older tombstones are ignored).
+     */
+    public static final String TOMBSTONE_KEY = "PERSIST_REBALANCE_TOMBSTONES";
+    private static final long TOMBSTONE_TTL_MILLIS = 3600000;
+    private static final long TOMBSTONE_SKEW_MILLIS = 5000;
+
+    /**
+     * @FieldName: CHECKPOINT_DONE.
+     * @Description: the checkpoint value which marks the collection has been rebalanced completely.
+     */
+    private static final String CHECKPOINT_DONE = "DONE";
+
+    /**
+     * @FieldName: DUPLICATE_KEY_CODE.
+     * @Description: the MongoDB error code of the duplicate key, the document was copied before a crash.
+     */
+    private static final int DUPLICATE_KEY_CODE = 11000;
+
+    /**
+     * @FieldName: RETRY_INTERVAL_MILLIS.
+     * @Description: the wait time before a failed collection is rebalanced again from its checkpoint.
+     */
+    private static final long RETRY_INTERVAL_MILLIS = 5000;
+
+    /**
+     * @FieldName: persistClient.
+     * @Description: the persistent layer client whose topology is rebalanced.
+     */
+    private final PersistentLayerClient persistClient;
+
+    /**
+     * @FieldName: configdb.
+     * @Description: the ConfigServer database client which stores the checkpoints.
+     */
+    private final ConfigDBClient configdb;
+
+    /**
+     * @FieldName: Throttle.
+     * @Description: the rate limiter of the streamed documents(documents per second), shared by all the workers.
+     */
+    private final ThroughputThrottle Throttle;
+
+    /**
+     * @FieldName: Parallelism.
+     * @Description: the number of the collections which are rebalanced at the same time.
+     */
+    private volatile int Parallelism;
+
+    /**
+     * @FieldName: ChunkSize.
+     * @Description: the number of the documents of each chunk.
+     */
+    private volatile int ChunkSize = 1000;
+
+    /**
+     * @FieldName: Topology.
+     * @Description: the topology which is being rebalanced, from its old view to its new view.
+     */
+    private volatile ShardTopology<MongoClient> Topology;
+
+    /**
+     * @FieldName: Coordinator.
+     * @Description: the thread which lists the collections and waits for the workers, null when no rebalance is running.
+     */
+    private Thread Coordinator;
+
+    /**
+     * @FieldName: Lease.
+     * @Description: the lease of the running rebalance, the workers stop after their current chunk when it is lost.
+     */
+    private volatile ConfigLease Lease;
+
+    /**
+     * @FieldName: Stopped.
+     * @Description: the flag which asks the running rebalance to stop after the current chunks.
+     */
+    private volatile boolean Stopped = false;
+
+    /**
+     * @FieldName: Progress counters.
+     * @Description: the scanned & moved document counters, the counter of the source documents whose copy had been superseded
+     *               by a newer write, the failed chunk counter and the finished flag of the current rebalance.
+     */
+    private final AtomicLong ScannedDocs = new AtomicLong();
+    private final AtomicLong MovedDocs = new AtomicLong();
+    private final AtomicLong SupersededDocs = new AtomicLong();
+    private final AtomicLong FailedChunks = new AtomicLong();
+    private volatile boolean Finished = false;
+
+    /**
+     * @Title: PersistentRebalancer.
+     * @Description: the construct function of the PersistentRebalancer class.
+     * @param persistClient: the persistent layer client whose topology is rebalanced.
+     * @param configdb: the ConfigServer database client which stores the checkpoints.
+     * @param parallelism: the number of the collections which are rebalanced at the same time.
+     * @param docsPerSecond: the max number of the documents which are streamed in one second, <= 0 means no limit.
+     * @return none.
+     */
+    public PersistentRebalancer(PersistentLayerClient persistClient, ConfigDBClient configdb, int parallelism, double docsPerSecond)
+    {
+	this.persistClient = persistClient;
+	this.configdb = configdb;
+	this.Parallelism = Math.max(1, parallelism);
+	this.Throttle = new ThroughputThrottle(docsPerSecond);
+    }
+
+    /**
+     * @Title: start.
+     * @Description: the function which is used to start(or resume) the rebalance of one topology.
+     *               a running rebalance of an earlier topology is stopped first, the documents it left behind are
+     *               still in the old shards of the new topology, so they are relocated by the new rebalance.
+     * @param topology: the topology which is rebalanced from its old view to its new view.
+     * @return none.
+     */
+    public synchronized void start(ShardTopology<MongoClient> topology)
+    {
+	stop();
+	if(!topology.isExpanding())
+	{
+	    return;
+	}
+
+	this.Topology = topology;
+	this.Stopped = false;
+	this.Finished = false;
+	this.ScannedDocs.set(0);
+	this.MovedDocs.set(0);
+	this.SupersededDocs.set(0);
+	this.FailedChunks.set(0);
+	this.Coordinator = new Thread(this, "persistRebalancerThread");
+	this.Coordinator.setDaemon(true);
+	this.Coordinator.start();
+    }
+
+    /**
+     * @Title: stop.
+     * @Description: the function which is used to stop the running rebalance, the checkpoints are kept for the next start.
+     * @return none.
+     */
+    public synchronized void stop()
+    {
+	this.Stopped = true;
+	if(this.Coordinator != null)
+	{
+	    this.Coordinator.interrupt();
+	    try
+	    {
+		this.Coordinator.join();
+	    }
+	    catch(InterruptedException e)
+	    {
+		Thread.currentThread().interrupt();
+	    }
+	    this.Coordinator = null;
+	}
+    }
+
+    /**
+     * @Title: run.
+     * @Description: the body of the coordinator thread. only the holder of the lease of the old_new pair rebalances,
+     *               the other processes wait until the holder marks the pair done(or until its lease expires and they take it),
+     *               then every process retires its own old view.
+     * @return none.
+     */
+    @Override
+    public void run()
+    {
+	final ShardTopology<MongoClient> topology = this.Topology;
+	String pair = topology.getOldShardNum() + "_" + topology.getNewShardNum();
+	String checkpoint_key = CHECKPOINT_KEY_PREFIX + pair;
+	String done_key = DONE_KEY_PREFIX + pair;
+	ConfigLease lease = new ConfigLease(configdb, LEASE_KEY_PREFIX + pair, LEASE_MILLIS);
+
+	try
+	{
+	    while(!Stopped && !isDone(done_key))
+	    {
+		if(lease.tryAcquire() && rebalance(topology, checkpoint_key, lease))
+		{
+		    if(markDone(done_key))
+		    {
+			//the checkpoints are kept until the other processes can see the pair is done.
+			deleteCheckpoints(checkpoint_key);
+		    }
+		    break;
+		}
+		Thread.sleep(RETRY_INTERVAL_MILLIS);
+	    }
+	}
+	catch(InterruptedException e)
+	{
+	    return;
+	}
+	finally
+	{
+	    lease.release();
+	}
+
+	if(!Stopped)
+	{
+	    //no document is left under the old routing view.
+	    persistClient.retireOldView(topology);
+	    this.Finished = true;
+	}
+    }
+
+    /**
+     * @Title: rebalance.
+     * @Description: the function which rebalances all the collections of the old shards by Parallelism workers,
+     *               and retries the failed collections from their checkpoints while the lease is held.
+     * @param topology: the topology which is rebalanced.
+     * @param checkpoint_key: the config database hash which records the checkpoints.
+     * @param lease: the lease of the old_new pair.
+     * @return boolean: true when every collection is done, false when the rebalance was stopped or lost its lease.
+     * @throws InterruptedException: when the coordinator is interrupted.
+     */
+    private boolean rebalance(final ShardTopology<MongoClient> topology, final String checkpoint_key, ConfigLease lease)
+	throws InterruptedException
+    {
+	ExecutorService workers = Executors.newFixedThreadPool(this.Parallelism);
+	this.Lease = lease;
+
+	boolean all_done = false;
+	try
+	{
+	    while(!all_done && !Stopped && lease.isHeld())
+	    {
+		final Map<String, String> checkpoints = loadCheckpoints(checkpoint_key);
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		boolean listed = true;
+		try
+		{
+		    for(int shard = 0; shard < topology.getOldShardNum(); shard++)
+		    {
+			final int source_shard = shard;
+			for(final String db_name : listDatabases(topology.getShard(shard)))
+			{
+			    for(final String coll_name : topology.getShard(shard).getDB(db_name).getCollectionNames())
+			    {
+				if(coll_name.startsWith("system."))
+				{
+				    continue;
+				}
+				final String field = source_shard + "/" + db_name + "/" + coll_name;
+				final String checkpoint = checkpoints.get(field);
+				if(CHECKPOINT_DONE.equals(checkpoint))
+				{
+				    continue;
+				}
+				futures.add(workers.submit(new Runnable()
+				{
+				    @Override
+				    public void run()
+				    {
+					rebalanceCollection(topology, source_shard, db_name, coll_name, checkpoint, checkpoint_key, field);
+				    }
+				}));
+			    }
+			}
+		    }
+		}
+		catch(MongoException e)
+		{
+		    //a shard is not reachable, the collections are listed again in the next round.
+		    listed = false;
+		}
+
+		all_done = listed;
+		for(Future<?> future : futures)
+		{
+		    try
+		    {
+			future.get();
+		    }
+		    catch(ExecutionException e)
+		    {
+			//the collection stays unfinished, it is retried from its checkpoint in the next round.
+			all_done = false;
+		    }
+		}
+		//a worker which saw the lost lease returned without finishing its collection.
+		all_done = all_done && lease.isHeld();
+		if(!all_done)
+		{
+		    Thread.sleep(RETRY_INTERVAL_MILLIS);
+		}
+	    }
+	}
+	finally
+	{
+	    workers.shutdownNow();
+	}
+	return all_done && !Stopped;
+    }
+
+    /**
+     * @Title: listDatabases.
+     * @Description: the function which is used to list the user databases of one shard.
+     * @param client: the shard.
+     * @return List<String>: the database names without admin, local & config.
+     */
+    private static List<String> listDatabases(MongoClient client)
+    {
+	List<String> names = new ArrayList<String>();
+	for(String name : client.getDatabaseNames())
+	{
+	    if(!"admin".equals(name) && !"local".equals(name) && !"config".equals(name))
+	    {
+		names.add(name);
+	    }
+	}
+	return names;
+    }
+
+    /**
+     * @Title: rebalanceCollection.
+     * @Description: the function which is used to rebalance one collection of one old shard, chunk by chunk from the checkpoint.
+     * @param topology: the topology which is rebalanced.
+     * @param shard: the index of the old shard.
+     * @param db_name: the database name.
+     * @param coll_name: the collection name.
+     * @param checkpoint: the JSON form of the last _id which has been rebalanced, null to start from the beginning.
+     * @param checkpoint_key: the config database hash which records the checkpoints.
+     * @param field: the field of this collection in the checkpoint hash.
+     * @return none.
+     */
+    private void rebalanceCollection(ShardTopology<MongoClient> topology, int shard, String db_name, String coll_name,
+				     String checkpoint, String checkpoint_key, String field)
+    {
+	ShardRoutingStrategy strategy = persistClient.getRoutingStrategy();
+	DBCollection source = topology.getShard(shard).getDB(db_name).getCollection(coll_name);
+	Object last_id = (checkpoint == null) ? null : JSON.parse(checkpoint);
+
+	while(!Stopped && Lease.isHeld())
+	{
+	    //wait for the throttle before the chunk is read, so the copies are not older than the wait.
+	    try
+	    {
+		Throttle.acquire(ChunkSize);
+	    }
+	    catch(InterruptedException e)
+	    {
+		Thread.currentThread().interrupt();
+		return;
+	    }
+
+	    //read the next chunk in _id order.
+	    long read_millis = System.currentTimeMillis();
+	    DBObject query = (last_id == null) ? new BasicDBObject() : new BasicDBObject("_id", new BasicDBObject("$gt", last_id));
+	    List<DBObject> chunk = new ArrayList<DBObject>(ChunkSize);
+	    DBCursor cursor = source.find(query).sort(new BasicDBObject("_id", 1)).limit(ChunkSize);
+	    try
+	    {
+		while(cursor.hasNext())
+		{
+		    chunk.add(cursor.next());
+		}
+	    }
+	    finally
+	    {
+		cursor.close();
+	    }
+	    if(chunk.isEmpty())
+	    {
+		saveCheckpoint(checkpoint_key, field, CHECKPOINT_DONE);
+		return;
+	    }
+
+	    //group the documents which belong to another shard by their new owner.
+	    Map<Integer, List<DBObject>> moving = new HashMap<Integer, List<DBObject>>();
+	    for(DBObject doc : chunk)
+	    {
+		int owner = strategy.getShardIndex(ShardKeyHash.hash(doc.get("_id")), topology.getNewShardNum());
+		if(owner != shard)
+		{
+		    List<DBObject> group = moving.get(owner);
+		    if(group == null)
+		    {
+			group = new ArrayList<DBObject>();
+			moving.put(owner, group);
+		    }
+		    group.add(doc);
+		}
+	    }
+	    for(Map.Entry<Integer, List<DBObject>> entry : moving.entrySet())
+	    {
+		DBCollection target = topology.getShard(entry.getKey()).getDB(db_name).getCollection(coll_name);
+		moveChunk(source, target, db_name, entry.getValue(), read_millis);
+	    }
+
+	    ScannedDocs.addAndGet(chunk.size());
+	    last_id = chunk.get(chunk.size() - 1).get("_id");
+	    saveCheckpoint(checkpoint_key, field, JSON.serialize(last_id));
+	}
+    }
+
+    /**
+     * @Title: moveChunk.
+     * @Description: the function which is used to copy the documents to the target by an unordered bulk insert,
+     *               verify every document has a copy, and remove the documents from the source.
+     *               (a duplicate key means the document was copied before a crash, or it was written to its new owner through
+     *               the new routing view after the expansion. a copy which differs from the source is that newer version,
+     *               it is kept and the stale source document is removed all the same).
+     *               a document with a tombstone newer than the read of the chunk was deleted meanwhile, its copy is removed from
+     *               the target while it still equals the chunk copy(a newer put is kept). the source documents are removed only
+     *               while they are unchanged.
+     * @param source: the source collection.
+     * @param target: the target collection.
+     * @param db_name: the database name.
+     * @param docs: the documents in _id order.
+     * @param read_millis: the time when the chunk was read.
+     * @return none.
+     */
+    private void moveChunk(DBCollection source, DBCollection target, String db_name, List<DBObject> docs, long read_millis)
+    {
+	BulkWriteOperation bulk = target.initializeUnorderedBulkOperation();
+	List<Object> ids = new ArrayList<Object>(docs.size());
+	for(DBObject doc : docs)
+	{
+	    bulk.insert(doc);
+	    ids.add(doc.get("_id"));
+	}
+	try
+	{
+	    bulk.execute(WriteConcern.ACKNOWLEDGED);
+	}
+	catch(BulkWriteException e)
+	{
+	    for(BulkWriteError error : e.getWriteErrors())
+	    {
+		if(error.getCode() != DUPLICATE_KEY_CODE)
+		{
+		    FailedChunks.incrementAndGet();
+		    throw e;
+		}
+	    }
+	}
+
+	//the tombstones are read after the insert: a delete before it left its tombstone, a delete after it removed the copy.
+	Set<Object> deleted;
+	try
+	{
+	    deleted = loadTombstones(db_name, target.getName(), ids, read_millis - TOMBSTONE_SKEW_MILLIS);
+	}
+	catch(JedisConnectionException e)
+	{
+	    FailedChunks.incrementAndGet();
+	    throw e;
+	}
+
+	//verify the copies before the source documents are removed, only a missing copy fails the chunk.
+	DBObject in_ids = new BasicDBObject("_id", new BasicDBObject("$in", ids));
+	Map<Object, DBObject> copies = new HashMap<Object, DBObject>();
+	DBCursor cursor = target.find(in_ids);
+	try
+	{
+	    while(cursor.hasNext())
+	    {
+		DBObject copy = cursor.next();
+		copies.put(copy.get("_id"), copy);
+	    }
+	}
+	finally
+	{
+	    cursor.close();
+	}
+	long superseded = 0;
+	BulkWriteOperation undo = null;
+	for(DBObject doc : docs)
+	{
+	    DBObject copy = copies.get(doc.get("_id"));
+	    if(deleted.contains(doc.get("_id")))
+	    {
+		if((copy != null) && JSON.serialize(copy).equals(JSON.serialize(doc)))
+		{
+		    if(undo == null)
+		    {
+			undo = target.initializeUnorderedBulkOperation();
+		    }
+		    undo.find(doc).removeOne();
+		}
+		superseded++;
+		continue;
+	    }
+	    if(copy == null)
+	    {
+		FailedChunks.incrementAndGet();
+		throw new MongoException("rebalance verification failed on " + target.getName() + ": the copy of "
+					 + JSON.serialize(doc.get("_id")) + " is missing, found " + copies.size() + " of " + docs.size());
+	    }
+	    if(!JSON.serialize(copy).equals(JSON.serialize(doc)))
+	    {
+		superseded++;
+	    }
+	}
+	if(undo != null)
+	{
+	    undo.execute(WriteConcern.ACKNOWLEDGED);
+	}
+
+	//a source document is matched by its whole content, so only the copy which was read is removed.
+	BulkWriteOperation removal = source.initializeUnorderedBulkOperation();
+	for(DBObject doc : docs)
+	{
+	    removal.find(doc).removeOne();
+	}
+	removal.execute(WriteConcern.ACKNOWLEDGED);
+	MovedDocs.addAndGet(docs.size() - superseded);
+	SupersededDocs.addAndGet(superseded);
+    }
+
+    /**
+     * @Title: recordDelete.
+     * @Description: the function which is used to leave the tombstone of a document which is deleted during an expansion,
+     *               it must be called before the document is removed from its owners(see GeneralDBClient.delete).
+     *               the tombstones older than TOMBSTONE_TTL_MILLIS are trimmed, and the set expires when no delete comes.
+     * @param dbName: the database name.
+     * @param collName: the collection name.
+     * @param id: the _id of the document.
+     * @return none.
+     * @throws JedisConnectionException: when the config database is not reachable, the delete must fail then.
+     */
+    public void recordDelete(String dbName, String collName, Object id)
+    {
+	long now = System.currentTimeMillis();
+	Jedis jedis = null;
+	boolean borrowOrOprSuccess = true;
+	try
+	{
+	    jedis = configdb.db_client.getResource();
+	    Pipeline pipe = jedis.pipelined();
+	    pipe.zadd(TOMBSTONE_KEY, now, tombstoneMember(dbName, collName, id));
+	    pipe.zremrangeByScore(TOMBSTONE_KEY, 0, now - TOMBSTONE_TTL_MILLIS);
+	    pipe.pexpire(TOMBSTONE_KEY, TOMBSTONE_TTL_MILLIS);
+	    pipe.sync();
+	}
+	catch(JedisConnectionException e)
+	{
+	    borrowOrOprSuccess = false;
+	    if(jedis != null)
+	    {
+		configdb.db_client.returnBrokenResource(jedis);
+	    }
+	    throw e;
+	}
+	finally
+	{
+	    if(borrowOrOprSuccess && (jedis != null))
+	    {
+		configdb.db_client.returnResource(jedis);
+	    }
+	}
+    }
+
+    /**
+     * @Title: isDeletedSince.
+     * @Description: the function which shows a document was deleted during an expansion after it was read, like by a read-repair.
+     * @param dbName: the database name.
+     * @param collName: the collection name.
+     * @param id: the _id of the document.
+     * @param readMillis: the time when the document was read.
+     * @return boolean: true when its tombstone is newer than the read(within the allowed clock skew).
+     * @throws JedisConnectionException: when the config database is not reachable.
+     */
+    public boolean isDeletedSince(String dbName, String collName, Object id, long readMillis)
+    {
+	List<Object> ids = new ArrayList<Object>(1);
+	ids.add(id);
+	return !loadTombstones(dbName, collName, ids, readMillis - TOMBSTONE_SKEW_MILLIS).isEmpty();
+    }
+
+    /**
+     * @Title: loadTombstones.
+     * @Description: the function which is used to find the documents of a chunk which were deleted after the given time.
+     * @param db_name: the database name.
+     * @param coll_name: the collection name.
+     * @param ids: the _ids of the documents.
+     * @param since_millis: the oldest delete time which counts.
+     * @return Set<Object>: the _ids of the deleted documents.
+     * @throws JedisConnectionException: when the config database is not reachable.
+     */
+    private Set<Object> loadTombstones(String db_name, String coll_name, List<Object> ids, long since_millis)
+    {
+	Set<Object> deleted = new HashSet<Object>();
+	Jedis jedis = null;
+	boolean borrowOrOprSuccess = true;
+	try
+	{
+	    jedis = configdb.db_client.getResource();
+	    Pipeline pipe = jedis.pipelined();
+	    List<Response<Double>> scores = new ArrayList<Response<Double>>(ids.size());
+	    for(Object id : ids)
+	    {
+		scores.add(pipe.zscore(TOMBSTONE_KEY, tombstoneMember(db_name, coll_name, id)));
+	    }
+	    pipe.sync();
+	    for(int i = 0; i < ids.size(); i++)
+	    {
+		Double score = scores.get(i).get();
+		if((score != null) && (score >= since_millis))
+		{
+		    deleted.add(ids.get(i));
+		}
+	    }
+	}
+	catch(JedisConnectionException e)
+	{
+	    borrowOrOprSuccess = false;
+	    if(jedis != null)
+	    {
+		configdb.db_client.returnBrokenResource(jedis);
+	    }
+	    throw e;
+	}
+	finally
+	{
+	    if(borrowOrOprSuccess && (jedis != null))
+	    {
+		configdb.db_client.returnResource(jedis);
+	    }
+	}
+	return deleted;
+    }
+
+    /**
+     * @Title: tombstoneMember.
+     * @Description: the function which is used to build the tombstone member of a document.
+     * @param dbName: the database name.
+     * @param collName: the collection name.
+     * @param id: the _id of the document.
+     * @return String: the "db/collection/_id" member, the _id in its JSON form.
+     */
+    private static String tombstoneMember(String dbName, String collName, Object id)
+    {
+	return dbName + "/" + collName + "/" + JSON.serialize(id);
+    }
+
+    /**
+     * @Title: loadCheckpoints.
+     * @Description: the function which is used to load the checkpoints of the collections from the config database.
+     * @param checkpoint_key: the config database hash.
+     * @return Map<String, String>: the "shard/db/collection" -> the JSON form of the last _id(or DONE).
+     */
+    private Map<String, String> loadCheckpoints(String checkpoint_key)
+    {
+	Jedis jedis = null;
+	boolean borrowOrOprSuccess = true;
+	try
+	{
+	    jedis = configdb.db_client.getResource();
+	    Map<String, String> checkpoints = jedis.hgetAll(checkpoint_key);
+	    return (checkpoints == null) ? new HashMap<String, String>() : checkpoints;
+	}
+	catch(JedisConnectionException e)
+	{
+	    borrowOrOprSuccess = false;
+	    if(jedis != null)
+	    {
+		configdb.db_client.returnBrokenResource(jedis);
+	    }
+	    return new HashMap<String, String>();
+	}
+	finally
+	{
+	    if(borrowOrOprSuccess && (jedis != null))
+	    {
+		configdb.db_client.returnResource(jedis);
+	    }
+	}
+    }
+
+    /**
+     * @Title: saveCheckpoint.
+     * @Description: the function which is used to save the checkpoint of one collection to the config database.
+     * @param checkpoint_key: the config database hash.
+     * @param field: the "shard/db/collection" field.
+     * @param value: the JSON form of the last _id(or DONE).
+     * @return none.
+     */
+    private void saveCheckpoint(String checkpoint_key, String field, String value)
+    {
+	Jedis jedis = null;
+	boolean borrowOrOprSuccess = true;
+	try
+	{
+	    jedis = configdb.db_client.getResource();
+	    jedis.hset(checkpoint_key, field, value);
+	}
+	catch(JedisConnectionException e)
+	{
+	    //the checkpoint is only an optimization, the chunk will be verified again after a restart.
+	    borrowOrOprSuccess = false;
+	    if(jedis != null)
+	    {
+		configdb.db_client.returnBrokenResource(jedis);
+	    }
+	}
+	finally
+	{
+	    if(borrowOrOprSuccess && (jedis != null))
+	    {
+		configdb.db_client.returnResource(jedis);
+	    }
+	}
+    }
+
+    /**
+     * @Title: deleteCheckpoints.
+     * @Description: the function which is used to delete the checkpoint hash of a finished rebalance.
+     * @param checkpoint_key: the config database hash.
+     * @return none.
+     */
+    private void deleteCheckpoints(String checkpoint_key)
+    {
+	Jedis jedis = null;
+	boolean borrowOrOprSuccess = true;
+	try
+	{
+	    jedis = configdb.db_client.getResource();
+	    jedis.del(checkpoint_key);
+	}
+	catch(JedisConnectionException e)
+	{
+	    borrowOrOprSuccess = false;
+	    if(jedis != null)
+	    {
+		configdb.db_client.returnBrokenResource(jedis);
+	    }
+	}
+	finally
+	{
+	    if(borrowOrOprSuccess && (jedis != null))
+	    {
+		configdb.db_client.returnResource(jedis);
+	    }
+	}
+    }
+
+    /**
+     * @Title: isDone.
+     * @Description: the function which shows the old_new pair has been rebalanced by a lease holder.
+     * @param done_key: the config database key of the pair.
+     * @return boolean: true when the pair is done, false when it is not or the config database is not reachable.
+     */
+    private boolean isDone(String done_key)
+    {
+	Jedis jedis = null;
+	boolean borrowOrOprSuccess = true;
+	boolean done = false;
+	try
+	{
+	    jedis = configdb.db_client.getResource();
+	    done = jedis.exists(done_key);
+	}
+	catch(JedisConnectionException e)
+	{
+	    borrowOrOprSuccess = false;
+	    if(jedis != null)
+	    {
+		configdb.db_client.returnBrokenResource(jedis);
+	    }
+	}
+	finally
+	{
+	    if(borrowOrOprSuccess && (jedis != null))
+	    {
+		configdb.db_client.returnResource(jedis);
+	    }
+	}
+	return done;
+    }
+
+    /**
+     * @Title: markDone.
+     * @Description: the function which marks the old_new pair has been rebalanced, so the other processes retire their old view.
+     * @param done_key: the config database key of the pair.
+     * @return boolean: true when the mark is stored.
+     */
+    private boolean markDone(String done_key)
+    {
+	Jedis jedis = null;
+	boolean borrowOrOprSuccess = true;
+	try
+	{
+	    jedis = configdb.db_client.getResource();
+	    jedis.set(done_key, CHECKPOINT_DONE);
+	}
+	catch(JedisConnectionException e)
+	{
+	    borrowOrOprSuccess = false;
+	    if(jedis != null)
+	    {
+		configdb.db_client.returnBrokenResource(jedis);
+	    }
+	}
+	finally
+	{
+	    if(borrowOrOprSuccess && (jedis != null))
+	    {
+		configdb.db_client.returnResource(jedis);
+	    }
+	}
+	return borrowOrOprSuccess;
+    }
+
+    /**
+     * @Title: setRate.
+     * @Description: the function which is used to change the max number of the documents which are streamed in one second.
+     * @param docsPerSecond: the documents per second, <= 0 means no limit.
+     * @return none.
+     */
+    public void setRate(double docsPerSecond)
+    {
+	this.Throttle.setRate(docsPerSecond);
+    }
+
+    /**
+     * @Title: setParallelism.
+     * @Description: the function which is used to change the number of the collections which are rebalanced at the same time.
+     *               (it takes effect from the next start).
+     * @param parallelism: the number of the workers.
+     * @return none.
+     */
+    public void setParallelism(int parallelism)
+    {
+	this.Parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * @Title: setChunkSize.
+     * @Description: the function which is used to change the number of the documents of each chunk.
+     * @param chunkSize: the chunk size.
+     * @return none.
+     */
+    public void setChunkSize(int chunkSize)
+    {
+	this.ChunkSize = Math.max(1, chunkSize);
+    }
+
+    /**
+     * @Title: isRunning.
+     * @Description: the function which shows a rebalance is running or not.
+     * @return boolean: true when the coordinator thread is alive.
+     */
+    public synchronized boolean isRunning()
+    {
+	return (this.Coordinator != null) && this.Coordinator.isAlive();
+    }
+
+    /**
+     * @Title: isFinished.
+     * @Description: the function which shows the last rebalance has finished and retired the old view.
+     * @return boolean: true when finished.
+     */
+    public boolean isFinished()
+    {
+	return this.Finished;
+    }
+
+    /**
+     * @Title: getScannedDocs.
+     * @Description: the function which is used to get the number of the streamed documents of the current rebalance.
+     * @return long: the scanned document number.
+     */
+    public long getScannedDocs()
+    {
+	return this.ScannedDocs.get();
+    }
+
+    /**
+     * @Title: getMovedDocs.
+     * @Description: the function which is used to get the number of the relocated documents of the current rebalance.
+     * @return long: the moved document number.
+     */
+    public long getMovedDocs()
+    {
+	return this.MovedDocs.get();
+    }
+
+    /**
+     * @Title: getSupersededDocs.
+     * @Description: the function which is used to get the number of the source documents which were dropped for a newer copy.
+     * @return long: the superseded document number.
+     */
+    public long getSupersededDocs()
+    {
+	return this.SupersededDocs.get();
+    }
+
+    /**
+     * @Title: getFailedChunks.
+     * @Description: the function which is used to get the number of the chunks which failed the insert or the verification.
+     * @return long: the failed chunk number.
+     */
+    public long getFailedChunks()
+    {
+	return this.FailedChunks.get();
+    }
+
+    /**
+     * @Title: toString.
+     * @Description: the progress line of the current rebalance.
+     * @return String: the progress description.
+     */
+    @Override
+    public String toString()
+    {
+	ShardTopology<MongoClient> topology = this.Topology;
+	return "PersistentRebalancer[" + ((topology == null) ? "idle" : (topology.getOldShardNum() + "->" + topology.getNewShardNum()))
+	     + ", scanned=" + getScannedDocs() + ", moved=" + getMovedDocs() + ", superseded=" + getSupersededDocs() + ", failedChunks=" + getFailedChunks()
+	     + ", running=" + isRunning() + ", finished=" + isFinished() + "]";
+    }
+}
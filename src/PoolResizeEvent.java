@@ -0,0 +1,127 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: PoolResizeEvent.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: One resize decision of the AdaptivePoolController.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of PoolResizeEvent was written.
+ */
+//package name.
+package generaldbplatform;
+
+/**
+ * @ClassName: PoolResizeEvent.
+ * @Description: this class records why & how the pool of one shard was resized, with the load which was observed.
+ */
+public class PoolResizeEvent
+{
+    /**
+     * @ClassName: Reason.
+     * @Description: GROW when the borrowers waited or the pool was nearly exhausted, SHRINK after a quiet period.
+     */
+    public enum Reason
+    {
+	GROW,
+	SHRINK
+    }
+
+    private final long timestamp;
+    private final String layer;
+    private final int shardIndex;
+    private final Reason reason;
+    private final int oldMaxTotal;
+    private final int newMaxTotal;
+    private final int oldMaxIdle;
+    private final int newMaxIdle;
+    private final double utilization;
+    private final double meanBorrowWaitMicros;
+    private final int waiters;
+
+    /**
+     * @Title: PoolResizeEvent.
+     * @Description: the construct function of the PoolResizeEvent class.
+     * @return none.
+     */
+    public PoolResizeEvent(String layer, int shardIndex, Reason reason, int oldMaxTotal, int newMaxTotal, int oldMaxIdle, int newMaxIdle,
+			   double utilization, double meanBorrowWaitMicros, int waiters)
+    {
+	this.timestamp = System.currentTimeMillis();
+	this.layer = layer;
+	this.shardIndex = shardIndex;
+	this.reason = reason;
+	this.oldMaxTotal = oldMaxTotal;
+	this.newMaxTotal = newMaxTotal;
+	this.oldMaxIdle = oldMaxIdle;
+	this.newMaxIdle = newMaxIdle;
+	this.utilization = utilization;
+	this.meanBorrowWaitMicros = meanBorrowWaitMicros;
+	this.waiters = waiters;
+    }
+
+    public long getTimestamp()
+    {
+	return timestamp;
+    }
+
+    public String getLayer()
+    {
+	return layer;
+    }
+
+    public int getShardIndex()
+    {
+	return shardIndex;
+    }
+
+    public Reason getReason()
+    {
+	return reason;
+    }
+
+    public int getOldMaxTotal()
+    {
+	return oldMaxTotal;
+    }
+
+    public int getNewMaxTotal()
+    {
+	return newMaxTotal;
+    }
+
+    public int getOldMaxIdle()
+    {
+	return oldMaxIdle;
+    }
+
+    public int getNewMaxIdle()
+    {
+	return newMaxIdle;
+    }
+
+    public double getUtilization()
+    {
+	return utilization;
+    }
+
+    public double getMeanBorrowWaitMicros()
+    {
+	return meanBorrowWaitMicros;
+    }
+
+    public int getWaiters()
+    {
+	return waiters;
+    }
+
+    @Override
+    public String toString()
+    {
+	return String.format("%s#%d %s maxTotal %d->%d maxIdle %d->%d (utilization=%.2f borrowWait=%.0fus waiters=%d)",
+			     layer, shardIndex, reason, oldMaxTotal, newMaxTotal, oldMaxIdle, newMaxIdle,
+			     utilization, meanBorrowWaitMicros, waiters);
+    }
+}
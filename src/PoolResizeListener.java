@@ -0,0 +1,29 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: PoolResizeListener.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The listener of the resize decisions of the AdaptivePoolController.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of PoolResizeListener was written.
+ */
+//package name.
+package generaldbplatform;
+
+/**
+ * @ClassName: PoolResizeListener.
+ * @Description: this interface is called on the controller thread after a pool is resized, it must return quickly.
+ */
+public interface PoolResizeListener
+{
+    /**
+     * @Title: onPoolResize.
+     * @Description: the function which is called after the pool of a shard was resized.
+     * @param event: the resize decision.
+     * @return none.
+     */
+    public void onPoolResize(PoolResizeEvent event);
+}
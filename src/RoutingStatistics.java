@@ -0,0 +1,178 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: RoutingStatistics.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The statistics tools which are used to evaluate the ShardRoutingStrategy.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of RoutingStatistics was written.
+ *    2.2026-10-17 Add the shard distribution report(chi-square & max/mean skew).
+ *    3.2026-10-17 Add the weighted share report of the WeightedRendezvousRoutingStrategy.
+ *    4.2026-10-17 Move the printed reports of the main function into the RoutingStrategyTest & ShardKeyHashTest assertions.
+ */
+//package name.
+package generaldbplatform;
+
+/**
+ * @ClassName: RoutingStatistics.
+ * @Description: this class is used to measure how a ShardRoutingStrategy behaves before a topology change is published.
+ *               (the remapped fraction of the expansions and the shard distribution of the synthetic key sets are asserted
+ *               by the RoutingStrategyTest & ShardKeyHashTest of the test source set, see pom.xml).
+ */
+public final class RoutingStatistics
+{
+    /**
+     * @Title: RoutingStatistics.
+     * @Description: the private construct function, this class only has static functions.
+     * @return none.
+     */
+    private RoutingStatistics()
+    {
+    }
+
+    /**
+     * @Title: remappedFraction.
+     * @Description: the function which is used to measure the fraction of the keys whose shard changes
+     *               when the shard number grows from oldNum to newNum.
+     * @param strategy: the routing strategy to be measured.
+     * @param keyHashes: the sample of the key hash values.
+     * @param oldNum: the shard number before the expansion.
+     * @param newNum: the shard number after the expansion.
+     * @return double: the remapped fraction in the range [0, 1].
+     */
+    public static double remappedFraction(ShardRoutingStrategy strategy, long[] keyHashes, int oldNum, int newNum)
+    {
+	if(keyHashes.length == 0)
+	{
+	    return 0.0;
+	}
+
+	int moved = 0;
+	for(int i = 0; i < keyHashes.length; i++)
+	{
+	    if(strategy.getShardIndex(keyHashes[i], oldNum) != strategy.getShardIndex(keyHashes[i], newNum))
+	    {
+		moved += 1;
+	    }
+	}
+	return (double)moved / keyHashes.length;
+    }
+
+    /**
+     * @Title: shardCounts.
+     * @Description: the function which is used to count the keys of each shard.
+     * @param strategy: the routing strategy to be measured.
+     * @param keyHashes: the sample of the key hash values.
+     * @param shardNum: the shard number.
+     * @return long[]: the key count of each shard.
+     */
+    public static long[] shardCounts(ShardRoutingStrategy strategy, long[] keyHashes, int shardNum)
+    {
+	long[] counts = new long[shardNum];
+	for(int i = 0; i < keyHashes.length; i++)
+	{
+	    counts[strategy.getShardIndex(keyHashes[i], shardNum)] += 1;
+	}
+	return counts;
+    }
+
+    /**
+     * @Title: chiSquare.
+     * @Description: the function which is used to compute the chi-square statistic of the shard counts against the uniform distribution.
+     *               (for a uniform routing the value is close to shardNum-1, a hot shard makes it grow with the sample size).
+     * @param counts: the key count of each shard.
+     * @return double: the chi-square statistic.
+     */
+    public static double chiSquare(long[] counts)
+    {
+	long total = 0;
+	for(int i = 0; i < counts.length; i++)
+	{
+	    total += counts[i];
+	}
+	double expected = (double)total / counts.length;
+	if(expected == 0)
+	{
+	    return 0.0;
+	}
+
+	double chi = 0.0;
+	for(int i = 0; i < counts.length; i++)
+	{
+	    double diff = counts[i] - expected;
+	    chi += diff * diff / expected;
+	}
+	return chi;
+    }
+
+    /**
+     * @Title: maxMeanSkew.
+     * @Description: the function which is used to compute the load of the hottest shard against the mean load.
+     *               (1.0 means perfectly balanced, 2.0 means the hottest shard carries twice the mean load).
+     * @param counts: the key count of each shard.
+     * @return double: the max/mean skew.
+     */
+    public static double maxMeanSkew(long[] counts)
+    {
+	long total = 0;
+	long max = 0;
+	for(int i = 0; i < counts.length; i++)
+	{
+	    total += counts[i];
+	    max = Math.max(max, counts[i]);
+	}
+	return (total == 0) ? 0.0 : (double)max * counts.length / total;
+    }
+
+    /**
+     * @Title: sequentialKeys.
+     * @Description: the function which is used to build a sample of sequential keys(like our auto-increment ids).
+     * @param count: the number of the keys.
+     * @return long[]: the sample keys.
+     */
+    public static long[] sequentialKeys(int count)
+    {
+	long[] keys = new long[count];
+	for(int i = 0; i < count; i++)
+	{
+	    keys[i] = i;
+	}
+	return keys;
+    }
+
+    /**
+     * @Title: hashedLongKeys.
+     * @Description: the function which is used to hash a sample of long keys by the ShardKeyHash.
+     * @param keys: the raw long keys.
+     * @return long[]: the hash values.
+     */
+    public static long[] hashedLongKeys(long[] keys)
+    {
+	long[] hashes = new long[keys.length];
+	for(int i = 0; i < keys.length; i++)
+	{
+	    hashes[i] = ShardKeyHash.hash(keys[i]);
+	}
+	return hashes;
+    }
+
+    /**
+     * @Title: hashedStringKeys.
+     * @Description: the function which is used to build a sample of suffix-heavy String keys(like "user:42:profile")
+     *               and hash them by the ShardKeyHash.
+     * @param count: the number of the keys.
+     * @return long[]: the hash values.
+     */
+    public static long[] hashedStringKeys(int count)
+    {
+	long[] hashes = new long[count];
+	for(int i = 0; i < count; i++)
+	{
+	    hashes[i] = ShardKeyHash.hash("user:" + i + ":profile");
+	}
+	return hashes;
+    }
+}
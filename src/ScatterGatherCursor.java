@@ -0,0 +1,314 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: ScatterGatherCursor.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The merged cursor of one scatter-gather query on the persistent layer.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of ScatterGatherCursor was written.
+ */
+//package name.
+package generaldbplatform;
+
+//class import for java utilities.
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+//class import for mongodb client.
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import com.mongodb.MongoException;
+
+/**
+ * @ClassName: ScatterGatherCursor.
+ * @Description: this class merges the sorted cursors of the shards with a k-way merge: the head document of every shard
+ *               is kept in a PriorityQueue, so the memory is one document per shard plus the batches of the driver,
+ *               whatever the size of the result. the merge stops and closes all the shard cursors as soon as the global limit
+ *               is reached, so the shards do not send the batches which will never be read.
+ *               while the topology is expanding, a document may be on its old and its new shard at the same time,
+ *               so the documents with an _id which has been returned are skipped.
+ */
+public class ScatterGatherCursor implements Iterator<DBObject>, Closeable
+{
+    /**
+     * @ClassName: ShardStream.
+     * @Description: the cursor of one shard and its head document.
+     */
+    private static class ShardStream
+    {
+	final int shard;
+	final DBCursor cursor;
+	DBObject head;
+
+	ShardStream(int shard, DBCursor cursor)
+	{
+	    this.shard = shard;
+	    this.cursor = cursor;
+	}
+    }
+
+    /**
+     * @FieldName: heap.
+     * @Description: the shard streams which have a head document, ordered by their head documents.
+     */
+    private final PriorityQueue<ShardStream> heap;
+
+    /**
+     * @FieldName: streams.
+     * @Description: all the shard streams, to close them.
+     */
+    private final List<ShardStream> streams;
+
+    /**
+     * @FieldName: limit & returned.
+     * @Description: the global limit(0 means no limit) and the number of the documents which have been returned.
+     */
+    private final int limit;
+    private int returned = 0;
+
+    /**
+     * @FieldName: partial.
+     * @Description: true to skip the shards which fail in the middle of the merge, false to fail the merge.
+     */
+    private final boolean partial;
+
+    /**
+     * @FieldName: failedShards.
+     * @Description: the shards which have been skipped, by timeout or by error.
+     */
+    private final List<Integer> failedShards;
+
+    /**
+     * @FieldName: seenIds.
+     * @Description: the _id of the returned documents, only while the topology is expanding, else null.
+     */
+    private final Set<Object> seenIds;
+
+    /**
+     * @FieldName: nextDoc.
+     * @Description: the next document to return, read ahead to skip the duplicated documents.
+     */
+    private DBObject nextDoc = null;
+
+    /**
+     * @FieldName: closed.
+     * @Description: the cursor has been closed or not.
+     */
+    private boolean closed = false;
+
+    /**
+     * @Title: ScatterGatherCursor.
+     * @Description: the construct function of the ScatterGatherCursor class.
+     * @param shards: the index of the shard of each cursor.
+     * @param cursors: the opened cursors of the shards, sorted by the same sort specification.
+     * @param sort: the sort specification of the query, null when the query is not sorted.
+     * @param limit: the global limit, 0 means no limit.
+     * @param partial: true to skip the shards which fail in the middle of the merge.
+     * @param failedShards: the shards which have been skipped before the merge.
+     * @param expanding: the topology was expanding or not when the query was sent.
+     * @return none.
+     */
+    ScatterGatherCursor(List<Integer> shards, List<DBCursor> cursors, final DBObject sort, int limit, boolean partial,
+			List<Integer> failedShards, boolean expanding)
+    {
+	final DocumentComparator comparator = new DocumentComparator(sort);
+	this.heap = new PriorityQueue<ShardStream>(Math.max(1, cursors.size()), new Comparator<ShardStream>()
+	{
+	    @Override
+	    public int compare(ShardStream a, ShardStream b)
+	    {
+		int result = comparator.compare(a.head, b.head);
+		//the same order as the shard index for the equal documents, so the merge is stable.
+		return (result != 0) ? result : Integer.compare(a.shard, b.shard);
+	    }
+	});
+	this.streams = new ArrayList<ShardStream>(cursors.size());
+	this.limit = limit;
+	this.partial = partial;
+	this.failedShards = new ArrayList<Integer>(failedShards);
+	this.seenIds = expanding ? new HashSet<Object>() : null;
+	for(int i = 0; i < cursors.size(); i++)
+	{
+	    ShardStream stream = new ShardStream(shards.get(i), cursors.get(i));
+	    this.streams.add(stream);
+	    this.advance(stream);
+	}
+    }
+
+    /**
+     * @Title: advance.
+     * @Description: the function which reads the next document of a shard and puts the shard back in the heap,
+     *               the shard is closed when it has no more document.
+     * @param stream: the shard stream.
+     * @return none.
+     */
+    private void advance(ShardStream stream)
+    {
+	try
+	{
+	    if(stream.cursor.hasNext())
+	    {
+		stream.head = stream.cursor.next();
+		this.heap.add(stream);
+		return;
+	    }
+	}
+	catch(MongoException e)
+	{
+	    if(!this.partial)
+	    {
+		this.close();
+		throw e;
+	    }
+	    this.failedShards.add(stream.shard);
+	}
+	stream.head = null;
+	stream.cursor.close();
+    }
+
+    /**
+     * @Title: fetchNext.
+     * @Description: the function which takes the smallest head document from the heap, skipping the duplicated documents.
+     * @return DBObject: the next document, null when the merge is finished.
+     */
+    private DBObject fetchNext()
+    {
+	while(!this.heap.isEmpty())
+	{
+	    ShardStream stream = this.heap.poll();
+	    DBObject doc = stream.head;
+	    this.advance(stream);
+	    if((this.seenIds == null) || this.seenIds.add(doc.get("_id")))
+	    {
+		return doc;
+	    }
+	}
+	return null;
+    }
+
+    /**
+     * @Title: hasNext.
+     * @Description: the function which shows there is another document or not.
+     * @return boolean: true when next() returns a document.
+     */
+    @Override
+    public boolean hasNext()
+    {
+	if(this.nextDoc != null)
+	{
+	    return true;
+	}
+	if(this.closed)
+	{
+	    return false;
+	}
+	if((this.limit > 0) && (this.returned >= this.limit))
+	{
+	    //early stop, the remaining documents of the shards are never read.
+	    this.close();
+	    return false;
+	}
+	this.nextDoc = this.fetchNext();
+	if(this.nextDoc == null)
+	{
+	    this.close();
+	    return false;
+	}
+	return true;
+    }
+
+    /**
+     * @Title: next.
+     * @Description: the function which returns the next document in the global order.
+     * @return DBObject: the next document.
+     */
+    @Override
+    public DBObject next()
+    {
+	if(!this.hasNext())
+	{
+	    throw new NoSuchElementException();
+	}
+	DBObject doc = this.nextDoc;
+	this.nextDoc = null;
+	this.returned += 1;
+	return doc;
+    }
+
+    /**
+     * @Title: remove.
+     * @Description: the remove operation is not supported.
+     * @return none.
+     */
+    @Override
+    public void remove()
+    {
+	throw new UnsupportedOperationException("remove");
+    }
+
+    /**
+     * @Title: toArray.
+     * @Description: the function which reads all the remaining documents and closes the cursor.
+     * @return List<DBObject>: the documents in the global order.
+     */
+    public List<DBObject> toArray()
+    {
+	List<DBObject> docs = new ArrayList<DBObject>();
+	while(this.hasNext())
+	{
+	    docs.add(this.next());
+	}
+	return docs;
+    }
+
+    /**
+     * @Title: getFailedShards.
+     * @Description: the function which is used to get the shards which have been skipped by the PARTIAL policy.
+     * @return List<Integer>: the shard indexes, empty when the result is complete.
+     */
+    public List<Integer> getFailedShards()
+    {
+	return Collections.unmodifiableList(this.failedShards);
+    }
+
+    /**
+     * @Title: isPartial.
+     * @Description: the function which shows some shards have been skipped or not.
+     * @return boolean: true when the result misses the documents of some shards.
+     */
+    public boolean isPartial()
+    {
+	return !this.failedShards.isEmpty();
+    }
+
+    /**
+     * @Title: close.
+     * @Description: the function which closes the cursors of all the shards, the server side cursors are killed.
+     * @return none.
+     */
+    @Override
+    public void close()
+    {
+	if(this.closed)
+	{
+	    return;
+	}
+	this.closed = true;
+	this.heap.clear();
+	for(ShardStream stream : this.streams)
+	{
+	    stream.cursor.close();
+	}
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: ScatterGatherOptions.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The options of one scatter-gather query on the persistent layer.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of ScatterGatherOptions was written.
+ */
+//package name.
+package generaldbplatform;
+
+/**
+ * @ClassName: ScatterGatherOptions.
+ * @Description: this class holds the per-shard timeout, the batch size and the partial-result policy of a scatter-gather query.
+ */
+public class ScatterGatherOptions
+{
+    /**
+     * @ClassName: PartialResultPolicy.
+     * @Description: what to do when a shard fails or times out.
+     *               FAIL: the whole query fails.
+     *               PARTIAL: the shard is skipped, the query returns the results of the other shards,
+     *                        and the skipped shards are reported by ScatterGatherCursor.getFailedShards.
+     */
+    public enum PartialResultPolicy
+    {
+	FAIL,
+	PARTIAL
+    }
+
+    /**
+     * @FieldName: ShardTimeoutMillis.
+     * @Description: the max time of each shard to return its first batch, it is also sent to MongoDB as the maxTimeMS.
+     */
+    private long ShardTimeoutMillis = 5000;
+
+    /**
+     * @FieldName: BatchSize.
+     * @Description: the number of the documents of each getMore on each shard.
+     */
+    private int BatchSize = 100;
+
+    /**
+     * @FieldName: Policy.
+     * @Description: the partial-result policy.
+     */
+    private PartialResultPolicy Policy = PartialResultPolicy.FAIL;
+
+    /**
+     * @Title: getShardTimeoutMillis.
+     * @Description: the function which is used to get the per-shard timeout.
+     * @return long: the timeout in milliseconds.
+     */
+    public long getShardTimeoutMillis()
+    {
+	return ShardTimeoutMillis;
+    }
+
+    /**
+     * @Title: setShardTimeoutMillis.
+     * @Description: the function which is used to set the per-shard timeout.
+     * @param shardTimeoutMillis: the timeout in milliseconds.
+     * @return ScatterGatherOptions: this options.
+     */
+    public ScatterGatherOptions setShardTimeoutMillis(long shardTimeoutMillis)
+    {
+	this.ShardTimeoutMillis = shardTimeoutMillis;
+	return this;
+    }
+
+    /**
+     * @Title: getBatchSize.
+     * @Description: the function which is used to get the batch size of each shard.
+     * @return int: the batch size.
+     */
+    public int getBatchSize()
+    {
+	return BatchSize;
+    }
+
+    /**
+     * @Title: setBatchSize.
+     * @Description: the function which is used to set the batch size of each shard.
+     * @param batchSize: the batch size.
+     * @return ScatterGatherOptions: this options.
+     */
+    public ScatterGatherOptions setBatchSize(int batchSize)
+    {
+	this.BatchSize = batchSize;
+	return this;
+    }
+
+    /**
+     * @Title: getPolicy.
+     * @Description: the function which is used to get the partial-result policy.
+     * @return PartialResultPolicy: the policy.
+     */
+    public PartialResultPolicy getPolicy()
+    {
+	return Policy;
+    }
+
+    /**
+     * @Title: setPolicy.
+     * @Description: the function which is used to set the partial-result policy.
+     * @param policy: the policy.
+     * @return ScatterGatherOptions: this options.
+     */
+    public ScatterGatherOptions setPolicy(PartialResultPolicy policy)
+    {
+	this.Policy = policy;
+	return this;
+    }
+}
@@ -0,0 +1,267 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: ShardKeyHash.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The full-key hash functions which are shared by the cache layer & persistent layer.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of ShardKeyHash was written.
+ *    2.2026-10-17 Add the hash of the document _id(Object key).
+ *    3.2026-10-17 Add the hash tag("{...}") of the routing hash, the keys with the same tag go to the same shard.
+ *    4.2026-10-17 Keep the int keys on their raw value, so they keep the "key % N" placement of the deployed shards.
+ */
+//package name.
+package generaldbplatform;
+
+/**
+ * @ClassName: ShardKeyHash.
+ * @Description: this class computes the 64-bit hash value which is handed to the ShardRoutingStrategy.
+ *               the String key is hashed by the MurmurHash3(x86_32) over its UTF-8 bytes, the bytes are encoded on the fly,
+ *               so no byte array or char array is allocated. the long keys are mixed by the MurmurHash3 fmix64.
+ *               the int keys are not mixed: their hash is the key itself, so the ModuloRoutingStrategy still places them by
+ *               "key % N" like the clients before ShardKeyHash, and no stored int key has to move(the other strategies mix the
+ *               hash themselves, see JumpHashRoutingStrategy, ConsistentHashRoutingStrategy & WeightedRendezvousRoutingStrategy).
+ *               the routing hash of a String key only covers its hash tag when it has one, like the Redis Cluster:
+ *               the chars between the first '{' and the next '}', when they are not empty. so "{user:42}:profile" and
+ *               "{user:42}:cart" go to the same shard, and a multi-key transaction or script could run on both.
+ */
+public final class ShardKeyHash
+{
+    /**
+     * @FieldName: SEED.
+     * @Description: the seed of the MurmurHash3, it must never change, or all the keys will be remapped.
+     */
+    private static final int SEED = 0x9747B28C;
+
+    /**
+     * @FieldName: C1 & C2.
+     * @Description: the block mixing constants of the MurmurHash3(x86_32).
+     */
+    private static final int C1 = 0xCC9E2D51;
+    private static final int C2 = 0x1B873593;
+
+    /**
+     * @Title: ShardKeyHash.
+     * @Description: the private construct function, this class only has static functions.
+     * @return none.
+     */
+    private ShardKeyHash()
+    {
+    }
+
+    /**
+     * @Title: hash.
+     * @Description: the function which is used to hash an int key, the hash is the key itself(see the class description).
+     * @param key: the int key.
+     * @return long: the 64-bit hash value.
+     */
+    public static long hash(int key)
+    {
+	return key;
+    }
+
+    /**
+     * @Title: hash.
+     * @Description: the function which is used to hash a long key, all the 64 bits take part in the hash.
+     * @param key: the long key.
+     * @return long: the 64-bit hash value.
+     */
+    public static long hash(long key)
+    {
+	return fmix64(key);
+    }
+
+    /**
+     * @Title: hash.
+     * @Description: the function which is used to hash a String key over its UTF-8 bytes.
+     * @param key: the String key.
+     * @return long: the 64-bit hash value.
+     */
+    public static long hash(String key)
+    {
+	return hash(key, 0, key.length());
+    }
+
+    /**
+     * @Title: routingHash.
+     * @Description: the function which is used to hash a String key for the routing, only its hash tag is hashed when it has one.
+     * @param key: the String key.
+     * @return long: the 64-bit hash value.
+     */
+    public static long routingHash(String key)
+    {
+	int open = key.indexOf('{');
+	if(open >= 0)
+	{
+	    int close = key.indexOf('}', open + 1);
+	    if(close > open + 1)
+	    {
+		return hash(key, open + 1, close);
+	    }
+	}
+	return hash(key, 0, key.length());
+    }
+
+    /**
+     * @Title: hash.
+     * @Description: the function which is used to hash a key object such as the _id of a document.
+     *               (the Integer & Long keys are hashed like the int & long keys, the others are hashed by the routingHash
+     *               of their String form, so a document goes to the same shard as its key).
+     * @param key: the key object.
+     * @return long: the 64-bit hash value.
+     */
+    public static long hash(Object key)
+    {
+	if(key instanceof Integer)
+	{
+	    return hash(((Integer)key).intValue());
+	}
+	if(key instanceof Long)
+	{
+	    return hash(((Long)key).longValue());
+	}
+	return routingHash(String.valueOf(key));
+    }
+
+    /**
+     * @Title: hash.
+     * @Description: the function which is used to hash the chars [start, end) of a String key over their UTF-8 bytes.
+     * @param key: the String key.
+     * @param start: the first char index(inclusive).
+     * @param end: the last char index(exclusive).
+     * @return long: the 64-bit hash value.
+     */
+    public static long hash(String key, int start, int end)
+    {
+	int h1 = SEED;
+	int buffer = 0;   //the pending bytes which are not a whole 4-byte block yet.
+	int shift = 0;    //the bit count of the pending bytes.
+	int length = 0;   //the UTF-8 byte length.
+
+	for(int i = start; i < end; i++)
+	{
+	    char c = key.charAt(i);
+	    int bytes;
+	    int value;
+	    if(c < 0x80)
+	    {
+		bytes = 1;
+		value = c;
+	    }
+	    else if(c < 0x800)
+	    {
+		bytes = 2;
+		value = (0xC0 | (c >>> 6)) | ((0x80 | (c & 0x3F)) << 8);
+	    }
+	    else if(Character.isHighSurrogate(c) && (i + 1 < end) && Character.isLowSurrogate(key.charAt(i + 1)))
+	    {
+		int cp = Character.toCodePoint(c, key.charAt(++i));
+		bytes = 4;
+		value = (0xF0 | (cp >>> 18))
+		      | ((0x80 | ((cp >>> 12) & 0x3F)) << 8)
+		      | ((0x80 | ((cp >>> 6) & 0x3F)) << 16)
+		      | ((0x80 | (cp & 0x3F)) << 24);
+	    }
+	    else
+	    {
+		if(Character.isSurrogate(c))
+		{
+		    //an unpaired surrogate is encoded as '?' like String.getBytes("UTF-8").
+		    c = '?';
+		    bytes = 1;
+		    value = c;
+		}
+		else
+		{
+		    bytes = 3;
+		    value = (0xE0 | (c >>> 12)) | ((0x80 | ((c >>> 6) & 0x3F)) << 8) | ((0x80 | (c & 0x3F)) << 16);
+		}
+	    }
+
+	    //append the encoded bytes to the pending block in little-endian order, and mix every whole block.
+	    for(int b = 0; b < bytes; b++)
+	    {
+		buffer |= ((value >>> (b * 8)) & 0xFF) << shift;
+		shift += 8;
+		if(shift == 32)
+		{
+		    h1 = mixH1(h1, mixK1(buffer));
+		    buffer = 0;
+		    shift = 0;
+		}
+	    }
+	    length += bytes;
+	}
+
+	if(shift > 0)
+	{
+	    h1 ^= mixK1(buffer);
+	}
+	h1 ^= length;
+	return fmix64(fmix32(h1) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @Title: mixK1.
+     * @Description: the function which is used to scramble one 4-byte block.
+     * @param k1: the 4-byte block in little-endian order.
+     * @return int: the scrambled block.
+     */
+    private static int mixK1(int k1)
+    {
+	k1 *= C1;
+	k1 = Integer.rotateLeft(k1, 15);
+	k1 *= C2;
+	return k1;
+    }
+
+    /**
+     * @Title: mixH1.
+     * @Description: the function which is used to merge one scrambled block into the hash state.
+     * @param h1: the hash state.
+     * @param k1: the scrambled block.
+     * @return int: the new hash state.
+     */
+    private static int mixH1(int h1, int k1)
+    {
+	h1 ^= k1;
+	h1 = Integer.rotateLeft(h1, 13);
+	h1 = h1 * 5 + 0xE6546B64;
+	return h1;
+    }
+
+    /**
+     * @Title: fmix32.
+     * @Description: the 32-bit finalizer of the MurmurHash3.
+     * @param h: the hash state.
+     * @return int: the final 32-bit hash value.
+     */
+    private static int fmix32(int h)
+    {
+	h ^= h >>> 16;
+	h *= 0x85EBCA6B;
+	h ^= h >>> 13;
+	h *= 0xC2B2AE35;
+	h ^= h >>> 16;
+	return h;
+    }
+
+    /**
+     * @Title: fmix64.
+     * @Description: the 64-bit finalizer of the MurmurHash3, every input bit affects every output bit.
+     * @param k: the input value.
+     * @return long: the mixed value.
+     */
+    static long fmix64(long k)
+    {
+	k ^= k >>> 33;
+	k *= 0xFF51AFD7ED558CCDL;
+	k ^= k >>> 33;
+	k *= 0xC4CEB9FE1A85EC53L;
+	k ^= k >>> 33;
+	return k;
+    }
+}
@@ -0,0 +1,267 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: ShardMetrics.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The latency histograms, the error counters & the pool gauges of one shard.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of ShardMetrics was written.
+ *    2.2026-10-17 Add the hedged read counters.
+ *    3.2026-10-17 Cache the "replica-" histograms by the operation name, so a replica read builds no String.
+ */
+//package name.
+package generaldbplatform;
+
+//class import for java utilities.
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @ClassName: ShardMetrics.
+ * @Description: this class keeps one LatencyHistogram per operation of a shard(like "borrow", "execute", "pipeline", "find"),
+ *               the errors & the timeouts, and reads the active/idle/waiter counts from the pool of the shard.
+ *               the histogram of an operation is created on its first record, after that recording only reads a
+ *               ConcurrentHashMap and increments atomic counters, it does not allocate.
+ */
+public class ShardMetrics implements ShardMetricsMXBean
+{
+    /**
+     * @ClassName: PoolStats.
+     * @Description: the gauges of a connection pool(the method names are the ones of the jedis Pool).
+     */
+    public interface PoolStats
+    {
+	public int getNumActive();
+
+	public int getNumIdle();
+
+	public int getNumWaiters();
+    }
+
+    /**
+     * @FieldName: layer & shardIndex.
+     * @Description: the layer name("cache" or "persist") & the shard index.
+     */
+    private final String layer;
+    private final int shardIndex;
+
+    /**
+     * @FieldName: latencies.
+     * @Description: the histogram of each operation.
+     */
+    private final ConcurrentMap<String, LatencyHistogram> latencies = new ConcurrentHashMap<String, LatencyHistogram>();
+
+    /**
+     * @FieldName: replicaLatencies.
+     * @Description: the "replica-" + operation histogram of each operation, keyed by the operation name itself.
+     */
+    private final ConcurrentMap<String, LatencyHistogram> replicaLatencies = new ConcurrentHashMap<String, LatencyHistogram>();
+
+    /**
+     * @FieldName: errors & timeouts.
+     * @Description: the failed operations, and the ones among them which failed by a timeout(borrow, socket or server).
+     */
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+
+    /**
+     * @FieldName: hedgedReads & hedgeWins.
+     * @Description: the reads which sent a hedged duplicate to a secondary, and the ones among them which the hedge answered first.
+     */
+    private final AtomicLong hedgedReads = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+
+    /**
+     * @FieldName: poolStats.
+     * @Description: the pool of the shard, null when it does not expose its gauges.
+     */
+    private volatile PoolStats poolStats = null;
+
+    /**
+     * @Title: ShardMetrics.
+     * @Description: the construct function of the ShardMetrics class.
+     * @param layer: the layer name.
+     * @param shardIndex: the shard index.
+     * @return none.
+     */
+    public ShardMetrics(String layer, int shardIndex)
+    {
+	this.layer = layer;
+	this.shardIndex = shardIndex;
+    }
+
+    /**
+     * @Title: histogram.
+     * @Description: the function which is used to get the histogram of an operation, it is created on the first call.
+     * @param operation: the operation name.
+     * @return LatencyHistogram: the histogram.
+     */
+    public LatencyHistogram histogram(String operation)
+    {
+	LatencyHistogram histogram = this.latencies.get(operation);
+	if(histogram == null)
+	{
+	    LatencyHistogram created = new LatencyHistogram();
+	    histogram = this.latencies.putIfAbsent(operation, created);
+	    if(histogram == null)
+	    {
+		histogram = created;
+	    }
+	}
+	return histogram;
+    }
+
+    /**
+     * @Title: record.
+     * @Description: the function which records the latency of an operation which started at startNanos.
+     * @param operation: the operation name.
+     * @param startNanos: the System.nanoTime() when the operation started.
+     * @return none.
+     */
+    public void record(String operation, long startNanos)
+    {
+	this.histogram(operation).record((System.nanoTime() - startNanos) / 1000);
+    }
+
+    /**
+     * @Title: recordReplica.
+     * @Description: the function which records the latency of an operation on a replica as "replica-" + operation.
+     *               (the histogram is looked up by the operation name, the prefixed name is only built on the first record).
+     * @param operation: the operation name.
+     * @param startNanos: the System.nanoTime() when the operation started.
+     * @return none.
+     */
+    public void recordReplica(String operation, long startNanos)
+    {
+	LatencyHistogram histogram = this.replicaLatencies.get(operation);
+	if(histogram == null)
+	{
+	    histogram = this.histogram("replica-" + operation);
+	    this.replicaLatencies.putIfAbsent(operation, histogram);
+	}
+	histogram.record((System.nanoTime() - startNanos) / 1000);
+    }
+
+    /**
+     * @Title: recordError.
+     * @Description: the function which counts a failed operation.
+     * @param timeout: the operation failed by a timeout or not.
+     * @return none.
+     */
+    public void recordError(boolean timeout)
+    {
+	this.errors.incrementAndGet();
+	if(timeout)
+	{
+	    this.timeouts.incrementAndGet();
+	}
+    }
+
+    /**
+     * @Title: recordHedge.
+     * @Description: the function which counts a hedged read.
+     * @param won: the hedge answered first or not.
+     * @return none.
+     */
+    public void recordHedge(boolean won)
+    {
+	this.hedgedReads.incrementAndGet();
+	if(won)
+	{
+	    this.hedgeWins.incrementAndGet();
+	}
+    }
+
+    /**
+     * @Title: setPoolStats.
+     * @Description: the function which is used to set the pool whose gauges are exported.
+     * @param poolStats: the pool.
+     * @return none.
+     */
+    public void setPoolStats(PoolStats poolStats)
+    {
+	this.poolStats = poolStats;
+    }
+
+    @Override
+    public String getLayer()
+    {
+	return this.layer;
+    }
+
+    @Override
+    public int getShardIndex()
+    {
+	return this.shardIndex;
+    }
+
+    @Override
+    public Map<String, LatencySummary> getLatencies()
+    {
+	Map<String, LatencySummary> summaries = new TreeMap<String, LatencySummary>();
+	for(Map.Entry<String, LatencyHistogram> entry : this.latencies.entrySet())
+	{
+	    summaries.put(entry.getKey(), entry.getValue().summarize());
+	}
+	return summaries;
+    }
+
+    @Override
+    public long getErrors()
+    {
+	return this.errors.get();
+    }
+
+    @Override
+    public long getTimeouts()
+    {
+	return this.timeouts.get();
+    }
+
+    @Override
+    public int getPoolActive()
+    {
+	PoolStats stats = this.poolStats;
+	return (stats == null) ? -1 : stats.getNumActive();
+    }
+
+    @Override
+    public int getPoolIdle()
+    {
+	PoolStats stats = this.poolStats;
+	return (stats == null) ? -1 : stats.getNumIdle();
+    }
+
+    @Override
+    public int getPoolWaiters()
+    {
+	PoolStats stats = this.poolStats;
+	return (stats == null) ? -1 : stats.getNumWaiters();
+    }
+
+    @Override
+    public long getHedgedReads()
+    {
+	return this.hedgedReads.get();
+    }
+
+    @Override
+    public long getHedgeWins()
+    {
+	return this.hedgeWins.get();
+    }
+
+    @Override
+    public String toString()
+    {
+	return "ShardMetrics[" + this.layer + "#" + this.shardIndex + " errors=" + this.errors.get() + " timeouts=" + this.timeouts.get()
+	    + " pool(active=" + this.getPoolActive() + " idle=" + this.getPoolIdle() + " waiters=" + this.getPoolWaiters() + ") "
+	    + this.getLatencies() + "]";
+    }
+}
@@ -0,0 +1,46 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: ShardMetricsMXBean.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The JMX interface of the metrics of one shard.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of ShardMetricsMXBean was written.
+ *    2.2026-10-17 Add the hedged read counters.
+ */
+//package name.
+package generaldbplatform;
+
+//class import for java utilities.
+import java.util.Map;
+
+/**
+ * @ClassName: ShardMetricsMXBean.
+ * @Description: this interface is registered as "generaldbplatform:type=ShardMetrics,layer=...,client=...,shard=...",
+ *               the latencies are in microseconds, the pool gauges are -1 when the pool does not expose them.
+ */
+public interface ShardMetricsMXBean
+{
+    public String getLayer();
+
+    public int getShardIndex();
+
+    public Map<String, LatencySummary> getLatencies();
+
+    public long getErrors();
+
+    public long getTimeouts();
+
+    public int getPoolActive();
+
+    public int getPoolIdle();
+
+    public int getPoolWaiters();
+
+    public long getHedgedReads();
+
+    public long getHedgeWins();
+}
@@ -0,0 +1,159 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: ShardPoolBuilder.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The parallel builder of the connection pools of the new shards.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of ShardPoolBuilder was written.
+ */
+//package name.
+package generaldbplatform;
+
+//class import for java utilities.
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * @ClassName: ShardPoolBuilder.
+ * @Description: this class runs the build tasks of the new shards at the same time(each task creates, pre-warms and
+ *               health-checks one pool), and returns the pools only when all of them are ready, in the order of the tasks.
+ *               when a task fails or the timeout expires, the pools which were built(and the ones which are built later)
+ *               are closed, so a failed expansion leaks no connection and publishes nothing.
+ */
+final class ShardPoolBuilder
+{
+    /**
+     * @ClassName: Closer.
+     * @Description: the function which closes a pool of a failed build.
+     * @param <T>: the pool type.
+     */
+    interface Closer<T>
+    {
+	void close(T pool);
+    }
+
+    /**
+     * @FieldName: MAX_BUILD_THREAD_NUM.
+     * @Description: the max number of the pools which are built at the same time.
+     */
+    private static final int MAX_BUILD_THREAD_NUM = 16;
+
+    private ShardPoolBuilder()
+    {
+    }
+
+    /**
+     * @Title: buildAll.
+     * @Description: the function which runs the build tasks in parallel and waits for all of them.
+     * @param tasks: the build task of each new shard.
+     * @param timeoutMillis: the max time to build all the pools.
+     * @param closer: the function which closes a pool of a failed build.
+     * @param threadName: the name of the build threads.
+     * @return List<T>: the ready pools in the order of the tasks.
+     * @throws ExecutionException: a task failed or the timeout expired(the cause is the first error).
+     */
+    static <T> List<T> buildAll(List<Callable<T>> tasks, long timeoutMillis, final Closer<T> closer, final String threadName) throws ExecutionException
+    {
+	List<T> pools = new ArrayList<T>(tasks.size());
+	if(tasks.isEmpty())
+	{
+	    return pools;
+	}
+	ExecutorService executor = Executors.newFixedThreadPool(Math.min(tasks.size(), MAX_BUILD_THREAD_NUM), new ThreadFactory()
+	{
+	    @Override
+	    public Thread newThread(Runnable r)
+	    {
+		Thread thread = new Thread(r, threadName);
+		thread.setDaemon(true);
+		return thread;
+	    }
+	});
+	final List<Future<T>> futures = new ArrayList<Future<T>>(tasks.size());
+	try
+	{
+	    for(Callable<T> task : tasks)
+	    {
+		futures.add(executor.submit(task));
+	    }
+	    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+	    Throwable error = null;
+	    for(Future<T> future : futures)
+	    {
+		try
+		{
+		    pools.add(future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+		}
+		catch(ExecutionException e)
+		{
+		    error = e.getCause();
+		}
+		catch(TimeoutException e)
+		{
+		    error = e;
+		}
+		catch(InterruptedException e)
+		{
+		    Thread.currentThread().interrupt();
+		    error = e;
+		}
+		if(error != null)
+		{
+		    break;
+		}
+	    }
+	    if(error == null)
+	    {
+		return pools;
+	    }
+
+	    //close the pools which are ready now, and the ones of the running tasks when they finish.
+	    for(T pool : pools)
+	    {
+		closer.close(pool);
+	    }
+	    final int closed = pools.size();
+	    Thread cleaner = new Thread(new Runnable()
+	    {
+		@Override
+		public void run()
+		{
+		    for(int i = closed; i < futures.size(); i++)
+		    {
+			try
+			{
+			    closer.close(futures.get(i).get());
+			}
+			catch(ExecutionException e)
+			{
+			    //the task failed, it has no pool to close.
+			}
+			catch(InterruptedException e)
+			{
+			    return;
+			}
+		    }
+		}
+	    }, threadName + "Cleaner");
+	    cleaner.setDaemon(true);
+	    cleaner.start();
+	    throw new ExecutionException("building " + tasks.size() + " shard pools failed", error);
+	}
+	finally
+	{
+	    executor.shutdown();
+	}
+    }
+}
@@ -0,0 +1,31 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: ShardRoutingStrategy.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The routing strategy interface which decides the shard index of one key.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of ShardRoutingStrategy was written.
+ */
+//package name.
+package generaldbplatform;
+
+/**
+ * @ClassName: ShardRoutingStrategy.
+ * @Description: this interface is used by the CacheLayerClient & PersistentLayerClient to map a key to a shard index.
+ *               (the shard index is the index of the sharding map, and it must be in the range [0, shardNum)).
+ */
+public interface ShardRoutingStrategy
+{
+    /**
+     * @Title: getShardIndex.
+     * @Description: the function which is used to compute the shard index of one key.
+     * @param keyHash: the hash value of the key.
+     * @param shardNum: the number of the shards in the current routing view(old or new).
+     * @return int: the shard index in the range [0, shardNum).
+     */
+    public int getShardIndex(long keyHash, int shardNum);
+}
@@ -0,0 +1,169 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: ShardTopology.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The immutable routing snapshot of one sharding layer.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of ShardTopology was written.
+ */
+//package name.
+package generaldbplatform;
+
+//class import for java utilities.
+import java.util.List;
+
+/**
+ * @ClassName: ShardTopology.
+ * @Description: this class holds the shard clients(indexed by the shard index), the old & new shard numbers and the epoch.
+ *               an instance is never modified after construction, the layer client publishes a new instance through one
+ *               volatile field on every topology change, so the request threads always see a consistent combination
+ *               of the shard array and the shard numbers without any lock.
+ * @param <T>: the type of the shard client(JedisSentinelPool or MongoClient).
+ */
+public final class ShardTopology<T>
+{
+    /**
+     * @FieldName: EMPTY.
+     * @Description: the shared empty topology which is used before the first topology message.
+     */
+    private static final ShardTopology<Object> EMPTY = new ShardTopology<Object>(new Object[0], 0, 0, 0L);
+
+    /**
+     * @FieldName: shards.
+     * @Description: the shard clients, the array index is the shard index.
+     */
+    private final Object[] shards;
+
+    /**
+     * @FieldName: oldShardNum.
+     * @Description: the shard number of the old routing view.
+     */
+    private final int oldShardNum;
+
+    /**
+     * @FieldName: newShardNum.
+     * @Description: the shard number of the new routing view, it always equals to the length of the shards.
+     */
+    private final int newShardNum;
+
+    /**
+     * @FieldName: epoch.
+     * @Description: the version of the topology, it increases by one on every change.
+     */
+    private final long epoch;
+
+    /**
+     * @Title: ShardTopology.
+     * @Description: the private construct function, the array must not be shared with anyone else.
+     * @param shards: the shard clients.
+     * @param oldShardNum: the shard number of the old routing view.
+     * @param newShardNum: the shard number of the new routing view.
+     * @param epoch: the version of the topology.
+     * @return none.
+     */
+    private ShardTopology(Object[] shards, int oldShardNum, int newShardNum, long epoch)
+    {
+	this.shards = shards;
+	this.oldShardNum = oldShardNum;
+	this.newShardNum = newShardNum;
+	this.epoch = epoch;
+    }
+
+    /**
+     * @Title: empty.
+     * @Description: the function which is used to get the empty topology.
+     * @return ShardTopology<T>: the empty topology with epoch 0.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> ShardTopology<T> empty()
+    {
+	return (ShardTopology<T>)EMPTY;
+    }
+
+    /**
+     * @Title: extend.
+     * @Description: the function which is used to build the next topology with the new shards appended at the tail.
+     *               the new shard number of this topology becomes the old shard number of the next one.
+     *               (when this topology is empty, the old view is the same as the new view, there is nothing to fall back to).
+     * @param added: the new shard clients.
+     * @return ShardTopology<T>: the next topology.
+     */
+    public ShardTopology<T> extend(List<T> added)
+    {
+	Object[] next = new Object[shards.length + added.size()];
+	System.arraycopy(shards, 0, next, 0, shards.length);
+	for(int i = 0; i < added.size(); i++)
+	{
+	    next[shards.length + i] = added.get(i);
+	}
+	int oldNum = (newShardNum == 0) ? next.length : newShardNum;
+	return new ShardTopology<T>(next, oldNum, next.length, epoch + 1);
+    }
+
+    /**
+     * @Title: retireOldView.
+     * @Description: the function which is used to build the next topology whose old view is the same as the new view.
+     *               (used when the data has been moved to the new owners, and no one needs the old routing any more).
+     * @return ShardTopology<T>: the next topology.
+     */
+    public ShardTopology<T> retireOldView()
+    {
+	return new ShardTopology<T>(shards, newShardNum, newShardNum, epoch + 1);
+    }
+
+    /**
+     * @Title: getShard.
+     * @Description: the function which is used to get the shard client by the shard index.
+     * @param index: the shard index.
+     * @return T: the shard client.
+     */
+    @SuppressWarnings("unchecked")
+    public T getShard(int index)
+    {
+	return (T)shards[index];
+    }
+
+    /**
+     * @Title: getOldShardNum.
+     * @Description: the function which is used to get the shard number of the old routing view.
+     * @return int: the old shard number.
+     */
+    public int getOldShardNum()
+    {
+	return oldShardNum;
+    }
+
+    /**
+     * @Title: getNewShardNum.
+     * @Description: the function which is used to get the shard number of the new routing view.
+     * @return int: the new shard number.
+     */
+    public int getNewShardNum()
+    {
+	return newShardNum;
+    }
+
+    /**
+     * @Title: getEpoch.
+     * @Description: the function which is used to get the version of the topology.
+     * @return long: the epoch.
+     */
+    public long getEpoch()
+    {
+	return epoch;
+    }
+
+    /**
+     * @Title: isExpanding.
+     * @Description: the function which shows the old & new routing views are different or not.
+     * @return boolean: true when the old shard number differs from the new shard number.
+     */
+    public boolean isExpanding()
+    {
+	return oldShardNum != newShardNum;
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: ThroughputThrottle.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The simple rate limiter which is used by the background data movers.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of ThroughputThrottle was written.
+ */
+//package name.
+package generaldbplatform;
+
+/**
+ * @ClassName: ThroughputThrottle.
+ * @Description: this class limits the throughput of the background jobs(such as the key migration) to a number of permits per second,
+ *               so that they never starve the production traffic. the caller blocks in acquire until its permits are available.
+ *               (the rate could be changed at runtime, and a rate <= 0 means no limit).
+ */
+public class ThroughputThrottle
+{
+    /**
+     * @FieldName: PermitsPerSecond.
+     * @Description: the permits which are available in one second.
+     */
+    private volatile double PermitsPerSecond;
+
+    /**
+     * @FieldName: NextFreeNanos.
+     * @Description: the time(System.nanoTime) when the next permits are available.
+     */
+    private long NextFreeNanos = System.nanoTime();
+
+    /**
+     * @Title: ThroughputThrottle.
+     * @Description: the construct function of the ThroughputThrottle class.
+     * @param permitsPerSecond: the permits which are available in one second, <= 0 means no limit.
+     * @return none.
+     */
+    public ThroughputThrottle(double permitsPerSecond)
+    {
+	this.PermitsPerSecond = permitsPerSecond;
+    }
+
+    /**
+     * @Title: setRate.
+     * @Description: the function which is used to change the rate at runtime.
+     * @param permitsPerSecond: the permits which are available in one second, <= 0 means no limit.
+     * @return none.
+     */
+    public void setRate(double permitsPerSecond)
+    {
+	this.PermitsPerSecond = permitsPerSecond;
+    }
+
+    /**
+     * @Title: getRate.
+     * @Description: the function which is used to get the current rate.
+     * @return double: the permits which are available in one second.
+     */
+    public double getRate()
+    {
+	return this.PermitsPerSecond;
+    }
+
+    /**
+     * @Title: acquire.
+     * @Description: the function which is used to take the permits, it blocks until the permits are available.
+     *               (the permits of one call are paid by the next caller, so a big batch never waits longer than its own share).
+     * @param permits: the number of the permits, such as the number of the keys in one batch.
+     * @return none.
+     * @throws InterruptedException: when the waiting thread is interrupted.
+     */
+    public void acquire(int permits) throws InterruptedException
+    {
+	double rate = this.PermitsPerSecond;
+	if(rate <= 0 || permits <= 0)
+	{
+	    return;
+	}
+
+	long waitNanos;
+	synchronized(this)
+	{
+	    long now = System.nanoTime();
+	    if(NextFreeNanos < now)
+	    {
+		NextFreeNanos = now;
+	    }
+	    waitNanos = NextFreeNanos - now;
+	    NextFreeNanos += (long)(permits * 1000000000.0 / rate);
+	}
+	if(waitNanos > 0)
+	{
+	    Thread.sleep(waitNanos / 1000000, (int)(waitNanos % 1000000));
+	}
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: TopologyListener.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The listener of the topology messages which are delivered by the TopologyService.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of TopologyListener was written.
+ */
+//package name.
+package generaldbplatform;
+
+/**
+ * @ClassName: TopologyListener.
+ * @Description: this interface is implemented by the layer clients, the functions are called on the subscriber thread
+ *               of the TopologyService, in the order of the messages of the channel.
+ */
+public interface TopologyListener
+{
+    /**
+     * @Title: onTopologyMessage.
+     * @Description: the function which is called for every message of the subscribed channel.
+     * @param channel: the channel of the message.
+     * @param message: the message like "1.0.0.1:6379_1.0.2.3:6349_1.0.0.5:5689;...".
+     * @return none.
+     */
+    public void onTopologyMessage(String channel, String message);
+
+    /**
+     * @Title: onSubscribed.
+     * @Description: the function which is called each time the subscription of the channel is (re)established,
+     *               the messages which were published while the subscription was down are not delivered.
+     * @param channel: the channel.
+     * @return none.
+     */
+    public void onSubscribed(String channel);
+}
@@ -0,0 +1,789 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: TopologyService.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The shared topology service of the layer clients, one per config server in the JVM.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of TopologyService was written.
+ *    2.2026-10-17 Add the versioned topology log in the config database, for the bootstrap & the gap refetch.
+ *    3.2026-10-17 Add the publish function for the other broadcasts of the layer clients(like the near cache invalidation).
+ *    4.2026-10-17 Add the optional "@weight" suffix of a shard in the delta, for the WeightedRendezvousRoutingStrategy.
+ *    5.2026-10-17 Add the retrySync function which retries a failed topology sync of a layer client with a backoff.
+ *    6.2026-10-17 Keep the subscriber thread alive after any RuntimeException of a subscription, and count them.
+ */
+//package name.
+package generaldbplatform;
+
+//class import for java utilities.
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+//class import for jedis client.
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPubSub;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+/**
+ * @ClassName: TopologyService.
+ * @Description: this class owns the only ConfigDBClient and the only subscriber thread of a config server in the JVM.
+ *               all the channels(CACHE_AUTO_EXTERN, PERSIST_AUTO_EXTERN...) are multiplexed on one subscription,
+ *               and every message is delivered to all the TopologyListeners of its channel, so any number of layer clients
+ *               cost one sentinel pool and one pinned connection.
+ *               when the subscription drops, the subscriber thread returns the broken connection, waits(1s doubled up to 30s)
+ *               and subscribes again, then calls onSubscribed of the listeners.
+ *               a layer client which could not apply a message(e.g. a new shard is not ready yet) gives its sync to retrySync,
+ *               which retries it with the same backoff until it succeeds, so the topology does not wait for the next message.
+ */
+public class TopologyService
+{
+    /**
+     * @FieldName: INSTANCES.
+     * @Description: the shared services, by the address list of their config server.
+     */
+    private static final Map<String, TopologyService> INSTANCES = new HashMap<String, TopologyService>();
+
+    /**
+     * @FieldName: MIN_RETRY_MILLIS & MAX_RETRY_MILLIS.
+     * @Description: the first & the max wait before the subscriber subscribes again.
+     */
+    private static final long MIN_RETRY_MILLIS = 1000;
+    private static final long MAX_RETRY_MILLIS = 30000;
+
+    /**
+     * @FieldName: SYNC_RETRIER.
+     * @Description: the thread which retries the failed topology syncs of all the services of the JVM.
+     */
+    private static final ScheduledExecutorService SYNC_RETRIER = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+    {
+	@Override
+	public Thread newThread(Runnable r)
+	{
+	    Thread thread = new Thread(r, "topologySyncRetryThread");
+	    thread.setDaemon(true);
+	    return thread;
+	}
+    });
+
+    /**
+     * @FieldName: TOPOLOGY_KEY_PREFIX.
+     * @Description: the prefix of the config database list which logs the topology deltas of a channel.
+     *               the delta of version N is at the index N-1, so the list holds the full topology and its history.
+     */
+    public static final String TOPOLOGY_KEY_PREFIX = "TOPOLOGY:";
+
+    /**
+     * @FieldName: VERSION_SEPARATOR.
+     * @Description: the separator of a versioned message like "3#1.0.0.1:6379_1.0.2.3:6349_1.0.0.5:5689".
+     */
+    public static final char VERSION_SEPARATOR = '#';
+
+    /**
+     * @FieldName: WEIGHT_SEPARATOR.
+     * @Description: the separator of the optional shard weight like "1.0.0.1:6379_1.0.2.3:6349_1.0.0.5:5689@256",
+     *               a shard without weight has the WeightedRendezvousRoutingStrategy.DEFAULT_WEIGHT.
+     */
+    public static final char WEIGHT_SEPARATOR = '@';
+
+    /**
+     * @FieldName: PUBLISH_SCRIPT.
+     * @Description: the script which logs a delta and publishes it with its version at once,
+     *               so every published version is in the log before a client can see the message.
+     */
+    private static final String PUBLISH_SCRIPT =
+	"local version = redis.call('RPUSH', KEYS[1], ARGV[1]) " +
+	"redis.call('PUBLISH', ARGV[2], version .. '#' .. ARGV[1]) " +
+	"return version";
+
+    /**
+     * @FieldName: configdb.
+     * @Description: the ConfigServer database client shared by the layer clients.
+     */
+    private final ConfigDBClient configdb;
+
+    /**
+     * @FieldName: listeners.
+     * @Description: the listeners of each channel.
+     */
+    private final ConcurrentMap<String, List<TopologyListener>> listeners = new ConcurrentHashMap<String, List<TopologyListener>>();
+
+    /**
+     * @ClassName: Subscription.
+     * @Description: one subscription of the subscriber thread, it remembers the channels which have been requested on it,
+     *               so the channels of the late listeners are added once.
+     */
+    private class Subscription extends JedisPubSub
+    {
+	private final Set<String> requested = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	@Override
+	public void onMessage(String channel, String message)
+	{
+	    dispatchMessage(channel, message);
+	}
+
+	@Override
+	public void onSubscribe(String channel, int subscribedChannels)
+	{
+	    dispatchSubscribed(channel);
+	    //a listener of a new channel may have been added before this subscription was established.
+	    this.subscribeMissing();
+	}
+
+	synchronized void subscribeMissing()
+	{
+	    if(!this.isSubscribed())
+	    {
+		return;
+	    }
+	    for(String channel : listeners.keySet())
+	    {
+		if(this.requested.add(channel))
+		{
+		    this.subscribe(channel);
+		}
+	    }
+	}
+    }
+
+    /**
+     * @FieldName: pubSub.
+     * @Description: the current subscription, null while the subscriber is reconnecting.
+     */
+    private volatile Subscription pubSub = null;
+
+    /**
+     * @FieldName: subscriberThread.
+     * @Description: the subscriber thread, it is started with the first listener.
+     */
+    private Thread subscriberThread = null;
+
+    /**
+     * @FieldName: Reconnects & ListenerErrors & SubscribeErrors.
+     * @Description: the number of the subscriptions after a drop, the number of the exceptions thrown by the listeners,
+     *               and the number of the subscriptions which ended by an exception other than a connection failure.
+     */
+    private final AtomicLong Reconnects = new AtomicLong();
+    private final AtomicLong ListenerErrors = new AtomicLong();
+    private final AtomicLong SubscribeErrors = new AtomicLong();
+
+    /**
+     * @FieldName: retryingChannels & SyncRetries.
+     * @Description: the channels whose sync is waiting for a retry(one retry chain per channel), and the number of the failed retries.
+     */
+    private final Set<String> retryingChannels = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final AtomicLong SyncRetries = new AtomicLong();
+
+    /**
+     * @Title: TopologyService.
+     * @Description: the construct function of the TopologyService class, use getInstance to share the service.
+     * @param configdb: the ConfigServer database client.
+     * @return none.
+     */
+    public TopologyService(ConfigDBClient configdb)
+    {
+	this.configdb = configdb;
+    }
+
+    /**
+     * @Title: getInstance.
+     * @Description: the function which is used to get the shared service of a config server, it is created on the first call.
+     * @param serverinfo_0: the first redis server node ip & port information in the redis sentinel(config server).
+     * @param serverinfo_1: the second redis server node ip & port information in the redis sentinel(config server).
+     * @param serverinfo_2: the third redis server node ip & port information in the redis sentinel(config server).
+     * @return TopologyService: the shared service.
+     */
+    public static TopologyService getInstance(String serverinfo_0, String serverinfo_1, String serverinfo_2)
+    {
+	//the same servers in any order are the same config server.
+	String[] servers = new String[]{serverinfo_0, serverinfo_1, serverinfo_2};
+	Arrays.sort(servers);
+	String name = servers[0] + "," + servers[1] + "," + servers[2];
+	synchronized(INSTANCES)
+	{
+	    TopologyService service = INSTANCES.get(name);
+	    if(service == null)
+	    {
+		service = new TopologyService(new ConfigDBClient(serverinfo_0, serverinfo_1, serverinfo_2));
+		INSTANCES.put(name, service);
+	    }
+	    return service;
+	}
+    }
+
+    /**
+     * @Title: getConfigDB.
+     * @Description: the function which is used to get the shared ConfigServer database client.
+     * @return ConfigDBClient: the ConfigServer database client.
+     */
+    public ConfigDBClient getConfigDB()
+    {
+	return this.configdb;
+    }
+
+    /**
+     * @Title: addListener.
+     * @Description: the function which is used to deliver the messages of a channel to a listener.
+     *               a new channel is added to the running subscription at once.
+     * @param channel: the channel.
+     * @param listener: the listener.
+     * @return none.
+     */
+    public void addListener(String channel, TopologyListener listener)
+    {
+	List<TopologyListener> channel_listeners = this.listeners.get(channel);
+	boolean new_channel = false;
+	if(channel_listeners == null)
+	{
+	    List<TopologyListener> created = new CopyOnWriteArrayList<TopologyListener>();
+	    channel_listeners = this.listeners.putIfAbsent(channel, created);
+	    if(channel_listeners == null)
+	    {
+		channel_listeners = created;
+		new_channel = true;
+	    }
+	}
+	channel_listeners.add(listener);
+
+	synchronized(this)
+	{
+	    if(this.subscriberThread == null)
+	    {
+		this.subscriberThread = new Thread(new Runnable()
+		{
+		    @Override
+		    public void run()
+		    {
+			subscribeLoop();
+		    }
+		}, "subscriberThread");
+		this.subscriberThread.start();
+		return;
+	    }
+	}
+
+	Subscription current = this.pubSub;
+	if((current == null) || !current.isSubscribed())
+	{
+	    //the subscriber thread subscribes all the channels of the listeners when it (re)connects.
+	    return;
+	}
+	try
+	{
+	    if(new_channel)
+	    {
+		current.subscribeMissing();
+	    }
+	    else
+	    {
+		listener.onSubscribed(channel);
+	    }
+	}
+	catch(JedisConnectionException e)
+	{
+	    //the subscriber thread is reconnecting, it subscribes the channel again.
+	}
+    }
+
+    /**
+     * @Title: removeListener.
+     * @Description: the function which is used to stop delivering the messages of a channel to a listener.
+     * @param channel: the channel.
+     * @param listener: the listener.
+     * @return none.
+     */
+    public void removeListener(String channel, TopologyListener listener)
+    {
+	List<TopologyListener> channel_listeners = this.listeners.get(channel);
+	if(channel_listeners != null)
+	{
+	    channel_listeners.remove(listener);
+	}
+    }
+
+    /**
+     * @Title: subscribeLoop.
+     * @Description: the function of the subscriber thread, it subscribes all the channels on one connection,
+     *               and subscribes again after the connection drops or the subscription fails by any RuntimeException
+     *               (e.g. an unexpected reply), so the thread never dies and the channels are never left unsubscribed.
+     * @return none.
+     */
+    private void subscribeLoop()
+    {
+	long retry_millis = MIN_RETRY_MILLIS;
+	boolean first = true;
+	while(true)
+	{
+	    Jedis jedisConnector = null;
+	    boolean borrowOrOprSuccess = true;
+	    Subscription jedisPubSub = new Subscription();
+	    try
+	    {
+		String[] channels = this.listeners.keySet().toArray(new String[0]);
+		jedisPubSub.requested.addAll(Arrays.asList(channels));
+		jedisConnector = this.configdb.db_client.getResource();
+		this.pubSub = jedisPubSub;
+		if(!first)
+		{
+		    this.Reconnects.incrementAndGet();
+		}
+		first = false;
+		retry_millis = MIN_RETRY_MILLIS;
+		//blocks until the connection drops.
+		jedisConnector.subscribe(jedisPubSub, channels);
+	    }
+	    catch(JedisConnectionException e)
+	    {
+		borrowOrOprSuccess = false;
+		if(jedisConnector != null)
+		{
+		    this.configdb.db_client.returnBrokenResource(jedisConnector);
+		    jedisConnector = null;
+		}
+	    }
+	    catch(RuntimeException e)
+	    {
+		//the state of the subscribed connection is unknown, it is not reused.
+		this.SubscribeErrors.incrementAndGet();
+		borrowOrOprSuccess = false;
+		if(jedisConnector != null)
+		{
+		    this.configdb.db_client.returnBrokenResource(jedisConnector);
+		    jedisConnector = null;
+		}
+	    }
+	    finally
+	    {
+		this.pubSub = null;
+		if(borrowOrOprSuccess && (jedisConnector != null))
+		{
+		    this.configdb.db_client.returnResource(jedisConnector);
+		}
+	    }
+
+	    try
+	    {
+		Thread.sleep(retry_millis);
+	    }
+	    catch(InterruptedException e)
+	    {
+		return;
+	    }
+	    retry_millis = Math.min(retry_millis * 2, MAX_RETRY_MILLIS);
+	}
+    }
+
+    /**
+     * @Title: dispatchMessage.
+     * @Description: the function which delivers a message to all the listeners of its channel,
+     *               an exception of a listener does not stop the subscription or the other listeners.
+     * @param channel: the channel.
+     * @param message: the message.
+     * @return none.
+     */
+    private void dispatchMessage(String channel, String message)
+    {
+	List<TopologyListener> channel_listeners = this.listeners.get(channel);
+	if(channel_listeners == null)
+	{
+	    return;
+	}
+	for(TopologyListener listener : channel_listeners)
+	{
+	    try
+	    {
+		listener.onTopologyMessage(channel, message);
+	    }
+	    catch(RuntimeException e)
+	    {
+		this.ListenerErrors.incrementAndGet();
+	    }
+	}
+    }
+
+    /**
+     * @Title: dispatchSubscribed.
+     * @Description: the function which tells all the listeners of a channel that the channel is subscribed.
+     * @param channel: the channel.
+     * @return none.
+     */
+    private void dispatchSubscribed(String channel)
+    {
+	List<TopologyListener> channel_listeners = this.listeners.get(channel);
+	if(channel_listeners == null)
+	{
+	    return;
+	}
+	for(TopologyListener listener : channel_listeners)
+	{
+	    try
+	    {
+		listener.onSubscribed(channel);
+	    }
+	    catch(RuntimeException e)
+	    {
+		this.ListenerErrors.incrementAndGet();
+	    }
+	}
+    }
+
+    /**
+     * @Title: publish.
+     * @Description: the function which is used to broadcast a message to the listeners of a channel in all the JVMs.
+     *               (unlike the topology deltas it is not logged, a listener which is not subscribed at that time misses it).
+     * @param channel: the channel.
+     * @param message: the message.
+     * @return long: the number of the subscribers which received it.
+     */
+    public long publish(String channel, String message)
+    {
+	Jedis jedis = null;
+	boolean borrowOrOprSuccess = true;
+	try
+	{
+	    jedis = this.configdb.db_client.getResource();
+	    return jedis.publish(channel, message);
+	}
+	catch(JedisConnectionException e)
+	{
+	    borrowOrOprSuccess = false;
+	    if(jedis != null)
+	    {
+		this.configdb.db_client.returnBrokenResource(jedis);
+	    }
+	    throw e;
+	}
+	finally
+	{
+	    if(borrowOrOprSuccess && (jedis != null))
+	    {
+		this.configdb.db_client.returnResource(jedis);
+	    }
+	}
+    }
+
+    /**
+     * @Title: publishDelta.
+     * @Description: the function which is used by the operators to add shards to a channel:
+     *               the delta is appended to the topology log and published as the next version.
+     * @param channel: the channel like CACHE_AUTO_EXTERN.
+     * @param delta: the new shards like "1.0.0.1:6379_1.0.2.3:6349_1.0.0.5:5689;1.0.0.22:6379_1.10.2.3:6349_12.0.0.5:5689".
+     * @return long: the version of the delta.
+     */
+    public long publishDelta(String channel, String delta)
+    {
+	Jedis jedis = null;
+	boolean borrowOrOprSuccess = true;
+	try
+	{
+	    jedis = this.configdb.db_client.getResource();
+	    Object version = jedis.eval(PUBLISH_SCRIPT, Arrays.asList(TOPOLOGY_KEY_PREFIX + channel), Arrays.asList(delta, channel));
+	    return ((Number)version).longValue();
+	}
+	catch(JedisConnectionException e)
+	{
+	    borrowOrOprSuccess = false;
+	    if(jedis != null)
+	    {
+		this.configdb.db_client.returnBrokenResource(jedis);
+	    }
+	    throw e;
+	}
+	finally
+	{
+	    if(borrowOrOprSuccess && (jedis != null))
+	    {
+		this.configdb.db_client.returnResource(jedis);
+	    }
+	}
+    }
+
+    /**
+     * @Title: fetchDeltas.
+     * @Description: the function which is used to read the deltas after a version from the topology log.
+     * @param channel: the channel.
+     * @param fromVersion: the version which has been applied, 0 to read the full topology.
+     * @return List<String>: the deltas of the versions fromVersion+1, fromVersion+2... in order.
+     */
+    public List<String> fetchDeltas(String channel, long fromVersion)
+    {
+	Jedis jedis = null;
+	boolean borrowOrOprSuccess = true;
+	try
+	{
+	    jedis = this.configdb.db_client.getResource();
+	    List<String> deltas = jedis.lrange(TOPOLOGY_KEY_PREFIX + channel, fromVersion, -1);
+	    return (deltas == null) ? new ArrayList<String>() : deltas;
+	}
+	catch(JedisConnectionException e)
+	{
+	    borrowOrOprSuccess = false;
+	    if(jedis != null)
+	    {
+		this.configdb.db_client.returnBrokenResource(jedis);
+	    }
+	    throw e;
+	}
+	finally
+	{
+	    if(borrowOrOprSuccess && (jedis != null))
+	    {
+		this.configdb.db_client.returnResource(jedis);
+	    }
+	}
+    }
+
+    /**
+     * @Title: hasKey.
+     * @Description: the function which shows a key exists in the config database or not.
+     * @param key: the key.
+     * @return boolean: true when the key exists.
+     */
+    public boolean hasKey(String key)
+    {
+	Jedis jedis = null;
+	boolean borrowOrOprSuccess = true;
+	try
+	{
+	    jedis = this.configdb.db_client.getResource();
+	    return Boolean.TRUE.equals(jedis.exists(key));
+	}
+	catch(JedisConnectionException e)
+	{
+	    borrowOrOprSuccess = false;
+	    if(jedis != null)
+	    {
+		this.configdb.db_client.returnBrokenResource(jedis);
+	    }
+	    throw e;
+	}
+	finally
+	{
+	    if(borrowOrOprSuccess && (jedis != null))
+	    {
+		this.configdb.db_client.returnResource(jedis);
+	    }
+	}
+    }
+
+    /**
+     * @Title: parseVersion.
+     * @Description: the function which reads the version of a message.
+     * @param message: the message like "3#1.0.0.1:6379_1.0.2.3:6349_1.0.0.5:5689".
+     * @return long: the version, -1 for a legacy message without version.
+     */
+    public static long parseVersion(String message)
+    {
+	int separator = message.indexOf(VERSION_SEPARATOR);
+	if(separator <= 0)
+	{
+	    return -1;
+	}
+	try
+	{
+	    return Long.parseLong(message.substring(0, separator));
+	}
+	catch(NumberFormatException e)
+	{
+	    return -1;
+	}
+    }
+
+    /**
+     * @Title: parseDelta.
+     * @Description: the function which reads the delta of a message.
+     * @param message: the versioned or legacy message.
+     * @return String: the delta without the version.
+     */
+    public static String parseDelta(String message)
+    {
+	return (parseVersion(message) < 0) ? message : message.substring(message.indexOf(VERSION_SEPARATOR) + 1);
+    }
+
+    /**
+     * @Title: stripWeight.
+     * @Description: the function which removes the weight of one shard of a delta.
+     * @param shard: the shard like "1.0.0.1:6379_1.0.2.3:6349_1.0.0.5:5689@256".
+     * @return String: the addresses of the shard like "1.0.0.1:6379_1.0.2.3:6349_1.0.0.5:5689".
+     */
+    public static String stripWeight(String shard)
+    {
+	int separator = shard.indexOf(WEIGHT_SEPARATOR);
+	return (separator < 0) ? shard : shard.substring(0, separator);
+    }
+
+    /**
+     * @Title: parseWeights.
+     * @Description: the function which reads the weight of each shard of a delta.
+     * @param delta: the delta like "1.0.0.1:6379_1.0.2.3:6349_1.0.0.5:5689@256;1.0.0.22:6379_1.10.2.3:6349_12.0.0.5:5689".
+     * @return double[]: the weight of each shard in the order of the delta.
+     */
+    public static double[] parseWeights(String delta)
+    {
+	String[] shards = delta.split(";");
+	double[] weights = new double[shards.length];
+	for(int i = 0; i < shards.length; i++)
+	{
+	    int separator = shards[i].indexOf(WEIGHT_SEPARATOR);
+	    weights[i] = WeightedRendezvousRoutingStrategy.DEFAULT_WEIGHT;
+	    if(separator >= 0)
+	    {
+		weights[i] = Double.parseDouble(shards[i].substring(separator + 1).trim());
+		if(!(weights[i] > 0) || Double.isInfinite(weights[i]))
+		{
+		    throw new IllegalArgumentException("the weight must be positive: " + shards[i]);
+		}
+	    }
+	}
+	return weights;
+    }
+
+    /**
+     * @Title: joinDeltas.
+     * @Description: the function which joins deltas into one message, the shards keep their order.
+     * @param deltas: the deltas.
+     * @return String: the message like "delta1;delta2".
+     */
+    public static String joinDeltas(List<String> deltas)
+    {
+	StringBuilder builder = new StringBuilder();
+	for(String delta : deltas)
+	{
+	    if(builder.length() > 0)
+	    {
+		builder.append(';');
+	    }
+	    builder.append(delta);
+	}
+	return builder.toString();
+    }
+
+    /**
+     * @Title: countShards.
+     * @Description: the function which counts the shards of deltas.
+     * @param deltas: the deltas.
+     * @return int: the shard number.
+     */
+    public static int countShards(List<String> deltas)
+    {
+	int count = 0;
+	for(String delta : deltas)
+	{
+	    count += delta.split(";").length;
+	}
+	return count;
+    }
+
+    /**
+     * @Title: isSubscribed.
+     * @Description: the function which shows the subscription is established or not.
+     * @return boolean: true when the subscriber is connected.
+     */
+    public boolean isSubscribed()
+    {
+	Subscription current = this.pubSub;
+	return (current != null) && current.isSubscribed();
+    }
+
+    /**
+     * @Title: getReconnects.
+     * @Description: the function which is used to get the number of the subscriptions after a drop.
+     * @return long: the reconnect number.
+     */
+    public long getReconnects()
+    {
+	return this.Reconnects.get();
+    }
+
+    /**
+     * @Title: retrySync.
+     * @Description: the function which is used to retry the topology sync of a channel after a failure, the first retry
+     *               waits 1s and every failed retry doubles the wait up to 30s, until the sync returns.
+     *               a channel which is already retrying keeps its retry chain, the next retry applies all the missing deltas.
+     * @param channel: the channel of the layer client.
+     * @param sync: the sync of the layer client, like syncTopology.
+     * @return none.
+     */
+    public void retrySync(String channel, Runnable sync)
+    {
+	if(this.retryingChannels.add(channel))
+	{
+	    this.scheduleSync(channel, sync, MIN_RETRY_MILLIS);
+	}
+    }
+
+    /**
+     * @Title: scheduleSync.
+     * @Description: the function which schedules one retry of the sync of a channel.
+     * @param channel: the channel.
+     * @param sync: the sync.
+     * @param delayMillis: the wait before the retry.
+     * @return none.
+     */
+    private void scheduleSync(final String channel, final Runnable sync, final long delayMillis)
+    {
+	SYNC_RETRIER.schedule(new Runnable()
+	{
+	    @Override
+	    public void run()
+	    {
+		try
+		{
+		    sync.run();
+		    retryingChannels.remove(channel);
+		}
+		catch(RuntimeException e)
+		{
+		    SyncRetries.incrementAndGet();
+		    scheduleSync(channel, sync, Math.min(delayMillis * 2, MAX_RETRY_MILLIS));
+		}
+	    }
+	}, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @Title: getSyncRetries.
+     * @Description: the function which is used to get the number of the topology sync retries which failed.
+     * @return long: the failed retry number.
+     */
+    public long getSyncRetries()
+    {
+	return this.SyncRetries.get();
+    }
+
+    /**
+     * @Title: getListenerErrors.
+     * @Description: the function which is used to get the number of the exceptions thrown by the listeners.
+     * @return long: the listener error number.
+     */
+    public long getListenerErrors()
+    {
+	return this.ListenerErrors.get();
+    }
+
+    /**
+     * @Title: getSubscribeErrors.
+     * @Description: the function which is used to get the number of the subscriptions which failed by an unexpected exception.
+     * @return long: the subscribe error number.
+     */
+    public long getSubscribeErrors()
+    {
+	return this.SubscribeErrors.get();
+    }
+}
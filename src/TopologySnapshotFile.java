@@ -0,0 +1,171 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: TopologySnapshotFile.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The local snapshot file of the versioned topology of a channel.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of TopologySnapshotFile was written.
+ */
+//package name.
+package generaldbplatform;
+
+//class import for java utilities.
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @ClassName: TopologySnapshotFile.
+ * @Description: this class saves the applied topology deltas of a channel to a local file, one delta per line,
+ *               so a restarted client can route at once even when the config server is slow or down.
+ *               the snapshot is enabled by the system property "generaldbplatform.topology.snapshot.dir",
+ *               the file of a channel is "<dir>/<channel>.topology". the file is written to a temp file then renamed,
+ *               so a crash never leaves a half-written snapshot.
+ */
+public final class TopologySnapshotFile
+{
+    /**
+     * @FieldName: SNAPSHOT_DIR_PROPERTY.
+     * @Description: the system property of the snapshot directory.
+     */
+    public static final String SNAPSHOT_DIR_PROPERTY = "generaldbplatform.topology.snapshot.dir";
+
+    /**
+     * @FieldName: UTF8.
+     * @Description: the charset of the snapshot file.
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private TopologySnapshotFile()
+    {
+    }
+
+    /**
+     * @Title: forChannel.
+     * @Description: the function which is used to get the snapshot file of a channel.
+     * @param channel: the channel.
+     * @return File: the snapshot file, null when the snapshot is not enabled.
+     */
+    public static File forChannel(String channel)
+    {
+	String dir = System.getProperty(SNAPSHOT_DIR_PROPERTY);
+	if((dir == null) || dir.isEmpty())
+	{
+	    return null;
+	}
+	return new File(dir, channel + ".topology");
+    }
+
+    /**
+     * @Title: read.
+     * @Description: the function which is used to read the deltas of a snapshot file.
+     * @param file: the snapshot file.
+     * @return List<String>: the deltas of the versions 1, 2... in order, null when there is no readable snapshot.
+     */
+    public static List<String> read(File file)
+    {
+	if((file == null) || !file.isFile())
+	{
+	    return null;
+	}
+	BufferedReader reader = null;
+	try
+	{
+	    reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF8));
+	    List<String> deltas = new ArrayList<String>();
+	    String line;
+	    while((line = reader.readLine()) != null)
+	    {
+		if(!line.isEmpty())
+		{
+		    deltas.add(line);
+		}
+	    }
+	    return deltas;
+	}
+	catch(IOException e)
+	{
+	    return null;
+	}
+	finally
+	{
+	    if(reader != null)
+	    {
+		try
+		{
+		    reader.close();
+		}
+		catch(IOException e)
+		{
+		}
+	    }
+	}
+    }
+
+    /**
+     * @Title: write.
+     * @Description: the function which is used to replace the snapshot file with the deltas.
+     *               (a failed write keeps the previous snapshot, the snapshot is only an optimization).
+     * @param file: the snapshot file.
+     * @param deltas: the deltas of the versions 1, 2... in order.
+     * @return boolean: true when the snapshot was written.
+     */
+    public static boolean write(File file, List<String> deltas)
+    {
+	if(file == null)
+	{
+	    return false;
+	}
+	File parent = file.getAbsoluteFile().getParentFile();
+	if((parent != null) && !parent.isDirectory() && !parent.mkdirs())
+	{
+	    return false;
+	}
+	File temp = new File(file.getPath() + ".tmp");
+	Writer writer = null;
+	try
+	{
+	    writer = new OutputStreamWriter(new FileOutputStream(temp), UTF8);
+	    for(String delta : deltas)
+	    {
+		writer.write(delta);
+		writer.write('\n');
+	    }
+	    writer.close();
+	    writer = null;
+	    Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	    return true;
+	}
+	catch(IOException e)
+	{
+	    return false;
+	}
+	finally
+	{
+	    if(writer != null)
+	    {
+		try
+		{
+		    writer.close();
+		}
+		catch(IOException e)
+		{
+		}
+	    }
+	}
+    }
+}
@@ -0,0 +1,54 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: ValueCodec.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The codec of the documents which are stored as cache values.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of ValueCodec was written.
+ *    2.2026-10-17 An unsupported document is written as legacy JSON by ValueCodecs.
+ */
+//package name.
+package generaldbplatform;
+
+//class import for mongodb client.
+import com.mongodb.DBObject;
+
+/**
+ * @ClassName: ValueCodec.
+ * @Description: this interface is registered to ValueCodecs, which writes its version in the header of every value it encodes,
+ *               and picks the codec by that version when the value is decoded. so a codec must never change its format:
+ *               a new format is a new codec with a new version, and the old codec stays registered until its values expired.
+ *               the codecs are shared by all the threads, they must be stateless.
+ */
+public interface ValueCodec
+{
+    /**
+     * @Title: getVersion.
+     * @Description: the function which gives the version of the format, from 1 to ValueCodecs.MAX_VERSION.
+     * @return int: the version.
+     */
+    public int getVersion();
+
+    /**
+     * @Title: encode.
+     * @Description: the function which writes a document at the write position of the buffer.
+     * @param doc: the document.
+     * @param out: the buffer of the calling thread.
+     * @return none.
+     * @throws IllegalArgumentException: when the document holds a value the format does not support(ValueCodecs writes it as JSON).
+     */
+    public void encode(DBObject doc, CodecBuffer out);
+
+    /**
+     * @Title: decode.
+     * @Description: the function which reads a document from the read position of the buffer.
+     * @param in: the buffer which holds exactly one encoded document.
+     * @return DBObject: the document.
+     * @throws IllegalArgumentException: when the bytes are not a document of the format.
+     */
+    public DBObject decode(CodecBuffer in);
+}
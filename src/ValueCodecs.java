@@ -0,0 +1,348 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: ValueCodecs.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The versioned & compressed encoding of the documents which are stored as cache values.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of ValueCodecs was written.
+ *    2.2026-10-17 Write the legacy JSON values by default(JSON_VERSION) until every reader is upgraded, and fall back to JSON
+ *                 for a document which holds a type the codec does not support.
+ */
+//package name.
+package generaldbplatform;
+
+//class import for java utilities.
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicLong;
+
+//class import for mongodb client.
+import com.mongodb.DBObject;
+import com.mongodb.util.JSON;
+
+/**
+ * @ClassName: ValueCodecs.
+ * @Description: this class encodes a document with the codec of WriteVersion, and compresses it by the LzCompressor when it is
+ *               larger than CompressThreshold and the compression saves bytes. every value starts with a header:
+ *               MAGIC, the codec version, the flags, and the varint size before the compression when FLAG_LZ is set.
+ *               a value is decoded by the codec of its own version, so the values written before an upgrade of WriteVersion
+ *               are still read; a value without MAGIC was written as JSON before the codecs existed, and is parsed as JSON
+ *               (a JSON document starts with '{', never with MAGIC).
+ *               the new values are written as legacy JSON(WriteVersion JSON_VERSION) until setWriteVersion chooses a codec,
+ *               which must wait until every reader of the cache can decode it. a document which holds a type the codec
+ *               does not support(e.g. UUID, Pattern, BSONTimestamp, Decimal128, Code, MinKey & MaxKey) is written as legacy JSON.
+ *               the thread-local CodecBuffers & LzCompressor are reused by all the values of a thread, a buffer which grew beyond
+ *               MAX_RETAINED_BYTES for a large value is dropped after it, so a thread does not hold the largest value forever.
+ */
+public class ValueCodecs
+{
+    /**
+     * @FieldName: MAGIC & FLAG_LZ & MAX_VERSION.
+     * @Description: the first byte of an encoded value, the flag of a compressed value, and the max codec version.
+     */
+    public static final int MAGIC = 0xC5;
+    private static final int FLAG_LZ = 0x01;
+    public static final int MAX_VERSION = 127;
+
+    /**
+     * @FieldName: JSON_VERSION.
+     * @Description: the write version of the legacy JSON values, which have no header and are read by every reader.
+     */
+    public static final int JSON_VERSION = 0;
+
+    /**
+     * @FieldName: DEFAULT_COMPRESS_THRESHOLD & MAX_RETAINED_BYTES & MAX_VALUE_BYTES & UTF8.
+     * @Description: the default min size of an encoded value which is compressed, the max buffer size which a thread keeps,
+     *               the max size of a decompressed value(the max string size of Redis), and the charset of the legacy JSON values.
+     */
+    public static final int DEFAULT_COMPRESS_THRESHOLD = 256;
+    private static final int MAX_RETAINED_BYTES = 1024 * 1024;
+    private static final long MAX_VALUE_BYTES = 512L * 1024 * 1024;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * @ClassName: Scratch.
+     * @Description: the reused buffers & compressor of one thread.
+     */
+    private static final class Scratch
+    {
+	CodecBuffer encoded = new CodecBuffer(4096);
+	CodecBuffer compressed = new CodecBuffer(4096);
+	final CodecBuffer reader = new CodecBuffer(16);
+	final LzCompressor compressor = new LzCompressor();
+
+	void trim()
+	{
+	    if(this.encoded.capacity() > MAX_RETAINED_BYTES)
+	    {
+		this.encoded = new CodecBuffer(4096);
+	    }
+	    if(this.compressed.capacity() > MAX_RETAINED_BYTES)
+	    {
+		this.compressed = new CodecBuffer(4096);
+	    }
+	}
+    }
+
+    private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>()
+    {
+	@Override
+	protected Scratch initialValue()
+	{
+	    return new Scratch();
+	}
+    };
+
+    /**
+     * @FieldName: Codecs & WriteVersion & CompressThreshold.
+     * @Description: the registered codecs by their version, the version of the new values(JSON_VERSION for the legacy JSON),
+     *               and the min size which is compressed(Integer.MAX_VALUE disables the compression).
+     */
+    private final ValueCodec[] Codecs = new ValueCodec[MAX_VERSION + 1];
+    private volatile int WriteVersion = JSON_VERSION;
+    private volatile int CompressThreshold = DEFAULT_COMPRESS_THRESHOLD;
+
+    /**
+     * @FieldName: EncodedValues & JsonValues & FallbackValues & CompressedValues & LegacyValues & SavedBytes.
+     * @Description: the encoded values, the values which were written as legacy JSON, the JSON values among them which
+     *               the codec did not support, the values which were stored compressed, the decoded values which were legacy JSON,
+     *               and the bytes which were saved by the compression.
+     */
+    private final AtomicLong EncodedValues = new AtomicLong();
+    private final AtomicLong JsonValues = new AtomicLong();
+    private final AtomicLong FallbackValues = new AtomicLong();
+    private final AtomicLong CompressedValues = new AtomicLong();
+    private final AtomicLong LegacyValues = new AtomicLong();
+    private final AtomicLong SavedBytes = new AtomicLong();
+
+    /**
+     * @Title: ValueCodecs.
+     * @Description: the construct function of the ValueCodecs class, the BinaryDocumentCodec is registered(so its values are read),
+     *               and the new values are written as legacy JSON.
+     * @return none.
+     */
+    public ValueCodecs()
+    {
+	this.register(new BinaryDocumentCodec());
+    }
+
+    /**
+     * @Title: register.
+     * @Description: the function is used to register a codec, so the values of its version could be read.
+     * @param codec: the codec.
+     * @return none.
+     */
+    public synchronized void register(ValueCodec codec)
+    {
+	int version = codec.getVersion();
+	if((version < 1) || (version > MAX_VERSION))
+	{
+	    throw new IllegalArgumentException("the codec version " + version + " is not in [1, " + MAX_VERSION + "]");
+	}
+	if((this.Codecs[version] != null) && (this.Codecs[version] != codec))
+	{
+	    throw new IllegalArgumentException("the codec version " + version + " is registered by " + this.Codecs[version]);
+	}
+	this.Codecs[version] = codec;
+    }
+
+    /**
+     * @Title: setWriteVersion.
+     * @Description: the function is used to choose the codec of the new values, the readers must have registered it first.
+     * @param version: the version of a registered codec, or JSON_VERSION for the legacy JSON.
+     * @return none.
+     */
+    public synchronized void setWriteVersion(int version)
+    {
+	if((version != JSON_VERSION) && ((version < 1) || (version > MAX_VERSION) || (this.Codecs[version] == null)))
+	{
+	    throw new IllegalArgumentException("no codec of version " + version + " is registered");
+	}
+	this.WriteVersion = version;
+    }
+
+    public int getWriteVersion()
+    {
+	return this.WriteVersion;
+    }
+
+    /**
+     * @Title: setCompressThreshold.
+     * @Description: the function is used to set the min size of an encoded value which is compressed.
+     * @param threshold: the size in bytes, Integer.MAX_VALUE disables the compression.
+     * @return none.
+     */
+    public void setCompressThreshold(int threshold)
+    {
+	this.CompressThreshold = threshold;
+    }
+
+    /**
+     * @Title: encode.
+     * @Description: the function is used to encode a document as a cache value.
+     * @param doc: the document.
+     * @return byte[]: the value with its header, or the legacy JSON value without a header.
+     */
+    public byte[] encode(DBObject doc)
+    {
+	int version = this.WriteVersion;
+	if(version == JSON_VERSION)
+	{
+	    return this.encodeJson(doc);
+	}
+	Scratch scratch = SCRATCH.get();
+	try
+	{
+	    //the value is encoded with its header, the compressed copy gets its own header and is kept only when it is smaller.
+	    CodecBuffer encoded = scratch.encoded.clear();
+	    encoded.writeByte(MAGIC);
+	    encoded.writeByte(version);
+	    encoded.writeByte(0);
+	    try
+	    {
+		this.Codecs[version].encode(doc, encoded);
+	    }
+	    catch(IllegalArgumentException e)
+	    {
+		//a type the codec does not support, JSON writes it as the value was written before the codecs.
+		this.FallbackValues.incrementAndGet();
+		return this.encodeJson(doc);
+	    }
+	    this.EncodedValues.incrementAndGet();
+
+	    int raw_length = encoded.position() - 3;
+	    if(raw_length < this.CompressThreshold)
+	    {
+		return encoded.toByteArray();
+	    }
+	    CodecBuffer compressed = scratch.compressed.clear();
+	    compressed.writeByte(MAGIC);
+	    compressed.writeByte(version);
+	    compressed.writeByte(FLAG_LZ);
+	    compressed.writeVarint(raw_length);
+	    scratch.compressor.compress(encoded.array(), 3, raw_length, compressed);
+	    if(compressed.position() >= encoded.position())
+	    {
+		return encoded.toByteArray();
+	    }
+	    this.CompressedValues.incrementAndGet();
+	    this.SavedBytes.addAndGet(encoded.position() - compressed.position());
+	    return compressed.toByteArray();
+	}
+	finally
+	{
+	    scratch.trim();
+	}
+    }
+
+    /**
+     * @Title: encodeJson.
+     * @Description: the function which encodes a document as a legacy JSON value, the UTF-8 bytes of JSON.serialize.
+     * @param doc: the document.
+     * @return byte[]: the value without a header.
+     */
+    private byte[] encodeJson(DBObject doc)
+    {
+	this.JsonValues.incrementAndGet();
+	return JSON.serialize(doc).getBytes(UTF8);
+    }
+
+    /**
+     * @Title: decode.
+     * @Description: the function is used to decode a cache value, by the codec of its header or as legacy JSON.
+     * @param value: the value.
+     * @return DBObject: the document, null for a null value.
+     * @throws IllegalArgumentException: when the value is malformed or its codec is not registered.
+     */
+    public DBObject decode(byte[] value)
+    {
+	if(value == null)
+	{
+	    return null;
+	}
+	if((value.length == 0) || ((value[0] & 0xFF) != MAGIC))
+	{
+	    this.LegacyValues.incrementAndGet();
+	    return (DBObject)JSON.parse(new String(value, UTF8));
+	}
+	if(value.length < 3)
+	{
+	    throw new IllegalArgumentException("the value header is truncated");
+	}
+	int version = value[1] & 0xFF;
+	ValueCodec codec = (version <= MAX_VERSION) ? this.Codecs[version] : null;
+	if(codec == null)
+	{
+	    throw new IllegalArgumentException("no codec of version " + version + " is registered");
+	}
+	Scratch scratch = SCRATCH.get();
+	CodecBuffer reader = scratch.reader;
+	try
+	{
+	    reader.wrap(value, 3, value.length - 3);
+	    if((value[2] & FLAG_LZ) == 0)
+	    {
+		return codec.decode(reader);
+	    }
+	    long raw_length = reader.readVarint();
+	    if((raw_length < 0) || (raw_length > MAX_VALUE_BYTES))
+	    {
+		throw new IllegalArgumentException("malformed raw length " + raw_length);
+	    }
+	    CodecBuffer raw = scratch.compressed.clear();
+	    int compressed_start = value.length - reader.remaining();
+	    LzCompressor.decompress(value, compressed_start, reader.remaining(), raw, (int)raw_length);
+	    return codec.decode(reader.wrap(raw.array(), 0, (int)raw_length));
+	}
+	finally
+	{
+	    //the reader must not keep a reference to the value or to the buffer of the next encode.
+	    reader.wrap(null, 0, 0);
+	    scratch.trim();
+	}
+    }
+
+    /**
+     * @Title: isEncoded.
+     * @Description: the function shows a cache value has the header of the codecs, or it is a legacy JSON value.
+     * @param value: the value.
+     * @return boolean: true when the value starts with MAGIC.
+     */
+    public static boolean isEncoded(byte[] value)
+    {
+	return (value != null) && (value.length > 0) && ((value[0] & 0xFF) == MAGIC);
+    }
+
+    public long getEncodedValues()
+    {
+	return this.EncodedValues.get();
+    }
+
+    public long getJsonValues()
+    {
+	return this.JsonValues.get();
+    }
+
+    public long getFallbackValues()
+    {
+	return this.FallbackValues.get();
+    }
+
+    public long getCompressedValues()
+    {
+	return this.CompressedValues.get();
+    }
+
+    public long getLegacyValues()
+    {
+	return this.LegacyValues.get();
+    }
+
+    public long getSavedBytes()
+    {
+	return this.SavedBytes.get();
+    }
+}
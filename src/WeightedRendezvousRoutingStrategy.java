@@ -0,0 +1,222 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: WeightedRendezvousRoutingStrategy.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The weighted rendezvous(highest random weight) hashing routing strategy.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of WeightedRendezvousRoutingStrategy was written.
+ *    2.2026-10-17 Add the prepareTable function, the layer clients build the table of a new shard number before it is published.
+ */
+//package name.
+package generaldbplatform;
+
+//class import for java utilities.
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * @ClassName: WeightedRendezvousRoutingStrategy.
+ * @Description: this class splits the key hash space into 2^TableBits slots, and each slot belongs to the shard with the highest
+ *               score weight / -ln(u), where u is a uniform hash of the slot & the shard index(the weighted HRW of Schindelhauer).
+ *               so the key share of a shard is proportional to its weight, appending a shard only moves slots to the new shard,
+ *               and changing the weight of one shard only moves slots from or to that shard.
+ *               the owner of every slot is computed once per shard number, so a lookup is one table read. the layer clients
+ *               build the table of a new shard number by prepareTable before they publish the topology, so no request builds it.
+ *               the weights are given by the layer client from the "@weight" suffix of the topology message(see TopologyService),
+ *               an instance must not be shared by the cache & persistent layers, the shard indexes of the layers are different.
+ */
+public class WeightedRendezvousRoutingStrategy implements ShardRoutingStrategy
+{
+    /**
+     * @FieldName: DEFAULT_TABLE_BITS & DEFAULT_WEIGHT.
+     * @Description: the default slot number is 2^16(the key share of a shard is rounded to 1/65536),
+     *               and the weight of a shard which has no "@weight" in the topology message.
+     */
+    public static final int DEFAULT_TABLE_BITS = 16;
+    public static final double DEFAULT_WEIGHT = 1.0;
+
+    /**
+     * @FieldName: TableBits.
+     * @Description: the slot number of the tables is 2^TableBits.
+     */
+    private final int TableBits;
+
+    /**
+     * @FieldName: Weights.
+     * @Description: the weight of each shard index, the array is replaced on every change and never changed in place.
+     */
+    private volatile double[] Weights = new double[0];
+
+    /**
+     * @FieldName: TableCache.
+     * @Description: the owner of each slot, the map key is the shard number of the table.
+     */
+    private final ConcurrentMap<Integer, int[]> TableCache = new ConcurrentHashMap<Integer, int[]>();
+
+    /**
+     * @Title: WeightedRendezvousRoutingStrategy.
+     * @Description: the construct function which uses the DEFAULT_TABLE_BITS.
+     * @return none.
+     */
+    public WeightedRendezvousRoutingStrategy()
+    {
+	this(DEFAULT_TABLE_BITS);
+    }
+
+    /**
+     * @Title: WeightedRendezvousRoutingStrategy.
+     * @Description: the construct function of the WeightedRendezvousRoutingStrategy class.
+     * @param tableBits: the slot number of the tables is 2^tableBits, in the range [1, 24].
+     * @return none.
+     */
+    public WeightedRendezvousRoutingStrategy(int tableBits)
+    {
+	if((tableBits < 1) || (tableBits > 24))
+	{
+	    throw new IllegalArgumentException("tableBits must be in [1, 24]: " + tableBits);
+	}
+	this.TableBits = tableBits;
+    }
+
+    /**
+     * @Title: setShardWeight.
+     * @Description: the function which is used to set the weight of one shard, the tables which contain the shard are rebuilt
+     *               on the next lookup. the layer clients set the weight of a new shard before the topology with it is published,
+     *               so the routing of the published views never changes.
+     * @param shardIndex: the shard index.
+     * @param weight: the positive weight, like the memory size of the shard in GB.
+     * @return none.
+     */
+    public synchronized void setShardWeight(int shardIndex, double weight)
+    {
+	if(!(weight > 0) || Double.isInfinite(weight))
+	{
+	    throw new IllegalArgumentException("the weight must be positive: " + weight);
+	}
+	double[] current = this.Weights;
+	if((shardIndex < current.length) && (current[shardIndex] == weight))
+	{
+	    return;
+	}
+	double[] next = Arrays.copyOf(current, Math.max(current.length, shardIndex + 1));
+	for(int i = current.length; i < next.length; i++)
+	{
+	    next[i] = DEFAULT_WEIGHT;
+	}
+	next[shardIndex] = weight;
+	this.Weights = next;
+
+	//only the tables which contain the shard change.
+	Iterator<Integer> it = this.TableCache.keySet().iterator();
+	while(it.hasNext())
+	{
+	    if(it.next().intValue() > shardIndex)
+	    {
+		it.remove();
+	    }
+	}
+    }
+
+    /**
+     * @Title: getShardWeight.
+     * @Description: the function which is used to get the weight of one shard.
+     * @param shardIndex: the shard index.
+     * @return double: the weight, DEFAULT_WEIGHT when it was not set.
+     */
+    public double getShardWeight(int shardIndex)
+    {
+	double[] current = this.Weights;
+	return (shardIndex < current.length) ? current[shardIndex] : DEFAULT_WEIGHT;
+    }
+
+    /**
+     * @Title: getShardIndex.
+     * @Description: the function which is used to compute the shard index by the slot table of the shard number.
+     * @param keyHash: the hash value of the key.
+     * @param shardNum: the number of the shards in the current routing view(old or new).
+     * @return int: the shard index in the range [0, shardNum).
+     */
+    @Override
+    public int getShardIndex(long keyHash, int shardNum)
+    {
+	int[] table = this.TableCache.get(shardNum);
+	if(table == null)
+	{
+	    table = this.prepareTable(shardNum);
+	}
+	return table[(int)(mix64(keyHash) >>> (64 - this.TableBits))];
+    }
+
+    /**
+     * @Title: prepareTable.
+     * @Description: the function which is used to build & cache the slot table of one shard number if it is not cached,
+     *               the layer clients call it with the weights of the new shards before the topology is published.
+     * @param shardNum: the number of the shards.
+     * @return int[]: the owner shard index of each slot.
+     */
+    public int[] prepareTable(int shardNum)
+    {
+	int[] table = this.TableCache.get(shardNum);
+	if(table != null)
+	{
+	    return table;
+	}
+	table = this.buildTable(shardNum);
+	int[] existed = this.TableCache.putIfAbsent(shardNum, table);
+	return (existed != null) ? existed : table;
+    }
+
+    /**
+     * @Title: buildTable.
+     * @Description: the function which is used to find the owner of every slot for one shard number.
+     * @param shardNum: the number of the shards.
+     * @return int[]: the owner shard index of each slot.
+     */
+    private int[] buildTable(int shardNum)
+    {
+	double[] weights = new double[shardNum];
+	for(int i = 0; i < shardNum; i++)
+	{
+	    weights[i] = this.getShardWeight(i);
+	}
+	int[] table = new int[1 << this.TableBits];
+	for(int slot = 0; slot < table.length; slot++)
+	{
+	    long slotHash = mix64(slot);
+	    int owner = 0;
+	    double best = -1;
+	    for(int shard = 0; shard < shardNum; shard++)
+	    {
+		//u is uniform in (0, 1), so -ln(u) is exponential and weight / -ln(u) wins with the probability of its weight share.
+		double u = ((mix64(slotHash ^ (shard * 0x9E3779B97F4A7C15L)) >>> 11) + 0.5) / (double)(1L << 53);
+		double score = weights[shard] / -Math.log(u);
+		if(score > best)
+		{
+		    best = score;
+		    owner = shard;
+		}
+	    }
+	    table[slot] = owner;
+	}
+	return table;
+    }
+
+    /**
+     * @Title: mix64.
+     * @Description: the 64-bit finalizer of the SplitMix64 generator.
+     * @param z: the input value.
+     * @return long: the mixed value.
+     */
+    private static long mix64(long z)
+    {
+	z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+	z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+	return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: RoutingStrategyTest.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The tests of the remapped fraction of the ShardRoutingStrategy on an expansion.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of RoutingStrategyTest was written.
+ */
+//package name.
+package generaldbplatform;
+
+//class import for junit.
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * @ClassName: RoutingStrategyTest.
+ * @Description: this class checks that the consistent strategies move about 1/(N+1) of the keys when the shard number
+ *               grows from N to N+1, only to the new shard, while the legacy modulo moves almost every key.
+ */
+public class RoutingStrategyTest
+{
+    /**
+     * @FieldName: SAMPLE_SIZE & MAX_SHARD_NUM.
+     * @Description: the number of the sample keys and the largest shard number of the expansions.
+     */
+    private static final int SAMPLE_SIZE = 200000;
+    private static final int MAX_SHARD_NUM = 16;
+
+    /**
+     * @FieldName: keyHashes.
+     * @Description: the hash values of the sequential long keys.
+     */
+    private final long[] keyHashes = RoutingStatistics.hashedLongKeys(RoutingStatistics.sequentialKeys(SAMPLE_SIZE));
+
+    @Test
+    public void jumpHashMovesOneShardShare()
+    {
+	ShardRoutingStrategy strategy = new JumpHashRoutingStrategy();
+	for(int n = 1; n < MAX_SHARD_NUM; n++)
+	{
+	    double ideal = 1.0 / (n + 1);
+	    assertEquals("jump hash " + n + " -> " + (n + 1), ideal,
+			 RoutingStatistics.remappedFraction(strategy, keyHashes, n, n + 1), 0.01);
+	}
+    }
+
+    @Test
+    public void consistentHashMovesAboutOneShardShare()
+    {
+	ShardRoutingStrategy strategy = new ConsistentHashRoutingStrategy();
+	for(int n = 1; n < MAX_SHARD_NUM; n++)
+	{
+	    double ideal = 1.0 / (n + 1);
+	    double fraction = RoutingStatistics.remappedFraction(strategy, keyHashes, n, n + 1);
+	    assertTrue("ring " + n + " -> " + (n + 1) + " moved " + fraction, Math.abs(fraction - ideal) < ideal * 0.3);
+	}
+    }
+
+    @Test
+    public void consistentStrategiesOnlyMoveToTheNewShard()
+    {
+	ShardRoutingStrategy[] strategies = new ShardRoutingStrategy[] { new JumpHashRoutingStrategy(), new ConsistentHashRoutingStrategy() };
+	for(ShardRoutingStrategy strategy : strategies)
+	{
+	    for(int n = 1; n < MAX_SHARD_NUM; n++)
+	    {
+		for(long hash : keyHashes)
+		{
+		    int before = strategy.getShardIndex(hash, n);
+		    int after = strategy.getShardIndex(hash, n + 1);
+		    if(before != after)
+		    {
+			assertEquals(strategy.getClass().getSimpleName() + " moved a key to an old shard", n, after);
+		    }
+		}
+	    }
+	}
+    }
+
+    @Test
+    public void moduloMovesMostKeys()
+    {
+	ShardRoutingStrategy strategy = new ModuloRoutingStrategy();
+	for(int n = 2; n < MAX_SHARD_NUM; n++)
+	{
+	    double fraction = RoutingStatistics.remappedFraction(strategy, keyHashes, n, n + 1);
+	    assertEquals("modulo " + n + " -> " + (n + 1), (double)n / (n + 1), fraction, 0.01);
+	}
+    }
+
+    @Test
+    public void moduloKeepsTheRawIntPlacement()
+    {
+	ShardRoutingStrategy strategy = new ModuloRoutingStrategy();
+	for(int key = 0; key < 10000; key++)
+	{
+	    assertEquals(key % 4, strategy.getShardIndex(ShardKeyHash.hash(key), 4));
+	}
+    }
+}
@@ -0,0 +1,206 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: ShardKeyHashTest.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The tests of the full-key hash and the shard distribution of the synthetic key sets.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of ShardKeyHashTest was written.
+ */
+//package name.
+package generaldbplatform;
+
+//class import for java utilities.
+import java.nio.charset.Charset;
+
+//class import for junit.
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * @ClassName: ShardKeyHashTest.
+ * @Description: this class checks the String hash against the MurmurHash3(x86_32) of the UTF-8 bytes, and that the
+ *               sequential long keys & the suffix-heavy String keys spread evenly over the shards(the chi-square stays
+ *               below the 0.1% critical value of shardNum-1 degrees of freedom), where the legacy last char & low 8 bits
+ *               left hot shards.
+ */
+public class ShardKeyHashTest
+{
+    /**
+     * @FieldName: SAMPLE_SIZE & SHARD_NUM & CHI_SQUARE_LIMIT.
+     * @Description: the number of the sample keys, the shard number, and the chi-square critical value of p=0.001 with 15
+     *               degrees of freedom.
+     */
+    private static final int SAMPLE_SIZE = 1000000;
+    private static final int SHARD_NUM = 16;
+    private static final double CHI_SQUARE_LIMIT = 37.7;
+
+    /**
+     * @FieldName: UTF8.
+     * @Description: the charset of the reference hash.
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Test
+    public void stringHashMatchesMurmur3OfTheUtf8Bytes()
+    {
+	String[] keys = new String[] { "", "a", "ab", "abc", "abcd", "user:42:profile", "\u00e9t\u00e9", "\u4e2d\u6587\u952e",
+				       "emoji:\ud83d\ude00", "unpaired:\ud83d", "{user:42}:cart" };
+	for(String key : keys)
+	{
+	    long expected = ShardKeyHash.fmix64(murmur3(key.getBytes(UTF8)) & 0xFFFFFFFFL);
+	    assertEquals(key, expected, ShardKeyHash.hash(key));
+	}
+    }
+
+    @Test
+    public void hashTagRoutesTogether()
+    {
+	assertEquals(ShardKeyHash.routingHash("{user:42}:profile"), ShardKeyHash.routingHash("{user:42}:cart"));
+	assertEquals(ShardKeyHash.hash("user:42"), ShardKeyHash.routingHash("{user:42}:cart"));
+	assertEquals(ShardKeyHash.hash("{}:cart"), ShardKeyHash.routingHash("{}:cart"));
+    }
+
+    @Test
+    public void fullKeyLongHashSpreadsSequentialKeys()
+    {
+	long[] hashes = RoutingStatistics.hashedLongKeys(RoutingStatistics.sequentialKeys(SAMPLE_SIZE));
+	assertEven("full-key long", hashes);
+    }
+
+    @Test
+    public void fullKeyStringHashSpreadsSuffixHeavyKeys()
+    {
+	assertEven("full-key String", RoutingStatistics.hashedStringKeys(SAMPLE_SIZE));
+    }
+
+    @Test
+    public void legacyHashingLeavesHotShards()
+    {
+	long[] legacy = new long[SAMPLE_SIZE];
+	for(int i = 0; i < SAMPLE_SIZE; i++)
+	{
+	    String key = "user:" + i + ":profile";
+	    legacy[i] = key.charAt(key.length() - 1);
+	}
+	long[] counts = RoutingStatistics.shardCounts(new ModuloRoutingStrategy(), legacy, SHARD_NUM);
+	assertEquals("every key ends with the same char", (double)SHARD_NUM, RoutingStatistics.maxMeanSkew(counts), 1e-9);
+    }
+
+    @Test
+    public void weightedSharesFollowTheWeights()
+    {
+	double[] weights = new double[] { 32, 32, 64, 256 };
+	double total = 0;
+	WeightedRendezvousRoutingStrategy strategy = new WeightedRendezvousRoutingStrategy();
+	for(int i = 0; i < weights.length; i++)
+	{
+	    strategy.setShardWeight(i, weights[i]);
+	    total += weights[i];
+	}
+	long[] hashes = RoutingStatistics.hashedStringKeys(SAMPLE_SIZE);
+	long[] counts = RoutingStatistics.shardCounts(strategy, hashes, weights.length);
+	for(int i = 0; i < weights.length; i++)
+	{
+	    assertEquals("share of shard " + i, weights[i] / total, (double)counts[i] / SAMPLE_SIZE, 0.01);
+	}
+
+	//doubling the weight of shard 0 only moves keys to shard 0.
+	int[] before = new int[hashes.length];
+	for(int i = 0; i < hashes.length; i++)
+	{
+	    before[i] = strategy.getShardIndex(hashes[i], weights.length);
+	}
+	strategy.setShardWeight(0, weights[0] * 2);
+	long moved = 0;
+	for(int i = 0; i < hashes.length; i++)
+	{
+	    int after = strategy.getShardIndex(hashes[i], weights.length);
+	    if(after != before[i])
+	    {
+		assertEquals("a key moved to another shard than 0", 0, after);
+		moved++;
+	    }
+	}
+	double ideal = weights[0] * 2 / (total + weights[0]) - weights[0] / total;
+	assertEquals("moved by doubling the weight", ideal, (double)moved / SAMPLE_SIZE, 0.01);
+    }
+
+    /**
+     * @Title: assertEven.
+     * @Description: the function which asserts the chi-square & the max/mean skew of a key set on SHARD_NUM shards.
+     * @param name: the name of the key set.
+     * @param hashes: the hash values of the key set.
+     * @return none.
+     */
+    private static void assertEven(String name, long[] hashes)
+    {
+	ShardRoutingStrategy[] strategies = new ShardRoutingStrategy[] { new ModuloRoutingStrategy(), new JumpHashRoutingStrategy() };
+	for(ShardRoutingStrategy strategy : strategies)
+	{
+	    long[] counts = RoutingStatistics.shardCounts(strategy, hashes, SHARD_NUM);
+	    String label = name + " by " + strategy.getClass().getSimpleName();
+	    assertTrue(label + " chi2=" + RoutingStatistics.chiSquare(counts), RoutingStatistics.chiSquare(counts) < CHI_SQUARE_LIMIT);
+	    assertTrue(label + " max/mean=" + RoutingStatistics.maxMeanSkew(counts), RoutingStatistics.maxMeanSkew(counts) < 1.02);
+	}
+    }
+
+    /**
+     * @Title: murmur3.
+     * @Description: the reference MurmurHash3(x86_32) over a byte array, with the seed of ShardKeyHash.
+     * @param data: the bytes.
+     * @return int: the 32-bit hash value.
+     */
+    private static int murmur3(byte[] data)
+    {
+	int h1 = 0x9747B28C;
+	int blocks = data.length / 4;
+	for(int i = 0; i < blocks; i++)
+	{
+	    int k1 = (data[i * 4] & 0xFF) | ((data[i * 4 + 1] & 0xFF) << 8) | ((data[i * 4 + 2] & 0xFF) << 16) | (data[i * 4 + 3] << 24);
+	    h1 ^= mixK1(k1);
+	    h1 = Integer.rotateLeft(h1, 13);
+	    h1 = h1 * 5 + 0xE6546B64;
+	}
+	int k1 = 0;
+	int tail = blocks * 4;
+	switch(data.length & 3)
+	{
+	    case 3:
+		k1 ^= (data[tail + 2] & 0xFF) << 16;
+	    case 2:
+		k1 ^= (data[tail + 1] & 0xFF) << 8;
+	    case 1:
+		k1 ^= (data[tail] & 0xFF);
+		h1 ^= mixK1(k1);
+	    default:
+		break;
+	}
+	h1 ^= data.length;
+	h1 ^= h1 >>> 16;
+	h1 *= 0x85EBCA6B;
+	h1 ^= h1 >>> 13;
+	h1 *= 0xC2B2AE35;
+	h1 ^= h1 >>> 16;
+	return h1;
+    }
+
+    /**
+     * @Title: mixK1.
+     * @Description: the block scrambling of the reference MurmurHash3.
+     * @param k1: the block.
+     * @return int: the scrambled block.
+     */
+    private static int mixK1(int k1)
+    {
+	k1 *= 0xCC9E2D51;
+	k1 = Integer.rotateLeft(k1, 15);
+	k1 *= 0x1B873593;
+	return k1;
+    }
+}
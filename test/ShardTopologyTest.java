@@ -0,0 +1,191 @@
+/**
+ * @Copyright to Hades.Yang 2015~2016.
+ * @ClassName: ShardTopologyTest.
+ * @Project: AutoShardingDBPlatform.
+ * @Package: generaldbplatform.
+ * @Description: The tests of the immutable ShardTopology snapshot under the concurrent publication.
+ * @Author: Hades.Yang
+ * @Version: V1.0
+ * @Date: 2026-10-17
+ * @History:
+ *    1.2026-10-17 First version of ShardTopologyTest was written.
+ */
+//package name.
+package generaldbplatform;
+
+//class import for java utilities.
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+//class import for jedis client.
+import redis.clients.jedis.JedisSentinelPool;
+
+//class import for junit.
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * @ClassName: ShardTopologyTest.
+ * @Description: this class checks that a published snapshot never changes, and that the readers always see a consistent
+ *               combination of the shards, the shard numbers & the epoch while a publisher extends & retires the topology.
+ */
+public class ShardTopologyTest
+{
+    /**
+     * @FieldName: PUBLISHES & READERS.
+     * @Description: the number of the topologies which are published, and the number of the reader threads.
+     */
+    private static final int PUBLISHES = 4000;
+    private static final int READERS = 4;
+
+    /**
+     * @FieldName: published.
+     * @Description: the volatile field which publishes the snapshots, like the CacheTopology of the layer clients.
+     */
+    private volatile ShardTopology<String> published = ShardTopology.empty();
+
+    @Test
+    public void extendAndRetireLeaveTheSourceUnchanged()
+    {
+	ShardTopology<String> first = ShardTopology.<String>empty().extend(Arrays.asList("shard-0", "shard-1"));
+	ShardTopology<String> second = first.extend(Arrays.asList("shard-2"));
+	ShardTopology<String> retired = second.retireOldView();
+
+	assertEquals(2, first.getOldShardNum());
+	assertEquals(2, first.getNewShardNum());
+	assertEquals(1L, first.getEpoch());
+	assertEquals(2, second.getOldShardNum());
+	assertEquals(3, second.getNewShardNum());
+	assertTrue(second.isExpanding());
+	assertEquals(3, retired.getOldShardNum());
+	assertEquals(3L, retired.getEpoch());
+	assertEquals(2, second.getOldShardNum());
+	assertEquals("shard-2", retired.getShard(2));
+
+	//the list of the added shards is copied, a later change of it does not reach the snapshot.
+	List<String> added = new ArrayList<String>(Collections.singletonList("shard-3"));
+	ShardTopology<String> third = retired.extend(added);
+	added.set(0, "changed");
+	assertEquals("shard-3", third.getShard(3));
+    }
+
+    @Test
+    public void readersSeeConsistentSnapshotsUnderConcurrentPublish() throws Exception
+    {
+	final CountDownLatch start = new CountDownLatch(1);
+	final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+	final AtomicBoolean done = new AtomicBoolean(false);
+	Thread[] readers = new Thread[READERS];
+	for(int r = 0; r < READERS; r++)
+	{
+	    readers[r] = new Thread(new Runnable()
+	    {
+		@Override
+		public void run()
+		{
+		    try
+		    {
+			start.await();
+			long last_epoch = -1;
+			while(!done.get() && failure.get() == null)
+			{
+			    ShardTopology<String> snapshot = published;
+			    int old_num = snapshot.getOldShardNum();
+			    int new_num = snapshot.getNewShardNum();
+			    long epoch = snapshot.getEpoch();
+			    assertTrue("the epoch went back", epoch >= last_epoch);
+			    assertTrue("old view beyond the new view", old_num <= new_num);
+			    for(int i = 0; i < new_num; i++)
+			    {
+				assertEquals("shard-" + i, snapshot.getShard(i));
+			    }
+			    //the snapshot is unchanged after the later publications.
+			    Thread.yield();
+			    assertEquals(old_num, snapshot.getOldShardNum());
+			    assertEquals(new_num, snapshot.getNewShardNum());
+			    assertEquals(epoch, snapshot.getEpoch());
+			    last_epoch = epoch;
+			}
+		    }
+		    catch(Throwable e)
+		    {
+			failure.compareAndSet(null, e);
+		    }
+		}
+	    });
+	    readers[r].start();
+	}
+
+	start.countDown();
+	for(int i = 0; i < PUBLISHES && failure.get() == null; i++)
+	{
+	    ShardTopology<String> current = published;
+	    int shards = current.getNewShardNum();
+	    published = current.isExpanding() ? current.retireOldView()
+					      : current.extend(Arrays.asList("shard-" + shards, "shard-" + (shards + 1)));
+	}
+	done.set(true);
+	for(Thread reader : readers)
+	{
+	    reader.join();
+	}
+	if(failure.get() != null)
+	{
+	    throw new AssertionError(failure.get());
+	}
+    }
+
+    @Test
+    public void routingNeverMixesTwoSnapshots() throws Exception
+    {
+	final CacheLayerClient client = new CacheLayerClient(new ModuloRoutingStrategy(), ShardTopology.<JedisSentinelPool>empty());
+	final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+	final AtomicBoolean done = new AtomicBoolean(false);
+	Thread reader = new Thread(new Runnable()
+	{
+	    @Override
+	    public void run()
+	    {
+		try
+		{
+		    int key = 0;
+		    while(!done.get())
+		    {
+			//a shard number of one snapshot with the shard array of another would index out of the array.
+			assertNull(client.getNewShardedCacheClient(key));
+			assertNull(client.getOldShardedCacheClient(key));
+			assertNull(client.getNewShardedCacheClient("user:" + key));
+			key++;
+		    }
+		}
+		catch(Throwable e)
+		{
+		    failure.compareAndSet(null, e);
+		}
+	    }
+	});
+	reader.start();
+
+	List<JedisSentinelPool> added = Arrays.asList(null, null, null);
+	for(int i = 0; i < 2000 && failure.get() == null; i++)
+	{
+	    ShardTopology<JedisSentinelPool> current = client.getCacheTopology();
+	    client.CacheTopology = (current.getNewShardNum() >= 300) ? ShardTopology.<JedisSentinelPool>empty().extend(added)
+				  : current.isExpanding() ? current.retireOldView() : current.extend(added);
+	}
+	done.set(true);
+	reader.join();
+	if(failure.get() != null)
+	{
+	    throw new AssertionError(failure.get());
+	}
+    }
+}